@@ -77,7 +77,8 @@ public class ConversationViewLoader {
             Msg.CREATED_DATE,
             User.LINKED_USER_ID,
             MsgOfUser.REBLOGGED,
-            MsgOfUser.FAVORITED
+            MsgOfUser.FAVORITED,
+            Msg.THREAD_DEPTH
     };
     private static final int MAX_INDENT_LEVEL = 19;
     
@@ -105,7 +106,9 @@ public class ConversationViewLoader {
     public void load() {
         idsOfTheMessagesToFind.clear();
         oMsgs.clear();
-        findPreviousMessagesRecursively(new ConversationOneMessage(selectedMessageId, 0));
+        if (!loadThread()) {
+            findPreviousMessagesRecursively(new ConversationOneMessage(selectedMessageId, 0));
+        }
         Collections.sort(oMsgs, replyLevelComparator);
         enumerateMessages();
         if (MyPreferences.getBoolean(
@@ -115,6 +118,60 @@ public class ConversationViewLoader {
         Collections.sort(oMsgs);
     }
 
+    /**
+     * Loads the whole reply tree of the selected message with one query, see {@link org.andstatus.app.data.MsgThreads}
+     * @return false if the message is not in a thread yet, so the tree should be found recursively
+     */
+    private boolean loadThread() {
+        long threadId = MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, selectedMessageId);
+        if (threadId == 0) {
+            return false;
+        }
+        List<ConversationOneMessage> thread = new ArrayList<ConversationOneMessage>();
+        int selectedDepth = -1;
+        Uri uri = MyProvider.getTimelineThreadUri(ma.getUserId(), TimelineTypeEnum.ALL, true, threadId);
+        Cursor cursor = null;
+        try {
+            cursor = context.getContentResolver().query(uri, PROJECTION, null, null, null);
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    ConversationOneMessage oMsg = new ConversationOneMessage(
+                            cursor.getLong(cursor.getColumnIndex(Msg._ID)),
+                            cursor.getInt(cursor.getColumnIndex(Msg.THREAD_DEPTH)));
+                    if (oMsg.msgId == selectedMessageId) {
+                        selectedDepth = oMsg.replyLevel;
+                    }
+                    loadMessageFromCursor(oMsg, cursor);
+                    thread.add(oMsg);
+                } while (!cursor.isAfterLast());
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        if (selectedDepth < 0) {
+            MyLog.v(this, "Message id=" + selectedMessageId + " was not found in the thread " + threadId);
+            return false;
+        }
+        MyLog.v(this, "Loaded " + thread.size() + " messages of the thread " + threadId);
+        for (ConversationOneMessage oMsg : thread) {
+            oMsg.replyLevel -= selectedDepth;
+            for (ConversationOneMessage reply : thread) {
+                if (reply.inReplyToMsgId == oMsg.msgId) {
+                    oMsg.nReplies++;
+                }
+            }
+            if (!addMessageIdToFind(oMsg.msgId)) {
+                continue;
+            }
+            if (!oMsg.isLoaded()) {
+                retrieveFromInternet(oMsg.msgId);
+            } else if (addMessageToList(oMsg) && oMsg.inReplyToMsgId == 0) {
+                checkInReplyToNameOf(oMsg);
+            }
+        }
+        return true;
+    }
+
     private void findPreviousMessagesRecursively(ConversationOneMessage oMsg) {
         if (!addMessageIdToFind(oMsg.msgId)) {
             return;
@@ -231,7 +288,7 @@ public class ConversationViewLoader {
             }
             
             ind++;
-        } while (cursor.moveToNext());
+        } while (cursor.moveToNext() && cursor.getLong(cursor.getColumnIndex(Msg._ID)) == oMsg.msgId);
 
         for (long rebloggerId : rebloggers) {
             if (!TextUtils.isEmpty(oMsg.rebloggersString)) {
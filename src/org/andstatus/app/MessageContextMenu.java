@@ -39,6 +39,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.view.ContextMenu;
 import android.view.MenuItem;
@@ -51,13 +52,12 @@ import android.widget.TextView;
 import org.andstatus.app.account.AccountSelector;
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
-import org.andstatus.app.data.MyDatabase;
-import org.andstatus.app.data.MyProvider;
 import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.origin.Origin;
 import org.andstatus.app.service.CommandData;
 import org.andstatus.app.service.CommandEnum;
 import org.andstatus.app.service.MyServiceManager;
+import org.andstatus.app.support.android.v11.os.AsyncTask;
 import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.MyLog;
 
@@ -85,6 +85,16 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
         this.accountUserIdToActAs = accountUserIdToActAs;
     }
     private long accountUserIdToActAs;
+    /** Prefetched data older than this may be outdated, so it is not used */
+    static final long PREFETCHED_DATA_MAX_AGE_MS = 3000;
+    /** Loaded in advance, when the User touched a message */
+    private volatile MessageDataForContextMenu prefetchedData = null;
+    /** {@link SystemClock#uptimeMillis()} when the {@link #prefetchedData} was loaded */
+    private volatile long prefetchedAt = 0;
+    /** The prefetch in progress, accessed in the UI thread only */
+    private PrefetchTask prefetchTask = null;
+    /** Data of the message, which the menu was created for */
+    private MessageDataForContextMenu messageData = null;
 
     public MessageContextMenu(ActionableMessageList actionableMessageList) {
         messageList = actionableMessageList;
@@ -116,15 +126,16 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
             }
         }
         actorUserIdForCurrentMessage = 0;
-        MessageDataForContextMenu md = new MessageDataForContextMenu(messageList.getActivity(), userIdForThisMessage, messageList.getCurrentMyAccountUserId(), messageList.getTimelineType(), mCurrentMsgId
-                );
+        messageData = null;
+        MessageDataForContextMenu md = getMessageData(userIdForThisMessage, messageList.getCurrentMyAccountUserId(), mCurrentMsgId);
         if (md.ma == null) {
             return;
         }
         if (accountUserIdToActAs==0 && md.canUseSecondAccountInsteadOfFirst) {
             // Yes, use current Account!
-            md = new MessageDataForContextMenu(getContext(), messageList.getCurrentMyAccountUserId(), 0, messageList.getTimelineType(), mCurrentMsgId);
+            md = getMessageData(messageList.getCurrentMyAccountUserId(), 0, mCurrentMsgId);
         }
+        messageData = md;
         actorUserIdForCurrentMessage = md.ma.getUserId();
         accountUserIdToActAs = 0;
 
@@ -172,7 +183,7 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                 SENDER_MESSAGES.addTo(menu, menuItemId++,
                         String.format(MyContextHolder.get().getLocale(),
                                 getContext().getText(R.string.menu_item_user_messages).toString(),
-                                MyProvider.userIdToName(md.senderId)));
+                                md.senderName));
             }
 
             if (messageList.getSelectedUserId() != md.authorId && md.senderId != md.authorId) {
@@ -183,7 +194,7 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                 AUTHOR_MESSAGES.addTo(menu, menuItemId++,
                         String.format(MyContextHolder.get().getLocale(),
                                 getContext().getText(R.string.menu_item_user_messages).toString(),
-                                MyProvider.userIdToName(md.authorId)));
+                                md.authorName));
             }
 
             OPEN_MESSAGE_PERMALINK.addTo(menu, menuItemId++, R.string.menu_item_open_message_permalink);
@@ -204,12 +215,12 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     STOP_FOLLOWING_SENDER.addTo(menu, menuItemId++,
                             String.format(MyContextHolder.get().getLocale(),
                                     getContext().getText(R.string.menu_item_stop_following_user).toString(),
-                                    MyProvider.userIdToName(md.senderId)));
+                                    md.senderName));
                 } else {
                     FOLLOW_SENDER.addTo(menu, menuItemId++,
                             String.format(MyContextHolder.get().getLocale(),
                                     getContext().getText(R.string.menu_item_follow_user).toString(),
-                                    MyProvider.userIdToName(md.senderId)));
+                                    md.senderName));
                 }
             }
             if (!md.isAuthor && (md.authorId != md.senderId)) {
@@ -217,12 +228,12 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     STOP_FOLLOWING_AUTHOR.addTo(menu, menuItemId++,
                             String.format(MyContextHolder.get().getLocale(),
                                     getContext().getText(R.string.menu_item_stop_following_user).toString(),
-                                    MyProvider.userIdToName(md.authorId)));
+                                    md.authorName));
                 } else {
                     FOLLOW_AUTHOR.addTo(menu, menuItemId++,
                             String.format(MyContextHolder.get().getLocale(),
                                     getContext().getText(R.string.menu_item_follow_user).toString(),
-                                    MyProvider.userIdToName(md.authorId)));
+                                    md.authorName));
                 }
             }
             switch (md.ma.accountsOfThisOrigin()) {
@@ -246,6 +257,98 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
     private Context getContext() {
         return messageList.getActivity();
     }
+
+    private MessageDataForContextMenu getMessageData(long userIdForThisMessage, long preferredOtherUserId, long msgId) {
+        MessageDataForContextMenu md = prefetchedData;
+        // Used once only, so it doesn't become outdated
+        prefetchedData = null;
+        if (md != null && md.isFor(msgId, userIdForThisMessage, preferredOtherUserId)
+                && SystemClock.uptimeMillis() - prefetchedAt < PREFETCHED_DATA_MAX_AGE_MS) {
+            return md;
+        }
+        return new MessageDataForContextMenu(getContext(), userIdForThisMessage, preferredOtherUserId,
+                messageList.getTimelineType(), msgId);
+    }
+
+    /**
+     * Loads data for the context menu of the message in the background,
+     * so the menu, which may appear soon (e.g. after long-press), doesn't wait for the database
+     * @param position Of the message in the underlying Cursor
+     */
+    public void prefetch(int position, final long msgId) {
+        if (msgId <= 0 || accountUserIdToActAs != 0) {
+            return;
+        }
+        final long userIdForThisMessage = messageList.getLinkedUserIdFromCursor(position);
+        final long preferredOtherUserId = messageList.getCurrentMyAccountUserId();
+        MessageDataForContextMenu md = prefetchedData;
+        if (md != null && md.isFor(msgId, userIdForThisMessage, preferredOtherUserId)
+                && SystemClock.uptimeMillis() - prefetchedAt < PREFETCHED_DATA_MAX_AGE_MS) {
+            return;
+        }
+        if (prefetchTask != null) {
+            if (prefetchTask.isFor(msgId, userIdForThisMessage, preferredOtherUserId)) {
+                return;
+            }
+            // The target changed
+            cancelPrefetch();
+        }
+        prefetchTask = new PrefetchTask(msgId, userIdForThisMessage, preferredOtherUserId);
+        prefetchTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Cancels the prefetch in progress, e.g. when the touch turned out to be a scroll or a tap
+     */
+    public void cancelPrefetch() {
+        if (prefetchTask != null) {
+            prefetchTask.cancel(false);
+            prefetchTask = null;
+        }
+    }
+
+    private class PrefetchTask extends AsyncTask<Void, Void, MessageDataForContextMenu> {
+        private final long msgId;
+        private final long userIdForThisMessage;
+        private final long preferredOtherUserId;
+
+        PrefetchTask(long msgId, long userIdForThisMessage, long preferredOtherUserId) {
+            this.msgId = msgId;
+            this.userIdForThisMessage = userIdForThisMessage;
+            this.preferredOtherUserId = preferredOtherUserId;
+        }
+
+        boolean isFor(long msgIdIn, long userIdForThisMessageIn, long preferredOtherUserIdIn) {
+            return msgId == msgIdIn && userIdForThisMessage == userIdForThisMessageIn 
+                    && preferredOtherUserId == preferredOtherUserIdIn;
+        }
+
+        @Override
+        protected MessageDataForContextMenu doInBackground(Void... params) {
+            return new MessageDataForContextMenu(getContext(), userIdForThisMessage, preferredOtherUserId,
+                    messageList.getTimelineType(), msgId);
+        }
+
+        @Override
+        protected void onPostExecute(MessageDataForContextMenu result) {
+            if (prefetchTask == this) {
+                prefetchTask = null;
+            }
+            prefetchedData = result;
+            prefetchedAt = SystemClock.uptimeMillis();
+        }
+    }
+
+    /**
+     * @return Data of the current message for the action of the Account
+     */
+    private MessageDataForContextMenu getCurrentMessageData(MyAccount ma) {
+        if (messageData == null || messageData.msgId != mCurrentMsgId) {
+            messageData = new MessageDataForContextMenu(getContext(), ma.getUserId(), 0,
+                    messageList.getTimelineType(), mCurrentMsgId);
+        }
+        return messageData;
+    }
     
     public boolean onContextItemSelected(MenuItem item) {
         AdapterView.AdapterContextMenuInfo info;
@@ -265,8 +368,9 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
 
         MyAccount ma = MyContextHolder.get().persistentAccounts().fromUserId(actorUserIdForCurrentMessage);
         if (ma != null) {
-            long authorId;
-            long senderId;
+            MessageDataForContextMenu md = getCurrentMessageData(ma);
+            long authorId = md.authorId;
+            long senderId = md.senderId;
             ContextMenuItem contextMenuItem = ContextMenuItem.fromId(item.getItemId());
             MyLog.v(this, "onContextItemSelected: " + contextMenuItem + "; actor=" + ma.getAccountName());
             switch (contextMenuItem) {
@@ -274,7 +378,6 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     messageList.getMessageEditor().startEditingMessage("", mCurrentMsgId, 0, ma, messageList.isTimelineCombined());
                     return true;
                 case DIRECT_MESSAGE:
-                    authorId = MyProvider.msgIdToUserId(MyDatabase.Msg.AUTHOR_ID, mCurrentMsgId);
                     if (authorId != 0) {
                         messageList.getMessageEditor().startEditingMessage("", mCurrentMsgId, authorId, ma, messageList.isTimelineCombined());
                         return true;
@@ -296,11 +399,10 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     MyServiceManager.sendForegroundCommand( new CommandData(CommandEnum.DESTROY_FAVORITE, ma.getAccountName(), mCurrentMsgId));
                     return true;
                 case SHARE:
-                    return shareMessage(messageList.getActivity(), mCurrentMsgId);
+                    return shareMessage(messageList.getActivity(), md);
                 case OPEN_MESSAGE_PERMALINK:
-                    return openMessagePermalink(messageList.getActivity(), mCurrentMsgId);
+                    return openMessagePermalink(messageList.getActivity(), md);
                 case SENDER_MESSAGES:
-                    senderId = MyProvider.msgIdToUserId(MyDatabase.Msg.SENDER_ID, mCurrentMsgId);
                     if (senderId != 0) {
                         /**
                          * We better switch to the account selected for this message in order not to
@@ -312,7 +414,6 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     }
                     break;
                 case AUTHOR_MESSAGES:
-                    authorId = MyProvider.msgIdToUserId(MyDatabase.Msg.AUTHOR_ID, mCurrentMsgId);
                     if (authorId != 0) {
                         /**
                          * We better switch to the account selected for this message in order not to
@@ -324,19 +425,15 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
                     }
                     break;
                 case FOLLOW_SENDER:
-                    senderId = MyProvider.msgIdToUserId(MyDatabase.Msg.SENDER_ID, mCurrentMsgId);
                     MyServiceManager.sendForegroundCommand( new CommandData(CommandEnum.FOLLOW_USER, ma.getAccountName(), senderId));
                     return true;
                 case STOP_FOLLOWING_SENDER:
-                    senderId = MyProvider.msgIdToUserId(MyDatabase.Msg.SENDER_ID, mCurrentMsgId);
                     MyServiceManager.sendForegroundCommand( new CommandData(CommandEnum.STOP_FOLLOWING_USER, ma.getAccountName(), senderId));
                     return true;
                 case FOLLOW_AUTHOR:
-                    authorId = MyProvider.msgIdToUserId(MyDatabase.Msg.AUTHOR_ID, mCurrentMsgId);
                     MyServiceManager.sendForegroundCommand( new CommandData(CommandEnum.FOLLOW_USER, ma.getAccountName(), authorId));
                     return true;
                 case STOP_FOLLOWING_AUTHOR:
-                    authorId = MyProvider.msgIdToUserId(MyDatabase.Msg.AUTHOR_ID, mCurrentMsgId);
                     MyServiceManager.sendForegroundCommand( new CommandData(CommandEnum.STOP_FOLLOWING_USER, ma.getAccountName(), authorId));
                     return true;
                 case ACT_AS:
@@ -357,17 +454,20 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
     /**
      * @return true if succeeded
      */
-    private static boolean shareMessage(Activity activity, long messageId) {
-        Origin origin = MyContextHolder.get().persistentOrigins().fromId(MyProvider.msgIdToOriginId(messageId));
+    private static boolean shareMessage(Activity activity, MessageDataForContextMenu md) {
+        Origin origin = MyContextHolder.get().persistentOrigins().fromId(md.originId);
         if (origin == null) {
-            MyLog.v(activity, "Origin not found for messageId=" + messageId);
+            MyLog.v(activity, "Origin not found for messageId=" + md.msgId);
             return false;
         }
         StringBuilder subject = new StringBuilder();
         StringBuilder text = new StringBuilder();
-        String msgBodyPlainText = MyProvider.msgIdToStringColumnValue(MyDatabase.Msg.BODY, messageId);
-        if (origin.isHtmlContentAllowed()) {
-            msgBodyPlainText = MyHtml.fromHtml(msgBodyPlainText);
+        String msgBodyPlainText = md.bodyPlainText;
+        if (TextUtils.isEmpty(msgBodyPlainText)) {
+            msgBodyPlainText = md.body;
+            if (origin.isHtmlContentAllowed()) {
+                msgBodyPlainText = MyHtml.fromHtml(msgBodyPlainText);
+            }
         }
 
         subject.append(activity.getText(origin.alternativeTermForResourceId(R.string.message)));
@@ -381,8 +481,8 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
         }
 
         text.append(msgBodyPlainText);
-        text.append("\n-- \n" + MyProvider.msgIdToUsername(MyDatabase.Msg.AUTHOR_ID, messageId));
-        text.append("\n URL: " + origin.messagePermalink(messageId));
+        text.append("\n-- \n" + md.authorName);
+        text.append("\n URL: " + origin.messagePermalink(md.msgId));
 
         Intent intent = new Intent(android.content.Intent.ACTION_SEND);
         intent.setType("text/plain");
@@ -397,14 +497,14 @@ public class MessageContextMenu implements OnCreateContextMenuListener {
     /**
      * @return true if succeeded
      */
-    private static boolean openMessagePermalink(Activity activity, long messageId) {
-        Origin origin = MyContextHolder.get().persistentOrigins().fromId(MyProvider.msgIdToOriginId(messageId));
+    private static boolean openMessagePermalink(Activity activity, MessageDataForContextMenu md) {
+        Origin origin = MyContextHolder.get().persistentOrigins().fromId(md.originId);
         if (origin == null) {
-            MyLog.v(activity, "Origin not found for messageId=" + messageId);
+            MyLog.v(activity, "Origin not found for messageId=" + md.msgId);
             return false;
         }
         Intent intent = new Intent(android.content.Intent.ACTION_VIEW);
-        String permalinkString = origin.messagePermalink(messageId);
+        String permalinkString = origin.messagePermalink(md.msgId);
         if (TextUtils.isEmpty(permalinkString)) {
             return false;
         } else {
@@ -19,7 +19,6 @@ package org.andstatus.app;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
-import android.provider.BaseColumns;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
@@ -30,7 +29,9 @@ import org.andstatus.app.data.TimelineTypeEnum;
 
 
 /**
- * Helper class for the message context menu creation 
+ * Helper class for the message context menu creation.
+ * A snapshot of everything, what the menu and its actions need, loaded in one query,
+ * see {@link MyProvider#MSG_DETAILS_PROJECTION}
  * @author yvolk@yurivolkov.com
  */
 class MessageDataForContextMenu {
@@ -39,10 +40,19 @@ class MessageDataForContextMenu {
      */
     public MyAccount ma = null;
     
+    /** Parameters, for which this snapshot was loaded */
+    final long msgId;
+    final long userIdForThisMessage;
+    final long preferredOtherUserId;
+
     public String body = "";
+    String bodyPlainText = "";
+    long originId = 0;
     boolean isDirect = false;
     long authorId = 0;
+    String authorName = "";
     long senderId = 0;
+    String senderName = "";
     boolean favorited = false;
     boolean reblogged = false;
     boolean senderFollowed = false;
@@ -59,6 +69,9 @@ class MessageDataForContextMenu {
     boolean canUseSecondAccountInsteadOfFirst = false;
     
     public MessageDataForContextMenu(Context context, long userIdForThisMessage, long preferredOtherUserId, TimelineTypeEnum timelineType, long msgId) {
+        this.msgId = msgId;
+        this.userIdForThisMessage = userIdForThisMessage;
+        this.preferredOtherUserId = preferredOtherUserId;
         ma = MyContextHolder.get().persistentAccounts().getAccountWhichMayBeLinkedToThisMessage(msgId, userIdForThisMessage,
                 preferredOtherUserId);
         if (ma == null) {
@@ -69,18 +82,14 @@ class MessageDataForContextMenu {
         Uri uri = MyProvider.getTimelineMsgUri(ma.getUserId(), TimelineTypeEnum.MESSAGESTOACT, false, msgId);
         Cursor cursor = null;
         try {
-            cursor = context.getContentResolver().query(uri, new String[] {
-                    BaseColumns._ID, MyDatabase.Msg.BODY, MyDatabase.Msg.SENDER_ID,
-                    MyDatabase.Msg.AUTHOR_ID, MyDatabase.MsgOfUser.FAVORITED,
-                    MyDatabase.Msg.RECIPIENT_ID,
-                    MyDatabase.MsgOfUser.REBLOGGED,
-                    MyDatabase.FollowingUser.SENDER_FOLLOWED,
-                    MyDatabase.FollowingUser.AUTHOR_FOLLOWED
-            }, null, null, null);
+            cursor = context.getContentResolver().query(uri, MyProvider.MSG_DETAILS_PROJECTION, null, null, null);
             if (cursor != null && cursor.moveToFirst()) {
+                originId = cursor.getLong(cursor.getColumnIndex(MyDatabase.Msg.ORIGIN_ID));
                 isDirect = !cursor.isNull(cursor.getColumnIndex(MyDatabase.Msg.RECIPIENT_ID));
                 authorId = cursor.getLong(cursor.getColumnIndex(MyDatabase.Msg.AUTHOR_ID));
+                authorName = getString(cursor, MyDatabase.User.AUTHOR_NAME);
                 senderId = cursor.getLong(cursor.getColumnIndex(MyDatabase.Msg.SENDER_ID));
+                senderName = getString(cursor, MyDatabase.User.SENDER_NAME);
                 favorited = cursor.getInt(cursor.getColumnIndex(MyDatabase.MsgOfUser.FAVORITED)) == 1;
                 reblogged = cursor.getInt(cursor.getColumnIndex(MyDatabase.MsgOfUser.REBLOGGED)) == 1;
                 senderFollowed = cursor.getInt(cursor
@@ -93,7 +102,8 @@ class MessageDataForContextMenu {
                 isSender = (ma.getUserId() == senderId);
                 isAuthor = (ma.getUserId() == authorId);
 
-                body = cursor.getString(cursor.getColumnIndex(MyDatabase.Msg.BODY));
+                body = getString(cursor, MyDatabase.Msg.BODY);
+                bodyPlainText = getString(cursor, MyDatabase.Msg.BODY_PLAIN);
 
                 if ( timelineType != TimelineTypeEnum.FOLLOWING_USER 
                         && !isDirect && !favorited && !reblogged && !isSender && !senderFollowed && !authorFollowed
@@ -108,4 +118,14 @@ class MessageDataForContextMenu {
             DbUtils.closeSilently(cursor);
         }
     }
+
+    private static String getString(Cursor cursor, String columnName) {
+        String value = cursor.getString(cursor.getColumnIndex(columnName));
+        return value == null ? "" : value;
+    }
+
+    boolean isFor(long msgId, long userIdForThisMessage, long preferredOtherUserId) {
+        return this.msgId == msgId && this.userIdForThisMessage == userIdForThisMessage
+                && this.preferredOtherUserId == preferredOtherUserId;
+    }
 }
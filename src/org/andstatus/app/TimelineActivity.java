@@ -27,24 +27,24 @@ import android.content.ComponentName;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.SearchRecentSuggestions;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.widget.AbsListView;
 import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.Button;
-import android.widget.CursorAdapter;
 import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
@@ -62,9 +62,9 @@ import org.andstatus.app.data.MyDatabase.Msg;
 import org.andstatus.app.data.MyDatabase.MsgOfUser;
 import org.andstatus.app.data.MyDatabase.User;
 import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.TimelinePage;
 import org.andstatus.app.data.TimelineSearchSuggestionsProvider;
 import org.andstatus.app.data.TimelineTypeEnum;
-import org.andstatus.app.data.TimelineViewBinder;
 import org.andstatus.app.net.Connection.ApiRoutineEnum;
 import org.andstatus.app.service.CommandData;
 import org.andstatus.app.service.CommandEnum;
@@ -74,7 +74,6 @@ import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.service.MyServiceReceiver;
 import org.andstatus.app.support.android.v11.app.MyLoader;
 import org.andstatus.app.support.android.v11.app.MyLoaderManager;
-import org.andstatus.app.support.android.v11.widget.MySimpleCursorAdapter;
 import org.andstatus.app.util.InstanceId;
 import org.andstatus.app.util.MyLog;
 
@@ -84,7 +83,7 @@ import java.util.List;
 /**
  * @author yvolk@yurivolkov.com, torgny.bjers
  */
-public class TimelineActivity extends ListActivity implements MyServiceListener, OnScrollListener, OnItemClickListener, ActionableMessageList, MyLoaderManager.LoaderCallbacks<Cursor>, MyActionBarContainer {
+public class TimelineActivity extends ListActivity implements MyServiceListener, OnScrollListener, OnItemClickListener, ActionableMessageList, MyLoaderManager.LoaderCallbacks<TimelinePage>, MyActionBarContainer {
     private static final int DIALOG_ID_TIMELINE_TYPE = 9;
 
     private static final String KEY_LAST_POSITION = "last_position_";
@@ -114,6 +113,10 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
      * The is no more items in the query, so don't try to load more pages
      */
     private boolean mNoMoreItems = false;
+
+    private TimelinePrefetcher mPrefetcher;
+    /** The latest {@link CommandEnum#FETCH_OLDER} command sent, so it may be cancelled */
+    private CommandData mFetchOlderCommand = null;
     
     /**
      * For testing purposes
@@ -161,7 +164,7 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
     private MessageEditor mMessageEditor;
 
     private static final int LOADER_ID = 1;
-    private MyLoaderManager<Cursor> mLoaderManager = null;
+    private MyLoaderManager<TimelinePage> mLoaderManager = null;
 
     private String mTextToShareViaThisApp = "";
     
@@ -217,22 +220,24 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         mSyncIndicator = findViewById(R.id.sync_indicator);
         mContextMenu = new MessageContextMenu(this);
         mMessageEditor = new MessageEditor(this);
+        mPrefetcher = new TimelinePrefetcher(MyPreferences.getPrefetchDistanceRows(), PAGE_SIZE);
 
         boolean isInstanceStateRestored = restoreInstanceState(savedInstanceState);
         
-        mLoaderManager = new MyLoaderManager<Cursor>();
+        mLoaderManager = new MyLoaderManager<TimelinePage>();
         
         LayoutInflater inflater = LayoutInflater.from(this);
         // Create list footer to show the progress of message loading
         mLoadingLayout = (LinearLayout) inflater.inflate(R.layout.item_loading, null);
         getListView().addFooterView(mLoadingLayout);
         
-        createListAdapter(new MatrixCursor(getProjection()));
+        createListAdapter();
 
         // Attach listeners to the message list
         getListView().setOnScrollListener(this);
         getListView().setOnCreateContextMenuListener(mContextMenu);
         getListView().setOnItemClickListener(this);
+        getListView().setOnTouchListener(new PrefetchOnTouchListener());
 
         Button accountButton = (Button) findViewById(R.id.selectAccountButton);
         accountButton.setOnClickListener(new View.OnClickListener() {
@@ -393,6 +398,54 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
             }
         }
     }
+
+    /**
+     * A long-press may follow a touch, so the data for its context menu is prefetched, 
+     * unless the touch turns out to be a tap or a scroll
+     */
+    private class PrefetchOnTouchListener implements View.OnTouchListener {
+        private float downX = 0;
+        private float downY = 0;
+        private final Runnable prefetchRunnable = new Runnable() {
+            @Override
+            public void run() {
+                int position = getListView().pointToPosition((int) downX, (int) downY);
+                if (position != AdapterView.INVALID_POSITION) {
+                    mContextMenu.prefetch(position, getListView().getItemIdAtPosition(position));
+                }
+            }
+        };
+
+        @Override
+        public boolean onTouch(View v, MotionEvent event) {
+            switch (event.getAction()) {
+                case MotionEvent.ACTION_DOWN:
+                    downX = event.getX();
+                    downY = event.getY();
+                    v.removeCallbacks(prefetchRunnable);
+                    v.postDelayed(prefetchRunnable, ViewConfiguration.getTapTimeout());
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    int touchSlop = ViewConfiguration.get(v.getContext()).getScaledTouchSlop();
+                    if (Math.abs(event.getX() - downX) > touchSlop || Math.abs(event.getY() - downY) > touchSlop) {
+                        cancel(v);
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    cancel(v);
+                    break;
+                default:
+                    break;
+            }
+            return false;
+        }
+
+        private void cancel(View v) {
+            v.removeCallbacks(prefetchRunnable);
+            mContextMenu.cancelPrefetch();
+        }
+    }
     
     /**
      * Determines where to save / retrieve position in the list
@@ -795,27 +848,16 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
     }
 
     /**
-     * @param position Of current item in the underlying Cursor
+     * @param position Of current item in the {@link TimelinePage}
      * @return id of the User linked to this message. This link reflects the User's timeline 
      * or an Account which was used to retrieved the message
      */
     @Override
     public long getLinkedUserIdFromCursor(int position) {
         long userId = 0;
-        try {
-            Cursor cursor = null;
-            if (getListAdapter() != null) {
-                cursor = ((CursorAdapter) getListAdapter()).getCursor();
-            }
-            if (cursor != null && !cursor.isClosed()) {
-                cursor.moveToPosition(position);
-                int columnIndex = cursor.getColumnIndex(User.LINKED_USER_ID);
-                if (columnIndex > -1) {
-                    userId = cursor.getLong(columnIndex);
-                }
-            }
-        } catch (Exception e) {
-            MyLog.v(this, e);
+        TimelinePage page = getPage();
+        if (position >= 0 && position < page.getCount()) {
+            userId = page.getLinkedUserId(position);
         }
         return userId;
     }
@@ -823,17 +865,37 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
     @Override
     public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
             int totalItemCount) {
-        if (!mNoMoreItems && mPositionRestored && !isLoading()) {
-            // Idea from http://stackoverflow.com/questions/1080811/android-endless-list
-            boolean loadMore = (visibleItemCount > 0) && (firstVisibleItem > 0)
-                    && (firstVisibleItem + visibleItemCount >= totalItemCount);
-            if (loadMore) {
-                MyLog.d(this, "Start Loading more items, rows=" + totalItemCount);
+        if (!mPositionRestored || isLoading() || firstVisibleItem == 0) {
+            return;
+        }
+        // Idea from http://stackoverflow.com/questions/1080811/android-endless-list
+        if (mPrefetcher.onScroll(firstVisibleItem, visibleItemCount, totalItemCount,
+                SystemClock.uptimeMillis())) {
+            if (!mNoMoreItems) {
+                MyLog.d(this, "Start Loading more items, rows=" + totalItemCount
+                        + ", look-ahead=" + mPrefetcher.getLookAhead());
                 queryListData(true);
+            } else {
+                fetchOlderMessages();
             }
         }
     }
 
+    /**
+     * Ask a service to download older messages of this timeline, when all of them are shown already
+     */
+    private void fetchOlderMessages() {
+        TimelinePage page = getPage();
+        if (page.getCount() == 0 || !TextUtils.isEmpty(mSearchQuery)
+                || !TimelinePrefetcher.isOlderFetchSupported(mTimelineType)) {
+            return;
+        }
+        if (mPrefetcher.onNoMoreRows(page.getId(page.getCount() - 1), SystemClock.uptimeMillis())) {
+            MyLog.d(this, "Requesting older messages of " + mTimelineType);
+            fetchTimeline(CommandEnum.FETCH_OLDER, false);
+        }
+    }
+
     @Override
     public void onScrollStateChanged(AbsListView view, int scrollState) {
         switch (scrollState) {
@@ -1075,23 +1137,33 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         final String method = "queryListData";
         if (!loadOneMorePage) {
             mNoMoreItems = false;
+            onTimelineMaybeChanged();
         }
         MyLog.v(this, method + (loadOneMorePage ? "loadOneMorePage" : ""));
         Bundle args = new Bundle();
         args.putBoolean(IntentExtra.EXTRA_LOAD_ONE_MORE_PAGE.key, loadOneMorePage);
         args.putInt(IntentExtra.EXTRA_ROWS_LIMIT.key, calcRowsLimit(loadOneMorePage));
+        if (!loadOneMorePage) {
+            showSnapshot();
+        }
         mLoaderManager.restartLoader(LOADER_ID, args, this);
         setLoading(true);
     }
 
-    private int calcRowsLimit(boolean loadOneMorePage) {
-        int nMessages = 0;
-        if (getListAdapter() != null) {
-            Cursor cursor = ((CursorAdapter) getListAdapter()).getCursor();
-            if (cursor != null && !cursor.isClosed()) {
-                nMessages = cursor.getCount();
-            }
+    private void onTimelineMaybeChanged() {
+        if (TimelineSnapshotCache.isSameTimeline(newListParameters(), mListParameters)) {
+            return;
+        }
+        if (mPrefetcher.onTimelineChanged() && mFetchOlderCommand != null) {
+            MyLog.v(this, "Older messages of the previous timeline are not needed");
+            MyServiceManager.sendCommand(new CommandData(CommandEnum.CANCEL_FETCH_OLDER,
+                    mFetchOlderCommand.getAccountName(), mFetchOlderCommand.getTimelineType()));
+            mFetchOlderCommand = null;
         }
+    }
+
+    private int calcRowsLimit(boolean loadOneMorePage) {
+        int nMessages = getPage().getCount();
         if (loadOneMorePage) {
             nMessages += PAGE_SIZE;
         } else if (nMessages < PAGE_SIZE) {
@@ -1100,18 +1172,57 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         return nMessages;
     }
 
-    @Override
-    public MyLoader<Cursor> onCreateLoader(int id, Bundle args) {
-        final String method = "onCreateLoader";
-        MyLog.v(this, method + " #" + id);
+    /**
+     * Show rows of the timeline from {@link TimelineSnapshotCache} while its query is running.
+     * The snapshot is not shown, if it doesn't contain the stored position
+     */
+    private void showSnapshot() {
+        final String method = "showSnapshot";
+        TimelineListParameters params = newListParameters();
+        if (TimelineSnapshotCache.isSameTimeline(params, mListParameters)
+                && getListAdapter() != null && getListAdapter().getCount() > 0) {
+            return;
+        }
+        TimelineSnapshotCache.Snapshot snapshot = TimelineSnapshotCache.get(params);
+        if (snapshot == null || snapshot.getPage().getCount() == 0) {
+            return;
+        }
+        long firstItemId = new ListPositionStorage(params).getFirst();
+        int position = firstItemId > 0 ? snapshot.getPage().positionOf(firstItemId) : -1;
+        if (firstItemId > 0 && position < 0) {
+            MyLog.v(this, method + " skipped: no stored position in the snapshot, itemId=" + firstItemId);
+            return;
+        }
+        MyLog.v(this, method + " " + snapshot.getPage().getCount() + " rows, position=" + position);
+        saveListPosition();
+        getTimelineAdapter().setPage(snapshot.getPage());
+        mListParameters = params;
+        if (position >= 0) {
+            getListView().setSelectionFromTop(position, 0);
+        } else {
+            setSelectionAtBottom(getListView().getCount() - 2);
+        }
+        // The position will be restored again, when the timeline is loaded
+        mPositionRestored = false;
+    }
+
+    private TimelineListParameters newListParameters() {
         TimelineListParameters params = new TimelineListParameters();
-        params.loaderCallbacks = this;
         params.timelineType = getTimelineType();
         params.timelineCombined = isTimelineCombined();
         params.myAccountUserId = getCurrentMyAccountUserId();
         params.selectedUserId = getSelectedUserId();
         params.projection = getProjection();
         params.searchQuery = this.mSearchQuery;
+        return params;
+    }
+
+    @Override
+    public MyLoader<TimelinePage> onCreateLoader(int id, Bundle args) {
+        final String method = "onCreateLoader";
+        MyLog.v(this, method + " #" + id);
+        TimelineListParameters params = newListParameters();
+        params.loaderCallbacks = this;
 
         boolean loadOneMorePage = false;
         boolean reQuery = false;
@@ -1121,6 +1232,9 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
             params.rowsLimit = args.getInt(IntentExtra.EXTRA_ROWS_LIMIT.key);
         }
         params.loadOneMorePage = loadOneMorePage;
+        if (loadOneMorePage) {
+            params.previousPage = getPage();
+        }
         params.incrementallyLoadingPages = mPositionRestored
                 && (getListAdapter() != null)
                 && loadOneMorePage;
@@ -1215,12 +1329,8 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
             params.lastItemId = new ListPositionStorage(params).getLast();
         }
 
-        if (params.lastItemId <= 0) {
-            int rowsLimit = params.rowsLimit;
-            if (rowsLimit < PAGE_SIZE) {
-                rowsLimit = PAGE_SIZE;
-            }
-            params.sortOrder += " LIMIT 0," + rowsLimit;
+        if (params.rowsLimit < PAGE_SIZE) {
+            params.rowsLimit = PAGE_SIZE;
         }
     }
    
@@ -1237,6 +1347,7 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         columnNames.add(User.RECIPIENT_NAME);
         columnNames.add(MsgOfUser.FAVORITED);
         columnNames.add(Msg.CREATED_DATE);
+        columnNames.add(Msg.SENT_DATE);
         columnNames.add(User.LINKED_USER_ID);
         if (MyPreferences.showAvatars()) {
             columnNames.add(Msg.AUTHOR_ID);
@@ -1250,19 +1361,22 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
     }
 
     @Override
-    public void onLoaderReset(MyLoader<Cursor> loader) {
+    public void onLoaderReset(MyLoader<TimelinePage> loader) {
         MyLog.v(this, "onLoaderReset; " + loader);
         setLoading(false);
     }
     
     @Override
-    public void onLoadFinished(MyLoader<Cursor> loader, Cursor cursor) {
+    public void onLoadFinished(MyLoader<TimelinePage> loader, TimelinePage page) {
         MyLog.v(this, "onLoadFinished");
         TimelineTypeEnum timelineToReload = TimelineTypeEnum.UNKNOWN;
         if (loader.isStarted()) {
             if (loader instanceof TimelineCursorLoader) {
                 TimelineCursorLoader myLoader = (TimelineCursorLoader) loader;
-                changeListContent(myLoader.getParams(), cursor);
+                if (myLoader.getParams().loadOneMorePage && !myLoader.getParams().cancelled) {
+                    mPrefetcher.onPageLoaded((System.nanoTime() - myLoader.getParams().startTime) / 1000000);
+                }
+                changeListContent(myLoader.getParams(), page);
                 timelineToReload = myLoader.getParams().timelineToReload;
             } else {
                 MyLog.e(this, "Wrong type of loader: " + MyLog.objTagToString(loader));
@@ -1272,14 +1386,14 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         launchReloadIfNeeded(timelineToReload);
     }
     
-    private void changeListContent(TimelineListParameters params, Cursor cursor) {
-        if (!params.cancelled && cursor != null && !mFinishing) {
-            MyLog.v(this, "On changing Cursor");
+    private void changeListContent(TimelineListParameters params, TimelinePage page) {
+        if (!params.cancelled && page != null && !mFinishing) {
+            MyLog.v(this, "On changing Page");
             // This check will prevent continuous loading...
             mNoMoreItems = params.incrementallyLoadingPages &&
-                    cursor.getCount() <= getListAdapter().getCount();
+                    page.getCount() <= getListAdapter().getCount();
             saveListPosition();
-            ((CursorAdapter) getListAdapter()).changeCursor(cursor);
+            getTimelineAdapter().setPage(page);
             mListParameters = params;
             restoreListPosition();
         }
@@ -1304,6 +1418,14 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
      * Internet, older ones are not being reloaded.
      */
     protected void manualReload(boolean allTimelineTypes) {
+        fetchTimeline(CommandEnum.FETCH_TIMELINE, allTimelineTypes);
+    }
+
+    /**
+     * @param command {@link CommandEnum#FETCH_TIMELINE} is executed in foreground,
+     *      {@link CommandEnum#FETCH_OLDER} in background
+     */
+    private void fetchTimeline(CommandEnum command, boolean allTimelineTypes) {
         MyAccount ma = MyContextHolder.get().persistentAccounts().fromUserId(mCurrentMyAccountUserId);
         TimelineTypeEnum timelineTypeForReload = TimelineTypeEnum.HOME;
         long userId = 0;
@@ -1340,11 +1462,17 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
             return;
         }
 
-        setLoading(true);
-        MyServiceManager.sendForegroundCommand(
-                new CommandData(CommandEnum.FETCH_TIMELINE,
-                        allAccounts ? "" : ma.getAccountName(), timelineTypeForReload, userId)
-                );
+        CommandData commandData = new CommandData(command,
+                allAccounts ? "" : ma.getAccountName(), timelineTypeForReload, userId);
+        if (command == CommandEnum.FETCH_TIMELINE) {
+            setLoading(true);
+            MyServiceManager.sendForegroundCommand(commandData);
+        } else {
+            if (command == CommandEnum.FETCH_OLDER) {
+                mFetchOlderCommand = commandData;
+            }
+            MyServiceManager.sendCommand(commandData);
+        }
 
         if (allTimelineTypes && ma != null) {
             ma.requestSync();
@@ -1416,42 +1544,23 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         }
     }
 
-    private void createListAdapter(Cursor cursor) {
-        List<String> columnNames = new ArrayList<String>();
-        List<Integer> viewIds = new ArrayList<Integer>();
-        columnNames.add(MyDatabase.User.AUTHOR_NAME);
-        viewIds.add(R.id.message_author);
-        columnNames.add(MyDatabase.Msg.BODY);
-        viewIds.add(R.id.message_body);
-        columnNames.add(MyDatabase.Msg.CREATED_DATE);
-        viewIds.add(R.id.message_details);
-        columnNames.add(MyDatabase.MsgOfUser.FAVORITED);
-        viewIds.add(R.id.message_favorited);
-        columnNames.add(MyDatabase.Msg._ID);
-        viewIds.add(R.id.id);
+    private void createListAdapter() {
         int listItemLayoutId = R.layout.message_basic;
         if (MyPreferences.showAvatars()) {
             listItemLayoutId = R.layout.message_avatar;
-            columnNames.add(MyDatabase.Avatar.FILE_NAME);
-            viewIds.add(R.id.avatar_image);
         }
-        MySimpleCursorAdapter messageAdapter = new MySimpleCursorAdapter(TimelineActivity.this,
-                listItemLayoutId, cursor, columnNames.toArray(new String[]{}),
-                toIntArray(viewIds), 0);
-        messageAdapter.setViewBinder(new TimelineViewBinder());
+        setListAdapter(new TimelineAdapter(this, listItemLayoutId));
+    }
 
-        setListAdapter(messageAdapter);
+    private TimelineAdapter getTimelineAdapter() {
+        return (TimelineAdapter) getListAdapter();
     }
-    
+
     /**
-     * See http://stackoverflow.com/questions/960431/how-to-convert-listinteger-to-int-in-java
+     * @return Rows of the list, empty if there is no adapter yet
      */
-    private static int[] toIntArray(List<Integer> list){
-        int[] ret = new int[list.size()];
-        for(int i = 0;i < ret.length;i++) {
-            ret[i] = list.get(i);
-        }
-        return ret;
+    private TimelinePage getPage() {
+        return getListAdapter() == null ? TimelinePage.EMPTY : getTimelineAdapter().getPage();
     }
 
     private static String notNullString(String string) {
@@ -1482,6 +1591,8 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
         switch (command) {
             case AUTOMATIC_UPDATE:
             case FETCH_TIMELINE:
+            case FETCH_GAP:
+            case FETCH_OLDER:
             case FETCH_AVATAR:
             case UPDATE_STATUS:
             case DESTROY_STATUS:
@@ -1516,6 +1627,11 @@ public class TimelineActivity extends ListActivity implements MyServiceListener,
                     setLoading(false);
                 }
                 break;
+            case FETCH_OLDER:
+                // New rows will be loaded from the database, when the User scrolls again
+                mPrefetcher.onOlderFetched();
+                mNoMoreItems = false;
+                break;
             case RATE_LIMIT_STATUS:
                 if (commandData.getResult().getHourlyLimit() > 0) {
                     updateRightText(commandData.getResult().getRemainingHits() + "/"
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.AvatarDrawable;
+import org.andstatus.app.data.TimelinePage;
+
+/**
+ * Binds rows of a Timeline list from a {@link TimelinePage}.
+ * Views of a row are found once and kept in its tag; avatars are shared by rows of the same author
+ */
+class TimelineAdapter extends BaseAdapter {
+    private final Context context;
+    private final int listItemLayoutId;
+    private final boolean markReplies = MyPreferences.getBoolean(
+            MyPreferences.KEY_MARK_REPLIES_IN_TIMELINE, false);
+    private TimelinePage page = TimelinePage.EMPTY;
+    /** Avatars of distinct authors of the page, loaded when first shown */
+    private Drawable[] avatars = new Drawable[0];
+
+    TimelineAdapter(Context context, int listItemLayoutId) {
+        this.context = context;
+        this.listItemLayoutId = listItemLayoutId;
+    }
+
+    private static class ViewHolder {
+        TextView author;
+        TextView body;
+        TextView details;
+        ImageView favorited;
+        TextView id;
+        ImageView avatar;
+    }
+
+    TimelinePage getPage() {
+        return page;
+    }
+
+    void setPage(TimelinePage page) {
+        this.page = page == null ? TimelinePage.EMPTY : page;
+        avatars = new Drawable[this.page.getAuthorsCount()];
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return page.getCount();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return page.getId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View view = convertView;
+        if (view == null) {
+            view = newView(parent);
+        }
+        bindView(view, (ViewHolder) view.getTag(), position);
+        return view;
+    }
+
+    private View newView(ViewGroup parent) {
+        View view = LayoutInflater.from(context).inflate(listItemLayoutId, parent, false);
+        ViewHolder holder = new ViewHolder();
+        holder.author = (TextView) view.findViewById(R.id.message_author);
+        holder.body = (TextView) view.findViewById(R.id.message_body);
+        holder.details = (TextView) view.findViewById(R.id.message_details);
+        holder.favorited = (ImageView) view.findViewById(R.id.message_favorited);
+        holder.id = (TextView) view.findViewById(R.id.id);
+        holder.avatar = (ImageView) view.findViewById(R.id.avatar_image);
+        view.setTag(holder);
+        return view;
+    }
+
+    private void bindView(View view, ViewHolder holder, int position) {
+        if (markReplies && page.hasRepliesToAccounts() && page.isReplyToAccount(position)) {
+            // For some reason, referring to the style drawable doesn't work
+            // (to "?attr:replyBackground" )
+            view.setBackgroundResource(MyPreferences.isThemeLight() ? R.drawable.reply_timeline_background_light
+                    : R.drawable.reply_timeline_background);
+        } else {
+            view.setBackgroundResource(0);
+            view.setPadding(0, 0, 0, 0);
+        }
+        holder.author.setText(page.getAuthorName(position));
+        holder.body.setText(page.getBody(position));
+        holder.details.setText(page.getDetails(context, position));
+        holder.id.setText(page.getIdText(position));
+        if (page.hasFavorited()) {
+            holder.favorited.setImageResource(page.isFavorited(position) ? android.R.drawable.star_on
+                    : android.R.drawable.star_off);
+        }
+        if (holder.avatar != null && page.hasAvatars()) {
+            holder.avatar.setImageDrawable(getAvatar(position));
+        }
+    }
+
+    private Drawable getAvatar(int position) {
+        int authorIndex = page.getAuthorIndex(position);
+        if (avatars[authorIndex] == null) {
+            avatars[authorIndex] = new AvatarDrawable(page.getAuthorId(position),
+                    page.getAvatarFileName(position)).getDrawable();
+        }
+        return avatars[authorIndex];
+    }
+}
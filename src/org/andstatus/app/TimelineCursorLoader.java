@@ -23,11 +23,13 @@ import android.text.TextUtils;
 import net.jcip.annotations.GuardedBy;
 
 import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.ChangeLog;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.data.LatestTimelineItem;
 import org.andstatus.app.data.MyDatabase;
 import org.andstatus.app.data.MyProvider;
 import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.data.TimelinePage;
 import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.service.CommandData;
 import org.andstatus.app.service.MyServiceEvent;
@@ -37,19 +39,27 @@ import org.andstatus.app.support.android.v11.app.MyLoader;
 import org.andstatus.app.support.android.v11.os.AsyncTask;
 import org.andstatus.app.util.InstanceId;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SelectionAndArgs;
+
+import java.util.List;
 
 /**
  * Simplified implementation inspired by {@link android.content.Loader}
  * available in API >= 11
+ * The Cursor is read into a {@link TimelinePage} and closed in the background thread
  * 
  * @author yvolk@yurivolkov.com
  */
-public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceListener {
+public class TimelineCursorLoader extends MyLoader<TimelinePage> implements MyServiceListener {
     private final TimelineListParameters mParams;
-    private Cursor mCursor = null;
+    private TimelinePage mPage = null;
 
     private long instanceId = InstanceId.next();
     private MyServiceReceiver serviceConnector;
+    /** Sequence number of the latest {@link ChangeLog} change, which the loaded cursor reflects */
+    private volatile long loadedSequence = 0;
+    /** More changes than this cause reload without checking each of them */
+    static final int MAX_CHANGES_TO_CHECK = 100;
 
     private final Object asyncLoaderLock = new Object();
     @GuardedBy("asyncLoaderLock")
@@ -72,7 +82,7 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
             if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
                 MyLog.v(this, method + " reusing result");
             }
-            deliverResultsAndClean(mCursor);
+            deliverResultsAndClean(mPage);
         } else if (getParams().reQuery || taskIsNotRunning()) {
             restartLoader();
         }
@@ -90,7 +100,7 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
 
     private boolean mayReuseResult() {
         boolean ok = false;
-        if (!getParams().reQuery && !takeContentChanged() && mCursor != null && !mCursor.isClosed()) {
+        if (!getParams().reQuery && !takeContentChanged() && mPage != null) {
             synchronized (asyncLoaderLock) {
                 if (asyncLoader == null) {
                     ok = true;
@@ -123,20 +133,15 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
         }
     }
     
-    private void deliverResultsAndClean(Cursor cursor) {
-        Cursor cursorPrev = null;
+    private void deliverResultsAndClean(TimelinePage page) {
         try {
-            if (this.mCursor != cursor) {
-                cursorPrev = this.mCursor; 
-                this.mCursor = cursor;
-            }
-            if (getParams().cancelled || cursor == null) {
+            this.mPage = page;
+            if (getParams().cancelled || page == null) {
                 deliverCancellation();
             } else {
-                deliverResult(cursor);
+                deliverResult(page);
             }
         } finally {
-            DbUtils.closeSilently(cursorPrev, "asyncLoaderEnded");
             synchronized (asyncLoaderLock) {
                 asyncLoader = null;
             }
@@ -203,28 +208,36 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
     }
 
     private void disposeResult() {
-        DbUtils.closeSilently(mCursor, "disposeResult");
-        mCursor = null;
+        mPage = null;
     }
     
     /**
      * @author yvolk@yurivolkov.com
      */
-    private class AsyncLoader extends AsyncTask<Void, Void, Cursor> {
+    private class AsyncLoader extends AsyncTask<Void, Void, TimelinePage> {
         
         @Override
-        protected Cursor doInBackground(Void... voidParams) {
+        protected TimelinePage doInBackground(Void... voidParams) {
             markStart();
-            prepareQueryInBackground();
-            Cursor cursor = queryDatabase();
-            checkIfReloadIsNeeded(cursor);
-            return cursor;
+            boolean keysetPage = getParams().isKeysetPage();
+            SelectionAndArgs sa = prepareQueryInBackground(keysetPage);
+            Cursor cursor = queryDatabase(sa, getSortOrder(keysetPage));
+            TimelinePage page = null;
+            try {
+                checkIfReloadIsNeeded(cursor);
+                page = readPage(cursor, keysetPage);
+            } finally {
+                DbUtils.closeSilently(cursor, "doInBackground");
+            }
+            storeSnapshot(page);
+            return page;
         }
 
         private void markStart() {
             getParams().startTime = System.nanoTime();
             getParams().cancelled = false;
             getParams().timelineToReload = TimelineTypeEnum.UNKNOWN;
+            loadedSequence = ChangeLog.getLastSequence();
             
             if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
                 MyLog.v(this, (TextUtils.isEmpty(getParams().searchQuery) ? ""
@@ -234,24 +247,49 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
             }
         }
         
-        private void prepareQueryInBackground() {
-            if (getParams().lastItemId > 0) {
-                getParams().sa.addSelection(MyProvider.MSG_TABLE_ALIAS + "." + MyDatabase.Msg.SENT_DATE
+        /**
+         * Selection of the timeline is copied, so the parameters may be reused for re-query
+         */
+        private SelectionAndArgs prepareQueryInBackground(boolean keysetPage) {
+            SelectionAndArgs sa = new SelectionAndArgs();
+            sa.addSelection(getParams().sa.selection, getParams().sa.selectionArgs);
+            if (keysetPage) {
+                sa.addSelection(getParams().previousPage.getKeysetSelection(),
+                        new String[] {
+                            String.valueOf(getParams().previousPage.getKeysetSentDate())
+                        });
+            } else if (getParams().lastItemId > 0) {
+                sa.addSelection(MyProvider.MSG_TABLE_ALIAS + "." + MyDatabase.Msg.SENT_DATE
                         + " >= ?",
                         new String[] {
                             String.valueOf(MyProvider.msgIdToLongColumnValue(
                                     MyDatabase.Msg.SENT_DATE, getParams().lastItemId))
                         });
             }
+            return sa;
         }
 
-        private Cursor queryDatabase() {
+        /**
+         * The list is loaded down to the stored position (if any) or up to {@link TimelineListParameters#rowsLimit} rows.
+         * The keyset page has the rows, which were not loaded yet
+         */
+        private String getSortOrder(boolean keysetPage) {
+            if (keysetPage) {
+                return getParams().sortOrder + " LIMIT 0,"
+                        + Math.max(getParams().rowsLimit - getParams().previousPage.getCount(), 1);
+            } else if (getParams().lastItemId <= 0) {
+                return getParams().sortOrder + " LIMIT 0," + getParams().rowsLimit;
+            }
+            return getParams().sortOrder;
+        }
+
+        private Cursor queryDatabase(SelectionAndArgs sa, String sortOrder) {
             Cursor cursor = null;
             for (int attempt = 0; attempt < 3 && !isCancelled(); attempt++) {
                 try {
                     cursor = MyContextHolder.get().context().getContentResolver()
-                            .query(getParams().contentUri, getParams().projection, getParams().sa.selection,
-                                    getParams().sa.selectionArgs, getParams().sortOrder);
+                            .query(getParams().contentUri, getParams().projection, sa.selection,
+                                    sa.selectionArgs, sortOrder);
                     break;
                 } catch (IllegalStateException e) {
                     MyLog.d(this, "Attempt " + attempt + " to prepare cursor", e);
@@ -268,6 +306,22 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
             return cursor;
         }
         
+        private TimelinePage readPage(Cursor cursor, boolean keysetPage) {
+            if (cursor == null || cursor.isClosed() || isCancelled()) {
+                return null;
+            }
+            if (keysetPage) {
+                return TimelinePage.append(getContext(), getParams().previousPage, cursor);
+            }
+            return TimelinePage.fromCursor(getContext(), cursor);
+        }
+
+        private void storeSnapshot(TimelinePage page) {
+            if (page != null && !isCancelled()) {
+                TimelineSnapshotCache.put(getParams(), page);
+            }
+        }
+
         private void checkIfReloadIsNeeded(Cursor cursor) {
             if (!getParams().loadOneMorePage && cursor != null && !cursor.isClosed() && cursor.getCount() == 0) {
                 switch (getParams().timelineType) {
@@ -290,34 +344,26 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
         }
 
         @Override
-        protected void onPostExecute(Cursor result) {
+        protected void onPostExecute(TimelinePage result) {
             singleEnd(result);
         }
 
         @Override
-        protected void onCancelled(Cursor result) {
+        protected void onCancelled(TimelinePage result) {
             getParams().cancelled = true;
             singleEnd(null);
         }
 
-        private void singleEnd(Cursor result) {
+        private void singleEnd(TimelinePage result) {
             logExecutionStats(result);
             TimelineCursorLoader.this.deliverResultsAndClean(result);
         }
         
-        private void logExecutionStats(Cursor cursor) {
+        private void logExecutionStats(TimelinePage page) {
             if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
                 StringBuilder text = new StringBuilder(getParams().cancelled ? "cancelled" : "ended");
                 if (!getParams().cancelled) {
-                    String cursorInfo;
-                    if (cursor == null) {
-                        cursorInfo = "cursor is null";
-                    } else if (cursor.isClosed()) {
-                        cursorInfo = "cursor is Closed";
-                    } else {
-                        cursorInfo = cursor.getCount() + " rows";
-                    }
-                    text.append(", " + cursorInfo);
+                    text.append(", " + (page == null ? "no page" : page.getCount() + " rows"));
                 }
                 text.append(", " + Double.valueOf((System.nanoTime() - getParams().startTime)/1.0E6).longValue() + " ms");
                 MyLog.v(this, text.toString());
@@ -330,36 +376,66 @@ public class TimelineCursorLoader extends MyLoader<Cursor> implements MyServiceL
         if (event != MyServiceEvent.AFTER_EXECUTING_COMMAND) {
             return;
         }
-        final String method = "onReceive";
-        MyLog.v(this, method + ": " + commandData);
-        switch (commandData.getCommand()) {
-            case AUTOMATIC_UPDATE:
-            case FETCH_TIMELINE:
-            case GET_STATUS:
-            case SEARCH_MESSAGE:
-                if (commandData.getResult().getDownloadedCount() > 0) {
-                    if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
-                        MyLog.v(this, method + ": Content changed, downloaded " + commandData.getResult().getDownloadedCount());
-                    }
-                    onContentChanged();
-                }
-                break;
-            case CREATE_FAVORITE:
-            case DESTROY_FAVORITE:
-            case DESTROY_REBLOG:
-            case DESTROY_STATUS:
-            case REBLOG:
-            case UPDATE_STATUS:
-                if (!commandData.getResult().hasError()) {
-                    if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
-                        MyLog.v(this, method + ": Content changed, command " + commandData.getCommand());
-                    }
-                    onContentChanged();
+        MyLog.v(this, "onReceive: " + commandData);
+        // Checks are cheap, so they are done one by one
+        new ChangesChecker(commandData).executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+    }
+
+    /**
+     * Reads the {@link ChangeLog} in the background and reloads the list, 
+     * if there are changes, which may be visible in it
+     */
+    private class ChangesChecker extends AsyncTask<Void, Void, Boolean> {
+        private final CommandData commandData;
+
+        ChangesChecker(CommandData commandData) {
+            this.commandData = commandData;
+        }
+
+        @Override
+        protected Boolean doInBackground(Void... params) {
+            long sequence = loadedSequence;
+            List<ChangeLog.Change> changes = ChangeLog.getChangesSince(sequence, MAX_CHANGES_TO_CHECK);
+            if (changes.isEmpty()) {
+                return false;
+            }
+            if (isRelevant(changes)) {
+                if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
+                    MyLog.v(this, "Content changed, " + changes.size() + " changes after command " 
+                            + commandData.getCommand());
                 }
-                break;
-            default:
-                break;
+                return true;
+            }
+            // Skip these changes next time
+            long lastSequence = changes.get(changes.size() - 1).sequence;
+            if (loadedSequence == sequence) {
+                loadedSequence = lastSequence;
+            }
+            return false;
+        }
+
+        @Override
+        protected void onPostExecute(Boolean changed) {
+            if (changed) {
+                onContentChanged();
+            }
+        }
+    }
+
+    /**
+     * Users and their avatars are not shown in the list, only names of authors, 
+     * which are updated with the next reload
+     */
+    static boolean isRelevant(List<ChangeLog.Change> changes) {
+        if (changes.size() >= MAX_CHANGES_TO_CHECK) {
+            return true;
+        }
+        for (ChangeLog.Change change : changes) {
+            if (change.entity == ChangeLog.Entity.MSG || change.entity == ChangeLog.Entity.UNKNOWN) {
+                return true;
+            }
         }
+        return false;
     }
 
     @Override
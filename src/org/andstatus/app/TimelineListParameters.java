@@ -16,10 +16,10 @@
 
 package org.andstatus.app;
 
-import android.database.Cursor;
 import android.net.Uri;
 
 import org.andstatus.app.data.MyDatabase;
+import org.andstatus.app.data.TimelinePage;
 import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.support.android.v11.app.MyLoaderManager;
 import org.andstatus.app.util.SelectionAndArgs;
@@ -27,7 +27,7 @@ import org.andstatus.app.util.SelectionAndArgs;
 import java.util.Arrays;
 
 class TimelineListParameters {
-    MyLoaderManager.LoaderCallbacks<Cursor> loaderCallbacks = null;
+    MyLoaderManager.LoaderCallbacks<TimelinePage> loaderCallbacks = null;
     
     boolean loadOneMorePage = false;
     boolean reQuery = false;
@@ -41,6 +41,8 @@ class TimelineListParameters {
     Uri contentUri = null;
     boolean incrementallyLoadingPages = false;
     int rowsLimit = 0;
+    /** Rows, shown already, which the next page is appended to */
+    TimelinePage previousPage = null;
     long lastItemId = 0;
     volatile SelectionAndArgs sa = new SelectionAndArgs();
     String sortOrder = MyDatabase.Msg.DEFAULT_SORT_ORDER;
@@ -53,6 +55,15 @@ class TimelineListParameters {
     public boolean isEmpty() {
         return timelineType == TimelineTypeEnum.UNKNOWN;
     }
+
+    /**
+     * Only rows older than the {@link #previousPage} are queried. The whole list is re-queried
+     * on content changes, because newer rows may appear also
+     */
+    boolean isKeysetPage() {
+        return loadOneMorePage && !reQuery && lastItemId <= 0
+                && previousPage != null && previousPage.getCount() > 0;
+    }
     
     @Override
     public String toString() {
@@ -62,7 +73,8 @@ class TimelineListParameters {
                 + ", selectedUserId=" + selectedUserId + ", projection="
                 + Arrays.toString(projection) + ", searchQuery=" + searchQuery + ", contentUri="
                 + contentUri + ", incrementallyLoadingPages=" + incrementallyLoadingPages
-                + ", rowsLimit=" + rowsLimit + ", lastItemId=" + lastItemId + ", sa=" + sa
+                + ", rowsLimit=" + rowsLimit + ", previousRows="
+                + (previousPage == null ? 0 : previousPage.getCount()) + ", lastItemId=" + lastItemId + ", sa=" + sa
                 + ", sortOrder=" + sortOrder + ", startTime=" + startTime + ", cancelled="
                 + cancelled + ", timelineToReload=" + timelineToReload + "]";
     }
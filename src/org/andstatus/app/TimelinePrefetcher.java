@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app;
+
+import org.andstatus.app.data.TimelineTypeEnum;
+
+/**
+ * Decides, when the next page of a Timeline list should be loaded, so that it is ready
+ * before the User scrolls to the end of the list. The look-ahead distance grows with
+ * the scrolling speed and with the time, which loading of a page takes.
+ * When there are no more rows in the database, older messages are requested from the network.
+ */
+final class TimelinePrefetcher {
+    /** Expected duration of loading of a page, until we measure it */
+    static final long DEFAULT_PAGE_LOAD_MS = 500;
+    /** Scrolling, which paused for longer, starts from zero speed */
+    static final long SCROLL_PAUSE_MS = 1000;
+    /** Older messages are not requested again for the same end of the list during this period */
+    static final long OLDER_FETCH_RETRY_MS = 60000;
+    /** Weight of the latest sample in smoothed speed and duration */
+    private static final double SMOOTHING = 0.3;
+
+    private final int minDistance;
+    private final int maxDistance;
+
+    private int prevFirstVisibleItem = 0;
+    private long prevScrollAt = 0;
+    /** Smoothed speed of scrolling towards the end of the list */
+    private double rowsPerMs = 0;
+    private double pageLoadMs = DEFAULT_PAGE_LOAD_MS;
+
+    private long olderRequestedForMsgId = 0;
+    private long olderRequestedAt = 0;
+    private boolean olderFetchPending = false;
+
+    /**
+     * @param minDistance Rows left till the end of the list, when loading starts even without scrolling
+     * @param maxDistance Limit of the look-ahead distance
+     */
+    TimelinePrefetcher(int minDistance, int maxDistance) {
+        this.minDistance = minDistance;
+        this.maxDistance = Math.max(minDistance, maxDistance);
+    }
+
+    /**
+     * @return true if the next page should be loaded now
+     */
+    boolean onScroll(int firstVisibleItem, int visibleItemCount, int totalItemCount, long now) {
+        updateSpeed(firstVisibleItem, now);
+        int rowsLeft = totalItemCount - (firstVisibleItem + visibleItemCount);
+        return visibleItemCount > 0 && rowsLeft <= getLookAhead();
+    }
+
+    private void updateSpeed(int firstVisibleItem, long now) {
+        long elapsed = now - prevScrollAt;
+        if (prevScrollAt == 0 || elapsed > SCROLL_PAUSE_MS) {
+            rowsPerMs = 0;
+        } else if (elapsed > 0) {
+            double sample = Math.max(0, firstVisibleItem - prevFirstVisibleItem) / (double) elapsed;
+            rowsPerMs += SMOOTHING * (sample - rowsPerMs);
+        }
+        prevFirstVisibleItem = firstVisibleItem;
+        prevScrollAt = now;
+    }
+
+    /**
+     * @return Rows before the end of the list, when loading of the next page should start
+     */
+    int getLookAhead() {
+        long distance = minDistance + Math.round(Math.ceil(rowsPerMs * pageLoadMs));
+        return (int) Math.min(distance, maxDistance);
+    }
+
+    void onPageLoaded(long elapsedMs) {
+        if (elapsedMs > 0) {
+            pageLoadMs += SMOOTHING * (elapsedMs - pageLoadMs);
+        }
+    }
+
+    /**
+     * There are no more rows in the database
+     * @param oldestMsgId The last row of the list
+     * @return true if older messages should be requested from the network now
+     */
+    boolean onNoMoreRows(long oldestMsgId, long now) {
+        if (oldestMsgId == olderRequestedForMsgId && now - olderRequestedAt < OLDER_FETCH_RETRY_MS) {
+            return false;
+        }
+        olderRequestedForMsgId = oldestMsgId;
+        olderRequestedAt = now;
+        olderFetchPending = true;
+        return true;
+    }
+
+    void onOlderFetched() {
+        olderFetchPending = false;
+    }
+
+    /**
+     * Another timeline is shown
+     * @return true if the requested older messages are not needed anymore
+     */
+    boolean onTimelineChanged() {
+        boolean cancelFetch = olderFetchPending;
+        prevFirstVisibleItem = 0;
+        prevScrollAt = 0;
+        rowsPerMs = 0;
+        olderRequestedForMsgId = 0;
+        olderRequestedAt = 0;
+        olderFetchPending = false;
+        return cancelFetch;
+    }
+
+    /**
+     * @return true if older messages of this timeline may be downloaded
+     */
+    static boolean isOlderFetchSupported(TimelineTypeEnum timelineType) {
+        switch (timelineType) {
+            case HOME:
+            case MENTIONS:
+            case DIRECT:
+            case PUBLIC:
+            case USER:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app;
+
+import android.content.ComponentCallbacks2;
+import android.text.TextUtils;
+
+import org.andstatus.app.data.TimelinePage;
+import org.andstatus.app.data.TimelineTypeEnum;
+import org.andstatus.app.util.MyLog;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The most recent pages of the last timelines, shown, while the query of a timeline is running,
+ * so the timeline is rendered instantly when the Activity is recreated or switched to it.
+ * One snapshot per account, {@link TimelineTypeEnum} and "combined" flag. Search results are not cached.
+ */
+public final class TimelineSnapshotCache {
+    private static final String TAG = TimelineSnapshotCache.class.getSimpleName();
+    /** Number of timelines to keep */
+    static final int MAX_TIMELINES = 5;
+    /** Number of the most recent rows of a timeline to keep */
+    static final int MAX_ROWS = 200;
+
+    private static final Object LOCK = new Object();
+    private static final Map<String, Snapshot> snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_TIMELINES;
+        }
+    };
+
+    private TimelineSnapshotCache() {
+    }
+
+    static final class Snapshot {
+        private final String[] projection;
+        private final TimelinePage page;
+
+        private Snapshot(String[] projection, TimelinePage page) {
+            this.projection = projection;
+            this.page = page;
+        }
+
+        TimelinePage getPage() {
+            return page;
+        }
+    }
+
+    /**
+     * @return null if the timeline is not cached
+     */
+    static String toKey(TimelineListParameters params) {
+        if (params.isEmpty() || !TextUtils.isEmpty(params.searchQuery)) {
+            return null;
+        }
+        return params.myAccountUserId + "/" + params.timelineType.save() + "/"
+                + (params.timelineCombined ? "1" : "0")
+                + (params.timelineType == TimelineTypeEnum.USER ? "/" + params.selectedUserId : "");
+    }
+
+    static boolean isSameTimeline(TimelineListParameters params1, TimelineListParameters params2) {
+        String key = toKey(params1);
+        return key != null && key.equals(toKey(params2));
+    }
+
+    /**
+     * Stores first {@link #MAX_ROWS} of the loaded page. As the page is immutable,
+     * a page, which is not longer than that, is shared, not copied
+     */
+    static void put(TimelineListParameters params, TimelinePage page) {
+        String key = toKey(params);
+        if (key == null || params.projection == null || page == null) {
+            return;
+        }
+        TimelinePage head = page.head(MAX_ROWS);
+        synchronized (LOCK) {
+            snapshots.put(key, new Snapshot(params.projection, head));
+        }
+        if (MyLog.isLoggable(TAG, MyLog.VERBOSE)) {
+            MyLog.v(TAG, "Stored " + head.getCount() + " rows of " + key);
+        }
+    }
+
+    /**
+     * @return null if there is no snapshot for the timeline with the same projection
+     */
+    static Snapshot get(TimelineListParameters params) {
+        String key = toKey(params);
+        if (key == null) {
+            return null;
+        }
+        Snapshot snapshot;
+        synchronized (LOCK) {
+            snapshot = snapshots.get(key);
+        }
+        if (snapshot != null && !Arrays.equals(snapshot.projection, params.projection)) {
+            snapshot = null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * See {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public static void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            clear();
+        } else {
+            trimTo(1);
+        }
+    }
+
+    /** Keeps most recently used snapshots only */
+    static void trimTo(int maxTimelines) {
+        synchronized (LOCK) {
+            int toRemove = snapshots.size() - maxTimelines;
+            Iterator<String> iterator = snapshots.keySet().iterator();
+            while (toRemove > 0 && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                toRemove--;
+            }
+        }
+    }
+
+    public static void clear() {
+        synchronized (LOCK) {
+            snapshots.clear();
+        }
+    }
+
+    static int size() {
+        synchronized (LOCK) {
+            return snapshots.size();
+        }
+    }
+}
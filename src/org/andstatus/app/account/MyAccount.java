@@ -151,6 +151,26 @@ public final class MyAccount {
             return fromAccountData(myContext, AccountData.fromAndroidAccount(myContext, account), "fromAndroidAccount");
         }
 
+        /**
+         * Like {@link #fromAndroidAccount(MyContext, android.accounts.Account)}, but doesn't check
+         * and fix the account, see {@link #fixInconsistencies(MyContext, MyAccount)}
+         */
+        static Builder loadFromAndroidAccount(MyContext myContext, android.accounts.Account account) {
+            Builder builder = new Builder(myContext,
+                    new MyAccount(myContext, AccountData.fromAndroidAccount(myContext, account)));
+            builder.setConnection();
+            builder.logLoadResult("loadFromAndroidAccount");
+            return builder;
+        }
+
+        /**
+         * Checks the loaded account, e.g. if its credentials were lost, and fixes it silently
+         * @return true if the account was changed
+         */
+        static boolean fixInconsistencies(MyContext myContext, MyAccount ma) {
+            return new Builder(myContext, ma).fixInconsistenciesWithChangedEnvironmentSilently();
+        }
+
         public static Builder fromJson(MyContext myContext, JSONObject jso) throws JSONException {
             return fromAccountData(myContext, AccountData.fromJson(jso, false), "fromJson");
         }
@@ -172,26 +192,17 @@ public final class MyAccount {
             this.myAccount = myAccount;
         }
 
+        /**
+         * The Connection will be recreated from the account data when needed, 
+         * see {@link MyAccount#getConnection()}
+         */
         private void setConnection() {
-            Origin origin = myAccount.oAccountName.getOrigin();
-            OriginConnectionData connectionData = origin.getConnectionData(TriState.fromBoolean(myAccount.isOAuth));
-            connectionData.setAccountUserOid(myAccount.userOid);
-            connectionData.setAccountUsername(myAccount.getUsername());
-            connectionData.setDataReader(myAccount.accountData);
-            try {
-                myAccount.connection = connectionData.getConnectionClass().newInstance();
-                myAccount.connection.enrichConnectionData(connectionData);
-                myAccount.connection.setAccountData(connectionData);
-            } catch (InstantiationException e) {
-                MyLog.i(TAG, e);
-            } catch (IllegalAccessException e) {
-                MyLog.i(TAG, e);
-            }
+            myAccount.releaseConnection();
         }
         
-        private void fixInconsistenciesWithChangedEnvironmentSilently() {
+        private boolean fixInconsistenciesWithChangedEnvironmentSilently() {
             if (myAccount.version != MyAccount.ACCOUNT_VERSION) {
-                return;
+                return false;
             }
             boolean changed = false;
             if (isPersistent() && myAccount.userId==0) {
@@ -202,8 +213,8 @@ public final class MyAccount {
             if (myAccount.syncFrequencySeconds == 0) {
                 changed = true;
             }
-            if (!myAccount.getCredentialsPresent()
-                    && myAccount.getCredentialsVerified() == CredentialsVerificationStatus.SUCCEEDED) {
+            if (myAccount.credentialsVerified == CredentialsVerificationStatus.SUCCEEDED
+                    && !myAccount.areCredentialsPresentInData()) {
                 MyLog.e(TAG, "User's credentials were lost?! Fixing...");
                 setCredentialsVerificationStatus(CredentialsVerificationStatus.NEVER);
                 changed = true;
@@ -211,6 +222,7 @@ public final class MyAccount {
             if (changed && isPersistent()) {
                 saveSilently();
             }
+            return changed;
         }
 
         private void logLoadResult(String method) {
@@ -286,8 +298,9 @@ public final class MyAccount {
                 myAccount.credentialsVerified.put(myAccount.accountData);
                 myAccount.accountData.setDataBoolean(KEY_OAUTH, myAccount.isOAuth);
                 myAccount.accountData.setDataLong(KEY_USER_ID, myAccount.userId);
-                if (myAccount.connection != null) {
-                    myAccount.connection.save(myAccount.accountData);
+                Connection connection = myAccount.connection;
+                if (connection != null) {
+                    connection.save(myAccount.accountData);
                 }
                 myAccount.accountData.setPersistent(true);
                 myAccount.accountData.setDataBoolean(MyAccount.KEY_IS_SYNCABLE, myAccount.mIsSyncable);
@@ -302,6 +315,10 @@ public final class MyAccount {
                 }
                 MyLog.v(this, (result.savedToAccountManager ? " Saved " 
                         : ( result.changed ? " Didn't save?! " : " Didn't change") ) + this.toString());
+                if (result.changed) {
+                    // E.g. the User Id might change
+                    myContext.persistentAccounts().reindex();
+                }
             } catch (Exception e) {
                 MyLog.e(this, "Saving " + myAccount.getAccountName(), e);
             }
@@ -423,7 +440,7 @@ public final class MyAccount {
                 myAccount.oAccountName = AccountName.fromOriginAndUserNames(
                         myContext,
                         myAccount.oAccountName.getOriginName(), newName);
-                myAccount.connection.save(myAccount.accountData);
+                myAccount.getConnection().save(myAccount.accountData);
                 setConnection();
                 save();
             }
@@ -455,15 +472,15 @@ public final class MyAccount {
         public void setCredentialsVerificationStatus(CredentialsVerificationStatus cv) {
             myAccount.credentialsVerified = cv;
             if (cv != CredentialsVerificationStatus.SUCCEEDED 
-                    && myAccount.connection != null) {
-                myAccount.connection.clearAuthInformation();
+                    && myAccount.getConnection() != null) {
+                myAccount.getConnection().clearAuthInformation();
             }
         }
 
         public void registerClient() throws ConnectionException {
             MyLog.v(TAG, "Registering client application for " + myAccount.getUsername());
             setConnection();
-            myAccount.connection.registerClientForAccount();
+            myAccount.getConnection().registerClientForAccount();
         }
 
         /**
@@ -525,7 +542,7 @@ public final class MyAccount {
         }
 
         public void clearClientKeys() {
-            myAccount.connection.clearClientKeys();
+            myAccount.getConnection().clearClientKeys();
         }
 
         protected int getVersion() {
@@ -560,7 +577,9 @@ public final class MyAccount {
     private String userOid;
     /** Id in the database, see {@link MyDatabase.User#_ID} */
     private long userId;
-    private Connection connection = null;
+    /** Created lazily and released when idle, see {@link #getConnection()} */
+    private volatile Connection connection = null;
+    private volatile long connectionUsedAt = 0;
     /** Was this user authenticated last time _current_ credentials were verified?
      *  CredentialsVerified.NEVER - after changes of "credentials": password/OAuth...
      */
@@ -687,8 +706,7 @@ public final class MyAccount {
                 && version == MyAccount.ACCOUNT_VERSION) 
                 && oAccountName.isValid()
                 && !TextUtils.isEmpty(userOid)
-                && userId != 0
-                && connection != null;
+                && userId != 0;
     }
     
     private MyAccount(MyContext myContext, AccountData accountDataIn) {
@@ -775,16 +793,84 @@ public final class MyAccount {
         return sp;
     }
 
+    /**
+     * The Connection is created on first use, so loading many accounts doesn't instantiate
+     * connections, which may not be needed at all
+     */
     public Connection getConnection() {
-        return connection;
+        Connection connectionLocal = connection;
+        if (connectionLocal == null) {
+            synchronized (this) {
+                if (connection == null) {
+                    connection = newConnection();
+                }
+                connectionLocal = connection;
+            }
+        }
+        connectionUsedAt = System.currentTimeMillis();
+        return connectionLocal;
+    }
+
+    private Connection newConnection() {
+        Origin origin = oAccountName.getOrigin();
+        OriginConnectionData connectionData = origin.getConnectionData(TriState.fromBoolean(isOAuth));
+        connectionData.setAccountUserOid(userOid);
+        connectionData.setAccountUsername(getUsername());
+        connectionData.setDataReader(accountData);
+        Connection connectionNew = null;
+        try {
+            connectionNew = connectionData.getConnectionClass().newInstance();
+            connectionNew.enrichConnectionData(connectionData);
+            connectionNew.setAccountData(connectionData);
+        } catch (InstantiationException e) {
+            MyLog.i(TAG, e);
+        } catch (IllegalAccessException e) {
+            MyLog.i(TAG, e);
+        }
+        return connectionNew;
+    }
+
+    /**
+     * Checks the stored account data with a temporary Connection,
+     * so loading accounts doesn't keep their connections
+     */
+    private boolean areCredentialsPresentInData() {
+        Connection connectionLocal = connection;
+        if (connectionLocal == null) {
+            connectionLocal = newConnection();
+        }
+        return connectionLocal != null && connectionLocal.getCredentialsPresent();
+    }
+
+    void releaseConnection() {
+        synchronized (this) {
+            connection = null;
+        }
+    }
+
+    /**
+     * @return true if the Connection was released
+     */
+    boolean releaseConnectionIfIdle(long idleMs) {
+        synchronized (this) {
+            if (connection != null && System.currentTimeMillis() - connectionUsedAt > idleMs) {
+                connection = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isConnectionCreated() {
+        return connection != null;
     }
     
     public boolean areClientKeysPresent() {
-        return connection.areOAuthClientKeysPresent();
+        return getConnection().areOAuthClientKeysPresent();
     }
     
     public OAuthConsumerAndProvider getOAuthConsumerAndProvider() {
-        return connection.getOAuthConsumerAndProvider();
+        return getConnection().getOAuthConsumerAndProvider();
     }
 
     public int charactersLeftForMessage(String message) {
@@ -854,11 +940,10 @@ public final class MyAccount {
                 members += "OAuth,";
             }
             members += "verified:" + getCredentialsVerified().name() + ",";
-            if (getCredentialsPresent()) {
-                members += "credentialsPresent:true,";
-            }
             if (connection == null) {
                 members += "connection:null,";
+            } else if (connection.getCredentialsPresent()) {
+                members += "credentialsPresent:true,";
             }
             members += "syncFrequency:" + syncFrequencySeconds + ",";
             if (mIsSyncable) {
@@ -879,8 +964,12 @@ public final class MyAccount {
         return MyLog.formatKeyValue(TAG, members);
     }
     
+    /**
+     * Doesn't create a Connection: the stored account data is a base 
+     * for data of the Connection, which hasn't been created yet 
+     */
     public JSONObject toJson() throws JSONException {
-        JSONObject jso = new JSONObject();
+        JSONObject jso = new JSONObject(accountData.toJsonString());
         jso.put(KEY_ACCOUNT, getAccountName());  
         jso.put(KEY_USERNAME, getUsername());  
         jso.put(KEY_USER_OID, userOid);
@@ -888,8 +977,9 @@ public final class MyAccount {
         credentialsVerified.put(jso);
         jso.put(KEY_OAUTH, isOAuth);
         jso.put(KEY_USER_ID, userId);
-        if (connection != null) {
-            connection.save(jso);
+        Connection connectionLocal = connection;
+        if (connectionLocal != null) {
+            connectionLocal.save(jso);
         }
         jso.put(MyPreferences.KEY_SYNC_FREQUENCY_SECONDS, syncFrequencySeconds);
         jso.put(KEY_IS_SYNCABLE, mIsSyncable);
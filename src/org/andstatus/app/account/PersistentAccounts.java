@@ -20,10 +20,11 @@ import org.json.JSONObject;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PersistentAccounts {
     /**
@@ -39,11 +40,52 @@ public class PersistentAccounts {
      */
     private volatile String currentAccountName = "";
     
-    private Map<String,MyAccount> persistentAccounts = new ConcurrentHashMap<String, MyAccount>();
-    private int distinctOriginsCount = 0;
+    private static final AtomicInteger versionCounter = new AtomicInteger();
+    /** 
+     * Accounts with their indexes. Readers never lock: the snapshot is replaced as a whole 
+     * (copy-on-write), when the list of accounts changes
+     */
+    private volatile Snapshot snapshot = new Snapshot(new LinkedHashMap<String, MyAccount>());
     
     private PersistentAccounts() {
     }
+
+    /**
+     * Immutable list of accounts, indexed by account name, by User Id and by Origin Id
+     */
+    private static final class Snapshot {
+        /** Changes each time the list of accounts changes, unique among all instances */
+        final int version = versionCounter.incrementAndGet();
+        final Map<String, MyAccount> byAccountName;
+        final Map<Long, MyAccount> byUserId = new HashMap<Long, MyAccount>();
+        /** See {@link PersistentAccounts#findFirstMyAccountByOriginId(long)} */
+        final Map<Long, MyAccount> firstByOriginId = new HashMap<Long, MyAccount>();
+        final Collection<MyAccount> collection;
+
+        Snapshot(Map<String, MyAccount> accounts) {
+            byAccountName = Collections.unmodifiableMap(accounts);
+            collection = Collections.unmodifiableCollection(accounts.values());
+            for (MyAccount ma : accounts.values()) {
+                if (!byUserId.containsKey(ma.getUserId())) {
+                    byUserId.put(ma.getUserId(), ma);
+                }
+                MyAccount first = firstByOriginId.get(ma.getOriginId());
+                if (first == null 
+                        || (first.getCredentialsVerified() != CredentialsVerificationStatus.SUCCEEDED
+                        && ma.getCredentialsVerified() == CredentialsVerificationStatus.SUCCEEDED)) {
+                    firstByOriginId.put(ma.getOriginId(), ma);
+                }
+            }
+        }
+
+        int getDistinctOriginsCount() {
+            return firstByOriginId.size();
+        }
+
+        Map<String, MyAccount> copyOfAccounts() {
+            return new LinkedHashMap<String, MyAccount>(byAccountName);
+        }
+    }
     
     /**
      * Get list of all persistent accounts
@@ -54,15 +96,32 @@ public class PersistentAccounts {
      * @return not null 
      */
     public Collection<MyAccount> collection() {
-        return persistentAccounts.values();
+        return snapshot.collection;
     }
     
+    /**
+     * Releases Connections of accounts, which were not used for the idleMs period
+     * @return number of released Connections
+     */
+    public int releaseIdleConnections(long idleMs) {
+        int count = 0;
+        for (MyAccount ma : snapshot.collection) {
+            if (ma.releaseConnectionIfIdle(idleMs)) {
+                count++;
+            }
+        }
+        if (count > 0) {
+            MyLog.v(this, "Released " + count + " idle connections");
+        }
+        return count;
+    }
+
     public boolean isEmpty() {
-        return persistentAccounts.isEmpty();
+        return snapshot.collection.isEmpty();
     }
     
     public int size() {
-        return persistentAccounts.size();
+        return snapshot.collection.size();
     }
     
     public PersistentAccounts initialize() {
@@ -71,32 +130,59 @@ public class PersistentAccounts {
     
     public PersistentAccounts initialize(MyContext myContext) {
         defaultAccountName = MyPreferences.getDefaultSharedPreferences().getString(KEY_DEFAULT_ACCOUNT_NAME, "");
-        persistentAccounts.clear();
+        Map<String, MyAccount> accounts = new LinkedHashMap<String, MyAccount>();
         android.accounts.AccountManager am = AccountManager.get(myContext.context());
         android.accounts.Account[] aa = am.getAccountsByType( AuthenticatorService.ANDROID_ACCOUNT_TYPE );
         for (android.accounts.Account account : aa) {
-            MyAccount ma = Builder.fromAndroidAccount(myContext, account).getAccount();
+            MyAccount ma = Builder.loadFromAndroidAccount(myContext, account).getAccount();
             if (ma.isValid()) {
-                persistentAccounts.put(ma.getAccountName(), ma);
+                accounts.put(ma.getAccountName(), ma);
             } else {
                 MyLog.e(this, "The account is not valid: " + ma);
             }
         }
-        calculateDistinctOriginsCount();
-        MyLog.v(this, "Account list initialized, " + persistentAccounts.size() + " accounts in " + distinctOriginsCount + " origins");
+        synchronized (this) {
+            snapshot = new Snapshot(accounts);
+        }
+        MyLog.v(this, "Account list initialized, " + size() + " accounts in " + getDistinctOriginsCount() + " origins");
         return this;
     }
 
+    /**
+     * Checks and fixes the loaded accounts. This is not needed to show them, and it may create
+     * a Connection for each account, so it is deferred till the end of the initialization,
+     * see {@link MyContextHolder}
+     */
+    public void fixInconsistencies(MyContext myContext) {
+        boolean changed = false;
+        for (MyAccount ma : snapshot.collection) {
+            if (Builder.fixInconsistencies(myContext, ma)) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            reindex();
+        }
+    }
+
     public int getDistinctOriginsCount() {
-        return distinctOriginsCount;
+        return snapshot.getDistinctOriginsCount();
     }
-    
-    private void calculateDistinctOriginsCount() {
-        Set<Long> originIds = new HashSet<Long>();
-        for (MyAccount ma : persistentAccounts.values()) {
-            originIds.add(ma.getOriginId());
+
+    /**
+     * @return Version of the list of accounts. Allows to cache data, which depend on the list
+     */
+    public int getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Rebuild the indexes, e.g. after the User Id of an account changed
+     */
+    public void reindex() {
+        synchronized (this) {
+            snapshot = new Snapshot(snapshot.copyOfAccounts());
         }
-        distinctOriginsCount = originIds.size();
     }
     
     public static PersistentAccounts getEmpty() {
@@ -112,18 +198,16 @@ public class PersistentAccounts {
         boolean isDeleted = false;
 
         // Delete the User's object from the list
-        boolean found = false;
-        for (MyAccount persistentAccount : persistentAccounts.values()) {
-            if (persistentAccount.equals(ma)) {
-                found = true;
-                break;
-            }
-        }
+        boolean found = ma != null && snapshot.collection.contains(ma);
         if (found) {
             MyAccount.Builder.fromMyAccount(MyContextHolder.get(), ma, "delete").deleteData();
 
             // And delete the object from the list
-            persistentAccounts.remove(ma.getAccountName());
+            synchronized (this) {
+                Map<String, MyAccount> accounts = snapshot.copyOfAccounts();
+                accounts.remove(ma.getAccountName());
+                snapshot = new Snapshot(accounts);
+            }
 
             isDeleted = true;
             MyPreferences.onPreferencesChanged();
@@ -144,12 +228,7 @@ public class PersistentAccounts {
             return myAccount;
         }
 
-        for (MyAccount persistentAccount : persistentAccounts.values()) {
-            if (persistentAccount.getAccountName().compareTo(accountName.toString()) == 0) {
-                myAccount = persistentAccount;
-                break;
-            }
-        }
+        myAccount = snapshot.byAccountName.get(accountName.toString());
         // Try to find persisted Account which was not loaded yet
         if (myAccount == null
                 && !TextUtils.isEmpty(accountName.toString())) {
@@ -160,7 +239,11 @@ public class PersistentAccounts {
                 if (accountName.compareToString(androidAccount.name) == 0) {
                     myAccount = Builder.fromAndroidAccount(MyContextHolder.get(), androidAccount)
                             .getAccount();
-                    persistentAccounts.put(myAccount.getAccountName(), myAccount);
+                    synchronized (this) {
+                        Map<String, MyAccount> accounts = snapshot.copyOfAccounts();
+                        accounts.put(myAccount.getAccountName(), myAccount);
+                        snapshot = new Snapshot(accounts);
+                    }
                     MyPreferences.onPreferencesChanged();
                     break;
                 }
@@ -185,8 +268,9 @@ public class PersistentAccounts {
         if (ma == null) {
             defaultAccountName = "";
         }
-        if (ma == null && !persistentAccounts.isEmpty()) {
-            ma = persistentAccounts.values().iterator().next();
+        Collection<MyAccount> accounts = snapshot.collection;
+        if (ma == null && !accounts.isEmpty()) {
+            ma = accounts.iterator().next();
         }
         if (ma != null) {
             // Correct Current and Default Accounts if needed
@@ -233,12 +317,11 @@ public class PersistentAccounts {
      * @return null if not found
      */
     public MyAccount fromUserId(long userId) {
-        MyAccount ma = null;
-        for (MyAccount persistentAccount : persistentAccounts.values()) {
-            if (persistentAccount.getUserId() == userId) {
-                ma = persistentAccount;
-                break;
-            }
+        MyAccount ma = snapshot.byUserId.get(userId);
+        if (ma != null && ma.getUserId() != userId) {
+            // The account changed after it was indexed
+            reindex();
+            ma = snapshot.byUserId.get(userId);
         }
         return ma;
     }
@@ -250,19 +333,7 @@ public class PersistentAccounts {
      * @return null if not found
      */
     public MyAccount findFirstMyAccountByOriginId(long originId) {
-        MyAccount ma = null;
-        for (MyAccount persistentAccount : persistentAccounts.values()) {
-            if (persistentAccount.getOriginId() == originId) {
-                if ( persistentAccount.getCredentialsVerified() == CredentialsVerificationStatus.SUCCEEDED) {
-                    ma = persistentAccount;
-                    break;
-                }
-                if (ma == null) {
-                    ma = persistentAccount;
-                }
-            }
-        }
-        return ma;
+        return snapshot.firstByOriginId.get(originId);
     }
     
     /**
@@ -318,7 +389,7 @@ public class PersistentAccounts {
     
     public void onMyPreferencesChanged(MyContext myContext) {
         long syncFrequencySeconds = MyPreferences.getSyncFrequencySeconds();
-        for (MyAccount ma : persistentAccounts.values()) {
+        for (MyAccount ma : snapshot.collection) {
             Builder builder = Builder.fromMyAccount(myContext, ma, "onMyPreferencesChanged");
             builder.setSyncFrequency(syncFrequencySeconds);
             builder.save();
@@ -330,7 +401,7 @@ public class PersistentAccounts {
         long backedUpCount = 0;
         JSONArray jsa = new JSONArray();
         try {
-            for (MyAccount ma : persistentAccounts.values()) {
+            for (MyAccount ma : snapshot.collection) {
                 jsa.put(ma.toJson());
                 backedUpCount++;
             }
@@ -386,8 +457,7 @@ public class PersistentAccounts {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result
-                + ((persistentAccounts == null) ? 0 : persistentAccounts.hashCode());
+        result = prime * result + snapshot.byAccountName.hashCode();
         return result;
     }
 
@@ -403,13 +473,6 @@ public class PersistentAccounts {
             return false;
         }
         PersistentAccounts other = (PersistentAccounts) obj;
-        if (persistentAccounts == null) {
-            if (other.persistentAccounts != null) {
-                return false;
-            }
-        } else if (!persistentAccounts.equals(other.persistentAccounts)) {
-            return false;
-        }
-        return true;
+        return snapshot.byAccountName.equals(other.snapshot.byAccountName);
     }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.context;
+
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Time spent in stages of {@link MyContext} initialization, logged after each initialization,
+ * so regressions of the application start time are easy to notice.
+ * The stages are executed in this order, all of them are needed to show a timeline.
+ * Checks of the loaded accounts are deferred till the context is available,
+ * see {@link MyContextHolder}, so they are not measured here.
+ */
+public final class InitializationTrace {
+    private static final String TAG = InitializationTrace.class.getSimpleName();
+
+    public enum Stage {
+        /** Opening the database, checking if an upgrade is needed */
+        DATABASE("database"),
+        ORIGINS("origins"),
+        /** Loading accounts from the AccountManager, without checking them */
+        ACCOUNTS("accounts");
+
+        private final String code;
+
+        private Stage(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    private static volatile InitializationTrace last = null;
+
+    private final String initializedBy;
+    private final long startedAt = System.currentTimeMillis();
+    private long stageStartedAt = startedAt;
+    private long endedAt = 0;
+    private final long[] stageMillis = new long[Stage.values().length];
+    private MyContextState state = MyContextState.EMPTY;
+
+    private InitializationTrace(String initializedBy) {
+        this.initializedBy = initializedBy;
+    }
+
+    static InitializationTrace begin(String initializedBy) {
+        return new InitializationTrace(initializedBy);
+    }
+
+    void onStageEnded(Stage stage) {
+        long now = System.currentTimeMillis();
+        stageMillis[stage.ordinal()] += now - stageStartedAt;
+        stageStartedAt = now;
+    }
+
+    void end(MyContextState state) {
+        endedAt = System.currentTimeMillis();
+        this.state = state;
+        last = this;
+        MyLog.i(TAG, toString());
+    }
+
+    /**
+     * @return the latest completed initialization or null
+     */
+    public static InitializationTrace getLast() {
+        return last;
+    }
+
+    public long getMillis(Stage stage) {
+        return stageMillis[stage.ordinal()];
+    }
+
+    public long getTotalMillis() {
+        return (endedAt == 0 ? System.currentTimeMillis() : endedAt) - startedAt;
+    }
+
+    public MyContextState getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Initialized by " + initializedBy + ", state=" + state + "; ");
+        for (Stage stage : Stage.values()) {
+            builder.append(stage.getCode() + ":" + getMillis(stage) + "ms, ");
+        }
+        builder.append("total:" + getTotalMillis() + "ms");
+        return builder.toString();
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.andstatus.app.context;
 
+import org.andstatus.app.TimelineSnapshotCache;
 import org.andstatus.app.util.MyLog;
 
 import android.app.Application;
@@ -35,7 +36,20 @@ public class MyApplication extends Application {
     public void onCreate() {
         super.onCreate();
         MyLog.v(this, "onCreate started");
-        MyContextHolder.storeContextIfNotPresent(this, this);
+        MyContextHolder.initializeInBackground(this, this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MyLog.v(this, "onTrimMemory, level=" + level);
+        TimelineSnapshotCache.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        TimelineSnapshotCache.clear();
     }
 
     @Override
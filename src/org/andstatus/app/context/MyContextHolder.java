@@ -23,6 +23,7 @@ import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import org.andstatus.app.data.MyDatabaseConverterController;
+import org.andstatus.app.support.android.v11.os.AsyncTask;
 import org.andstatus.app.util.MyLog;
 
 import java.util.concurrent.Callable;
@@ -105,11 +106,18 @@ public final class MyContextHolder {
                 }
             }
         }
-        if (get().initialized() && !get().isExpired()) {
+        boolean wasReady = get().initialized() && !get().isExpired();
+        if (wasReady) {
             MyLog.v(TAG, "Already initialized by " + get().initializedBy() +  " (called by: " + initializedBy + ")");
         }
         try {
-            return getBlocking(context, initializedBy).preferencesChangeTime();
+            long startedAt = System.currentTimeMillis();
+            long preferencesChangeTime = getBlocking(context, initializedBy).preferencesChangeTime();
+            long waitedMs = System.currentTimeMillis() - startedAt;
+            if (!wasReady && waitedMs > 0) {
+                MyLog.v(TAG, MyLog.objTagToString(initializedBy) + " waited " + waitedMs + "ms for initialization");
+            }
+            return preferencesChangeTime;
         } catch (InterruptedException e) {
             MyLog.d(TAG, "Initialize was interrupted, releasing resources...", e);
             synchronized(CONTEXT_LOCK) {
@@ -120,6 +128,25 @@ public final class MyContextHolder {
         }
     }
 
+    /**
+     * Starts initialization without waiting for it, so it goes in parallel with e.g. 
+     * creation of the first Activity, which will block on {@link #initialize(Context, Object)}
+     * for the remaining time only
+     */
+    public static void initializeInBackground(Context context, final Object initializedBy) {
+        storeContextIfNotPresent(context, initializedBy);
+        if (get().initialized() && !get().isExpired()) {
+            return;
+        }
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                initialize(null, initializedBy);
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
     public static boolean arePreferencesChanged() {
         return get().preferencesChangeTime() != MyPreferences.getPreferencesChangeTime();
     }
@@ -192,6 +219,9 @@ public final class MyContextHolder {
                         myInitializedContext.release();
                     }
                     myInitializedContext = myContextOut;
+                    if (myContextOut.isReady()) {
+                        initializeDeferred(myContextOut);
+                    }
                 } else {
                     MyLog.i(TAG, method + " myContextOut is NOT initialized " + callerName);
                     myFutureContext.setExpired();
@@ -205,6 +235,29 @@ public final class MyContextHolder {
         return myContextOut;
     }
     
+    /**
+     * The last stage of the initialization, which is not needed to show a timeline, runs in background
+     * after the context is available, so it doesn't block the first use of the context.
+     * E.g. checks of accounts may create a Connection for each of them
+     */
+    private static void initializeDeferred(final MyContext myContext) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (myContext.isExpired()) {
+                    return;
+                }
+                long startedAt = System.currentTimeMillis();
+                try {
+                    myContext.persistentAccounts().fixInconsistencies(myContext);
+                } catch (Exception e) {
+                    MyLog.e(TAG, "Deferred initialization", e);
+                }
+                MyLog.v(TAG, "Deferred initialization took " + (System.currentTimeMillis() - startedAt) + "ms");
+            }
+        });
+    }
+
     /**
      *  Quickly return, providing context for the deferred initialization
      */
@@ -24,6 +24,7 @@ import android.net.NetworkInfo;
 import net.jcip.annotations.ThreadSafe;
 
 import org.andstatus.app.ClassInApplicationPackage;
+import org.andstatus.app.context.InitializationTrace.Stage;
 import org.andstatus.app.account.PersistentAccounts;
 import org.andstatus.app.data.AssersionData;
 import org.andstatus.app.data.MyDatabase;
@@ -78,15 +79,19 @@ public final class MyContextImpl implements MyContext {
         MyContextImpl newMyContext = getCreator(context, initializerName);
         if ( newMyContext.mContext != null) {
             MyLog.v(TAG, method + " Starting initialization by " + initializerName);
+            InitializationTrace trace = InitializationTrace.begin(initializerName);
             newMyContext.mPreferencesChangeTime = MyPreferences.getPreferencesChangeTime();
             MyDatabase newDb = new MyDatabase(newMyContext.mContext);
             try {
                 newMyContext.mState = newDb.checkState();
+                trace.onStageEnded(Stage.DATABASE);
                 switch (newMyContext.mState) {
                     case READY:
                             newMyContext.mDb = newDb;
                             newMyContext.mPersistentOrigins.initialize(newMyContext);
+                            trace.onStageEnded(Stage.ORIGINS);
                             newMyContext.mPersistentAccounts.initialize(newMyContext);
+                            trace.onStageEnded(Stage.ACCOUNTS);
                         break;
                     default: 
                         break;
@@ -97,6 +102,7 @@ public final class MyContextImpl implements MyContext {
                 newDb.close();
                 newMyContext.mDb = null;
             }
+            trace.end(newMyContext.mState);
         }
 
         MyLog.v(this, toString());
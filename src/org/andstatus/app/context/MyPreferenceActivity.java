@@ -20,6 +20,7 @@ package org.andstatus.app.context;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
@@ -46,6 +47,7 @@ import org.andstatus.app.account.AccountSettingsActivity;
 import org.andstatus.app.backup.BackupActivity;
 import org.andstatus.app.backup.RestoreActivity;
 import org.andstatus.app.origin.OriginList;
+import org.andstatus.app.service.CommandTimings;
 import org.andstatus.app.service.MyServiceManager;
 import org.andstatus.app.util.DialogFactory;
 import org.andstatus.app.util.MyLog;
@@ -58,6 +60,7 @@ public class MyPreferenceActivity extends PreferenceActivity implements
     private static final String KEY_ADD_NEW_ACCOUNT = "add_new_account";
     private static final String KEY_BACKUP_RESTORE = "backup_restore";
     private static final String KEY_MANAGE_EXISTING_ACCOUNTS = "manage_existing_accounts";
+    private static final String KEY_COMMAND_TIMINGS = "command_timings";
 
     /**
      * This is single list of (in fact, enums...) of Message/Dialog IDs
@@ -162,10 +165,45 @@ public class MyPreferenceActivity extends PreferenceActivity implements
             }
         });
         
+        myPref = findPreference(KEY_COMMAND_TIMINGS);
+        myPref.setOnPreferenceClickListener(new OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                showCommandTimings();
+                return false;
+            }
+        });
+        
         actionBar.attach();
         actionBar.setTitle(R.string.settings_activity_title);
     }
 
+    private void showCommandTimings() {
+        String report = CommandTimings.getReport();
+        final String text = TextUtils.isEmpty(report) ? "-" : report;
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.title_preference_command_timings)
+                .setMessage(text)
+                .setPositiveButton(R.string.menu_item_share, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent intent = new Intent(Intent.ACTION_SEND);
+                        intent.setType("text/plain");
+                        intent.putExtra(Intent.EXTRA_SUBJECT, getText(R.string.title_preference_command_timings));
+                        intent.putExtra(Intent.EXTRA_TEXT, text);
+                        startActivity(Intent.createChooser(intent, getText(R.string.menu_item_share)));
+                    }
+                })
+                .setNeutralButton(R.string.button_clear, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        CommandTimings.clear();
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -203,11 +241,13 @@ public class MyPreferenceActivity extends PreferenceActivity implements
      */
     protected void showAllPreferences() {
         showFrequency();
+        showFrequencyMax();
         showConnectionTimeout();
         showHistorySize();
         showHistoryTime();
         showRingtone();
         showMinLogLevel();
+        showStorageProfile();
         showUseExternalStorage();
         showBackupRestore();
         
@@ -225,6 +265,10 @@ public class MyPreferenceActivity extends PreferenceActivity implements
         SharedPreferencesUtil.showListPreference(this, MyPreferences.KEY_SYNC_FREQUENCY_SECONDS, R.array.fetch_frequency_values, R.array.fetch_frequency_display, R.string.summary_preference_frequency);
     }
 
+    private void showFrequencyMax() {
+        SharedPreferencesUtil.showListPreference(this, MyPreferences.KEY_SYNC_FREQUENCY_MAX_SECONDS, R.array.fetch_frequency_values, R.array.fetch_frequency_display, R.string.summary_preference_frequency_max);
+    }
+    
     private void showConnectionTimeout() {
         findPreference(MyPreferences.KEY_CONNNECTION_TIMEOUT_SECONDS).setSummary("" + MyPreferences.getConnectionTimeoutMs()/1000 + "s");
     }
@@ -241,6 +285,10 @@ public class MyPreferenceActivity extends PreferenceActivity implements
         SharedPreferencesUtil.showListPreference(this, MyPreferences.KEY_MIN_LOG_LEVEL, R.array.log_level_value, R.array.log_level_display, R.string.summary_preference_min_log_level);
     }
     
+    private void showStorageProfile() {
+        SharedPreferencesUtil.showListPreference(this, MyPreferences.KEY_STORAGE_PROFILE, R.array.storage_profile_values, R.array.storage_profile_entries, R.string.summary_preference_storage_profile);
+    }
+    
     protected void showRingtone() {
         String ringtoneString = MyPreferences.getDefaultSharedPreferences().getString(
                 MyPreferences.KEY_RINGTONE_PREFERENCE, null);
@@ -298,6 +346,9 @@ public class MyPreferenceActivity extends PreferenceActivity implements
                 MyContextHolder.get().persistentAccounts().onMyPreferencesChanged(MyContextHolder.get());
                 showFrequency();
             }
+            if (MyPreferences.KEY_SYNC_FREQUENCY_MAX_SECONDS.equals(key)) {
+                showFrequencyMax();
+            }
             if (MyPreferences.KEY_CONNNECTION_TIMEOUT_SECONDS.equals(key)) {
                 showConnectionTimeout();
             }
@@ -313,6 +364,9 @@ public class MyPreferenceActivity extends PreferenceActivity implements
             if (MyPreferences.KEY_MIN_LOG_LEVEL.equals(key)) {
                 showMinLogLevel();
             }
+            if (MyPreferences.KEY_STORAGE_PROFILE.equals(key)) {
+                showStorageProfile();
+            }
             if (MyPreferences.KEY_USE_EXTERNAL_STORAGE_NEW.equals(key)) {
                 dialogIsOpened = true;
                 showDialog(DLG_MOVE_DATA_BETWEEN_STORAGES);
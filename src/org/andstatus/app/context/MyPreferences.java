@@ -50,10 +50,22 @@ public class MyPreferences {
      * Period of automatic updates in seconds
      */
     public static final String KEY_SYNC_FREQUENCY_SECONDS = "fetch_frequency";
+    /**
+     * Maximum interval between syncs of timelines, where nothing new appears
+     */
+    public static final String KEY_SYNC_FREQUENCY_MAX_SECONDS = "sync_frequency_max";
     public static final String KEY_SYNC_INDICATOR_ON_TIMELINE = "sync_indicator_on_timeline";
     public static final String KEY_SYNC_WHILE_USING_APPLICATION = "sync_while_using_application";
+    /**
+     * Receive new messages through streaming connections, where servers support this
+     */
+    public static final String KEY_STREAMING_ENABLED = "streaming_enabled";
     public static final String KEY_CONNNECTION_TIMEOUT_SECONDS = "connection_timeout";
     public static final String KEY_RINGTONE_PREFERENCE = "notification_ringtone";
+    /**
+     * Maximum delay of notifications of new messages while sync continues, seconds
+     */
+    public static final String KEY_NOTIFICATIONS_DEBOUNCE_SECONDS = "notifications_debounce";
     public static final String KEY_CONTACT_DEVELOPER = "contact_developer";
     public static final String KEY_REPORT_BUG = "report_bug";
     public static final String KEY_CHANGE_LOG = "change_log";
@@ -69,6 +81,10 @@ public class MyPreferences {
      */
     public static final String KEY_MIN_LOG_LEVEL = "min_log_level";
     public static final String KEY_SENDING_MESSAGES_LOG_ENABLED = "sending_messages_log_enabled";
+    /**
+     * See {@link org.andstatus.app.data.StorageProfile}
+     */
+    public static final String KEY_STORAGE_PROFILE = "storage_profile";
     
     public static final String KEY_THEME_SIZE = "theme_size";
     public static final String KEY_THEME_COLOR = "theme_color";
@@ -98,6 +114,10 @@ public class MyPreferences {
     public static final String KEY_OLD_MESSAGES_FIRST_IN_CONVERSATION = "old_messages_first_in_conversation";
     public static final String KEY_SYNC_AFTER_MESSAGE_WAS_SENT = "sync_after_message_was_sent";
     public static final String KEY_MARK_REPLIES_IN_TIMELINE = "mark_replies_in_timeline";
+    /**
+     * Rows left till the end of a timeline list, when loading of older messages starts
+     */
+    public static final String KEY_PREFETCH_DISTANCE_ROWS = "prefetch_distance";
 	
     private MyPreferences(){
         throw new AssertionError();
@@ -191,6 +211,20 @@ public class MyPreferences {
                 KEY_CONNNECTION_TIMEOUT_SECONDS, CONNNECTION_TIMEOUT_DEFAULT_SECONDS));
     }
     
+    private static final long NOTIFICATIONS_DEBOUNCE_DEFAULT_SECONDS = 60;
+    /**
+     * @return 0 to notify of timeline changes right after each account's sync
+     */
+    public static long getNotificationsDebounceMs() {
+        return java.util.concurrent.TimeUnit.SECONDS.toMillis(getLongStoredAsString(
+                KEY_NOTIFICATIONS_DEBOUNCE_SECONDS, NOTIFICATIONS_DEBOUNCE_DEFAULT_SECONDS));
+    }
+
+    private static final long PREFETCH_DISTANCE_DEFAULT_ROWS = 20;
+    public static int getPrefetchDistanceRows() {
+        return (int) getLongStoredAsString(KEY_PREFETCH_DISTANCE_ROWS, PREFETCH_DISTANCE_DEFAULT_ROWS);
+    }
+
     /**
      * @return the number of milliseconds between two sync ("fetch"...) actions.
      */
@@ -198,6 +232,16 @@ public class MyPreferences {
         return java.util.concurrent.TimeUnit.SECONDS.toMillis(getSyncFrequencySeconds());
     }
     
+    private static final long SYNC_FREQUENCY_MAX_DEFAULT_SECONDS = 14400;
+    /**
+     * @return the maximum number of milliseconds between two syncs of a timeline, 
+     *    not less than {@link #getSyncFrequencyMs()}
+     */
+    public static long getSyncFrequencyMaxMs() {
+        long maxSeconds = getLongStoredAsString(KEY_SYNC_FREQUENCY_MAX_SECONDS, SYNC_FREQUENCY_MAX_DEFAULT_SECONDS);
+        return java.util.concurrent.TimeUnit.SECONDS.toMillis(Math.max(maxSeconds, getSyncFrequencySeconds()));
+    }
+    
     /**
      *  Event: Preferences have changed right now
      *  Remember when last changes to the preferences were made
@@ -332,6 +376,10 @@ public class MyPreferences {
     public static boolean isSyncWhileUsingApplicationEnabled() {
         return getBoolean(KEY_SYNC_WHILE_USING_APPLICATION, true);
     }
+
+    public static boolean isStreamingEnabled() {
+        return getBoolean(KEY_STREAMING_ENABLED, false);
+    }
     
     public static boolean getBoolean(String key, boolean defaultValue) {
         boolean value = defaultValue;
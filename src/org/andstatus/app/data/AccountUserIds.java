@@ -19,6 +19,9 @@ package org.andstatus.app.data;
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Helper class to construct sql WHERE clause selecting by UserIds
  * @author yvolk@yurivolkov.com
@@ -27,6 +30,7 @@ public class AccountUserIds {
     private int nIds = 1;
     private String sqlUserIds = "";
     private long accountUserId = 0;
+    private final List<Long> userIds = new ArrayList<Long>();
 
     /**
      * @param isCombined timeline
@@ -51,6 +55,7 @@ public class AccountUserIds {
                     nIds += 1;
                 }
                 sb.append(Long.toString(ma.getUserId()));
+                userIds.add(ma.getUserId());
                 if (accountUserId == 0) {
                     accountUserId = ma.getUserId();
                 }
@@ -58,6 +63,7 @@ public class AccountUserIds {
             sqlUserIds = sb.toString();
         } else {
             sqlUserIds = Long.toString(selectedUserId);
+            userIds.add(selectedUserId);
         }
         if (nIds == 1) {
             sqlUserIds = "=" + sqlUserIds;
@@ -74,6 +80,26 @@ public class AccountUserIds {
         return sqlUserIds;
     }
 
+    /**
+     * The same as {@link #getSqlUserIds()} but with "?" instead of the Ids
+     * @param args The Ids are added here in order to be bound to the statement
+     */
+    public String getSqlUserIdsTemplate(List<String> args) {
+        StringBuilder sb = new StringBuilder();
+        for (Long userId : userIds) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append("?");
+            args.add(Long.toString(userId));
+        }
+        if (userIds.size() == 1) {
+            return "=" + sb.toString();
+        } else {
+            return " IN (" + sb.toString() + ")";
+        }
+    }
+
     public long getAccountUserId() {
         return accountUserId;
     }
@@ -131,6 +131,7 @@ public class AvatarData {
             }
             if (!isError()) {
                 fileStored = fileNew;
+                ChangeLog.append(ChangeLog.Entity.AVATAR, userId, ChangeLog.ChangeType.UPDATED);
             }
         } catch (Exception e) {
             softErrorLogged("Couldn't save to database", e);
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of changes of Messages, Users and Avatars. Changes are logged
+ * by {@link MyProvider} in the same transaction as the changes themselves, so a consumer
+ * may remember the sequence number of the latest change it has processed
+ * and then read only changes made after it, instead of rescanning tables.
+ */
+public final class ChangeLog {
+    private static final String TAG = ChangeLog.class.getSimpleName();
+    /** Entity ID of a change, which may have affected many rows */
+    public static final long MANY_ROWS = 0;
+    /** The log is only needed to catch up with recent changes */
+    static final int MAX_ROWS_TO_KEEP = 5000;
+
+    public enum Entity {
+        MSG(1),
+        USER(2),
+        AVATAR(3),
+        UNKNOWN(0);
+
+        private final int code;
+
+        private Entity(int code) {
+            this.code = code;
+        }
+
+        public static Entity load(int codeIn) {
+            for (Entity entity : values()) {
+                if (entity.code == codeIn) {
+                    return entity;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
+
+    public enum ChangeType {
+        INSERTED(1),
+        UPDATED(2),
+        DELETED(3),
+        UNKNOWN(0);
+
+        private final int code;
+
+        private ChangeType(int code) {
+            this.code = code;
+        }
+
+        public static ChangeType load(int codeIn) {
+            for (ChangeType type : values()) {
+                if (type.code == codeIn) {
+                    return type;
+                }
+            }
+            return UNKNOWN;
+        }
+    }
+
+    public static final class Change {
+        public final long sequence;
+        public final Entity entity;
+        public final long entityId;
+        public final ChangeType type;
+        public final long changedDate;
+
+        Change(long sequence, Entity entity, long entityId, ChangeType type, long changedDate) {
+            this.sequence = sequence;
+            this.entity = entity;
+            this.entityId = entityId;
+            this.type = type;
+            this.changedDate = changedDate;
+        }
+
+        @Override
+        public String toString() {
+            return "Change [" + sequence + ", " + entity + ":" + entityId + " " + type + "]";
+        }
+    }
+
+    private ChangeLog() {
+    }
+
+    /**
+     * Should be called inside the transaction, which makes the change
+     * @return Sequence number of the change or -1 on error
+     */
+    static long append(SQLiteDatabase db, Entity entity, long entityId, ChangeType type) {
+        ContentValues values = new ContentValues();
+        values.put(MyDatabase.ChangeLog.ENTITY, entity.code);
+        values.put(MyDatabase.ChangeLog.ENTITY_ID, entityId);
+        values.put(MyDatabase.ChangeLog.CHANGE_TYPE, type.code);
+        values.put(MyDatabase.ChangeLog.CHANGED_DATE, System.currentTimeMillis());
+        return db.insert(MyDatabase.ChangeLog.TABLE_NAME, null, values);
+    }
+
+    /**
+     * Logs a change, which is made outside of {@link MyProvider}
+     */
+    static void append(Entity entity, long entityId, ChangeType type) {
+        SQLiteDatabase db = getDatabase(true);
+        if (db == null) {
+            return;
+        }
+        try {
+            append(db, entity, entityId, type);
+        } catch (Exception e) {
+            MyLog.i(TAG, "append " + entity + ":" + entityId, e);
+        }
+    }
+
+    /**
+     * @return Sequence number of the latest change, 0 if there were no changes
+     */
+    public static long getLastSequence() {
+        SQLiteDatabase db = getDatabase(false);
+        if (db == null) {
+            return 0;
+        }
+        SQLiteStatement prog = null;
+        try {
+            prog = db.compileStatement("SELECT MAX(" + BaseColumns._ID + ") FROM "
+                    + MyDatabase.ChangeLog.TABLE_NAME);
+            return prog.simpleQueryForLong();
+        } catch (Exception e) {
+            MyLog.d(TAG, "getLastSequence", e);
+            return 0;
+        } finally {
+            DbUtils.closeSilently(prog);
+        }
+    }
+
+    /**
+     * @return Changes with sequence numbers greater than the given one, oldest first
+     */
+    public static List<Change> getChangesSince(long sequence, int limit) {
+        List<Change> changes = new ArrayList<Change>();
+        SQLiteDatabase db = getDatabase(false);
+        if (db == null) {
+            return changes;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = db.query(MyDatabase.ChangeLog.TABLE_NAME, null,
+                    BaseColumns._ID + ">" + sequence, null, null, null,
+                    BaseColumns._ID + " ASC", Integer.toString(limit));
+            while (cursor.moveToNext()) {
+                changes.add(new Change(
+                        cursor.getLong(cursor.getColumnIndex(BaseColumns._ID)),
+                        Entity.load(cursor.getInt(cursor.getColumnIndex(MyDatabase.ChangeLog.ENTITY))),
+                        cursor.getLong(cursor.getColumnIndex(MyDatabase.ChangeLog.ENTITY_ID)),
+                        ChangeType.load(cursor.getInt(cursor.getColumnIndex(MyDatabase.ChangeLog.CHANGE_TYPE))),
+                        cursor.getLong(cursor.getColumnIndex(MyDatabase.ChangeLog.CHANGED_DATE))));
+            }
+        } catch (Exception e) {
+            MyLog.d(TAG, "getChangesSince " + sequence, e);
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return changes;
+    }
+
+    /**
+     * Deletes all but the latest changes
+     * @return number of deleted rows
+     */
+    static int prune(int maxRowsToKeep) {
+        SQLiteDatabase db = getDatabase(true);
+        if (db == null) {
+            return 0;
+        }
+        long lastSequence = getLastSequence();
+        if (lastSequence <= maxRowsToKeep) {
+            return 0;
+        }
+        int deleted = 0;
+        try {
+            deleted = db.delete(MyDatabase.ChangeLog.TABLE_NAME,
+                    BaseColumns._ID + "<=" + (lastSequence - maxRowsToKeep), null);
+            MyLog.v(TAG, "Pruned " + deleted + " changes");
+        } catch (Exception e) {
+            MyLog.i(TAG, "prune", e);
+        }
+        return deleted;
+    }
+
+    private static SQLiteDatabase getDatabase(boolean writable) {
+        MyDatabase myDatabase = MyContextHolder.get().getDatabase();
+        if (myDatabase == null) {
+            return null;
+        }
+        return writable ? myDatabase.getWritableDatabase() : myDatabase.getReadableDatabase();
+    }
+}
@@ -43,6 +43,7 @@ import java.util.Date;
 public class DataInserter {
     private static final String TAG = DataInserter.class.getSimpleName();
     private CommandExecutionContext execContext;
+    private final StoredUsers storedUsers = new StoredUsers();
 
     public DataInserter(MyAccount ma) {
         this(new CommandExecutionContext(CommandData.getEmpty(), ma));
@@ -176,6 +177,8 @@ public class DataInserter {
                 }
                 
                 String body = message.getBody();
+                MsgTextValues textValues = MsgTextValues.fromBody(body, MyContextHolder.get()
+                        .persistentOrigins().isHtmlContentAllowed(execContext.getMyAccount().getOriginId()));
 
                 if (isNew) {
                     values.put(MyDatabase.Msg.CREATED_DATE, createdDate);
@@ -189,6 +192,7 @@ public class DataInserter {
                     values.put(MyDatabase.Msg.MSG_OID, rowOid);
                     values.put(MyDatabase.Msg.ORIGIN_ID, execContext.getMyAccount().getOriginId());
                     values.put(MyDatabase.Msg.BODY, body);
+                    textValues.toContentValues(values);
                 }
                 if (isNewer) {
                     // Remember the latest sent date in order to see the reblogged message 
@@ -263,9 +267,8 @@ public class DataInserter {
                     execContext.getResult().incrementMessagesCount(execContext.getTimelineType());
                     }
                 // Check if current user was mentioned in the text of the message
-                if (body.length() > 0 
-                        && !mentioned 
-                        && body.contains("@" + execContext.getMyAccount().getUsername())) {
+                if (!mentioned 
+                        && textValues.isMentioned(execContext.getMyAccount().getUsername())) {
                     mentioned = true;
                 }
                 if (mentioned) {
@@ -290,14 +293,18 @@ public class DataInserter {
                     rowId = MyProvider.uriToMessageId(msgUri);
                 } else {
                     execContext.getContext().getContentResolver().update(msgUri, values, null, null);
+                    if (inReplyToMessageId != 0) {
+                        // The message may have replies already, they are moved together with it
+                        MsgThreads.onMsgStored(rowId, inReplyToMessageId);
+                    }
                 }
                 
                 if (senderId != 0) {
                     // Remember all messages that we added or updated
-                    lum.onNewUserMsg(new UserMsg(senderId, rowId, sentDate));
+                    lum.onNewUserMsg(senderId, rowId, sentDate);
                 }
                 if ( authorId != 0 && authorId != senderId ) {
-                    lum.onNewUserMsg(new UserMsg(authorId, rowId, createdDate));
+                    lum.onNewUserMsg(authorId, rowId, createdDate);
                 }
             }
             if (skipIt) {
@@ -336,8 +343,10 @@ public class DataInserter {
             readerId = execContext.getMyAccount().getUserId();
         }
         
-        long userId = 0L;
-        if (!SharedPreferencesUtil.isEmpty(userOid)) {
+        String storedKey = StoredUsers.toKey(originId, userOid, userName);
+        StoredUsers.Entry stored = storedUsers.get(storedKey);
+        long userId = stored == null ? 0L : stored.userId;
+        if (userId == 0 && !SharedPreferencesUtil.isEmpty(userOid)) {
             // Lookup the System's (AndStatus) id from the Originated system's id
             userId = MyProvider.oidToId(OidEnum.USER_OID, originId, userOid);
         }
@@ -350,6 +359,7 @@ public class DataInserter {
                 userId = MyProvider.userNameToId(originId, userName);
             }
         }
+        execContext.getResult().incrementUsersSeen();
         
         try {
             ContentValues values = new ContentValues();
@@ -399,8 +409,16 @@ public class DataInserter {
                 
                 userUri = execContext.getContext().getContentResolver().insert(userUri, values);
                 userId = MyProvider.uriToUserId(userUri);
-            } else if (values.size() > 0) {
-                execContext.getContext().getContentResolver().update(userUri, values, null, null);
+                execContext.getResult().incrementUsersWritten();
+                storedUsers.onStored(storedKey, userId, values);
+            } else {
+                ContentValues changed = new ContentValues(values);
+                removeUnchangedUserValues(stored, userId, changed);
+                if (changed.size() > 0) {
+                    execContext.getContext().getContentResolver().update(userUri, changed, null, null);
+                    execContext.getResult().incrementUsersWritten();
+                }
+                storedUsers.onStored(storedKey, userId, values);
             }
             if (mbUser.latestMessage != null) {
                 // This message doesn't have a sender!
@@ -414,6 +432,22 @@ public class DataInserter {
         return userId;
     }
     
+    /**
+     * Only changed values of a profile are written, and a user, already stored during this execution,
+     * isn't even compared with the database
+     */
+    private void removeUnchangedUserValues(StoredUsers.Entry stored, long userId, ContentValues values) {
+        if (stored != null) {
+            StoredUsers.removeUnchanged(stored, values);
+        } else {
+            MyDatabase myDb = execContext.getMyContext().getDatabase();
+            if (myDb != null) {
+                StoredUsers.removeUnchanged(myDb.getReadableDatabase(), userId,
+                        execContext.getMyAccount().getUserId(), values);
+            }
+        }
+    }
+
     public long insertOrUpdateMsg(MbMessage message) {
         LatestUserMessages lum = new LatestUserMessages();
         long rowId = insertOrUpdateMsg(message, lum);
@@ -140,6 +140,7 @@ public class DataPruner {
         }
         mDeleted = nDeletedTime + nDeletedSize;
 		pruneLogs(MAX_DAYS_LOGS_TO_KEEP);
+		ChangeLog.prune(ChangeLog.MAX_ROWS_TO_KEEP);
 		setDataPrunedNow();
         if (MyLog.isLoggable(this, MyLog.VERBOSE)) {
             MyLog.v(this,
@@ -35,6 +35,7 @@ import java.util.Date;
  */
 public class LatestTimelineItem {
     private static final String TAG = LatestTimelineItem.class.getSimpleName();
+    public static final int QUIET_PERIODS_TO_BACK_OFF = 4;
 
     private TimelineTypeEnum timelineType;
     /**
@@ -55,6 +56,11 @@ public class LatestTimelineItem {
      * It is used to know when it will be time for the next automatic update
      */
     long timelineDownloadedDate = 0;
+    /**
+     * The first date when this timeline was successfully downloaded.
+     * It is used to back off polling of a timeline, where nothing appeared yet
+     */
+    long timelineFirstDownloadedDate = 0;
     
     /**
      * We will update only what really changed
@@ -77,6 +83,10 @@ public class LatestTimelineItem {
         if (maySaveThis) {
             timelineDownloadedDate = MyProvider.userIdToLongColumnValue(
                     timelineType.columnNameTimelineDownloadedDate(), userId);
+            if (!TextUtils.isEmpty(timelineType.columnNameTimelineFirstDownloadedDate())) {
+                timelineFirstDownloadedDate = MyProvider.userIdToLongColumnValue(
+                        timelineType.columnNameTimelineFirstDownloadedDate(), userId);
+            }
             if (!TextUtils.isEmpty(timelineType.columnNameLatestTimelinePosition())) {
                 timelineItemDate = MyProvider.userIdToLongColumnValue(
                         timelineType.columnNameLatestTimelineItemDate(), userId);
@@ -122,6 +132,9 @@ public class LatestTimelineItem {
     
     public void onTimelineDownloaded() {
         timelineDownloadedDate = System.currentTimeMillis();
+        if (timelineFirstDownloadedDate == 0) {
+            timelineFirstDownloadedDate = timelineDownloadedDate;
+        }
         timelineDateChanged = true;
     }
     
@@ -163,6 +176,10 @@ public class LatestTimelineItem {
         try {
             if (timelineDateChanged) {
                 sql += timelineType.columnNameTimelineDownloadedDate() + "=" + timelineDownloadedDate;
+                if (!TextUtils.isEmpty(timelineType.columnNameTimelineFirstDownloadedDate())) {
+                    sql += ", " + timelineType.columnNameTimelineFirstDownloadedDate() + "="
+                            + timelineFirstDownloadedDate;
+                }
             }
             if (timelineItemChanged && !TextUtils.isEmpty(timelineType.columnNameLatestTimelinePosition())) {
                 if (!TextUtils.isEmpty(sql)) {
@@ -202,4 +219,55 @@ public class LatestTimelineItem {
         }
         return blnOut;
     }
+
+    /**
+     * @return true if it's time to sync this timeline automatically, according to its {@link #getSyncIntervalMs()}
+     */
+    public boolean isTimeToAutoSync() {
+        long frequencyMs = MyPreferences.getSyncFrequencyMs();
+        long intervalMs = getSyncIntervalMs();
+        long passedMs = System.currentTimeMillis() - getTimelineDownloadedDate(); 
+        // Automatic updates are launched with the minimal frequency, so we tolerate a half of it 
+        boolean blnOut = passedMs + frequencyMs / 2 > intervalMs;
+        
+        if (MyLog.isLoggable(TAG, MyLog.VERBOSE)) {
+            MyLog.v(this, (blnOut ? "It's time to auto sync " : "Not yet time to auto sync ") 
+                    + timelineType 
+                    + forTheUser()
+                    + ". Minutes passed=" + passedMs/1000/60
+                    + ", interval=" + intervalMs/1000/60);
+        }
+        return blnOut;
+    }
+
+    /**
+     * Timelines where nothing new appears for a long time are synced less often:
+     * the interval is doubled for each {@link #QUIET_PERIODS_TO_BACK_OFF} periods of quietness,
+     * and it returns to the minimum as soon as a new item is downloaded.
+     * If nothing was downloaded yet, the timeline is quiet since its first download.
+     * @return Interval between automatic updates of this timeline, 
+     *   bounded by the minimum and maximum set by the User
+     */
+    public long getSyncIntervalMs() {
+        return calcSyncIntervalMs(timelineFirstDownloadedDate, getTimelineDownloadedDate(), getTimelineItemDate(),
+                MyPreferences.getSyncFrequencyMs(), MyPreferences.getSyncFrequencyMaxMs());
+    }
+
+    /**
+     * @see #getSyncIntervalMs()
+     */
+    public static long calcSyncIntervalMs(long timelineFirstDownloadedDate, long timelineDownloadedDate,
+            long timelineItemDate, long minMs, long maxMs) {
+        long quietSince = timelineItemDate == 0 ? timelineFirstDownloadedDate : timelineItemDate;
+        if (timelineDownloadedDate == 0 || quietSince == 0) {
+            // Never downloaded, so let's sync soon
+            return minMs;
+        }
+        long quietMs = timelineDownloadedDate - quietSince;
+        long intervalMs = minMs;
+        while (intervalMs < maxMs && intervalMs * QUIET_PERIODS_TO_BACK_OFF < quietMs) {
+            intervalMs *= 2;
+        }
+        return intervalMs < maxMs ? intervalMs : maxMs;
+    }
 }
@@ -16,50 +16,161 @@
 
 package org.andstatus.app.data;
 
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
- * Collects {@link UserMsg} data (e.g. during timeline download) and allows to save it in bulk 
+ * Collects {@link UserMsg} data (e.g. during timeline download) and allows to save it in bulk.
+ * Entries are kept in an open addressing hash table with primitive long keys,
+ * because thousands of Users may be seen during one download
  * @author yvolk@yurivolkov.com
  */
 public class LatestUserMessages {
-    private Map<Long, UserMsg> messages;
-    public LatestUserMessages() {
-        messages = new HashMap<Long, UserMsg>();
-    }
-    
+    private static final String TAG = LatestUserMessages.class.getSimpleName();
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** 0 marks an empty slot, as userId is never 0 */
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private long[] msgIds = new long[INITIAL_CAPACITY];
+    private long[] msgDates = new long[INITIAL_CAPACITY];
+    private int size = 0;
+
     public Collection<UserMsg> getUserMessages() {
-        return messages.values();
+        List<UserMsg> list = new ArrayList<UserMsg>(size);
+        for (int ind = 0; ind < userIds.length; ind++) {
+            if (userIds[ind] != 0) {
+                list.add(new UserMsg(userIds[ind], msgIds[ind], msgDates[ind]));
+            }
+        }
+        return list;
     }
     
+    public int size() {
+        return size;
+    }
+
     /**
      * Add information about new/updated message by the User
      */
     public void onNewUserMsg(UserMsg umIn) {
-        // On different implementations see 
-        // http://stackoverflow.com/questions/81346/most-efficient-way-to-increment-a-map-value-in-java
-        UserMsg um = messages.get(umIn.getUserId());
-        if (um == null) {
-            um = umIn;
-        } else {
-            um.onNewMsg(umIn.getLastMsgId(), umIn.getLastMsgDate() );
+        onNewUserMsg(umIn.getUserId(), umIn.getLastMsgId(), umIn.getLastMsgDate());
+    }
+
+    /**
+     * Add information about new/updated message by the User
+     * @param msgDate may be 0 (will be retrieved here)
+     */
+    public void onNewUserMsg(long userId, long msgId, long msgDate) {
+        if (userId == 0 || msgId == 0) {
+            return;
+        }
+        long date = msgDate;
+        if (date == 0) {
+            date = MyProvider.msgIdToLongColumnValue(Msg.SENT_DATE, msgId);
+        }
+        int slot = findSlot(userIds, userId);
+        if (userIds[slot] == 0) {
+            userIds[slot] = userId;
+            msgIds[slot] = msgId;
+            msgDates[slot] = date;
+            size++;
+            if (size * 2 > userIds.length) {
+                grow();
+            }
+        } else if (date > msgDates[slot]) {
+            msgIds[slot] = msgId;
+            msgDates[slot] = date;
         }
-        messages.put(um.getUserId(), um);
     }
-    
+
     /**
-     * Persist all information into the database
+     * @return the slot of the key or of the empty place for it
+     */
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] userIdsOld = userIds;
+        long[] msgIdsOld = msgIds;
+        long[] msgDatesOld = msgDates;
+        userIds = new long[userIdsOld.length * 2];
+        msgIds = new long[userIdsOld.length * 2];
+        msgDates = new long[userIdsOld.length * 2];
+        for (int ind = 0; ind < userIdsOld.length; ind++) {
+            if (userIdsOld[ind] != 0) {
+                int slot = findSlot(userIds, userIdsOld[ind]);
+                userIds[slot] = userIdsOld[ind];
+                msgIds[slot] = msgIdsOld[ind];
+                msgDates[slot] = msgDatesOld[ind];
+            }
+        }
+    }
+
+    /**
+     * Persist all information into the database in one transaction.
+     * Rows, where the stored latest message is not older, are left intact
      * @return true if succeeded for all entries
      */
     public boolean save() {
-        boolean ok = true;
-        for (UserMsg um : messages.values()) {
-            if (!um.save()) {
-                ok = false;
+        if (size == 0) {
+            return true;
+        }
+        MyDatabase myDatabase = MyContextHolder.get().getDatabase();
+        if (myDatabase == null) {
+            MyLog.v(TAG, "No database to save " + size + " entries");
+            return false;
+        }
+        SQLiteDatabase db = myDatabase.getWritableDatabase();
+        boolean ok = false;
+        int updated = 0;
+        SQLiteStatement update = null;
+        SQLiteStatement changes = null;
+        db.beginTransaction();
+        try {
+            update = db.compileStatement("UPDATE " + User.TABLE_NAME + " SET "
+                    + User.USER_MSG_ID + "=?, " + User.USER_MSG_DATE + "=?"
+                    + " WHERE " + BaseColumns._ID + "=? AND " + User.USER_MSG_DATE + "<?");
+            changes = db.compileStatement("SELECT changes()");
+            for (int ind = 0; ind < userIds.length; ind++) {
+                if (userIds[ind] == 0) {
+                    continue;
+                }
+                update.bindLong(1, msgIds[ind]);
+                update.bindLong(2, msgDates[ind]);
+                update.bindLong(3, userIds[ind]);
+                update.bindLong(4, msgDates[ind]);
+                update.execute();
+                if (changes.simpleQueryForLong() > 0) {
+                    ChangeLog.append(db, ChangeLog.Entity.USER, userIds[ind], ChangeLog.ChangeType.UPDATED);
+                    updated++;
+                }
             }
+            db.setTransactionSuccessful();
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(TAG, "save " + size + " entries", e);
+        } finally {
+            db.endTransaction();
+            DbUtils.closeSilently(update);
+            DbUtils.closeSilently(changes);
         }
+        MyLog.v(TAG, "Updated " + updated + " of " + size + " Users");
         return ok;
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.Context;
+import android.text.Html;
+import android.text.Spanned;
+import android.text.TextUtils;
+
+import org.andstatus.app.R;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.util.RelativeTime;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded cache of rendered bodies and details of Messages, shown in a Timeline list.
+ * It is filled off the UI thread by the timeline loader, so binding of a row
+ * usually costs no HTML parsing and no string formatting.
+ * An entry is reused only while the Message content, from which it was rendered, is the same.
+ * The relative time part of details is recomputed when it becomes outdated only.
+ */
+public final class MessageRenderCache {
+    static final int MAX_ENTRIES = 1000;
+    static final long MINUTE_MS = 60 * 1000L;
+
+    private static final Object LOCK = new Object();
+    private static final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static Locale locale = null;
+
+    private MessageRenderCache() {
+    }
+
+    private static final class Entry {
+        String body = null;
+        Spanned spanned = null;
+
+        String detailsSuffix = "";
+
+        long createdDate = 0;
+        String relativeTime = "";
+        long relativeTimeValidUntil = 0;
+        /** Relative time and the suffix together */
+        String details = "";
+    }
+
+    public static Spanned getBody(long msgId, String body) {
+        synchronized (LOCK) {
+            Entry entry = getEntry(msgId);
+            if (entry.spanned == null || !TextUtils.equals(entry.body, body)) {
+                entry.body = body;
+                entry.spanned = Html.fromHtml(body);
+            }
+            return entry.spanned;
+        }
+    }
+
+    /**
+     * @param detailsSuffixIn See {@link #formatDetailsSuffix(Context, long, String, String)}
+     * @return relative time of the message, followed by the suffix
+     */
+    public static String getDetails(Context context, long msgId, long createdDate, String detailsSuffixIn) {
+        String detailsSuffix = detailsSuffixIn == null ? "" : detailsSuffixIn;
+        synchronized (LOCK) {
+            Locale localeNow = MyContextHolder.get().getLocale();
+            if (locale == null || !locale.equals(localeNow)) {
+                entries.clear();
+                locale = localeNow;
+            }
+            Entry entry = getEntry(msgId);
+            if (!TextUtils.equals(entry.detailsSuffix, detailsSuffix)) {
+                entry.detailsSuffix = detailsSuffix;
+                entry.details = entry.relativeTime + entry.detailsSuffix;
+            }
+            long now = System.currentTimeMillis();
+            if (entry.createdDate != createdDate || entry.relativeTimeValidUntil < now) {
+                entry.createdDate = createdDate;
+                entry.relativeTime = RelativeTime.getDifference(context, createdDate);
+                entry.relativeTimeValidUntil = now + getRelativeTimeTtl(now - createdDate);
+                entry.details = entry.relativeTime + entry.detailsSuffix;
+            }
+            return entry.details;
+        }
+    }
+
+    private static Entry getEntry(long msgId) {
+        Entry entry = entries.get(msgId);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(msgId, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Whom the message replies to and who is its recipient. It doesn't get outdated,
+     * so it is formatted once, while a Timeline is being loaded
+     */
+    public static String formatDetailsSuffix(Context context, long replyToMsgId, String replyToNameIn,
+            String recipientName) {
+        Locale localeNow = MyContextHolder.get().getLocale();
+        String suffix = "";
+        if (replyToMsgId != 0) {
+            String replyToName = TextUtils.isEmpty(replyToNameIn) ? "..." : replyToNameIn;
+            suffix += " " + String.format(localeNow, context.getText(R.string.message_source_in_reply_to).toString(), replyToName);
+        }
+        if (!TextUtils.isEmpty(recipientName)) {
+            suffix += " " + String.format(localeNow, context.getText(R.string.message_source_to).toString(), recipientName);
+        }
+        return suffix;
+    }
+
+    /**
+     * "Seconds ago" become outdated much sooner than "days ago"
+     */
+    static long getRelativeTimeTtl(long age) {
+        if (age < MINUTE_MS) {
+            return 5 * 1000L;
+        } else if (age < 60 * MINUTE_MS) {
+            return 30 * 1000L;
+        }
+        return 5 * MINUTE_MS;
+    }
+
+    public static void clear() {
+        synchronized (LOCK) {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.text.TextUtils;
+
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.util.MyHtml;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Results of the text processing of a Message body, which is done once, when the Message is stored:
+ * plain text, mentioned usernames, hashtags and URLs.
+ * Lists are stored as space separated lowercase items with a space at both ends,
+ * so an item may be found using "LIKE '% item %'"
+ */
+public final class MsgTextValues {
+    private static final Pattern MENTION_PATTERN = Pattern.compile("(?:^|[^\\w@])@([\\w.\\-]+(?:@[\\w\\-]+(?:\\.[\\w\\-]+)+)?)");
+    private static final Pattern HASHTAG_PATTERN = Pattern.compile("(?:^|[^\\w&#])#(\\w+)");
+    private static final Pattern URL_PATTERN = Pattern.compile("https?://[^\\s<>\"']+");
+    private static final Pattern HREF_PATTERN = Pattern.compile("href=\"(https?://[^\"]+)\"");
+    private static final String SEPARATOR = " ";
+
+    private final String plainText;
+    private final Set<String> mentions = new LinkedHashSet<String>();
+    private final Set<String> hashtags = new LinkedHashSet<String>();
+    private final Set<String> urls = new LinkedHashSet<String>();
+
+    private MsgTextValues(String plainText) {
+        this.plainText = plainText;
+    }
+
+    /**
+     * @param isHtml true if the body may contain HTML markup
+     */
+    public static MsgTextValues fromBody(String body, boolean isHtml) {
+        if (TextUtils.isEmpty(body)) {
+            return new MsgTextValues("");
+        }
+        MsgTextValues values = new MsgTextValues(isHtml ? MyHtml.fromHtml(body) : body.trim());
+        Matcher matcher = MENTION_PATTERN.matcher(values.plainText);
+        while (matcher.find()) {
+            values.mentions.add(trimTrailingPunctuation(matcher.group(1)).toLowerCase(Locale.US));
+        }
+        matcher = HASHTAG_PATTERN.matcher(values.plainText);
+        while (matcher.find()) {
+            values.hashtags.add(matcher.group(1).toLowerCase(Locale.US));
+        }
+        if (isHtml) {
+            matcher = HREF_PATTERN.matcher(body);
+            while (matcher.find()) {
+                values.urls.add(matcher.group(1));
+            }
+        }
+        matcher = URL_PATTERN.matcher(values.plainText);
+        while (matcher.find()) {
+            values.urls.add(trimTrailingPunctuation(matcher.group()));
+        }
+        return values;
+    }
+
+    private static String trimTrailingPunctuation(String text) {
+        int end = text.length();
+        while (end > 0 && ".,;:!?-)".indexOf(text.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    public String getPlainText() {
+        return plainText;
+    }
+
+    public Set<String> getMentions() {
+        return mentions;
+    }
+
+    public Set<String> getHashtags() {
+        return hashtags;
+    }
+
+    public Set<String> getUrls() {
+        return urls;
+    }
+
+    /**
+     * @param username of the form "name" or "name@host". 
+     *  The second one is mentioned also by "@name"
+     */
+    public boolean isMentioned(String username) {
+        if (TextUtils.isEmpty(username)) {
+            return false;
+        }
+        String name = username.toLowerCase(Locale.US);
+        if (mentions.contains(name)) {
+            return true;
+        }
+        int indAt = name.indexOf('@');
+        return indAt > 0 && mentions.contains(name.substring(0, indAt));
+    }
+
+    public void toContentValues(ContentValues values) {
+        values.put(Msg.BODY_PLAIN, plainText);
+        values.put(Msg.MENTIONS, toColumnValue(mentions));
+        values.put(Msg.HASHTAGS, toColumnValue(hashtags));
+        values.put(Msg.URLS, toColumnValue(urls));
+    }
+
+    static String toColumnValue(Set<String> items) {
+        if (items.isEmpty()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(SEPARATOR);
+        for (String item : items) {
+            builder.append(item);
+            builder.append(SEPARATOR);
+        }
+        return builder.toString();
+    }
+
+    /** To be appended to "LIKE ?" with arguments, escaped by {@link #escapeLike(String)} */
+    public static final String LIKE_ESCAPE = " ESCAPE '\\'";
+
+    /**
+     * @return selection argument for "LIKE ?" + {@link #LIKE_ESCAPE}, 
+     *  which finds the mention or the hashtag in a list column
+     */
+    public static String toLikeArgument(String item) {
+        return "%" + SEPARATOR + escapeLike(item.toLowerCase(Locale.US)) + SEPARATOR + "%";
+    }
+
+    /**
+     * "%" and "_" in the text are matched literally, not as wildcards
+     */
+    public static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
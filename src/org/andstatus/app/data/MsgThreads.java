@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Keeps the position of each Message in its reply tree ("thread"): {@link Msg#THREAD_ID},
+ * {@link Msg#THREAD_DEPTH} and {@link Msg#THREAD_PATH}.
+ * The path is a concatenation of fixed width segments, one per ancestor, so sorting by it
+ * gives the tree in the depth-first order, and a subtree is a range of paths.
+ * When a missing ancestor of a Message arrives later, the whole subtree is moved under it.
+ */
+public final class MsgThreads {
+    private static final String TAG = MsgThreads.class.getSimpleName();
+    private static final String ZEROS = "0000000000";
+    static final String SEGMENT_END = "/";
+    /** '0' is the next character after {@link #SEGMENT_END} */
+    private static final String SEGMENT_END_NEXT = "0";
+    /** Default sort order of a thread */
+    public static final String THREAD_SORT_ORDER = Msg.THREAD_PATH + " ASC";
+
+    private MsgThreads() {
+    }
+
+    static String toPathSegment(long msgId) {
+        String strId = Long.toString(msgId);
+        return (strId.length() < ZEROS.length() ? ZEROS.substring(strId.length()) : "") + strId + SEGMENT_END;
+    }
+
+    /** The same as {@link #toPathSegment(long)}, but in SQL */
+    private static String pathSegmentSql(String idColumn) {
+        return "substr('" + ZEROS + "' || " + idColumn + ", -" + ZEROS.length() + ", " + ZEROS.length()
+                + ") || '" + SEGMENT_END + "'";
+    }
+
+    /**
+     * Position of the Message in its thread, as it is stored in the database
+     */
+    static class ThreadPosition {
+        long msgId = 0;
+        long inReplyToMsgId = 0;
+        long threadId = 0;
+        int depth = 0;
+        String path = "";
+
+        boolean isAssigned() {
+            return threadId != 0 && path.length() > 0;
+        }
+
+        static ThreadPosition load(SQLiteDatabase db, long msgId) {
+            if (msgId == 0) {
+                return null;
+            }
+            ThreadPosition position = null;
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("SELECT " + Msg.IN_REPLY_TO_MSG_ID + ", " + Msg.THREAD_ID + ", "
+                        + Msg.THREAD_DEPTH + ", " + Msg.THREAD_PATH
+                        + " FROM " + Msg.TABLE_NAME + " WHERE " + BaseColumns._ID + "=" + msgId, null);
+                if (cursor.moveToFirst()) {
+                    position = new ThreadPosition();
+                    position.msgId = msgId;
+                    position.inReplyToMsgId = cursor.getLong(0);
+                    position.threadId = cursor.getLong(1);
+                    position.depth = cursor.getInt(2);
+                    position.path = cursor.isNull(3) ? "" : cursor.getString(3);
+                }
+            } finally {
+                DbUtils.closeSilently(cursor);
+            }
+            return position;
+        }
+
+        @Override
+        public String toString() {
+            return "ThreadPosition [msgId=" + msgId + ", threadId=" + threadId + ", depth=" + depth + ", path="
+                    + path + "]";
+        }
+    }
+
+    /**
+     * A new Message doesn't have replies yet, so its position is known before it is inserted:
+     * puts the position, together with the id, which the Message will get, into the values to insert.
+     * Should be called in the transaction of the insert
+     */
+    static void putNewPosition(SQLiteDatabase db, ContentValues values) {
+        long msgId = DatabaseUtils.longForQuery(db, "SELECT MAX(IFNULL((SELECT seq FROM sqlite_sequence"
+                + " WHERE name='" + Msg.TABLE_NAME + "'), 0), IFNULL((SELECT MAX(" + BaseColumns._ID + ") FROM "
+                + Msg.TABLE_NAME + "), 0)) + 1", null);
+        ThreadPosition parent = ThreadPosition.load(db, values.containsKey(Msg.IN_REPLY_TO_MSG_ID)
+                ? values.getAsLong(Msg.IN_REPLY_TO_MSG_ID) : 0);
+        if (parent != null && !parent.isAssigned()) {
+            setRoot(db, parent);
+        }
+        values.put(BaseColumns._ID, msgId);
+        if (parent == null) {
+            values.put(Msg.THREAD_ID, msgId);
+            values.put(Msg.THREAD_DEPTH, 0);
+            values.put(Msg.THREAD_PATH, toPathSegment(msgId));
+        } else {
+            values.put(Msg.THREAD_ID, parent.threadId);
+            values.put(Msg.THREAD_DEPTH, parent.depth + 1);
+            values.put(Msg.THREAD_PATH, parent.path + toPathSegment(msgId));
+        }
+    }
+
+    /**
+     * Places the stored Message into its thread, moving the Message together with its replies
+     * under the parent, if the parent became known
+     * @param inReplyToMsgId 0 if the Message doesn't reply to other message or this is unknown now
+     */
+    public static void onMsgStored(long msgId, long inReplyToMsgId) {
+        if (msgId == 0 || MyContextHolder.get().getDatabase() == null) {
+            return;
+        }
+        SQLiteDatabase db = MyContextHolder.get().getDatabase().getWritableDatabase();
+        db.beginTransaction();
+        try {
+            onMsgStored(db, msgId, inReplyToMsgId);
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            MyLog.e(TAG, "onMsgStored msgId=" + msgId + ", inReplyTo=" + inReplyToMsgId, e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return Number of Messages, which changed their position
+     */
+    static int onMsgStored(SQLiteDatabase db, long msgId, long inReplyToMsgId) {
+        ThreadPosition own = ThreadPosition.load(db, msgId);
+        if (own == null) {
+            return 0;
+        }
+        long parentId = inReplyToMsgId == 0 ? own.inReplyToMsgId : inReplyToMsgId;
+        ThreadPosition parent = ThreadPosition.load(db, parentId);
+        if (parent != null && !parent.isAssigned()) {
+            setRoot(db, parent);
+        }
+        if (parent == null || parent.msgId == msgId) {
+            if (own.isAssigned()) {
+                return 0;
+            }
+            setRoot(db, own);
+            return 1;
+        }
+        return moveUnder(db, own, parent);
+    }
+
+    private static void setRoot(SQLiteDatabase db, ThreadPosition position) {
+        position.threadId = position.msgId;
+        position.depth = 0;
+        position.path = toPathSegment(position.msgId);
+        db.execSQL("UPDATE " + Msg.TABLE_NAME + " SET " + Msg.THREAD_ID + "=" + position.threadId
+                + ", " + Msg.THREAD_DEPTH + "=0, " + Msg.THREAD_PATH + "=?"
+                + " WHERE " + BaseColumns._ID + "=" + position.msgId,
+                new Object[] { position.path });
+    }
+
+    private static int moveUnder(SQLiteDatabase db, ThreadPosition own, ThreadPosition parent) {
+        String newPath = parent.path + toPathSegment(own.msgId);
+        int newDepth = parent.depth + 1;
+        if (!own.isAssigned()) {
+            db.execSQL("UPDATE " + Msg.TABLE_NAME + " SET " + Msg.THREAD_ID + "=" + parent.threadId
+                    + ", " + Msg.THREAD_DEPTH + "=" + newDepth + ", " + Msg.THREAD_PATH + "=?"
+                    + " WHERE " + BaseColumns._ID + "=" + own.msgId,
+                    new Object[] { newPath });
+            return 1;
+        }
+        if (own.threadId == parent.threadId && own.path.equals(newPath)) {
+            return 0;
+        }
+        if (parent.threadId == own.threadId && parent.path.startsWith(own.path)) {
+            MyLog.d(TAG, "Replies form a cycle, " + own + " is not moved under " + parent);
+            return 0;
+        }
+        String[] range = subtreeRange(own.path);
+        db.execSQL("UPDATE " + Msg.TABLE_NAME + " SET " + Msg.THREAD_ID + "=" + parent.threadId
+                + ", " + Msg.THREAD_DEPTH + "=" + Msg.THREAD_DEPTH + "+(" + (newDepth - own.depth) + ")"
+                + ", " + Msg.THREAD_PATH + "=? || substr(" + Msg.THREAD_PATH + ", " + (own.path.length() + 1) + ")"
+                + " WHERE " + Msg.THREAD_ID + "=" + own.threadId
+                + " AND " + Msg.THREAD_PATH + ">=? AND " + Msg.THREAD_PATH + "<?",
+                new Object[] { newPath, range[0], range[1] });
+        int count = (int) DatabaseUtils.longForQuery(db, "SELECT changes()", null);
+        if (count > 1) {
+            ChangeLog.append(db, ChangeLog.Entity.MSG, ChangeLog.MANY_ROWS, ChangeLog.ChangeType.UPDATED);
+        }
+        MyLog.v(TAG, "Moved " + count + " messages of " + own + " under " + parent);
+        return count;
+    }
+
+    /**
+     * @return Bounds of the paths of the subtree: the first one inclusive and the second one exclusive
+     */
+    static String[] subtreeRange(String path) {
+        return new String[] { path, path.substring(0, path.length() - SEGMENT_END.length()) + SEGMENT_END_NEXT };
+    }
+
+    /**
+     * Places all Messages, which are not in a thread yet, into their threads.
+     * One UPDATE per a level of the trees, no Messages are loaded to memory.
+     * @return Number of Messages placed
+     */
+    static int assignAll(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + Msg.TABLE_NAME + " SET " + Msg.THREAD_ID + "=" + BaseColumns._ID
+                + ", " + Msg.THREAD_DEPTH + "=0, " + Msg.THREAD_PATH + "=" + pathSegmentSql(BaseColumns._ID)
+                + " WHERE " + Msg.THREAD_ID + " IS NULL AND (" + Msg.IN_REPLY_TO_MSG_ID + " IS NULL OR "
+                + Msg.IN_REPLY_TO_MSG_ID + "=0 OR " + Msg.IN_REPLY_TO_MSG_ID + " NOT IN (SELECT "
+                + BaseColumns._ID + " FROM " + Msg.TABLE_NAME + "))");
+        long count = DatabaseUtils.longForQuery(db, "SELECT changes()", null);
+        String parent = "(SELECT %s FROM " + Msg.TABLE_NAME + " AS parent WHERE parent." + BaseColumns._ID
+                + "=" + Msg.TABLE_NAME + "." + Msg.IN_REPLY_TO_MSG_ID + ")";
+        String sql = "UPDATE " + Msg.TABLE_NAME + " SET "
+                + Msg.THREAD_ID + "=" + String.format(parent, "parent." + Msg.THREAD_ID)
+                + ", " + Msg.THREAD_DEPTH + "=" + String.format(parent, "parent." + Msg.THREAD_DEPTH + "+1")
+                + ", " + Msg.THREAD_PATH + "=" + String.format(parent, "parent." + Msg.THREAD_PATH)
+                + " || " + pathSegmentSql(Msg.TABLE_NAME + "." + BaseColumns._ID)
+                + " WHERE " + Msg.THREAD_ID + " IS NULL AND " + Msg.IN_REPLY_TO_MSG_ID + " IN (SELECT "
+                + BaseColumns._ID + " FROM " + Msg.TABLE_NAME + " WHERE " + Msg.THREAD_ID + " IS NOT NULL)";
+        count += assignLevels(db, sql);
+        // Only replies, which form cycles, and their replies are left: break each cycle
+        long rootCount;
+        do {
+            db.execSQL("UPDATE " + Msg.TABLE_NAME + " SET " + Msg.THREAD_ID + "=" + BaseColumns._ID
+                    + ", " + Msg.THREAD_DEPTH + "=0, " + Msg.THREAD_PATH + "=" + pathSegmentSql(BaseColumns._ID)
+                    + " WHERE " + BaseColumns._ID + "=(SELECT MIN(" + BaseColumns._ID + ") FROM " + Msg.TABLE_NAME
+                    + " WHERE " + Msg.THREAD_ID + " IS NULL)");
+            rootCount = DatabaseUtils.longForQuery(db, "SELECT changes()", null);
+            count += rootCount + assignLevels(db, sql);
+        } while (rootCount > 0);
+        MyLog.i(TAG, "Placed " + count + " messages into threads");
+        return (int) count;
+    }
+
+    private static long assignLevels(SQLiteDatabase db, String sql) {
+        long count = 0;
+        long levelCount;
+        do {
+            db.execSQL(sql);
+            levelCount = DatabaseUtils.longForQuery(db, "SELECT changes()", null);
+            count += levelCount;
+        } while (levelCount > 0);
+        return count;
+    }
+}
@@ -26,6 +26,7 @@ import java.util.Locale;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.provider.BaseColumns;
 
@@ -40,6 +41,7 @@ public final class MyDatabase extends SQLiteOpenHelper  {
      * This is used to check (and upgrade if necessary) 
      * existing database after application update.
      * 
+     * v.17 2014-06-01 TimelineGap table added
      * v.16 2014-05-03 Account persistence changed
      * v.15 2014-02-16 Public timeline added
      * v.14 2013-12-15 Origin table added
@@ -53,7 +55,7 @@ public final class MyDatabase extends SQLiteOpenHelper  {
      *      All messages are in the same table. 
      *      Allows to have multiple User Accounts in different Originating systems (twitter.com etc. ) 
      */
-    public static final int DATABASE_VERSION = 16;
+    public static final int DATABASE_VERSION = 22;
     public static final String DATABASE_NAME = "andstatus.sqlite";
 
     /**
@@ -145,6 +147,31 @@ public final class MyDatabase extends SQLiteOpenHelper  {
          * The Msg is public
          */
         public static final String PUBLIC = "public";
+        /**
+         * Results of the text processing of the {@link #BODY}, see {@link org.andstatus.app.data.MsgTextValues}:
+         * plain text of the body...
+         */
+        public static final String BODY_PLAIN = "body_plain";
+        /**
+         * ...and lists of mentioned usernames, hashtags and URLs
+         */
+        public static final String MENTIONS = "mentions";
+        public static final String HASHTAGS = "hashtags";
+        public static final String URLS = "urls";
+        /**
+         * The conversation (reply tree) of the Msg, see {@link org.andstatus.app.data.MsgThreads}:
+         * {@link #_ID} of the earliest known ancestor of this Msg (the root of the tree)...
+         */
+        public static final String THREAD_ID = "thread_id";
+        /**
+         * ...number of known ancestors, 0 for the root...
+         */
+        public static final String THREAD_DEPTH = "thread_depth";
+        /**
+         * ...and IDs of all known ancestors and of the Msg itself, starting from the root.
+         * So the whole tree may be selected in the display order using one index range scan
+         */
+        public static final String THREAD_PATH = "thread_path";
 
         /*
          * Derived columns (they are not stored in this table but are result of joins and aliasing)
@@ -290,6 +317,14 @@ public final class MyDatabase extends SQLiteOpenHelper  {
         public static final String USER_TIMELINE_POSITION = "user_timeline_position";
         public static final String USER_TIMELINE_ITEM_DATE = "user_timeline_item_date";
         public static final String USER_TIMELINE_DATE = "user_timeline_date";
+        /**
+         * Dates when the timelines were downloaded for the first time
+         */
+        public static final String HOME_TIMELINE_FIRST_DATE = "home_timeline_first_date";
+        public static final String FAVORITES_TIMELINE_FIRST_DATE = "favorites_timeline_first_date";
+        public static final String DIRECT_TIMELINE_FIRST_DATE = "direct_timeline_first_date";
+        public static final String MENTIONS_TIMELINE_FIRST_DATE = "mentions_timeline_first_date";
+        public static final String USER_TIMELINE_FIRST_DATE = "user_timeline_first_date";
         /**
          * For the list ("collection") of following users 
          * we store only the date-time of the last retrieval of the list 
@@ -415,6 +450,97 @@ public final class MyDatabase extends SQLiteOpenHelper  {
         public static final String SHORT_URL_LENGTH = "short_url_length";
     }
     
+    /**
+     * Known gaps in timelines: timeline items between {@link TimelineGap#SINCE_POSITION} 
+     * and {@link TimelineGap#MAX_POSITION} (both excluded) may be not downloaded yet.
+     */
+    public static final class TimelineGap implements BaseColumns {
+        public static final String TABLE_NAME = TimelineGap.class.getSimpleName().toLowerCase(Locale.US);
+        private TimelineGap() {
+        }
+        /**
+         * The gap is filled on behalf of the Account of this User 
+         */
+        public static final String ACCOUNT_USER_ID = "account_user_id";
+        /**
+         * See {@link TimelineTypeEnum#save()}
+         */
+        public static final String TIMELINE_TYPE = "timeline_type";
+        /**
+         * The timeline is of this User, the same as in {@link LatestTimelineItem}
+         */
+        public static final String USER_ID = User.USER_ID;
+        /**
+         * Position of the latest timeline item before the gap
+         */
+        public static final String SINCE_POSITION = "since_position";
+        /**
+         * Position of the oldest timeline item after the gap
+         */
+        public static final String MAX_POSITION = "max_position";
+        /**
+         * Date of the item at the {@link #MAX_POSITION}. Shows where the gap is in the timeline
+         */
+        public static final String MAX_DATE = "max_date";
+    }
+
+    /**
+     * Actions of the User, which were applied locally, but were not sent to the server yet,
+     * see {@link org.andstatus.app.service.Outbox}
+     */
+    public static final class Outbox implements BaseColumns {
+        public static final String TABLE_NAME = Outbox.class.getSimpleName().toLowerCase(Locale.US);
+        private Outbox() {
+        }
+        /**
+         * The action is done on behalf of this Account
+         */
+        public static final String ACCOUNT_NAME = "account_name";
+        /**
+         * See {@link org.andstatus.app.service.CommandEnum#save()}
+         */
+        public static final String COMMAND = "command";
+        /**
+         * Message or User ID, the same as in {@link org.andstatus.app.service.CommandData}
+         */
+        public static final String ITEM_ID = "item_id";
+        /**
+         * Parameters of a new message
+         */
+        public static final String MSG_TEXT = "msg_text";
+        public static final String IN_REPLY_TO_ID = "in_reply_to_id";
+        public static final String RECIPIENT_ID = "recipient_id";
+        public static final String CREATED_DATE = "created_date";
+        /**
+         * Number of failed attempts to send the action and the date of the latest one
+         */
+        public static final String FAILURES = "failures";
+        public static final String FAILED_DATE = "failed_date";
+    }
+
+    /**
+     * Append-only log of changes of messages, users and avatars, see {@link org.andstatus.app.data.ChangeLog}.
+     * {@link BaseColumns#_ID} is the sequence number of the change
+     */
+    public static final class ChangeLog implements BaseColumns {
+        public static final String TABLE_NAME = ChangeLog.class.getSimpleName().toLowerCase(Locale.US);
+        private ChangeLog() {
+        }
+        /**
+         * See {@link org.andstatus.app.data.ChangeLog.Entity}
+         */
+        public static final String ENTITY = "entity";
+        /**
+         * ID of the changed Message, User etc. 0 if many rows might have been changed
+         */
+        public static final String ENTITY_ID = "entity_id";
+        /**
+         * See {@link org.andstatus.app.data.ChangeLog.ChangeType}
+         */
+        public static final String CHANGE_TYPE = "change_type";
+        public static final String CHANGED_DATE = "changed_date";
+    }
+
     /**
      * ids in originating system
      */
@@ -431,8 +557,40 @@ public final class MyDatabase extends SQLiteOpenHelper  {
     }
     
     
+    private final StorageProfile storageProfile;
+
     public MyDatabase(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        storageProfile = StorageProfile.fromPreferences();
+        if (android.os.Build.VERSION.SDK_INT >= 16) {
+            // Applies to all connections of the pool
+            setWriteAheadLoggingEnabled(storageProfile.isWriteAheadLogging());
+        }
+    }
+
+    public StorageProfile getStorageProfile() {
+        return storageProfile;
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        try {
+            storageProfile.applyTo(db);
+        } catch (SQLiteException e) {
+            MyLog.e(this, "Applying " + storageProfile, e);
+        }
+    }
+
+    /**
+     * Background checkpoint of the write-ahead log, see {@link StorageProfile#checkpoint(SQLiteDatabase)}
+     */
+    public void checkpoint() {
+        try {
+            storageProfile.checkpoint(getWritableDatabase());
+        } catch (SQLiteException e) {
+            MyLog.d(this, "Checkpoint", e);
+        }
     }
 
     private ThreadLocal<Boolean> onUpgradeTriggered = new ThreadLocal<Boolean>();
@@ -473,6 +631,7 @@ public final class MyDatabase extends SQLiteOpenHelper  {
     @Override
     public void onCreate(SQLiteDatabase db) {
         MyLog.i(this, "Creating tables");
+        storageProfile.onCreate(db);
         db.execSQL("CREATE TABLE " + Msg.TABLE_NAME + " (" 
                 + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," 
                 + Msg.ORIGIN_ID + " INTEGER NOT NULL," 
@@ -488,13 +647,25 @@ public final class MyDatabase extends SQLiteOpenHelper  {
                 + Msg.CREATED_DATE + " INTEGER,"
                 + Msg.SENT_DATE + " INTEGER,"
                 + Msg.INS_DATE + " INTEGER NOT NULL,"
-                + Msg.PUBLIC + " BOOLEAN DEFAULT 0 NOT NULL" 
+                + Msg.PUBLIC + " BOOLEAN DEFAULT 0 NOT NULL," 
+                + Msg.BODY_PLAIN + " TEXT," 
+                + Msg.MENTIONS + " TEXT," 
+                + Msg.HASHTAGS + " TEXT," 
+                + Msg.URLS + " TEXT," 
+                + Msg.THREAD_ID + " INTEGER," 
+                + Msg.THREAD_DEPTH + " INTEGER," 
+                + Msg.THREAD_PATH + " TEXT" 
                 + ")");
 
         db.execSQL("CREATE UNIQUE INDEX idx_msg_origin ON " + Msg.TABLE_NAME + " (" 
                 + Msg.ORIGIN_ID + ", "
                 + Msg.MSG_OID
                 + ")");
+
+        db.execSQL("CREATE INDEX idx_msg_thread ON " + Msg.TABLE_NAME + " (" 
+                + Msg.THREAD_ID + ", "
+                + Msg.THREAD_PATH
+                + ")");
         
         db.execSQL("CREATE TABLE " + MsgOfUser.TABLE_NAME + " (" 
                 + MsgOfUser.USER_ID + " INTEGER NOT NULL," 
@@ -536,6 +707,11 @@ public final class MyDatabase extends SQLiteOpenHelper  {
                 + User.USER_TIMELINE_POSITION + " TEXT DEFAULT '' NOT NULL," 
                 + User.USER_TIMELINE_ITEM_DATE + " INTEGER DEFAULT 0 NOT NULL," 
                 + User.USER_TIMELINE_DATE + " INTEGER DEFAULT 0 NOT NULL," 
+                + User.HOME_TIMELINE_FIRST_DATE + " INTEGER DEFAULT 0 NOT NULL," 
+                + User.FAVORITES_TIMELINE_FIRST_DATE + " INTEGER DEFAULT 0 NOT NULL," 
+                + User.DIRECT_TIMELINE_FIRST_DATE + " INTEGER DEFAULT 0 NOT NULL," 
+                + User.MENTIONS_TIMELINE_FIRST_DATE + " INTEGER DEFAULT 0 NOT NULL," 
+                + User.USER_TIMELINE_FIRST_DATE + " INTEGER DEFAULT 0 NOT NULL," 
                 + User.FOLLOWING_USER_DATE + " INTEGER DEFAULT 0 NOT NULL," 
                 + User.USER_MSG_ID + " INTEGER DEFAULT 0 NOT NULL," 
                 + User.USER_MSG_DATE + " INTEGER DEFAULT 0 NOT NULL" 
@@ -582,7 +758,43 @@ public final class MyDatabase extends SQLiteOpenHelper  {
         db.execSQL("CREATE UNIQUE INDEX idx_origin_name ON " + Origin.TABLE_NAME + " (" 
                 + Origin.ORIGIN_NAME
                 + ")");
+
+        db.execSQL("CREATE TABLE " + TimelineGap.TABLE_NAME + " (" 
+                + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," 
+                + TimelineGap.ACCOUNT_USER_ID + " INTEGER NOT NULL," 
+                + TimelineGap.TIMELINE_TYPE + " TEXT NOT NULL," 
+                + TimelineGap.USER_ID + " INTEGER NOT NULL," 
+                + TimelineGap.SINCE_POSITION + " TEXT NOT NULL," 
+                + TimelineGap.MAX_POSITION + " TEXT NOT NULL," 
+                + TimelineGap.MAX_DATE + " INTEGER DEFAULT 0 NOT NULL" 
+                + ")");
+
+        db.execSQL("CREATE INDEX idx_timelinegap_user ON " + TimelineGap.TABLE_NAME + " (" 
+                + TimelineGap.USER_ID + ", "
+                + TimelineGap.TIMELINE_TYPE
+                + ")");
         
+        db.execSQL("CREATE TABLE " + Outbox.TABLE_NAME + " (" 
+                + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," 
+                + Outbox.ACCOUNT_NAME + " TEXT NOT NULL," 
+                + Outbox.COMMAND + " TEXT NOT NULL," 
+                + Outbox.ITEM_ID + " INTEGER DEFAULT 0 NOT NULL," 
+                + Outbox.MSG_TEXT + " TEXT," 
+                + Outbox.IN_REPLY_TO_ID + " INTEGER DEFAULT 0 NOT NULL," 
+                + Outbox.RECIPIENT_ID + " INTEGER DEFAULT 0 NOT NULL," 
+                + Outbox.CREATED_DATE + " INTEGER NOT NULL," 
+                + Outbox.FAILURES + " INTEGER DEFAULT 0 NOT NULL," 
+                + Outbox.FAILED_DATE + " INTEGER DEFAULT 0 NOT NULL" 
+                + ")");
+
+        db.execSQL("CREATE TABLE " + ChangeLog.TABLE_NAME + " (" 
+                + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," 
+                + ChangeLog.ENTITY + " INTEGER NOT NULL," 
+                + ChangeLog.ENTITY_ID + " INTEGER DEFAULT 0 NOT NULL," 
+                + ChangeLog.CHANGE_TYPE + " INTEGER NOT NULL," 
+                + ChangeLog.CHANGED_DATE + " INTEGER NOT NULL" 
+                + ")");
+
         String sqlIns = "INSERT INTO " + Origin.TABLE_NAME + " ("
                 + BaseColumns._ID + "," 
                 + Origin.ORIGIN_TYPE_ID + "," 
@@ -18,6 +18,8 @@ package org.andstatus.app.data;
 
 import android.app.Activity;
 import android.app.ProgressDialog;
+import android.content.ContentValues;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
 import org.andstatus.app.R;
@@ -122,6 +124,24 @@ class MyDatabaseConverter {
         if (currentVersion == 15) {
             currentVersion = convert15to16(db, currentVersion);
         }
+        if (currentVersion == 16) {
+            currentVersion = convert16to17(db, currentVersion);
+        }
+        if (currentVersion == 17) {
+            currentVersion = convert17to18(db, currentVersion);
+        }
+        if (currentVersion == 18) {
+            currentVersion = convert18to19(db, currentVersion);
+        }
+        if (currentVersion == 19) {
+            currentVersion = convert19to20(db, currentVersion);
+        }
+        if (currentVersion == 20) {
+            currentVersion = convert20to21(db, currentVersion);
+        }
+        if (currentVersion == 21) {
+            currentVersion = convert21to22(db, currentVersion);
+        }
         if ( currentVersion == newVersion) {
             MyLog.i(this, "Successfully upgraded database from version " + oldVersion + " to version "
                     + newVersion + ".");
@@ -183,4 +203,208 @@ class MyDatabaseConverter {
         }
         return ok ? versionTo : oldVersion;
     }
+
+    private int convert16to17(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 17;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            sql = "CREATE TABLE timelinegap (_id INTEGER PRIMARY KEY AUTOINCREMENT, account_user_id INTEGER NOT NULL,"
+                    + " timeline_type TEXT NOT NULL, user_id INTEGER NOT NULL, since_position TEXT NOT NULL,"
+                    + " max_position TEXT NOT NULL, max_date INTEGER DEFAULT 0 NOT NULL)";
+            db.execSQL(sql);
+            sql = "CREATE INDEX idx_timelinegap_user ON timelinegap (user_id, timeline_type)";
+            db.execSQL(sql);
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    private int convert17to18(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 18;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            sql = "CREATE TABLE outbox (_id INTEGER PRIMARY KEY AUTOINCREMENT, account_name TEXT NOT NULL,"
+                    + " command TEXT NOT NULL, item_id INTEGER DEFAULT 0 NOT NULL, msg_text TEXT,"
+                    + " in_reply_to_id INTEGER DEFAULT 0 NOT NULL, recipient_id INTEGER DEFAULT 0 NOT NULL,"
+                    + " created_date INTEGER NOT NULL, failures INTEGER DEFAULT 0 NOT NULL,"
+                    + " failed_date INTEGER DEFAULT 0 NOT NULL)";
+            db.execSQL(sql);
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    private int convert18to19(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 19;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            sql = "CREATE TABLE changelog (_id INTEGER PRIMARY KEY AUTOINCREMENT, entity INTEGER NOT NULL,"
+                    + " entity_id INTEGER DEFAULT 0 NOT NULL, change_type INTEGER NOT NULL,"
+                    + " changed_date INTEGER NOT NULL)";
+            db.execSQL(sql);
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    private int convert19to20(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 20;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            sql = "ALTER TABLE msg ADD COLUMN body_plain TEXT";
+            db.execSQL(sql);
+            sql = "ALTER TABLE msg ADD COLUMN mentions TEXT";
+            db.execSQL(sql);
+            sql = "ALTER TABLE msg ADD COLUMN hashtags TEXT";
+            db.execSQL(sql);
+            sql = "ALTER TABLE msg ADD COLUMN urls TEXT";
+            db.execSQL(sql);
+            sql = "backfill";
+            processMessageTexts(db);
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    private int convert20to21(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 21;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            sql = "ALTER TABLE msg ADD COLUMN thread_id INTEGER";
+            db.execSQL(sql);
+            sql = "ALTER TABLE msg ADD COLUMN thread_depth INTEGER";
+            db.execSQL(sql);
+            sql = "ALTER TABLE msg ADD COLUMN thread_path TEXT";
+            db.execSQL(sql);
+            sql = "CREATE INDEX idx_msg_thread ON msg (thread_id, thread_path)";
+            db.execSQL(sql);
+            sql = "backfill";
+            MsgThreads.assignAll(db);
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    private int convert21to22(SQLiteDatabase db, int oldVersion) {
+        final int versionTo = 22;
+        boolean ok = false;
+        String sql = "";
+        try {
+            MyLog.i(this, "Database upgrading step from version " + oldVersion + " to version " + versionTo );
+
+            for (String timeline : new String[] {"home", "favorites", "direct", "mentions", "user"}) {
+                sql = "ALTER TABLE user ADD COLUMN " + timeline + "_timeline_first_date INTEGER DEFAULT 0 NOT NULL";
+                db.execSQL(sql);
+                // We don't know, when they were downloaded for the first time
+                sql = "UPDATE user SET " + timeline + "_timeline_first_date=" + timeline + "_timeline_date";
+                db.execSQL(sql);
+            }
+
+            ok = true;
+        } catch (Exception e) {
+            MyLog.e(this, e);
+        }
+        if (ok) {
+            MyLog.i(this, "Database upgrading step successfully upgraded database from " + oldVersion + " to version " + versionTo);
+        } else {
+            MyLog.e(this, "Database upgrading step failed to upgrade database from " + oldVersion 
+                    + " to version " + versionTo
+                    + " SQL='" + sql +"'");
+        }
+        return ok ? versionTo : oldVersion;
+    }
+
+    /**
+     * Fills {@link MsgTextValues} of existing messages in batches, so only one batch is in memory
+     */
+    private void processMessageTexts(SQLiteDatabase db) {
+        final int batchSize = 500;
+        long lastMsgId = 0;
+        int count = 0;
+        boolean done = false;
+        while (!done) {
+            Cursor cursor = null;
+            try {
+                cursor = db.rawQuery("SELECT msg._id, msg.body, COALESCE(origin.allow_html, 1)"
+                        + " FROM msg LEFT JOIN origin ON msg.origin_id=origin._id"
+                        + " WHERE msg._id>" + lastMsgId + " ORDER BY msg._id LIMIT " + batchSize, null);
+                done = cursor.getCount() < batchSize;
+                while (cursor.moveToNext()) {
+                    lastMsgId = cursor.getLong(0);
+                    ContentValues values = new ContentValues();
+                    MsgTextValues.fromBody(cursor.getString(1), cursor.getInt(2) != 0).toContentValues(values);
+                    db.update("msg", values, "_id=" + lastMsgId, null);
+                    count++;
+                }
+            } finally {
+                DbUtils.closeSilently(cursor);
+            }
+        }
+        MyLog.i(this, "Processed texts of " + count + " messages");
+    }
 }
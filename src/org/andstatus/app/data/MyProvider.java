@@ -51,6 +51,7 @@ import org.andstatus.app.data.MyDatabase.MsgOfUser;
 import org.andstatus.app.data.MyDatabase.OidEnum;
 import org.andstatus.app.data.MyDatabase.Origin;
 import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.data.TimelineSqlCache.TimelineSql;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
@@ -83,6 +84,13 @@ public class MyProvider extends ContentProvider {
         MSG_PROJECTION_MAP.put(Msg.SENDER_ID, Msg.SENDER_ID);
         MSG_PROJECTION_MAP.put(User.SENDER_NAME, User.SENDER_NAME);
         MSG_PROJECTION_MAP.put(Msg.BODY, Msg.BODY);
+        MSG_PROJECTION_MAP.put(Msg.BODY_PLAIN, Msg.BODY_PLAIN);
+        MSG_PROJECTION_MAP.put(Msg.MENTIONS, Msg.MENTIONS);
+        MSG_PROJECTION_MAP.put(Msg.HASHTAGS, Msg.HASHTAGS);
+        MSG_PROJECTION_MAP.put(Msg.URLS, Msg.URLS);
+        MSG_PROJECTION_MAP.put(Msg.THREAD_ID, Msg.THREAD_ID);
+        MSG_PROJECTION_MAP.put(Msg.THREAD_DEPTH, Msg.THREAD_DEPTH);
+        MSG_PROJECTION_MAP.put(Msg.THREAD_PATH, Msg.THREAD_PATH);
         MSG_PROJECTION_MAP.put(Msg.VIA, Msg.VIA);
         MSG_PROJECTION_MAP.put(Msg.URL, Msg.URL);
         MSG_PROJECTION_MAP.put(Msg.IN_REPLY_TO_MSG_ID, Msg.IN_REPLY_TO_MSG_ID);
@@ -103,6 +111,26 @@ public class MyProvider extends ContentProvider {
         MSG_PROJECTION_MAP.put(FollowingUser.SENDER_FOLLOWED, FollowingUser.SENDER_FOLLOWED);
     }
 
+    /**
+     * Everything, what actions on one message (its context menu, sharing...) need, in one row.
+     * To be used with {@link TimelineTypeEnum#MESSAGESTOACT} timeline
+     */
+    public static final String[] MSG_DETAILS_PROJECTION = new String[] {
+            BaseColumns._ID,
+            Msg.ORIGIN_ID,
+            Msg.BODY,
+            Msg.BODY_PLAIN,
+            Msg.SENDER_ID,
+            User.SENDER_NAME,
+            Msg.AUTHOR_ID,
+            User.AUTHOR_NAME,
+            Msg.RECIPIENT_ID,
+            MsgOfUser.FAVORITED,
+            MsgOfUser.REBLOGGED,
+            FollowingUser.SENDER_FOLLOWED,
+            FollowingUser.AUTHOR_FOLLOWED
+    };
+
     /**
      * Projection map for the {@link MyDatabase.User} table
      */
@@ -155,6 +183,11 @@ public class MyProvider extends ContentProvider {
      * We add this path segment after the {@link #TIMELINE_URI} to form search URI 
      */
     public static final String SEARCH_SEGMENT = "search";
+    /**
+     * We add this path segment and {@link MyDatabase.Msg#THREAD_ID} after the {@link #TIMELINE_URI} 
+     * to form URI of all messages of the thread
+     */
+    private static final String THREAD_SEGMENT = "thread";
 
     private static final UriMatcher URI_MATCHER = new UriMatcher(UriMatcher.NO_MATCH);
     static {
@@ -164,9 +197,11 @@ public class MyProvider extends ContentProvider {
          * 2 - 3. "tt/" +  {@link MyDatabase.TimelineTypeEnum.save()} - The timeline type 
          * 4 - 5. "combined/" +  0 or 1  (1 for combined timeline) 
          * 6 - 7. MyDatabase.MSG_TABLE_NAME + "/" + MSG_ID  (optional, used to access specific Message)
+         *     or "thread/" + THREAD_ID (optional, used to access all messages of the thread)
          */
         URI_MATCHER.addURI(AUTHORITY, TIMELINE_PATH + "/#/tt/*/combined/#/search/*", MatchedUri.TIMELINE_SEARCH.code);
         URI_MATCHER.addURI(AUTHORITY, TIMELINE_PATH + "/#/tt/*/combined/#/" + Msg.TABLE_NAME + "/#", MatchedUri.TIMELINE_MSG_ID.code);
+        URI_MATCHER.addURI(AUTHORITY, TIMELINE_PATH + "/#/tt/*/combined/#/" + THREAD_SEGMENT + "/#", MatchedUri.TIMELINE_THREAD.code);
         URI_MATCHER.addURI(AUTHORITY, TIMELINE_PATH + "/#/tt/*/combined/#", MatchedUri.TIMELINE.code);
 
         URI_MATCHER.addURI(AUTHORITY, Msg.TABLE_NAME + "/count", MatchedUri.MSG_COUNT.code);
@@ -199,6 +234,10 @@ public class MyProvider extends ContentProvider {
          * The Timeline URI contains Message id 
          */
         TIMELINE_MSG_ID(4),
+        /**
+         * The Timeline URI contains id of the thread, see {@link MyDatabase.Msg#THREAD_ID} 
+         */
+        TIMELINE_THREAD(9),
         ORIGIN(8),
         /**
          * Matched code for the list of Users
@@ -272,6 +311,7 @@ public class MyProvider extends ContentProvider {
             case MSG:
             case TIMELINE:
             case TIMELINE_SEARCH:
+            case TIMELINE_THREAD:
             case MSG_COUNT:
                 type = MyProvider.MSG_CONTENT_TYPE;
                 break;
@@ -321,6 +361,9 @@ public class MyProvider extends ContentProvider {
                     // Now delete messages themselves
                     sqlDesc = selection + descSuffix;
                     count = db.delete(Msg.TABLE_NAME, selection, selectionArgs);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.MSG, ChangeLog.MANY_ROWS, ChangeLog.ChangeType.DELETED);
+                    }
                     /*
                     if (count > 0) {
                         // Now delete all related records from MyDatabase.MsgOfUser which don't have their messages
@@ -344,15 +387,33 @@ public class MyProvider extends ContentProvider {
                 break;
 
             case USERS:
-                count = db.delete(User.TABLE_NAME, selection, selectionArgs);
+                db.beginTransaction();
+                try {
+                    count = db.delete(User.TABLE_NAME, selection, selectionArgs);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.USER, ChangeLog.MANY_ROWS, ChangeLog.ChangeType.DELETED);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 break;
 
             case USER:
                 // TODO: Delete related records also... 
                 long userId = uriToUserId(uri);
-                count = db.delete(User.TABLE_NAME, BaseColumns._ID + "=" + userId
-                        + (!TextUtils.isEmpty(selection) ? " AND (" + selection + ')' : ""),
-                        selectionArgs);
+                db.beginTransaction();
+                try {
+                    count = db.delete(User.TABLE_NAME, BaseColumns._ID + "=" + userId
+                            + (!TextUtils.isEmpty(selection) ? " AND (" + selection + ')' : ""),
+                            selectionArgs);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.USER, userId, ChangeLog.ChangeType.DELETED);
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 break;
 
             default:
@@ -373,6 +434,7 @@ public class MyProvider extends ContentProvider {
         ContentValues values;
         MsgOfUserValues msgOfUserValues = new MsgOfUserValues(0);
         FollowingUserValues followingUserValues = null;
+        ChangeLog.Entity changedEntity = null;
         long accountUserId = 0;
         
         long rowId;
@@ -412,6 +474,7 @@ public class MyProvider extends ContentProvider {
                     values.put(Msg.INS_DATE, now);
                     
                     msgOfUserValues = MsgOfUserValues.valueOf(accountUserId, values);
+                    changedEntity = ChangeLog.Entity.MSG;
                     break;
                     
                 case ORIGIN:
@@ -423,25 +486,39 @@ public class MyProvider extends ContentProvider {
                     values.put(User.INS_DATE, now);
                     accountUserId = uriToAccountUserId(uri);
                     followingUserValues = FollowingUserValues.valueOf(accountUserId, 0, values);
+                    changedEntity = ChangeLog.Entity.USER;
                     break;
                     
                 default:
                     throw new IllegalArgumentException("Unknown URI " + uri);
             }
 
-            rowId = db.insert(table, null, values);
-            if (rowId == -1) {
-                throw new SQLException("Failed to insert row into " + uri);
-            } else if ( User.TABLE_NAME.equals(table)) {
-                loadAvatar(rowId, values);
-            }
-            
-            msgOfUserValues.setMsgId(rowId);
-            msgOfUserValues.insert(db);
+            db.beginTransaction();
+            try {
+                if (matchedUri == MatchedUri.TIMELINE) {
+                    MsgThreads.putNewPosition(db, values);
+                }
+                rowId = db.insert(table, null, values);
+                if (rowId == -1) {
+                    throw new SQLException("Failed to insert row into " + uri);
+                }
+
+                msgOfUserValues.setMsgId(rowId);
+                msgOfUserValues.insert(db);
 
-            if (followingUserValues != null) {
-                followingUserValues.followingUserId =  rowId;
-                followingUserValues.update(db);
+                if (followingUserValues != null) {
+                    followingUserValues.followingUserId =  rowId;
+                    followingUserValues.update(db);
+                }
+                if (changedEntity != null) {
+                    ChangeLog.append(db, changedEntity, rowId, ChangeLog.ChangeType.INSERTED);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if ( User.TABLE_NAME.equals(table)) {
+                loadAvatar(rowId, values);
             }
 
             switch (matchedUri) {
@@ -528,12 +605,14 @@ public class MyProvider extends ContentProvider {
         String selection = selectionIn;
         String[] selectionArgs = selectionArgsIn; 
         String sql = "";
+        TimelineSql timelineSql = null;
 
         MatchedUri matchedUri = MatchedUri.fromInt(URI_MATCHER.match(uri));
         switch (matchedUri) {
             case TIMELINE:
                 qb.setDistinct(true);
-                qb.setTables(tablesForTimeline(uri, projection));
+                timelineSql = tablesForTimeline(uri, projection);
+                qb.setTables(timelineSql.tables);
                 qb.setProjectionMap(MSG_PROJECTION_MAP);
                 break;
 
@@ -545,13 +624,22 @@ public class MyProvider extends ContentProvider {
                 break;
 
             case TIMELINE_MSG_ID:
-                qb.setTables(tablesForTimeline(uri, projection));
+                timelineSql = tablesForTimeline(uri, projection);
+                qb.setTables(timelineSql.tables);
                 qb.setProjectionMap(MSG_PROJECTION_MAP);
                 qb.appendWhere(MSG_TABLE_ALIAS + "." + BaseColumns._ID + "=" + uriToMessageId(uri));
                 break;
 
+            case TIMELINE_THREAD:
+                timelineSql = tablesForTimeline(uri, projection);
+                qb.setTables(timelineSql.tables);
+                qb.setProjectionMap(MSG_PROJECTION_MAP);
+                qb.appendWhere(MSG_TABLE_ALIAS + "." + Msg.THREAD_ID + "=" + uriToThreadId(uri));
+                break;
+
             case TIMELINE_SEARCH:
-                qb.setTables(tablesForTimeline(uri, projection));
+                timelineSql = tablesForTimeline(uri, projection);
+                qb.setTables(timelineSql.tables);
                 qb.setProjectionMap(MSG_PROJECTION_MAP);
                 String s1 = uri.getLastPathSegment();
                 if (s1 != null) {
@@ -572,12 +660,22 @@ public class MyProvider extends ContentProvider {
                     } else {
                         selection = "";
                     }
-                    /// TODO: Search in MyDatabase.User.USERNAME also
-                    selection = "(" + User.AUTHOR_NAME + " LIKE ?  OR " + Msg.BODY
-                            + " LIKE ?)" + selection;
+                    if (s1.length() > 1 && s1.startsWith("#")) {
+                        // Whole hashtags only, using results of the text processing
+                        selection = "(" + Msg.HASHTAGS + " LIKE ?" + MsgTextValues.LIKE_ESCAPE + ")" + selection;
+                        selectionArgs = addBeforeArray(selectionArgs, MsgTextValues.toLikeArgument(s1.substring(1)));
+                    } else if (s1.length() > 1 && s1.startsWith("@")) {
+                        selection = "(" + Msg.MENTIONS + " LIKE ?" + MsgTextValues.LIKE_ESCAPE + ")" + selection;
+                        selectionArgs = addBeforeArray(selectionArgs, MsgTextValues.toLikeArgument(s1.substring(1)));
+                    } else {
+                        /// TODO: Search in MyDatabase.User.USERNAME also
+                        selection = "(" + User.AUTHOR_NAME + " LIKE ?" + MsgTextValues.LIKE_ESCAPE 
+                                + " OR " + Msg.BODY_PLAIN + " LIKE ?" + MsgTextValues.LIKE_ESCAPE + ")" + selection;
 
-                    selectionArgs = addBeforeArray(selectionArgs, "%" + s1 + "%");
-                    selectionArgs = addBeforeArray(selectionArgs, "%" + s1 + "%");
+                        String likeArgument = "%" + MsgTextValues.escapeLike(s1) + "%";
+                        selectionArgs = addBeforeArray(selectionArgs, likeArgument);
+                        selectionArgs = addBeforeArray(selectionArgs, likeArgument);
+                    }
                 }
                 break;
 
@@ -611,6 +709,10 @@ public class MyProvider extends ContentProvider {
                     orderBy = Msg.DEFAULT_SORT_ORDER;
                     break;
 
+                case TIMELINE_THREAD:
+                    orderBy = MsgThreads.THREAD_SORT_ORDER;
+                    break;
+
                 case MSG_COUNT:
                     orderBy = "";
                     break;
@@ -628,6 +730,11 @@ public class MyProvider extends ContentProvider {
             orderBy = sortOrder;
         }
 
+        if (timelineSql != null && timelineSql.args.length > 0) {
+            // Parameters of the tables go before parameters of the selection
+            selectionArgs = addBeforeArray(selectionArgs, timelineSql.args);
+        }
+
         Cursor c = null;
         if (MyContextHolder.get().isReady()) {
             // Get the database and run the query
@@ -673,16 +780,31 @@ public class MyProvider extends ContentProvider {
         return c;
     }
 
+    /**
+     * The same as {@link #newTablesForTimeline(Uri, String[])}, but cached
+     */
+    static TimelineSql tablesForTimeline(Uri uri, String[] projection) {
+        String key = TimelineSqlCache.toKey(uriToTimelineType(uri), uriToIsCombined(uri), uriToAccountUserId(uri), 
+                MyContextHolder.get().persistentAccounts().getVersion(), projection);
+        TimelineSql timelineSql = TimelineSqlCache.get(key);
+        if (timelineSql == null) {
+            timelineSql = newTablesForTimeline(uri, projection);
+            TimelineSqlCache.put(key, timelineSql);
+        }
+        return timelineSql;
+    }
+
     /**
      * @param uri the same as uri for
      *            {@link MyProvider#query(Uri, String[], String, String[], String)}
      * @param projection
-     * @return String for {@link SQLiteQueryBuilder#setTables(String)}
+     * @return String for {@link SQLiteQueryBuilder#setTables(String)} and values of its parameters
      */
-    private static String tablesForTimeline(Uri uri, String[] projection) {
+    static TimelineSql newTablesForTimeline(Uri uri, String[] projection) {
         TimelineTypeEnum tt = uriToTimelineType(uri);
         boolean isCombined = uriToIsCombined(uri);
         AccountUserIds userIds = new AccountUserIds(isCombined, uriToAccountUserId(uri));
+        List<String> args = new ArrayList<String>();
 
         Collection<String> columns = new java.util.HashSet<String>(Arrays.asList(projection));
 
@@ -696,7 +818,7 @@ public class MyProvider extends ContentProvider {
                         + MyDatabase.FollowingUser.USER_FOLLOWED + ", "
                         + FollowingUser.USER_ID + " AS " + User.LINKED_USER_ID
                         + " FROM " + FollowingUser.TABLE_NAME
-                        + " WHERE (" + MyDatabase.User.LINKED_USER_ID + userIds.getSqlUserIds()
+                        + " WHERE (" + MyDatabase.User.LINKED_USER_ID + userIds.getSqlUserIdsTemplate(args)
                         + " AND " + MyDatabase.FollowingUser.USER_FOLLOWED + "=1 )"
                         + ") as fuser";
                 String userTable = User.TABLE_NAME;
@@ -726,8 +848,10 @@ public class MyProvider extends ContentProvider {
                 break;
             case MESSAGESTOACT:
                 if (userIds.getnIds() == 1) {
-                    tables = "(SELECT " + userIds.getAccountUserId() + " AS " + MyDatabase.User.LINKED_USER_ID
+                    // The cast gives the column INTEGER affinity, as if the value were inlined
+                    tables = "(SELECT CAST(? AS INTEGER) AS " + MyDatabase.User.LINKED_USER_ID
                             + ", * FROM " + Msg.TABLE_NAME + ") AS " + MSG_TABLE_ALIAS;
+                    args.add(Long.toString(userIds.getAccountUserId()));
                     linkedUserDefined = true;
                 }
                 break;
@@ -736,7 +860,8 @@ public class MyProvider extends ContentProvider {
                 if (!isCombined) {
                     MyAccount ma = MyContextHolder.get().persistentAccounts().fromUserId(uriToAccountUserId(uri));
                     if (ma != null) {
-                        where += " AND " + Msg.ORIGIN_ID + "=" + ma.getOriginId();
+                        where += " AND " + Msg.ORIGIN_ID + "=?";
+                        args.add(Long.toString(ma.getOriginId()));
                     }
                 }
                 tables = "(SELECT * FROM " + Msg.TABLE_NAME + " WHERE (" + where + ")) AS " + MSG_TABLE_ALIAS;
@@ -762,7 +887,7 @@ public class MyProvider extends ContentProvider {
                     tables += " LEFT JOIN " + tbl;
                     break;
                 default:
-                    tbl += " AND " + MyDatabase.User.LINKED_USER_ID + userIds.getSqlUserIds();
+                    tbl += " AND " + MyDatabase.User.LINKED_USER_ID + userIds.getSqlUserIdsTemplate(args);
                     if (isCombined || tt == TimelineTypeEnum.PUBLIC) {
                         tables += " LEFT OUTER JOIN " + tbl;
                     } else {
@@ -840,9 +965,22 @@ public class MyProvider extends ContentProvider {
                     + "=followingsender." + MyDatabase.FollowingUser.FOLLOWING_USER_ID
                     + ")";
         }
-        return tables;
+        return new TimelineSql(tables, args.toArray(new String[args.size()]));
     }
     
+    private static String[] addBeforeArray(String[] array, String[] before) {
+        int length = 0;
+        if (array != null) {
+            length = array.length;
+        }
+        String[] ans = new String[before.length + length];
+        System.arraycopy(before, 0, ans, 0, before.length);
+        if (length > 0) {
+            System.arraycopy(array, 0, ans, before.length, length);
+        }
+        return ans;
+    }
+
     private static String[] addBeforeArray(String[] array, String s) {
         int length = 0;
         if (array != null) {
@@ -867,44 +1005,64 @@ public class MyProvider extends ContentProvider {
         SQLiteDatabase db = MyContextHolder.get().getDatabase().getWritableDatabase();
         int count = 0;
         long accountUserId = 0;
+        long selectedUserId = 0;
         MatchedUri matchedUri = MatchedUri.fromInt(URI_MATCHER.match(uri));
-        switch (matchedUri) {
-            case MSG:
-                count = db.update(Msg.TABLE_NAME, values, selection, selectionArgs);
-                break;
+        db.beginTransaction();
+        try {
+            switch (matchedUri) {
+                case MSG:
+                    count = db.update(Msg.TABLE_NAME, values, selection, selectionArgs);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.MSG, ChangeLog.MANY_ROWS, ChangeLog.ChangeType.UPDATED);
+                    }
+                    break;
 
-            case TIMELINE_MSG_ID:
-                accountUserId = uriToAccountUserId(uri);
-                long rowId = uriToMessageId(uri);
-                MsgOfUserValues msgOfUserValues = MsgOfUserValues.valueOf(accountUserId, values);
-                msgOfUserValues.setMsgId(rowId);
-                if (values.size() > 0) {
-                    count = db.update(Msg.TABLE_NAME, values, BaseColumns._ID + "=" + rowId
+                case TIMELINE_MSG_ID:
+                    accountUserId = uriToAccountUserId(uri);
+                    long rowId = uriToMessageId(uri);
+                    MsgOfUserValues msgOfUserValues = MsgOfUserValues.valueOf(accountUserId, values);
+                    msgOfUserValues.setMsgId(rowId);
+                    if (values.size() > 0) {
+                        count = db.update(Msg.TABLE_NAME, values, BaseColumns._ID + "=" + rowId
+                                + (!TextUtils.isEmpty(selection) ? " AND (" + selection + ')' : ""),
+                                selectionArgs);
+                    }
+                    count += msgOfUserValues.update(db);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.MSG, rowId, ChangeLog.ChangeType.UPDATED);
+                    }
+                    break;
+
+                case USERS:
+                    count = db.update(User.TABLE_NAME, values, selection, selectionArgs);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.USER, ChangeLog.MANY_ROWS, ChangeLog.ChangeType.UPDATED);
+                    }
+                    break;
+                case USER:
+                    accountUserId = uriToAccountUserId(uri);
+                    selectedUserId = uriToUserId(uri);
+                    FollowingUserValues followingUserValues = FollowingUserValues.valueOf(accountUserId, selectedUserId, values);
+                    count = db.update(User.TABLE_NAME, values, BaseColumns._ID + "=" + selectedUserId
                             + (!TextUtils.isEmpty(selection) ? " AND (" + selection + ')' : ""),
                             selectionArgs);
-                }
-                count += msgOfUserValues.update(db);
-                break;
-
-            case USERS:
-                count = db.update(User.TABLE_NAME, values, selection, selectionArgs);
-                break;
-            case USER:
-                accountUserId = uriToAccountUserId(uri);
-                long selectedUserId = uriToUserId(uri);
-                FollowingUserValues followingUserValues = FollowingUserValues.valueOf(accountUserId, selectedUserId, values);
-                count = db.update(User.TABLE_NAME, values, BaseColumns._ID + "=" + selectedUserId
-                        + (!TextUtils.isEmpty(selection) ? " AND (" + selection + ')' : ""),
-                        selectionArgs);
-                followingUserValues.update(db);
-                loadAvatar(selectedUserId, values);
-                break;
+                    followingUserValues.update(db);
+                    if (count > 0) {
+                        ChangeLog.append(db, ChangeLog.Entity.USER, selectedUserId, ChangeLog.ChangeType.UPDATED);
+                    }
+                    break;
 
-            default:
-                throw new IllegalArgumentException("Unknown URI \"" + uri + "\"; matchedCode="
-                        + matchedUri);
+                default:
+                    throw new IllegalArgumentException("Unknown URI \"" + uri + "\"; matchedCode="
+                            + matchedUri);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (matchedUri == MatchedUri.USER) {
+            loadAvatar(selectedUserId, values);
         }
-
         return count;
     }
     
@@ -1337,6 +1495,16 @@ public class MyProvider extends ContentProvider {
         uri = ContentUris.withAppendedId(uri, msgId);
         return uri;
     }
+
+    /**
+     * Uri for all messages of the thread in the account's timeline, see {@link MyDatabase.Msg#THREAD_ID}
+     */
+    public static Uri getTimelineThreadUri(long accountUserId, TimelineTypeEnum timelineType, boolean isCombined, long threadId) {
+        Uri uri = getTimelineUri(accountUserId, timelineType, isCombined);
+        uri = Uri.withAppendedPath(uri,  THREAD_SEGMENT);
+        uri = ContentUris.withAppendedId(uri, threadId);
+        return uri;
+    }
     
     /**
      * Build a Timeline URI for this User / {@link MyAccount}
@@ -1373,6 +1541,7 @@ public class MyProvider extends ContentProvider {
                 case TIMELINE:
                 case TIMELINE_SEARCH:
                 case TIMELINE_MSG_ID:
+                case TIMELINE_THREAD:
                     isCombined = ( (Long.parseLong(uri.getPathSegments().get(5)) == 0) ? false : true);
                     break;
                 default:
@@ -1396,6 +1565,7 @@ public class MyProvider extends ContentProvider {
                 case TIMELINE:
                 case TIMELINE_SEARCH:
                 case TIMELINE_MSG_ID:
+                case TIMELINE_THREAD:
                     tt = TimelineTypeEnum.load(uri.getPathSegments().get(3));
                     break;
                 default:
@@ -1422,6 +1592,22 @@ public class MyProvider extends ContentProvider {
         }
         return messageId;        
     }
+
+    public static long uriToThreadId(Uri uri) {
+        long threadId = 0;
+        try {
+            switch (MatchedUri.fromInt(URI_MATCHER.match(uri))) {
+                case TIMELINE_THREAD:
+                    threadId = Long.parseLong(uri.getPathSegments().get(7));
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            MyLog.v(TAG, e);
+        }
+        return threadId;        
+    }
     
     public static long uriToAccountUserId(Uri uri) {
         long accountUserId = 0;
@@ -1430,6 +1616,7 @@ public class MyProvider extends ContentProvider {
                 case TIMELINE:
                 case TIMELINE_SEARCH:
                 case TIMELINE_MSG_ID:
+                case TIMELINE_THREAD:
                 case USERS:
                 case USER:
                     accountUserId = Long.parseLong(uri.getPathSegments().get(1));
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.data;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.net.TimelinePosition;
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Position of the oldest downloaded timeline item, so that older items may be downloaded
+ * page by page, see {@link LatestTimelineItem} for the newest one.
+ * Positions are kept in a small SharedPreferences file.
+ * If nothing was saved yet, the position is taken from the oldest stored message of the timeline.
+ */
+public class OldestTimelineItem {
+    private static final String TAG = OldestTimelineItem.class.getSimpleName();
+    static final String FILE_NAME = "oldest_timeline_items";
+    private static final String KEY_SEPARATOR = "_";
+
+    private final String key;
+    private TimelinePosition position = TimelinePosition.getEmpty();
+    /** 0 - none were downloaded */
+    private long timelineItemDate = 0;
+    private boolean changed = false;
+
+    /**
+     * @param userId Id of the User of this timeline
+     */
+    public OldestTimelineItem(TimelineTypeEnum timelineType, long userId) {
+        key = timelineType.save() + KEY_SEPARATOR + userId;
+        SharedPreferences sp = MyPreferences.getSharedPreferences(FILE_NAME);
+        if (sp != null) {
+            timelineItemDate = sp.getLong(key + KEY_SEPARATOR + "date", 0);
+            if (timelineItemDate != 0) {
+                position = new TimelinePosition(sp.getString(key + KEY_SEPARATOR + "position", ""));
+            }
+        }
+        if (timelineItemDate == 0) {
+            loadOldestStoredMessage(timelineType, userId);
+        }
+    }
+
+    private void loadOldestStoredMessage(TimelineTypeEnum timelineType, long userId) {
+        String condition = getTimelineCondition(timelineType, userId);
+        if (condition == null || MyContextHolder.get().getDatabase() == null) {
+            return;
+        }
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
+            cursor = db.rawQuery("SELECT " + Msg.MSG_OID + ", " + Msg.SENT_DATE
+                    + " FROM " + Msg.TABLE_NAME + " WHERE " + condition
+                    + " AND " + Msg.SENT_DATE + " > 0"
+                    + " ORDER BY " + Msg.SENT_DATE + " ASC LIMIT 1", null);
+            if (cursor.moveToFirst() && !TextUtils.isEmpty(cursor.getString(0))) {
+                onNewMsg(new TimelinePosition(cursor.getString(0)), cursor.getLong(1));
+                MyLog.v(TAG, "From stored messages " + this);
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    /**
+     * @return null if the messages of the timeline cannot be selected from the database
+     */
+    private static String getTimelineCondition(TimelineTypeEnum timelineType, long userId) {
+        String flag;
+        switch (timelineType) {
+            case HOME:
+                flag = MsgOfUser.SUBSCRIBED;
+                break;
+            case MENTIONS:
+                flag = MsgOfUser.MENTIONED;
+                break;
+            case FAVORITES:
+                flag = MsgOfUser.FAVORITED;
+                break;
+            case DIRECT:
+                flag = MsgOfUser.DIRECTED;
+                break;
+            case USER:
+                return "(" + Msg.AUTHOR_ID + "=" + userId + " OR " + Msg.SENDER_ID + "=" + userId + ")";
+            default:
+                return null;
+        }
+        return Msg._ID + " IN (SELECT " + MsgOfUser.MSG_ID + " FROM " + MsgOfUser.TABLE_NAME
+                + " WHERE " + MsgOfUser.USER_ID + "=" + userId + " AND " + flag + "=1)";
+    }
+
+    /**
+     * @return empty if nothing was downloaded yet
+     */
+    public TimelinePosition getPosition() {
+        return position;
+    }
+
+    public long getTimelineItemDate() {
+        return timelineItemDate;
+    }
+
+    /** A Timeline Item was downloaded */
+    public void onNewMsg(TimelinePosition timelineItemPosition, long timelineItemDate) {
+        if (timelineItemPosition != null
+                && !timelineItemPosition.isEmpty()
+                && timelineItemDate > 0
+                && (this.timelineItemDate == 0 || timelineItemDate < this.timelineItemDate)) {
+            this.timelineItemDate = timelineItemDate;
+            this.position = timelineItemPosition;
+            changed = true;
+        }
+    }
+
+    public void save() {
+        if (!changed) {
+            return;
+        }
+        SharedPreferences sp = MyPreferences.getSharedPreferences(FILE_NAME);
+        if (sp != null) {
+            sp.edit().putLong(key + KEY_SEPARATOR + "date", timelineItemDate)
+                    .putString(key + KEY_SEPARATOR + "position", position.getPosition()).commit();
+            changed = false;
+            MyLog.v(TAG, "Saved " + this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return TAG + "[" + key + ", position=" + position + ", date=" + timelineItemDate + "]";
+    }
+}
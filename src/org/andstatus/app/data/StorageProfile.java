@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Connection configuration of the database: journaling, durability, page cache
+ * and checkpoint policy. Selected in the Preferences, applied when the database is opened.
+ * See <a href="http://www.sqlite.org/wal.html">Write-Ahead Logging</a>
+ */
+public enum StorageProfile {
+    /** Rollback journal and SQLite defaults, as in previous versions of AndStatus */
+    LEGACY("legacy", false, "FULL", 0, 0, 0),
+    /**
+     * Readers don't wait for the writer and vice versa. "NORMAL" synchronous mode
+     * is still durable in WAL mode except for a power loss
+     */
+    WAL("wal", true, "NORMAL", 2000, 8 * 1024 * 1024, 1000);
+
+    private static final String TAG = StorageProfile.class.getSimpleName();
+    public static final StorageProfile DEFAULT = WAL;
+    /** WAL needs API 11 */
+    static final int MIN_SDK_FOR_WAL = 11;
+    /**
+     * Memory mapped I/O needs SQLite 3.7.17. API 19 bundles 3.7.11, which ignores the pragma,
+     * and API 21 bundles 3.8.4
+     */
+    static final int MIN_SDK_FOR_MMAP = 21;
+    /** Used for newly created databases only */
+    static final int PAGE_SIZE_BYTES = 4096;
+
+    private final String code;
+    private final boolean writeAheadLogging;
+    private final String synchronous;
+    /** 0 means SQLite default */
+    private final int cacheSizePages;
+    private final long mmapSizeBytes;
+    /** Size of the log, when the writer checkpoints it automatically */
+    private final int autoCheckpointPages;
+
+    private StorageProfile(String code, boolean writeAheadLogging, String synchronous,
+            int cacheSizePages, long mmapSizeBytes, int autoCheckpointPages) {
+        this.code = code;
+        this.writeAheadLogging = writeAheadLogging;
+        this.synchronous = synchronous;
+        this.cacheSizePages = cacheSizePages;
+        this.mmapSizeBytes = mmapSizeBytes;
+        this.autoCheckpointPages = autoCheckpointPages;
+    }
+
+    public static StorageProfile load(String code) {
+        for (StorageProfile profile : values()) {
+            if (profile.code.equals(code)) {
+                return profile;
+            }
+        }
+        return DEFAULT;
+    }
+
+    public static StorageProfile fromPreferences() {
+        return load(MyPreferences.getDefaultSharedPreferences().getString(
+                MyPreferences.KEY_STORAGE_PROFILE, DEFAULT.save()));
+    }
+
+    public String save() {
+        return code;
+    }
+
+    /**
+     * @return true if WAL is requested and supported
+     */
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging && android.os.Build.VERSION.SDK_INT >= MIN_SDK_FOR_WAL;
+    }
+
+    /**
+     * Should be called for a newly created and still empty database
+     */
+    void onCreate(SQLiteDatabase db) {
+        if (!isWriteAheadLogging()) {
+            pragma(db, "page_size=" + PAGE_SIZE_BYTES);
+        }
+    }
+
+    /**
+     * Applies the profile to the opened database outside of a transaction.
+     * WAL is enabled here for API 11 - 15 only, see {@link MyDatabase#MyDatabase(android.content.Context)}
+     */
+    public void applyTo(SQLiteDatabase db) {
+        if (db.isReadOnly()) {
+            return;
+        }
+        if (isWriteAheadLogging()) {
+            if (android.os.Build.VERSION.SDK_INT < 16) {
+                db.enableWriteAheadLogging();
+            }
+        } else if (android.os.Build.VERSION.SDK_INT >= MIN_SDK_FOR_WAL
+                && android.os.Build.VERSION.SDK_INT < 16
+                && "wal".equalsIgnoreCase(pragma(db, "journal_mode"))) {
+            // The profile was switched from WAL
+            pragma(db, "journal_mode=DELETE");
+        }
+        pragma(db, "synchronous=" + synchronous);
+        if (cacheSizePages > 0) {
+            pragma(db, "cache_size=" + cacheSizePages);
+        }
+        if (mmapSizeBytes > 0 && android.os.Build.VERSION.SDK_INT >= MIN_SDK_FOR_MMAP) {
+            // SQLite without memory mapped I/O silently ignores the pragma and returns no row
+            String mmapSize = pragma(db, "mmap_size=" + mmapSizeBytes);
+            if (mmapSize.length() == 0) {
+                MyLog.v(TAG, "Memory mapped I/O is not supported by this SQLite");
+            }
+        }
+        if (isWriteAheadLogging() && autoCheckpointPages > 0) {
+            pragma(db, "wal_autocheckpoint=" + autoCheckpointPages);
+        }
+        MyLog.v(TAG, "Applied " + this + "; journal_mode=" + pragma(db, "journal_mode")
+                + ", synchronous=" + pragma(db, "synchronous") + ", page_size=" + pragma(db, "page_size"));
+    }
+
+    /**
+     * Moves the log content to the database without blocking readers and writers,
+     * so the log doesn't grow while commands are executed one after another
+     */
+    public void checkpoint(SQLiteDatabase db) {
+        if (isWriteAheadLogging() && !db.isReadOnly() && !db.inTransaction()) {
+            long startedAt = System.currentTimeMillis();
+            pragma(db, "wal_checkpoint(PASSIVE)");
+            MyLog.v(TAG, "Checkpoint took " + (System.currentTimeMillis() - startedAt) + "ms");
+        }
+    }
+
+    /**
+     * Some pragmas return a row, so execSQL cannot be used for them
+     * @return the first column of the first row or empty string
+     */
+    static String pragma(SQLiteDatabase db, String pragma) {
+        String value = "";
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("PRAGMA " + pragma, null);
+            if (cursor.moveToFirst()) {
+                value = cursor.getString(0);
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.text.TextUtils;
+
+import org.andstatus.app.data.MyDatabase.FollowingUser;
+import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.SharedPreferencesUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Users, which {@link DataInserter} has already stored during one command execution,
+ * with fingerprints of their stored profiles. So a user, who appears on a page again and again,
+ * is looked up and written at most once, and only when some field of the profile actually changed
+ */
+final class StoredUsers {
+    private static final String TAG = StoredUsers.class.getSimpleName();
+    /** Columns of a profile, which are compared */
+    static final String[] PROFILE_COLUMNS = {
+            User.REAL_NAME, User.AVATAR_URL, User.DESCRIPTION, User.HOMEPAGE, User.URL, User.CREATED_DATE,
+            FollowingUser.USER_FOLLOWED
+    };
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    static final class Entry {
+        final long userId;
+        /** Stored values of the profile columns */
+        private final Map<String, String> fingerprint = new HashMap<String, String>();
+
+        private Entry(long userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * @return empty string if the user cannot be identified
+     */
+    static String toKey(long originId, String userOid, String userName) {
+        if (!SharedPreferencesUtil.isEmpty(userOid)) {
+            return originId + "/oid/" + userOid;
+        } else if (!SharedPreferencesUtil.isEmpty(userName)) {
+            return originId + "/name/" + userName;
+        }
+        return "";
+    }
+
+    /**
+     * @return null if the user wasn't stored yet
+     */
+    Entry get(String key) {
+        return TextUtils.isEmpty(key) ? null : entries.get(key);
+    }
+
+    /**
+     * Remembers, that the values are stored now
+     */
+    void onStored(String key, long userId, ContentValues values) {
+        if (TextUtils.isEmpty(key) || userId == 0) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null || entry.userId != userId) {
+            entry = new Entry(userId);
+            entries.put(key, entry);
+        }
+        for (String column : PROFILE_COLUMNS) {
+            if (values.containsKey(column)) {
+                entry.fingerprint.put(column, valueToString(column, values.get(column)));
+            }
+        }
+    }
+
+    /**
+     * Removes values, which are the same as the ones we stored during this execution
+     */
+    static void removeUnchanged(Entry entry, ContentValues values) {
+        for (String column : PROFILE_COLUMNS) {
+            if (values.containsKey(column)
+                    && valueToString(column, values.get(column)).equals(entry.fingerprint.get(column))) {
+                values.remove(column);
+            }
+        }
+    }
+
+    /**
+     * Removes values, which are the same in the database
+     * @param followerId The User, whose "following" flag for this user may be in the values
+     */
+    static void removeUnchanged(SQLiteDatabase db, long userId, long followerId, ContentValues values) {
+        String sql = "SELECT " + User.REAL_NAME + ", " + User.AVATAR_URL + ", " + User.DESCRIPTION + ", "
+                + User.HOMEPAGE + ", " + User.URL + ", " + User.CREATED_DATE + ", "
+                + "(SELECT " + FollowingUser.USER_FOLLOWED + " FROM " + FollowingUser.TABLE_NAME
+                + " WHERE " + FollowingUser.USER_ID + "=" + followerId
+                + " AND " + FollowingUser.FOLLOWING_USER_ID + "=" + userId + ") AS " + FollowingUser.USER_FOLLOWED
+                + " FROM " + User.TABLE_NAME + " WHERE " + BaseColumns._ID + "=" + userId;
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            if (cursor.moveToFirst()) {
+                for (String column : PROFILE_COLUMNS) {
+                    if (values.containsKey(column)) {
+                        int index = cursor.getColumnIndex(column);
+                        String stored = cursor.isNull(index) ? null : cursor.getString(index);
+                        if (valueToString(column, values.get(column)).equals(valueToString(column, stored))) {
+                            values.remove(column);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // The values will simply be written
+            MyLog.d(TAG, "removeUnchanged, userId=" + userId, e);
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    private static String valueToString(String column, Object value) {
+        if (FollowingUser.USER_FOLLOWED.equals(column)) {
+            return SharedPreferencesUtil.isTrue(value) ? "1" : "0";
+        }
+        return value == null ? "" : value.toString();
+    }
+}
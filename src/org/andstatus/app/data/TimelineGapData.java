@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.MyDatabase.TimelineGap;
+import org.andstatus.app.net.TimelinePosition;
+import org.andstatus.app.service.CommandData;
+import org.andstatus.app.service.MyServiceManager;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A known gap in a timeline, i.e. timeline items, which may have been skipped, 
+ * because more of them appeared on the server than were downloaded at once.
+ * The gap is being narrowed from its newer end, as older pages are downloaded.
+ */
+public class TimelineGapData {
+    private static final String TAG = TimelineGapData.class.getSimpleName();
+    /** Older gaps of a timeline are forgotten */
+    static final int MAX_GAPS_PER_TIMELINE = 20;
+
+    private long id = 0;
+    private final long accountUserId;
+    private final TimelineTypeEnum timelineType;
+    private final long userId;
+    private final TimelinePosition sincePosition;
+    private TimelinePosition maxPosition;
+    private long maxDate;
+
+    public TimelineGapData(long accountUserId, TimelineTypeEnum timelineType, long userId, 
+            TimelinePosition sincePosition, TimelinePosition maxPosition, long maxDate) {
+        this.accountUserId = accountUserId;
+        this.timelineType = timelineType;
+        this.userId = userId;
+        this.sincePosition = sincePosition;
+        this.maxPosition = maxPosition;
+        this.maxDate = maxDate;
+    }
+
+    /**
+     * @return null if the gap doesn't exist (e.g. it was filled already)
+     */
+    public static TimelineGapData fromId(long gapId) {
+        List<TimelineGapData> gaps = query(TimelineGap._ID + "=" + gapId);
+        return gaps.isEmpty() ? null : gaps.get(0);
+    }
+
+    /**
+     * @return Gaps of the timeline, the newest first
+     */
+    public static List<TimelineGapData> getGaps(TimelineTypeEnum timelineType, long userId) {
+        return query(TimelineGap.USER_ID + "=" + userId 
+                + " AND " + TimelineGap.TIMELINE_TYPE + "=" + MyProvider.quoteIfNotQuoted(timelineType.save()));
+    }
+
+    private static List<TimelineGapData> query(String where) {
+        List<TimelineGapData> gaps = new ArrayList<TimelineGapData>();
+        String sql = "SELECT " + TimelineGap._ID + ", "
+                + TimelineGap.ACCOUNT_USER_ID + ", "
+                + TimelineGap.TIMELINE_TYPE + ", "
+                + TimelineGap.USER_ID + ", "
+                + TimelineGap.SINCE_POSITION + ", "
+                + TimelineGap.MAX_POSITION + ", "
+                + TimelineGap.MAX_DATE
+                + " FROM " + TimelineGap.TABLE_NAME
+                + " WHERE " + where
+                + " ORDER BY " + TimelineGap.MAX_DATE + " DESC";
+        SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            while (cursor.moveToNext()) {
+                TimelineGapData gap = new TimelineGapData(cursor.getLong(1), 
+                        TimelineTypeEnum.load(cursor.getString(2)), cursor.getLong(3), 
+                        new TimelinePosition(cursor.getString(4)), 
+                        new TimelinePosition(cursor.getString(5)), cursor.getLong(6));
+                gap.id = cursor.getLong(0);
+                gaps.add(gap);
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return gaps;
+    }
+
+    /**
+     * Items up to the position were downloaded, so the gap became narrower
+     */
+    public void onDownloadedDownTo(TimelinePosition position, long date) {
+        maxPosition = position;
+        maxDate = date;
+    }
+
+    public void save() {
+        ContentValues values = new ContentValues();
+        values.put(TimelineGap.MAX_POSITION, maxPosition.getPosition());
+        values.put(TimelineGap.MAX_DATE, maxDate);
+        if (id == 0) {
+            values.put(TimelineGap.ACCOUNT_USER_ID, accountUserId);
+            values.put(TimelineGap.TIMELINE_TYPE, timelineType.save());
+            values.put(TimelineGap.USER_ID, userId);
+            values.put(TimelineGap.SINCE_POSITION, sincePosition.getPosition());
+            id = DbUtils.addRowWithRetry(TimelineGap.TABLE_NAME, values, 3);
+            if (id == -1) {
+                id = 0;
+            } else {
+                deleteOldGaps();
+            }
+        } else {
+            DbUtils.updateRowWithRetry(TimelineGap.TABLE_NAME, id, values, 3);
+        }
+        MyLog.v(this, "Saved " + this);
+    }
+
+    private void deleteOldGaps() {
+        String where = TimelineGap.USER_ID + "=" + userId 
+                + " AND " + TimelineGap.TIMELINE_TYPE + "=" + MyProvider.quoteIfNotQuoted(timelineType.save());
+        String sql = "DELETE FROM " + TimelineGap.TABLE_NAME + " WHERE " + where
+                + " AND " + TimelineGap._ID + " NOT IN (SELECT " + TimelineGap._ID 
+                + " FROM " + TimelineGap.TABLE_NAME + " WHERE " + where
+                + " ORDER BY " + TimelineGap.MAX_DATE + " DESC LIMIT " + MAX_GAPS_PER_TIMELINE + ")";
+        try {
+            MyContextHolder.get().getDatabase().getWritableDatabase().execSQL(sql);
+        } catch (Exception e) {
+            MyLog.e(this, "deleteOldGaps: sql='" + sql + "'", e);
+        }
+    }
+
+    /**
+     * The gap was filled or it cannot be filled
+     */
+    public void delete() {
+        if (id != 0) {
+            MyContextHolder.get().getDatabase().getWritableDatabase()
+                    .delete(TimelineGap.TABLE_NAME, TimelineGap._ID + "=" + id, null);
+            MyLog.v(this, "Deleted " + this);
+            id = 0;
+        }
+    }
+
+    /**
+     * Ask {@link org.andstatus.app.service.MyService} to download items of this gap
+     * @param inForeground true if the User is waiting for the result
+     */
+    public void requestDownload(boolean inForeground) {
+        if (id == 0) {
+            return;
+        }
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromUserId(accountUserId);
+        if (ma == null) {
+            MyLog.v(this, "No account for " + this);
+            delete();
+            return;
+        }
+        MyServiceManager.sendCommand(CommandData.fetchGapCommand(ma.getAccountName(), timelineType, id)
+                .setInForeground(inForeground));
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getAccountUserId() {
+        return accountUserId;
+    }
+
+    public TimelineTypeEnum getTimelineType() {
+        return timelineType;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public TimelinePosition getSincePosition() {
+        return sincePosition;
+    }
+
+    public TimelinePosition getMaxPosition() {
+        return maxPosition;
+    }
+
+    public long getMaxDate() {
+        return maxDate;
+    }
+
+    @Override
+    public String toString() {
+        return TAG + "[id=" + id + ", " + timelineType + ", userId=" + userId 
+                + ", since=" + sincePosition.getPosition() + ", max=" + maxPosition.getPosition() + "]";
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.MyDatabase.Avatar;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.data.MyDatabase.User;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable rows of a Timeline list, copied from a Cursor once, off the UI thread.
+ * Values are kept in arrays per column, equal strings are shared, bodies and details (except for
+ * the relative time) are rendered already, so binding of a row needs neither the Cursor nor column lookups.
+ */
+public final class TimelinePage {
+    public static final TimelinePage EMPTY = new TimelinePage(0);
+
+    private final int count;
+    private final long[] ids;
+    /** Text of {@link #ids}, shown in a hidden view of the row */
+    private final String[] idTexts;
+    private final String[] authorNames;
+    private final CharSequence[] bodies;
+    private final long[] createdDates;
+    /** The list is sorted by these dates, see {@link Msg#DEFAULT_SORT_ORDER} */
+    private final long[] sentDates;
+    private final long[] inReplyToMsgIds;
+    private final String[] inReplyToNames;
+    private final String[] recipientNames;
+    /** Whom the message replies to, see {@link MessageRenderCache#formatDetailsSuffix} */
+    private final String[] detailsSuffixes;
+    private final long[] linkedUserIds;
+
+    private boolean hasFavorited = false;
+    private final boolean[] favorited;
+    /** Replies to one of our accounts */
+    private boolean hasRepliesToAccounts = false;
+    private final boolean[] repliesToAccounts;
+
+    private boolean hasAvatars = false;
+    private final long[] authorIds;
+    private final String[] avatarFileNames;
+    /** Index of the row's author among distinct authors of the page, so avatars may be shared */
+    private final int[] authorIndexes;
+    private int authorsCount = 0;
+
+    private TimelinePage(int count) {
+        this.count = count;
+        ids = new long[count];
+        idTexts = new String[count];
+        authorNames = new String[count];
+        bodies = new CharSequence[count];
+        createdDates = new long[count];
+        sentDates = new long[count];
+        inReplyToMsgIds = new long[count];
+        inReplyToNames = new String[count];
+        recipientNames = new String[count];
+        detailsSuffixes = new String[count];
+        linkedUserIds = new long[count];
+        favorited = new boolean[count];
+        repliesToAccounts = new boolean[count];
+        authorIds = new long[count];
+        avatarFileNames = new String[count];
+        authorIndexes = new int[count];
+    }
+
+    /**
+     * Reads all rows of the cursor and leaves it before the first row.
+     * Bodies and details suffixes are rendered for all rows
+     */
+    public static TimelinePage fromCursor(Context context, Cursor cursor) {
+        if (cursor == null || cursor.isClosed() || cursor.getCount() == 0) {
+            return EMPTY;
+        }
+        TimelinePage page = new TimelinePage(cursor.getCount());
+        page.load(context, cursor, 0);
+        cursor.moveToPosition(-1);
+        return page;
+    }
+
+    /**
+     * @return new page with rows of the previous page, followed by rows of the cursor,
+     *  which should be older than the previous rows, see {@link #getKeysetSelection()}
+     */
+    public static TimelinePage append(Context context, TimelinePage previous, Cursor cursor) {
+        if (cursor == null || cursor.isClosed() || cursor.getCount() == 0) {
+            return previous;
+        }
+        if (previous.getCount() == 0) {
+            return fromCursor(context, cursor);
+        }
+        TimelinePage page = new TimelinePage(previous.count + cursor.getCount());
+        page.copyRows(previous);
+        page.load(context, cursor, previous.count);
+        cursor.moveToPosition(-1);
+        return page;
+    }
+
+    /**
+     * @return this page, if it has no more than maxRows, or a new page with its first maxRows
+     */
+    public TimelinePage head(int maxRows) {
+        if (count <= maxRows) {
+            return this;
+        }
+        TimelinePage page = new TimelinePage(Math.max(maxRows, 0));
+        page.copyRows(this);
+        return page;
+    }
+
+    /**
+     * Copies as many first rows of the page, as fit into this page.
+     * Flags and the number of authors are copied as is, so author indexes stay valid
+     */
+    private void copyRows(TimelinePage from) {
+        int rows = Math.min(from.count, count);
+        System.arraycopy(from.ids, 0, ids, 0, rows);
+        System.arraycopy(from.idTexts, 0, idTexts, 0, rows);
+        System.arraycopy(from.authorNames, 0, authorNames, 0, rows);
+        System.arraycopy(from.bodies, 0, bodies, 0, rows);
+        System.arraycopy(from.createdDates, 0, createdDates, 0, rows);
+        System.arraycopy(from.sentDates, 0, sentDates, 0, rows);
+        System.arraycopy(from.inReplyToMsgIds, 0, inReplyToMsgIds, 0, rows);
+        System.arraycopy(from.inReplyToNames, 0, inReplyToNames, 0, rows);
+        System.arraycopy(from.recipientNames, 0, recipientNames, 0, rows);
+        System.arraycopy(from.detailsSuffixes, 0, detailsSuffixes, 0, rows);
+        System.arraycopy(from.linkedUserIds, 0, linkedUserIds, 0, rows);
+        System.arraycopy(from.favorited, 0, favorited, 0, rows);
+        System.arraycopy(from.repliesToAccounts, 0, repliesToAccounts, 0, rows);
+        System.arraycopy(from.authorIds, 0, authorIds, 0, rows);
+        System.arraycopy(from.avatarFileNames, 0, avatarFileNames, 0, rows);
+        System.arraycopy(from.authorIndexes, 0, authorIndexes, 0, rows);
+        hasFavorited = from.hasFavorited;
+        hasRepliesToAccounts = from.hasRepliesToAccounts;
+        hasAvatars = from.hasAvatars;
+        authorsCount = from.authorsCount;
+    }
+
+    /**
+     * Reads rows of the cursor into positions, starting from the offset
+     */
+    private void load(Context context, Cursor cursor, int offset) {
+        int idIndex = cursor.getColumnIndex(Msg._ID);
+        int authorNameIndex = cursor.getColumnIndex(User.AUTHOR_NAME);
+        int bodyIndex = cursor.getColumnIndex(Msg.BODY);
+        int createdDateIndex = cursor.getColumnIndex(Msg.CREATED_DATE);
+        int sentDateIndex = cursor.getColumnIndex(Msg.SENT_DATE);
+        int inReplyToMsgIdIndex = cursor.getColumnIndex(Msg.IN_REPLY_TO_MSG_ID);
+        int inReplyToNameIndex = cursor.getColumnIndex(User.IN_REPLY_TO_NAME);
+        int recipientNameIndex = cursor.getColumnIndex(User.RECIPIENT_NAME);
+        int linkedUserIdIndex = cursor.getColumnIndex(User.LINKED_USER_ID);
+        int favoritedIndex = cursor.getColumnIndex(MsgOfUser.FAVORITED);
+        int inReplyToUserIdIndex = cursor.getColumnIndex(Msg.IN_REPLY_TO_USER_ID);
+        int authorIdIndex = cursor.getColumnIndex(Msg.AUTHOR_ID);
+        int avatarFileNameIndex = cursor.getColumnIndex(Avatar.FILE_NAME);
+        hasFavorited = favoritedIndex > -1;
+        hasRepliesToAccounts = inReplyToUserIdIndex > -1;
+        hasAvatars = avatarFileNameIndex > -1;
+
+        Map<String, String> strings = new HashMap<String, String>();
+        Map<Long, Integer> authors = new HashMap<Long, Integer>();
+        for (int row = 0; row < offset; row++) {
+            authors.put(authorIds[row], authorIndexes[row]);
+        }
+        for (int row = offset; row < count && cursor.moveToPosition(row - offset); row++) {
+            ids[row] = idIndex > -1 ? cursor.getLong(idIndex) : 0;
+            idTexts[row] = Long.toString(ids[row]);
+            authorNames[row] = getString(cursor, authorNameIndex, strings);
+            String body = getString(cursor, bodyIndex, null);
+            bodies[row] = body == null ? "" : MessageRenderCache.getBody(ids[row], body);
+            createdDates[row] = createdDateIndex > -1 ? cursor.getLong(createdDateIndex) : 0;
+            sentDates[row] = sentDateIndex > -1 ? cursor.getLong(sentDateIndex) : 0;
+            inReplyToMsgIds[row] = inReplyToMsgIdIndex > -1 ? cursor.getLong(inReplyToMsgIdIndex) : 0;
+            if (inReplyToMsgIds[row] != 0) {
+                inReplyToNames[row] = getString(cursor, inReplyToNameIndex, strings);
+            }
+            recipientNames[row] = getString(cursor, recipientNameIndex, strings);
+            detailsSuffixes[row] = MessageRenderCache.formatDetailsSuffix(context, inReplyToMsgIds[row],
+                    inReplyToNames[row], recipientNames[row]);
+            linkedUserIds[row] = linkedUserIdIndex > -1 ? cursor.getLong(linkedUserIdIndex) : 0;
+            favorited[row] = hasFavorited && cursor.getInt(favoritedIndex) == 1;
+            if (hasRepliesToAccounts) {
+                long inReplyToUserId = cursor.getLong(inReplyToUserIdIndex);
+                repliesToAccounts[row] = inReplyToUserId != 0
+                        && MyContextHolder.get().persistentAccounts().fromUserId(inReplyToUserId) != null;
+            }
+            if (hasAvatars) {
+                authorIds[row] = authorIdIndex > -1 ? cursor.getLong(authorIdIndex) : 0;
+                avatarFileNames[row] = getString(cursor, avatarFileNameIndex, strings);
+                Integer authorIndex = authors.get(authorIds[row]);
+                if (authorIndex == null) {
+                    authorIndex = authorsCount++;
+                    authors.put(authorIds[row], authorIndex);
+                }
+                authorIndexes[row] = authorIndex;
+            }
+        }
+    }
+
+    /**
+     * @param strings If not null, equal strings are replaced with the same instance
+     */
+    private static String getString(Cursor cursor, int columnIndex, Map<String, String> strings) {
+        if (columnIndex < 0) {
+            return null;
+        }
+        String value = cursor.getString(columnIndex);
+        if (value != null && strings != null) {
+            String shared = strings.get(value);
+            if (shared == null) {
+                strings.put(value, value);
+            } else {
+                value = shared;
+            }
+        }
+        return value;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getId(int position) {
+        return ids[position];
+    }
+
+    public String getIdText(int position) {
+        return idTexts[position];
+    }
+
+    /**
+     * @return position of the row with the message or -1 if not found
+     */
+    public int positionOf(long msgId) {
+        for (int position = 0; position < count; position++) {
+            if (ids[position] == msgId) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Selection of the next (older) page of keyset paging: rows, sent before the last row of this page,
+     * and rows sent at the same time, which are not in this page yet.
+     * Its single argument is {@link #getKeysetSentDate()}
+     */
+    public String getKeysetSelection() {
+        StringBuilder ids = new StringBuilder();
+        long sentDate = getKeysetSentDate();
+        for (int position = count - 1; position >= 0 && sentDates[position] == sentDate; position--) {
+            if (ids.length() > 0) {
+                ids.append(",");
+            }
+            ids.append(this.ids[position]);
+        }
+        String sentDateColumn = MyProvider.MSG_TABLE_ALIAS + "." + Msg.SENT_DATE;
+        return sentDateColumn + " <= ? AND NOT (" + sentDateColumn + " = " + sentDate
+                + " AND " + MyProvider.MSG_TABLE_ALIAS + "." + Msg._ID + " IN (" + ids + "))";
+    }
+
+    /**
+     * @return the sent date of the last row, 0 for an empty page
+     */
+    public long getKeysetSentDate() {
+        return count == 0 ? 0 : sentDates[count - 1];
+    }
+
+    public String getAuthorName(int position) {
+        return authorNames[position];
+    }
+
+    public CharSequence getBody(int position) {
+        return bodies[position];
+    }
+
+    /**
+     * Relative time of the message and whom it replies to, see {@link MessageRenderCache#getDetails}.
+     * Only the relative time is looked up here, the rest is rendered while loading
+     */
+    public String getDetails(Context context, int position) {
+        return MessageRenderCache.getDetails(context, ids[position], createdDates[position],
+                detailsSuffixes[position]);
+    }
+
+    public long getLinkedUserId(int position) {
+        return linkedUserIds[position];
+    }
+
+    public boolean hasFavorited() {
+        return hasFavorited;
+    }
+
+    public boolean isFavorited(int position) {
+        return favorited[position];
+    }
+
+    public boolean hasRepliesToAccounts() {
+        return hasRepliesToAccounts;
+    }
+
+    public boolean isReplyToAccount(int position) {
+        return repliesToAccounts[position];
+    }
+
+    public boolean hasAvatars() {
+        return hasAvatars;
+    }
+
+    public long getAuthorId(int position) {
+        return authorIds[position];
+    }
+
+    public String getAvatarFileName(int position) {
+        return avatarFileNames[position];
+    }
+
+    /**
+     * @return index of the row's author among {@link #getAuthorsCount()} distinct authors of the page
+     */
+    public int getAuthorIndex(int position) {
+        return authorIndexes[position];
+    }
+
+    public int getAuthorsCount() {
+        return authorsCount;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import org.andstatus.app.util.MyLog;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Table expressions of timeline queries, which were built by {@link MyProvider}.
+ * User Ids are bound as parameters, so the same SQL is prepared for different users
+ * and SQLite may reuse its compiled statements.
+ * Entries depend on the list of accounts, so its version is a part of the key.
+ */
+final class TimelineSqlCache {
+    private static final String TAG = TimelineSqlCache.class.getSimpleName();
+    static final int MAX_SIZE = 64;
+
+    private static final Map<String, TimelineSql> cache = new LinkedHashMap<String, TimelineSql>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TimelineSql> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private static long hits = 0;
+    private static long misses = 0;
+
+    private TimelineSqlCache() {
+    }
+
+    /**
+     * Table expression for {@link android.database.sqlite.SQLiteQueryBuilder#setTables(String)} 
+     * and values of its parameters, which should precede selection arguments of the query
+     */
+    static final class TimelineSql {
+        final String tables;
+        final String[] args;
+
+        TimelineSql(String tables, String[] args) {
+            this.tables = tables;
+            this.args = args;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tables.hashCode() + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TimelineSql)) {
+                return false;
+            }
+            TimelineSql other = (TimelineSql) o;
+            return tables.equals(other.tables) && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public String toString() {
+            return "tables=\"" + tables + "\"; args=" + Arrays.toString(args);
+        }
+    }
+
+    static String toKey(TimelineTypeEnum timelineType, boolean isCombined, long accountUserId, 
+            int accountsVersion, String[] projection) {
+        return timelineType.save() + "," + isCombined + "," + accountUserId + "," + accountsVersion 
+                + "," + Arrays.toString(projection);
+    }
+
+    /**
+     * @return null if not cached
+     */
+    static TimelineSql get(String key) {
+        synchronized (cache) {
+            TimelineSql sql = cache.get(key);
+            if (sql == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return sql;
+        }
+    }
+
+    static void put(String key, TimelineSql sql) {
+        synchronized (cache) {
+            cache.put(key, sql);
+        }
+        if (MyLog.isLoggable(TAG, MyLog.VERBOSE)) {
+            MyLog.v(TAG, "Cached " + key + "; " + getStats());
+        }
+    }
+
+    static long getHits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    static long getMisses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    static String getStats() {
+        synchronized (cache) {
+            return "size=" + cache.size() + ", hits=" + hits + ", misses=" + misses;
+        }
+    }
+
+    static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            hits = 0;
+            misses = 0;
+        }
+    }
+}
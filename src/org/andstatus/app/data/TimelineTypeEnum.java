@@ -32,27 +32,32 @@ public enum TimelineTypeEnum {
      * The Timeline type is unknown
      */
     UNKNOWN("unknown", R.string.unimplemented, 
-            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, Connection.ApiRoutineEnum.DUMMY),
+            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, User.HOME_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.DUMMY),
     /**
      * The Home timeline and other information (replies...).
      */
     HOME("home", R.string.timeline_title_home, 
-            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, Connection.ApiRoutineEnum.STATUSES_HOME_TIMELINE),
+            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, User.HOME_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.STATUSES_HOME_TIMELINE),
     /**
      * The Mentions timeline and other information (replies...).
      */
     MENTIONS("mentions", R.string.timeline_title_mentions, 
-            User.MENTIONS_TIMELINE_POSITION, User.MENTIONS_TIMELINE_ITEM_DATE, User.MENTIONS_TIMELINE_DATE, Connection.ApiRoutineEnum.STATUSES_MENTIONS_TIMELINE),
+            User.MENTIONS_TIMELINE_POSITION, User.MENTIONS_TIMELINE_ITEM_DATE, User.MENTIONS_TIMELINE_DATE, User.MENTIONS_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.STATUSES_MENTIONS_TIMELINE),
     /**
      * Direct messages (direct dents...)
      */
     DIRECT("direct", R.string.timeline_title_direct_messages, 
-            User.DIRECT_TIMELINE_POSITION, User.DIRECT_TIMELINE_ITEM_DATE, User.DIRECT_TIMELINE_DATE, Connection.ApiRoutineEnum.DIRECT_MESSAGES),
+            User.DIRECT_TIMELINE_POSITION, User.DIRECT_TIMELINE_ITEM_DATE, User.DIRECT_TIMELINE_DATE, User.DIRECT_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.DIRECT_MESSAGES),
     /**
      * Favorites (favorited messages)
      */
     FAVORITES("favorites", R.string.timeline_title_favorites, 
-            User.FAVORITES_TIMELINE_POSITION, User.FAVORITES_TIMELINE_ITEM_DATE, User.FAVORITES_TIMELINE_DATE, Connection.ApiRoutineEnum.DUMMY),
+            User.FAVORITES_TIMELINE_POSITION, User.FAVORITES_TIMELINE_ITEM_DATE, User.FAVORITES_TIMELINE_DATE, User.FAVORITES_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.DUMMY),
     /**
      * Messages of the selected User (where he is an Author or a Sender only (e.g. for Reblog/Retweet). 
      * This User may be not the same as a user of current account ( {@link MyAccount#currentAccountName}}.
@@ -60,13 +65,14 @@ public enum TimelineTypeEnum {
      * Hence this timeline type requires the User parameter.
      */
     USER("user", R.string.timeline_title_user, 
-            User.USER_TIMELINE_POSITION, User.USER_TIMELINE_ITEM_DATE, User.USER_TIMELINE_DATE, Connection.ApiRoutineEnum.STATUSES_USER_TIMELINE),
+            User.USER_TIMELINE_POSITION, User.USER_TIMELINE_ITEM_DATE, User.USER_TIMELINE_DATE, User.USER_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.STATUSES_USER_TIMELINE),
     /**
      * For the selected user, the timeline includes all messages of the same origin irrespectively existence
      * of the link between the message and the User. So the User may "Act" on this message.
      */
     MESSAGESTOACT("messages_to_act", R.string.timeline_title_home, 
-            "", "", "", Connection.ApiRoutineEnum.STATUSES_HOME_TIMELINE),
+            "", "", "", "", Connection.ApiRoutineEnum.STATUSES_HOME_TIMELINE),
     /**
      * Latest messages of every user, followed by this User - AndStatus account. 
      * So this is essentially a list of "Following users". 
@@ -74,20 +80,21 @@ public enum TimelineTypeEnum {
      * See {@link FollowingUser}
      */
     FOLLOWING_USER("following_user", R.string.timeline_title_following_user, 
-            "", "", User.FOLLOWING_USER_DATE, Connection.ApiRoutineEnum.GET_FRIENDS_IDS),
+            "", "", User.FOLLOWING_USER_DATE, "", Connection.ApiRoutineEnum.GET_FRIENDS_IDS),
     /**
      * Replies
      */
     REPLIES("replies", R.string.timeline_title_replies, 
-            "", "", "", Connection.ApiRoutineEnum.DUMMY),
+            "", "", "", "", Connection.ApiRoutineEnum.DUMMY),
     PUBLIC("public", R.string.timeline_title_public, 
-            "", "", "", Connection.ApiRoutineEnum.PUBLIC_TIMELINE),
+            "", "", "", "", Connection.ApiRoutineEnum.PUBLIC_TIMELINE),
     /**
      * All timelines (e.g. for download of all timelines. 
      * This is generally done after addition of the new MyAccount).
      */
     ALL("all", R.string.unimplemented, 
-            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, Connection.ApiRoutineEnum.DUMMY);
+            User.HOME_TIMELINE_POSITION, User.HOME_TIMELINE_ITEM_DATE, User.HOME_TIMELINE_DATE, User.HOME_TIMELINE_FIRST_DATE,
+            Connection.ApiRoutineEnum.DUMMY);
     
     /**
      * code of the enum that is used in messages
@@ -109,6 +116,12 @@ public enum TimelineTypeEnum {
      * Name of the column in the {@link User} table.
      */
     private String columnNameTimelineDownloadedDate;
+    /**
+     * Date when this timeline was fetched for the first time, so we know,
+     * how long nothing appears in it, if nothing was downloaded yet.
+     * Name of the column in the {@link User} table.
+     */
+    private String columnNameTimelineFirstDownloadedDate;
     /**
      * Api routine to download this timeline
      */
@@ -125,16 +138,21 @@ public enum TimelineTypeEnum {
     public String columnNameTimelineDownloadedDate() {
         return columnNameTimelineDownloadedDate;
     }
+
+    public String columnNameTimelineFirstDownloadedDate() {
+        return columnNameTimelineFirstDownloadedDate;
+    }
     
     private TimelineTypeEnum(String code, int resId, 
             String columnNameLatestTimelinePosition, String columnNameLatestTimelineItemDate, 
-            String columnNameTimelineDownloadedDate, 
+            String columnNameTimelineDownloadedDate, String columnNameTimelineFirstDownloadedDate, 
             Connection.ApiRoutineEnum connectionApiRoutine) {
         this.code = code;
         this.titleResId = resId;
         this.columnNameLatestTimelinePosition = columnNameLatestTimelinePosition;
         this.columnNameLatestTimelineItemDate = columnNameLatestTimelineItemDate;
         this.columnNameTimelineDownloadedDate = columnNameTimelineDownloadedDate;
+        this.columnNameTimelineFirstDownloadedDate = columnNameTimelineFirstDownloadedDate;
         this.connectionApiRoutine = connectionApiRoutine;
     }
 
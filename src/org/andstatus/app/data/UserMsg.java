@@ -16,10 +16,6 @@
 
 package org.andstatus.app.data;
 
-import android.database.sqlite.SQLiteDatabase;
-import android.provider.BaseColumns;
-
-import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.data.MyDatabase.Msg;
 import org.andstatus.app.data.MyDatabase.User;
 import org.andstatus.app.util.MyLog;
@@ -114,11 +110,10 @@ public final class UserMsg {
     }
     
     /**
-     * Persist the info into the Database
+     * Persist the info into the Database, see {@link LatestUserMessages#save()}
      * @return true if succeeded
      */
     public boolean save() {
-        boolean ok = true;
         if (MyLog.isLoggable(TAG, MyLog.VERBOSE)) {
             MyLog.v(this, "User=" + MyProvider.userIdToName(userId) 
                     + " Latest msg at " + (new Date(getLastMsgDate()).toString())
@@ -126,35 +121,13 @@ public final class UserMsg {
                     );
         }
         if (!changed) {
-            return ok;
+            return true;
         }
-
-        // As a precaution compare with stored values ones again
-        long msgDate = MyProvider.userIdToLongColumnValue(User.USER_MSG_DATE, userId);
-        if (msgDate > lastMsgDate) {
-            lastMsgDate = msgDate;
-            lastMsgId = MyProvider.userIdToLongColumnValue(User.USER_MSG_ID, userId);
-            MyLog.v(this, "There is newer information in the database. User=" + MyProvider.userIdToName(userId) 
-                    + " Latest msg at " + (new Date(getLastMsgDate()).toString()));
-            changed = false;
-            return ok;
-        }
-
-        String sql = "";
-        try {
-            sql += User.USER_MSG_ID + "=" + lastMsgId;
-            sql += ", " + User.USER_MSG_DATE + "=" + lastMsgDate;
-
-            sql = "UPDATE " + User.TABLE_NAME + " SET " + sql 
-                    + " WHERE " + BaseColumns._ID + "=" + userId;
-
-            SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
-            db.execSQL(sql);
-            
+        LatestUserMessages lum = new LatestUserMessages();
+        lum.onNewUserMsg(this);
+        boolean ok = lum.save();
+        if (ok) {
             changed = false;
-        } catch (Exception e) {
-            ok = false;
-            MyLog.e(this, "save: sql='" + sql + "'", e);
         }
         return ok;
     }
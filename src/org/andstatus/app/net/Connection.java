@@ -30,6 +30,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -85,6 +86,11 @@ public abstract class Connection {
          * This is the equivalent of /home on the Web.
          */
         STATUSES_HOME_TIMELINE,
+        /**
+         * New items of the Home timeline as soon as they appear, 
+         * received through a long-lived connection ("User stream")
+         */
+        STREAM_USER,
         /**
          * Get the user's replies.
          * 
@@ -182,6 +188,17 @@ public abstract class Connection {
      */
     public abstract MbRateLimitStatus rateLimitStatus() throws ConnectionException;
 
+    /**
+     * Rate limit status, which the server reported along with the latest response,
+     * so it doesn't cost an extra request. Empty if unknown.
+     */
+    public MbRateLimitStatus getLastRateLimitStatus() {
+        if (http == null) {
+            return new MbRateLimitStatus();
+        }
+        return http.getLastRateLimitStatus();
+    }
+
     /**
      * Do we need password to be set?
      * By default password is not needed and is ignored
@@ -321,8 +338,53 @@ public abstract class Connection {
      * Universal method for several Timeline Types...
      * @param userId For the {@link ApiRoutineEnum#STATUSES_USER_TIMELINE}, null for the other timelines
      */
-    public abstract List<MbTimelineItem> getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, int limit, String userId)
-            throws ConnectionException;
+    public List<MbTimelineItem> getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, int limit, String userId)
+            throws ConnectionException {
+        final List<MbTimelineItem> timeline = new ArrayList<MbTimelineItem>();
+        getTimeline(apiRoutine, sinceId, limit, userId, new TimelineItemConsumer() {
+            @Override
+            public void consume(MbTimelineItem item) {
+                timeline.add(item);
+            }
+        });
+        return timeline;
+    }
+
+    /**
+     * The same as {@link #getTimeline(ApiRoutineEnum, TimelinePosition, int, String)}, 
+     * but each item is passed to the consumer as soon as it is parsed
+     * @return Number of items passed to the consumer
+     */
+    public int getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, int limit, String userId, 
+            TimelineItemConsumer consumer) throws ConnectionException {
+        return getTimeline(apiRoutine, sinceId, TimelinePosition.getEmpty(), limit, userId, consumer);
+    }
+
+    /**
+     * Page backwards: the newest items, which are older than maxId, are returned.
+     * This allows to fill gaps in the timeline
+     * @param maxId Empty, or the item to start from. It may be returned also (Twitter includes it)
+     * @return Number of items passed to the consumer
+     */
+    public abstract int getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, TimelinePosition maxId, 
+            int limit, String userId, TimelineItemConsumer consumer) throws ConnectionException;
+
+    /**
+     * @return true if new items of the Home timeline may be received through
+     *  {@link #streamTimeline(TimelineStreamConsumer)}
+     */
+    public boolean isStreamingSupported() {
+        return http != null && http.isStreamingSupported() && isApiSupported(ApiRoutineEnum.STREAM_USER);
+    }
+
+    /**
+     * Long-lived request, which passes new items of the Home timeline to the consumer as soon as they
+     * appear on the server. Returns when the server closes the stream or when the consumer stops it
+     */
+    public void streamTimeline(TimelineStreamConsumer consumer) throws ConnectionException {
+        throw new ConnectionException(StatusCode.UNSUPPORTED_API, "Streaming is not supported by "
+                + getClass().getSimpleName());
+    }
 
     public abstract List<MbTimelineItem> search(String searchQuery, int limit)
             throws ConnectionException;
@@ -442,11 +504,9 @@ public abstract class Connection {
         return unixDate;
     }
 
-    protected void setMessagesPublic(List<MbTimelineItem> timeline) {
-        for (MbTimelineItem item : timeline) {
-            if (item.getType() == ItemType.MESSAGE) {
-                item.mbMessage.setPublic(true);
-            }
+    protected void setMessagePublic(MbTimelineItem item) {
+        if (item.getType() == ItemType.MESSAGE) {
+            item.mbMessage.setPublic(true);
         }
     }
 
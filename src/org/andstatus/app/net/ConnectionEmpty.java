@@ -72,9 +72,9 @@ public class ConnectionEmpty extends Connection {
     }
 
     @Override
-    public List<MbTimelineItem> getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId,
-            int limit, String userId) throws ConnectionException {
-        return new ArrayList<MbTimelineItem>();
+    public int getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, TimelinePosition maxId,
+            int limit, String userId, TimelineItemConsumer consumer) throws ConnectionException {
+        return 0;
     }
 
     @Override
@@ -36,7 +36,8 @@ public class ConnectionException extends Exception {
         BAD_REQUEST,
         AUTHENTICATION_ERROR,
         CREDENTIALS_OF_OTHER_USER,
-        NO_CREDENTIALS_FOR_HOST;
+        NO_CREDENTIALS_FOR_HOST,
+        RATE_LIMIT_EXCEEDED;
         
         public static StatusCode fromResponseCode(int responseCode) {
             switch (responseCode) {
@@ -44,6 +45,10 @@ public class ConnectionException extends Exception {
                     return NOT_FOUND;
                 case 400:
                     return BAD_REQUEST;
+                case 420:
+                    // "Enhance Your Calm" of Twitter's streaming API
+                case 429:
+                    return RATE_LIMIT_EXCEEDED;
                 default:
                     return UNKNOWN;
             }
@@ -121,6 +126,7 @@ public class ConnectionException extends Exception {
         this.statusCode = statusCode;
         switch (statusCode) {
             case UNKNOWN:
+            case RATE_LIMIT_EXCEEDED:
                 break;
             default:
                 isHardError = true;
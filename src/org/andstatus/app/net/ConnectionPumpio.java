@@ -24,6 +24,8 @@ import org.andstatus.app.net.ConnectionException.StatusCode;
 import org.andstatus.app.origin.OriginConnectionData;
 import org.andstatus.app.util.MyHtml;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.andstatus.app.util.TriState;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -99,7 +101,8 @@ public class ConnectionPumpio extends Connection {
 
     @Override
     public MbUser verifyCredentials() throws ConnectionException {
-        JSONObject user = http.getRequest(getApiPath(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS));
+        JSONObject user = http.getRequest(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS,
+                getApiPath(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS));
         return userFromJson(user);
     }
 
@@ -308,8 +311,8 @@ public class ConnectionPumpio extends Connection {
     }
 
     @Override
-    public List<MbTimelineItem> getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, int limit, String userId)
-            throws ConnectionException {
+    public int getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, TimelinePosition maxId, 
+            int limit, String userId, TimelineItemConsumer consumer) throws ConnectionException {
         ConnectionAndUrl conu = getConnectionAndUrl(apiRoutine, userId);
         Uri sUri = Uri.parse(conu.url);
         Uri.Builder builder = sUri.buildUpon();
@@ -318,26 +321,36 @@ public class ConnectionPumpio extends Connection {
             // Otherwise we will always get "not found"
             builder.appendQueryParameter("since", sinceId.getPosition());
         }
+        if (!maxId.isEmpty()) {
+            builder.appendQueryParameter("before", maxId.getPosition());
+        }
         if (fixedDownloadLimitForApiRoutine(limit, apiRoutine) > 0) {
             builder.appendQueryParameter("count",String.valueOf(fixedDownloadLimitForApiRoutine(limit, apiRoutine)));
         }
         String url = builder.build().toString();
         JSONArray jArr = conu.httpConnection.getRequestAsArray(url);
-        List<MbTimelineItem> timeline = new ArrayList<MbTimelineItem>();
+        long startedAt = System.currentTimeMillis();
+        long consumerNanos = 0;
+        int count = 0;
         if (jArr != null) {
             // Read the activities in chronological order
             for (int index = jArr.length() - 1; index >= 0; index--) {
+                MbTimelineItem item;
                 try {
                     JSONObject jso = jArr.getJSONObject(index);
-                    MbTimelineItem item = timelineItemFromJson(jso);
-                    timeline.add(item);
+                    item = timelineItemFromJson(jso);
                 } catch (JSONException e) {
                     throw ConnectionException.loggedJsonException(this, e, null, "Parsing timeline");
                 }
+                long consumerStartedAt = System.nanoTime();
+                consumer.consume(item);
+                consumerNanos += System.nanoTime() - consumerStartedAt;
+                count++;
             }
         }
-        MyLog.d(TAG, "getTimeline '" + url + "' " + timeline.size() + " messages");
-        return timeline;
+        PhaseTimings.addSince(Phase.PARSE, startedAt + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(consumerNanos));
+        MyLog.d(TAG, "getTimeline '" + url + "' " + count + " messages");
+        return count;
     }
 
     @Override
@@ -593,7 +606,7 @@ public class ConnectionPumpio extends Connection {
     @Override
     public MbUser getUser(String userId) throws ConnectionException {
         ConnectionAndUrl conu = getConnectionAndUrl(ApiRoutineEnum.GET_USER, userId);
-        JSONObject jso = conu.httpConnection.getRequest(conu.url);
+        JSONObject jso = conu.httpConnection.getRequest(ApiRoutineEnum.GET_USER, conu.url);
         MbUser mbUser = userFromJson(jso);
         MyLog.v(this, "getUser '" + userId + "' " + mbUser.realName);
         return mbUser;
@@ -20,6 +20,8 @@ import android.net.Uri;
 import android.text.TextUtils;
 
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.andstatus.app.util.SharedPreferencesUtil;
 import org.andstatus.app.util.TriState;
 import org.json.JSONArray;
@@ -182,14 +184,17 @@ public abstract class ConnectionTwitter extends Connection {
     }
 
     @Override
-    public List<MbTimelineItem> getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, int limit, String userId)
-            throws ConnectionException {
+    public int getTimeline(ApiRoutineEnum apiRoutine, TimelinePosition sinceId, TimelinePosition maxId, 
+            int limit, String userId, TimelineItemConsumer consumer) throws ConnectionException {
         String url = this.getApiPath(apiRoutine);
         Uri sUri = Uri.parse(url);
         Uri.Builder builder = sUri.buildUpon();
         if (!sinceId.isEmpty()) {
             builder.appendQueryParameter("since_id", sinceId.getPosition());
         }
+        if (!maxId.isEmpty()) {
+            builder.appendQueryParameter("max_id", maxId.getPosition());
+        }
         if (fixedDownloadLimitForApiRoutine(limit, apiRoutine) > 0) {
             builder.appendQueryParameter("count", String.valueOf(fixedDownloadLimitForApiRoutine(limit, apiRoutine)));
         }
@@ -197,7 +202,37 @@ public abstract class ConnectionTwitter extends Connection {
             builder.appendQueryParameter("user_id", userId);
         }
         JSONArray jArr = http.getRequestAsArray(builder.build().toString());
-        return jArrToTimeline(jArr, apiRoutine, url);
+        return jArrToTimeline(jArr, apiRoutine, url, consumer);
+    }
+
+    @Override
+    public void streamTimeline(final TimelineStreamConsumer consumer) throws ConnectionException {
+        http.getStream(getApiPath(ApiRoutineEnum.STREAM_USER), new StreamLineConsumer() {
+            @Override
+            public boolean consumeLine(String line) throws ConnectionException {
+                if (!TextUtils.isEmpty(line.trim())) {
+                    consumeStreamedLine(line, consumer);
+                }
+                return consumer.isToContinue();
+            }
+        });
+    }
+
+    /**
+     * Besides statuses, a User stream has a list of friends, events, deletion notices etc.
+     * Only statuses are consumed, other items are loaded by polling
+     */
+    private void consumeStreamedLine(String line, TimelineStreamConsumer consumer) throws ConnectionException {
+        JSONObject jso;
+        try {
+            jso = new JSONObject(line);
+        } catch (JSONException e) {
+            MyLog.d(this, "Skipped streamed line: '" + line + "'", e);
+            return;
+        }
+        if (jso.has("text") && jso.has("user")) {
+            consumer.consume(timelineItemFromJson(jso));
+        }
     }
 
     private MbTimelineItem timelineItemFromJson(JSONObject jso) throws ConnectionException {
@@ -376,24 +411,42 @@ public abstract class ConnectionTwitter extends Connection {
     }
     
     List<MbTimelineItem> jArrToTimeline(JSONArray jArr, ApiRoutineEnum apiRoutine, String url) throws ConnectionException {
-        List<MbTimelineItem> timeline = new ArrayList<MbTimelineItem>();
+        final List<MbTimelineItem> timeline = new ArrayList<MbTimelineItem>();
+        jArrToTimeline(jArr, apiRoutine, url, new TimelineItemConsumer() {
+            @Override
+            public void consume(MbTimelineItem item) {
+                timeline.add(item);
+            }
+        });
+        return timeline;
+    }
+
+    int jArrToTimeline(JSONArray jArr, ApiRoutineEnum apiRoutine, String url, TimelineItemConsumer consumer) throws ConnectionException {
+        long startedAt = System.currentTimeMillis();
+        long consumerNanos = 0;
+        int count = 0;
         if (jArr != null) {
             // Read the activities in chronological order
             for (int index = jArr.length() - 1; index >= 0; index--) {
+                MbTimelineItem item;
                 try {
                     JSONObject jso = jArr.getJSONObject(index);
-                    MbTimelineItem item = timelineItemFromJson(jso);
-                    timeline.add(item);
+                    item = timelineItemFromJson(jso);
                 } catch (JSONException e) {
                     throw ConnectionException.loggedJsonException(this, e, null, "Parsing " + apiRoutine);
                 }
+                if (apiRoutine.isMsgPublic()) {
+                    setMessagePublic(item);
+                }
+                long consumerStartedAt = System.nanoTime();
+                consumer.consume(item);
+                consumerNanos += System.nanoTime() - consumerStartedAt;
+                count++;
             }
         }
-        if (apiRoutine.isMsgPublic()) {
-            setMessagesPublic(timeline);
-        }
-        MyLog.d(this, apiRoutine + " '" + url + "' " + timeline.size() + " items");
-        return timeline;
+        PhaseTimings.addSince(Phase.PARSE, startedAt + java.util.concurrent.TimeUnit.NANOSECONDS.toMillis(consumerNanos));
+        MyLog.d(this, apiRoutine + " '" + url + "' " + count + " items");
+        return count;
     }
     
     /**
@@ -405,7 +458,7 @@ public abstract class ConnectionTwitter extends Connection {
         Uri sUri = Uri.parse(getApiPath(ApiRoutineEnum.GET_USER));
         Uri.Builder builder = sUri.buildUpon();
         builder.appendQueryParameter("user_id", userId);
-        JSONObject jso = http.getRequest(builder.build().toString());
+        JSONObject jso = http.getRequest(ApiRoutineEnum.GET_USER, builder.build().toString());
         return userFromJson(jso);
     }
     
@@ -447,7 +500,8 @@ public abstract class ConnectionTwitter extends Connection {
      */
     @Override
     public MbRateLimitStatus rateLimitStatus() throws ConnectionException {
-        JSONObject result = http.getRequest(getApiPath(ApiRoutineEnum.ACCOUNT_RATE_LIMIT_STATUS));
+        JSONObject result = http.getRequest(ApiRoutineEnum.ACCOUNT_RATE_LIMIT_STATUS,
+                getApiPath(ApiRoutineEnum.ACCOUNT_RATE_LIMIT_STATUS));
         MbRateLimitStatus status = new MbRateLimitStatus();
         if (result != null) {
             switch (data.getOriginType().getApi()) {
@@ -455,6 +509,7 @@ public abstract class ConnectionTwitter extends Connection {
                 case STATUSNET_TWITTER:
                     status.remaining = result.optInt("remaining_hits");
                     status.limit = result.optInt("hourly_limit");
+                    status.resetTime = java.util.concurrent.TimeUnit.SECONDS.toMillis(result.optLong("reset_time_in_seconds"));
                     break;
                 default:
                     JSONObject resources = null;
@@ -463,6 +518,7 @@ public abstract class ConnectionTwitter extends Connection {
                         JSONObject limitObject = resources.getJSONObject("statuses").getJSONObject("/statuses/home_timeline");
                         status.remaining = limitObject.optInt("remaining");
                         status.limit = limitObject.optInt("limit");
+                        status.resetTime = java.util.concurrent.TimeUnit.SECONDS.toMillis(limitObject.optLong("reset"));
                     } catch (JSONException e) {
                         throw ConnectionException.loggedJsonException(this, e, resources, "getting rate limits");
                     }
@@ -495,7 +551,8 @@ public abstract class ConnectionTwitter extends Connection {
      */
     @Override
     public MbUser verifyCredentials() throws ConnectionException {
-        JSONObject user = http.getRequest(getApiPath(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS));
+        JSONObject user = http.getRequest(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS,
+                getApiPath(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS));
         return userFromJson(user);
     }
 
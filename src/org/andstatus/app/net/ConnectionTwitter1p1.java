@@ -58,6 +58,10 @@ public class ConnectionTwitter1p1 extends ConnectionTwitter {
                 // https://dev.twitter.com/docs/api/1.1/get/statuses/mentions_timeline
                 url = "statuses/mentions_timeline" + EXTENSION;
                 break;
+            case STREAM_USER:
+                // https://dev.twitter.com/docs/streaming-apis/streams/user
+                // The stream has its own host, so the path is absolute
+                return "https://userstream.twitter.com/1.1/user" + EXTENSION;
             default:
                 url = "";
                 break;
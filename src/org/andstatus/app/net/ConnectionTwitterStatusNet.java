@@ -97,7 +97,7 @@ public class ConnectionTwitterStatusNet extends ConnectionTwitter1p0 {
     
     @Override
     public MbConfig getConfig() throws ConnectionException {
-        JSONObject result = http.getRequest(getApiPath(ApiRoutineEnum.GET_CONFIG));
+        JSONObject result = http.getRequest(ApiRoutineEnum.GET_CONFIG, getApiPath(ApiRoutineEnum.GET_CONFIG));
         MbConfig config = MbConfig.getEmpty();
         if (result != null) {
             JSONObject site = result.optJSONObject("site");
@@ -24,5 +24,10 @@ import org.json.JSONTokener;
 public interface HttpApacheRequest {
     JSONObject postRequest(HttpPost postMethod) throws ConnectionException;
     JSONTokener getRequest(HttpGet get) throws ConnectionException;
+    /**
+     * @param cached Its validators are sent with the request, null if there is nothing to revalidate
+     */
+    HttpResponseCache.Entry getConditionalRequest(HttpGet get, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException;
     String pathToUrl(String path);
 }
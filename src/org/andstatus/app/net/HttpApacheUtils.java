@@ -18,19 +18,30 @@ package org.andstatus.app.net;
 
 import android.text.TextUtils;
 
+import net.jcip.annotations.GuardedBy;
+
 import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.BasicResponseHandler;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
@@ -44,12 +55,22 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 class HttpApacheUtils {
+    private static final String TAG = HttpApacheUtils.class.getSimpleName();
+    static final long IDLE_TIMEOUT_MS = 5 * 60 * 1000L;
+    /** Streaming servers send keep-alive lines at least every 30 seconds */
+    static final int STREAM_READ_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(90);
+    private static final Object SHARED_CLIENT_LOCK = new Object();
+    @GuardedBy("SHARED_CLIENT_LOCK")
+    private static HttpClient sharedClient = null;
+
     private HttpApacheRequest request;
     
     HttpApacheUtils(HttpApacheRequest request) {
@@ -63,6 +84,7 @@ class HttpApacheUtils {
     final JSONArray jsonTokenerToArray(JSONTokener jst) throws ConnectionException {
         String method = "jsonTokenerToArray";
         JSONArray jsa = null;
+        long startedAt = System.currentTimeMillis();
         try {
             Object obj = jst.nextValue();
             if (JSONObject.class.isInstance(obj)) {
@@ -80,6 +102,7 @@ class HttpApacheUtils {
                 }
             }
             jsa = (JSONArray) obj;
+            PhaseTimings.addSince(Phase.PARSE, startedAt);
         } catch (JSONException e) {
             throw ConnectionException.loggedJsonException(this, e, jst, method);
         } catch (ClassCastException e) {
@@ -94,8 +117,10 @@ class HttpApacheUtils {
         String method = "getRequestAsObject";
         JSONObject jso = null;
         JSONTokener jst = request.getRequest(get);
+        long startedAt = System.currentTimeMillis();
         try {
             jso = (JSONObject) jst.nextValue();
+            PhaseTimings.addSince(Phase.PARSE, startedAt);
         } catch (JSONException e) {
             throw ConnectionException.loggedJsonException(this, e, jst, method);
         } catch (ClassCastException e) {
@@ -147,7 +172,140 @@ class HttpApacheUtils {
         return formParams;
     }
     
+    static void readRateLimitHeaders(HttpConnection connection, HttpResponse response) {
+        for (String prefix : HttpConnection.RATE_LIMIT_HEADER_PREFIXES) {
+            Header limit = response.getFirstHeader(prefix + "Limit");
+            if (limit != null) {
+                Header remaining = response.getFirstHeader(prefix + "Remaining");
+                Header reset = response.getFirstHeader(prefix + "Reset");
+                connection.setLastRateLimitStatus(limit.getValue(), 
+                        remaining == null ? null : remaining.getValue(),
+                        reset == null ? null : reset.getValue());
+                return;
+            }
+        }
+        connection.setLastRateLimitStatus(null, null, null);
+    }
+
+    /**
+     * The same as {@link BasicResponseHandler}, but also reads rate limit headers of the response
+     */
+    static ResponseHandler<String> newResponseHandler(final HttpConnection connection) {
+        return new BasicResponseHandler() {
+            @Override
+            public String handleResponse(HttpResponse response) throws IOException {
+                readRateLimitHeaders(connection, response);
+                return super.handleResponse(response);
+            }
+        };
+    }
+    
+    static void addValidators(HttpGet get, HttpResponseCache.Entry cached) {
+        if (cached == null) {
+            return;
+        }
+        if (!TextUtils.isEmpty(cached.etag)) {
+            get.setHeader("If-None-Match", cached.etag);
+        }
+        if (!TextUtils.isEmpty(cached.lastModified)) {
+            get.setHeader("If-Modified-Since", cached.lastModified);
+        }
+    }
+
+    /**
+     * Like {@link #newResponseHandler(HttpConnection)}, but also reads validators of the response,
+     * and returns the cached entry on "304 Not Modified"
+     */
+    static ResponseHandler<HttpResponseCache.Entry> newConditionalResponseHandler(final HttpConnection connection,
+            final String key, final HttpResponseCache.Entry cached) {
+        return new ResponseHandler<HttpResponseCache.Entry>() {
+            @Override
+            public HttpResponseCache.Entry handleResponse(HttpResponse response) throws IOException {
+                readRateLimitHeaders(connection, response);
+                if (cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                    HttpEntity entity = response.getEntity();
+                    if (entity != null) {
+                        entity.consumeContent();
+                    }
+                    return cached.revalidated();
+                }
+                String body = new BasicResponseHandler().handleResponse(response);
+                return new HttpResponseCache.Entry(key, getHeaderValue(response, "ETag"),
+                        getHeaderValue(response, "Last-Modified"), System.currentTimeMillis(), body);
+            }
+        };
+    }
+
+    /**
+     * Sets the timeouts in parameters of this request, leaving parameters of the shared client intact
+     */
+    static void setTimeouts(HttpRequestBase request) {
+        HttpConnectionParams.setConnectionTimeout(request.getParams(), MyPreferences.getConnectionTimeoutMs());
+        HttpConnectionParams.setSoTimeout(request.getParams(), MyPreferences.getConnectionTimeoutMs());
+    }
+
+    /**
+     * Executes the (already authorized) request and passes lines of its response to the consumer
+     * as soon as they arrive
+     */
+    static void getStream(HttpConnection connection, HttpGet get, StreamLineConsumer consumer) 
+            throws ConnectionException {
+        String method = "getStream, URL='" + get.getURI().toString() + "'";
+        HttpConnectionParams.setSoTimeout(get.getParams(), STREAM_READ_TIMEOUT_MS);
+        try {
+            HttpResponse response = getHttpClient().execute(get);
+            readRateLimitHeaders(connection, response);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode != HttpStatus.SC_OK) {
+                throw ConnectionException.fromStatusCodeHttp(statusCode, method + ", status=" + statusCode);
+            }
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                HttpJavaNetUtils.readLines(entity.getContent(), consumer);
+            }
+        } catch (IOException e) {
+            throw new ConnectionException(method, e);
+        } finally {
+            // Don't wait for the rest of the endless response
+            get.abort();
+        }
+    }
+
+    private static String getHeaderValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? "" : header.getValue();
+    }
+
+    /**
+     * The client has no credentials, so all accounts share it. Its connection manager 
+     * keeps connections per route, i.e. per host of an Origin
+     */
     static HttpClient getHttpClient() {
+        synchronized (SHARED_CLIENT_LOCK) {
+            if (sharedClient == null) {
+                sharedClient = newHttpClient();
+                MyLog.v(TAG, "New shared HttpClient");
+            }
+            return sharedClient;
+        }
+    }
+
+    /**
+     * Closes expired connections and connections, idle longer than {@link #IDLE_TIMEOUT_MS}.
+     * The client itself is kept: its leased connections, e.g. of a long-lived stream,
+     * may be quiet for much longer than that, and they would be aborted by its shutdown
+     */
+    static void closeIdleConnections() {
+        synchronized (SHARED_CLIENT_LOCK) {
+            if (sharedClient == null) {
+                return;
+            }
+            sharedClient.getConnectionManager().closeExpiredConnections();
+            sharedClient.getConnectionManager().closeIdleConnections(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static HttpClient newHttpClient() {
         SchemeRegistry schemeRegistry = new SchemeRegistry();
         schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
         
@@ -17,15 +17,21 @@
 package org.andstatus.app.net;
 
 import android.net.Uri;
+import android.text.TextUtils;
 
 import org.andstatus.app.account.AccountDataWriter;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.net.ConnectionException.StatusCode;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 public abstract class HttpConnection {
     protected HttpConnectionData data;
+    private volatile MbRateLimitStatus lastRateLimitStatus = new MbRateLimitStatus();
 
     static final String USER_AGENT = "AndStatus";
     /** 
@@ -33,10 +39,22 @@ public abstract class HttpConnection {
      * Pump.io doesn't work with this scheme: "andstatus-oauth://andstatus.org"
      */
     public static final Uri CALLBACK_URI = Uri.parse("http://oauth-redirect.andstatus.org");
+    /**
+     * Twitter API v.1.1 and Twitter API v.1 (StatusNet) variants of rate limit headers:
+     * "prefix" + "Limit", "Remaining", "Reset" (seconds since the epoch)
+     */
+    static final String[] RATE_LIMIT_HEADER_PREFIXES = {"X-Rate-Limit-", "X-RateLimit-"};
  
     public void registerClient(String path) throws ConnectionException {
         // Empty
     }
+
+    /**
+     * Releases network resources, shared by connections and not used for some time
+     */
+    public static void releaseIdleResources() {
+        HttpApacheUtils.closeIdleConnections();
+    }
     
     protected abstract JSONObject postRequest(String path, JSONObject jso) throws ConnectionException;
 
@@ -57,9 +75,82 @@ public abstract class HttpConnection {
     protected abstract JSONObject postRequest(String path) throws ConnectionException;
 
     protected abstract JSONObject getRequest(String path) throws ConnectionException;
+
+    /**
+     * The same as {@link #getRequest(String)}, but responses to routines, which rarely change,
+     * are taken from the {@link HttpResponseCache} while fresh, and revalidated when stale
+     */
+    public final JSONObject getRequest(ApiRoutineEnum routine, String path) throws ConnectionException {
+        long ttlMs = HttpResponseCache.getTtlMs(routine);
+        HttpResponseCache cache = null;
+        if (ttlMs != HttpResponseCache.NOT_CACHED && isResponseCacheSupported()) {
+            cache = HttpResponseCache.getInstance();
+        }
+        if (cache == null) {
+            return getRequest(path);
+        }
+        String key = HttpResponseCache.toKey(data, pathToUrl(path));
+        HttpResponseCache.Entry cached = cache.get(key);
+        if (cached != null && cached.isFresh(ttlMs)) {
+            MyLog.v(this, "Fresh in cache: " + routine + ", " + cached);
+            return bodyToJsonObject(path, cached.body);
+        }
+        HttpResponseCache.Entry entry = getConditionalRequest(path, key,
+                cached != null && cached.hasValidators() ? cached : null);
+        cache.put(entry);
+        if (entry.getParsed() != null) {
+            return entry.getParsed();
+        }
+        MyLog.v(this, "Stored in cache: " + routine + ", " + entry);
+        return bodyToJsonObject(path, entry.body);
+    }
+
+    /**
+     * @return true if {@link #getConditionalRequest(String, String, HttpResponseCache.Entry)} is implemented
+     */
+    protected boolean isResponseCacheSupported() {
+        return false;
+    }
+
+    /**
+     * GET request with "If-None-Match" and "If-Modified-Since" headers, taken from the cached entry
+     * @param cached null if there is nothing to revalidate
+     * @return The cached entry, revalidated by the server, or a new one
+     */
+    protected HttpResponseCache.Entry getConditionalRequest(String path, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        return HttpResponseCache.Entry.notStorable(key, getRequest(path));
+    }
+
+    protected final JSONObject bodyToJsonObject(String path, String body) throws ConnectionException {
+        long startedAt = System.currentTimeMillis();
+        try {
+            JSONObject jso = new JSONObject(body);
+            PhaseTimings.addSince(Phase.PARSE, startedAt);
+            return jso;
+        } catch (JSONException e) {
+            throw ConnectionException.loggedJsonException(this, e, body, "Error reading response from '" + path + "'");
+        }
+    }
     
     protected abstract JSONArray getRequestAsArray(String path) throws ConnectionException;
 
+    /**
+     * @return true if {@link #getStream(String, StreamLineConsumer)} is implemented
+     */
+    public boolean isStreamingSupported() {
+        return false;
+    }
+
+    /**
+     * Long-lived GET request, which response is a sequence of lines (e.g. of JSON objects).
+     * Returns when the server closes the stream or when the consumer stops reading
+     */
+    protected void getStream(String path, StreamLineConsumer consumer) throws ConnectionException {
+        throw new ConnectionException(StatusCode.UNSUPPORTED_API, "Streaming is not supported by " 
+                + getClass().getSimpleName());
+    }
+
     public abstract void clearAuthInformation();
 
     public void clearClientKeys() {
@@ -115,6 +206,33 @@ public abstract class HttpConnection {
         return "";
     }
 
+    /**
+     * @return Rate limit status, reported by the server in headers of the latest response. Empty if unknown 
+     */
+    public MbRateLimitStatus getLastRateLimitStatus() {
+        return lastRateLimitStatus;
+    }
+
+    /**
+     * Values of the rate limit headers of the latest response, null values are allowed
+     */
+    protected void setLastRateLimitStatus(String limit, String remaining, String reset) {
+        MbRateLimitStatus status = new MbRateLimitStatus();
+        try {
+            if (!TextUtils.isEmpty(limit) && !TextUtils.isEmpty(remaining)) {
+                status.limit = Integer.parseInt(limit.trim());
+                status.remaining = Integer.parseInt(remaining.trim());
+                if (!TextUtils.isEmpty(reset)) {
+                    status.resetTime = java.util.concurrent.TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            MyLog.v(this, "Rate limit headers: limit=" + limit + ", remaining=" + remaining + ", reset=" + reset, e);
+            status = new MbRateLimitStatus();
+        }
+        lastRateLimitStatus = status;
+    }
+
     public HttpConnection getNewInstance() {
         try {
             return getClass().newInstance();
@@ -21,15 +21,16 @@ import android.text.TextUtils;
 import android.util.Base64;
 
 import org.andstatus.app.account.AccountDataWriter;
-import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.protocol.HTTP;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -71,12 +72,16 @@ public class HttpConnectionBasic extends HttpConnection implements HttpApacheReq
             if (getCredentialsPresent()) {
                 postMethod.addHeader("Authorization", "Basic " + getCredentials());
             }
-            client.getParams().setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, MyPreferences.getConnectionTimeoutMs());
-            client.getParams().setIntParameter(CoreConnectionPNames.SO_TIMEOUT, MyPreferences.getConnectionTimeoutMs());
+            HttpApacheUtils.setTimeouts(postMethod);
+            long startedAt = System.currentTimeMillis();
             HttpResponse httpResponse = client.execute(postMethod);
+            HttpApacheUtils.readRateLimitHeaders(this, httpResponse);
             statusCode = httpResponse.getStatusLine().getStatusCode();
             result = retrieveInputStream(httpResponse.getEntity());
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
+            startedAt = System.currentTimeMillis();
             jObj = new JSONObject(result);
+            PhaseTimings.addSince(Phase.PARSE, startedAt);
             if (jObj != null) {
                 String error = jObj.optString("error");
                 if ("Could not authenticate you.".equals(error)) {
@@ -126,11 +131,13 @@ public class HttpConnectionBasic extends HttpConnection implements HttpApacheReq
         try {
             getMethod.setHeader("User-Agent", HttpConnection.USER_AGENT);
             getMethod.addHeader("Authorization", "Basic " + getCredentials());
-            client.getParams().setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, MyPreferences.getConnectionTimeoutMs());
-            client.getParams().setIntParameter(CoreConnectionPNames.SO_TIMEOUT, MyPreferences.getConnectionTimeoutMs());
+            HttpApacheUtils.setTimeouts(getMethod);
+            long startedAt = System.currentTimeMillis();
             HttpResponse httpResponse = client.execute(getMethod);
+            HttpApacheUtils.readRateLimitHeaders(this, httpResponse);
             statusCode = httpResponse.getStatusLine().getStatusCode();
             response = retrieveInputStream(httpResponse.getEntity());
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
             jso = new JSONTokener(response);
             ok = true;
         } catch (Exception e) {
@@ -146,6 +153,54 @@ public class HttpConnectionBasic extends HttpConnection implements HttpApacheReq
         return jso;
     }
 
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+
+    @Override
+    protected void getStream(String path, StreamLineConsumer consumer) throws ConnectionException {
+        HttpGet getMethod = new HttpGet(pathToUrl(path));
+        getMethod.setHeader("User-Agent", HttpConnection.USER_AGENT);
+        getMethod.addHeader("Authorization", "Basic " + getCredentials());
+        HttpApacheUtils.getStream(this, getMethod, consumer);
+    }
+
+    @Override
+    protected boolean isResponseCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected HttpResponseCache.Entry getConditionalRequest(String path, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        return getConditionalRequest(new HttpGet(pathToUrl(path)), key, cached);
+    }
+
+    @Override
+    public HttpResponseCache.Entry getConditionalRequest(HttpGet getMethod, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        HttpClient client = HttpApacheUtils.getHttpClient();
+        try {
+            getMethod.setHeader("User-Agent", HttpConnection.USER_AGENT);
+            getMethod.addHeader("Authorization", "Basic " + getCredentials());
+            HttpApacheUtils.addValidators(getMethod, cached);
+            HttpApacheUtils.setTimeouts(getMethod);
+            long startedAt = System.currentTimeMillis();
+            HttpResponseCache.Entry entry = client.execute(getMethod,
+                    HttpApacheUtils.newConditionalResponseHandler(this, key, cached));
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
+            return entry;
+        } catch (HttpResponseException e) {
+            throw ConnectionException.fromStatusCodeHttp(e.getStatusCode(), String.valueOf(e.getStatusCode()), e);
+        } catch (Exception e) {
+            MyLog.e(this, "getConditionalRequest", e);
+            throw new ConnectionException(e);
+        } finally {
+            getMethod.abort();
+        }
+    }
+
     @Override
     public boolean getCredentialsPresent() {
         return !TextUtils.isEmpty(data.accountUsername) 
@@ -266,6 +321,8 @@ public class HttpConnectionBasic extends HttpConnection implements HttpApacheReq
         case 403:
         case 404:
             throw new ConnectionException(String.valueOf(code));
+        case 429:
+            throw ConnectionException.fromStatusCodeHttp(code, String.valueOf(code));
         case 500:
         case 502:
         case 503:
@@ -39,6 +39,8 @@ abstract class HttpConnectionOAuth extends HttpConnection implements OAuthConsum
     
     private String userToken;
     private String userSecret;
+    /** Shared by the consumers of this connection */
+    protected final OAuthSigningCache signingCache = new OAuthSigningCache();
 
     @Override
     protected void setConnectionData(HttpConnectionData connectionData) {
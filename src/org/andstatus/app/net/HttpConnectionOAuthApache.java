@@ -20,14 +20,15 @@ import oauth.signpost.OAuthConsumer;
 import oauth.signpost.OAuthProvider;
 import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
 import oauth.signpost.commonshttp.CommonsHttpOAuthProvider;
+import oauth.signpost.exception.OAuthException;
 
 import org.andstatus.app.net.Connection.ApiRoutineEnum;
 import org.andstatus.app.util.MyLog;
-import org.apache.http.client.HttpClient;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.BasicResponseHandler;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,13 +37,6 @@ import org.json.JSONTokener;
 public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements HttpApacheRequest {
     private static final String NULL_JSON = "(null)";
     private static final String TAG = HttpConnectionOAuth.class.getSimpleName();
-    private HttpClient mClient;
-
-    @Override
-    protected void setConnectionData(HttpConnectionData connectionData) {
-        super.setConnectionData(connectionData);
-        mClient = HttpApacheUtils.getHttpClient();
-    }  
 
     @Override
     public OAuthProvider getProvider() {
@@ -50,7 +44,7 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
         provider = new CommonsHttpOAuthProvider(getApiUrl(ApiRoutineEnum.OAUTH_REQUEST_TOKEN),
                 getApiUrl(ApiRoutineEnum.OAUTH_ACCESS_TOKEN), getApiUrl(ApiRoutineEnum.OAUTH_AUTHORIZE));
 
-        provider.setHttpClient(mClient);
+        provider.setHttpClient(HttpApacheUtils.getHttpClient());
         provider.setOAuth10a(true);
         return provider;
     }
@@ -73,12 +67,21 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
         String response = null;
         boolean ok = false;
         try {
+            long startedAt = System.currentTimeMillis();
             if (data.oauthClientKeys.areKeysPresent()) {
                 getConsumer().sign(get);
             }
-            response = mClient.execute(get, new BasicResponseHandler());
+            PhaseTimings.addSince(Phase.SIGN, startedAt);
+            startedAt = System.currentTimeMillis();
+            response = HttpApacheUtils.getHttpClient().execute(get, HttpApacheUtils.newResponseHandler(this));
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
             jso = new JSONTokener(response);
             ok = true;
+        } catch (HttpResponseException e) {
+            ConnectionException e2 = ConnectionException.fromStatusCodeHttp(e.getStatusCode(), 
+                    "getRequest, URL='" + get.getURI().toString() + "'", e);
+            MyLog.i(TAG, e2);
+            throw e2;
         } catch (Exception e) {
             MyLog.e(this, "Exception was caught, URL='" + get.getURI().toString() + "'", e);
             throw new ConnectionException(e);
@@ -89,10 +92,66 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
         return jso;
     }
 
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+
+    @Override
+    protected void getStream(String path, StreamLineConsumer consumer) throws ConnectionException {
+        HttpGet get = new HttpGet(pathToUrl(path));
+        try {
+            if (data.oauthClientKeys.areKeysPresent()) {
+                getConsumer().sign(get);
+            }
+        } catch (OAuthException e) {
+            throw new ConnectionException("getStream, signing URL='" + get.getURI().toString() + "'", e);
+        }
+        HttpApacheUtils.getStream(this, get, consumer);
+    }
+
+    @Override
+    protected boolean isResponseCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected HttpResponseCache.Entry getConditionalRequest(String path, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        return getConditionalRequest(new HttpGet(pathToUrl(path)), key, cached);
+    }
+
+    @Override
+    public HttpResponseCache.Entry getConditionalRequest(HttpGet get, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        try {
+            HttpApacheUtils.addValidators(get, cached);
+            long startedAt = System.currentTimeMillis();
+            if (data.oauthClientKeys.areKeysPresent()) {
+                getConsumer().sign(get);
+            }
+            PhaseTimings.addSince(Phase.SIGN, startedAt);
+            startedAt = System.currentTimeMillis();
+            HttpResponseCache.Entry entry = HttpApacheUtils.getHttpClient().execute(get,
+                    HttpApacheUtils.newConditionalResponseHandler(this, key, cached));
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
+            return entry;
+        } catch (HttpResponseException e) {
+            ConnectionException e2 = ConnectionException.fromStatusCodeHttp(e.getStatusCode(), 
+                    "getConditionalRequest, URL='" + get.getURI().toString() + "'", e);
+            MyLog.i(TAG, e2);
+            throw e2;
+        } catch (Exception e) {
+            MyLog.e(this, "Exception was caught, URL='" + get.getURI().toString() + "'", e);
+            throw new ConnectionException(e);
+        }
+    }
+
     @Override
     public OAuthConsumer getConsumer() {
         OAuthConsumer consumer = new CommonsHttpOAuthConsumer(data.oauthClientKeys.getConsumerKey(),
                 data.oauthClientKeys.getConsumerSecret());
+        consumer.setMessageSigner(signingCache.newMessageSigner());
         if (getCredentialsPresent()) {
             consumer.setTokenWithSecret(getUserToken(), getUserSecret());
         }
@@ -115,12 +174,18 @@ public class HttpConnectionOAuthApache extends HttpConnectionOAuth implements Ht
         String response = null;
         boolean ok = false;
         try {
+            long startedAt = System.currentTimeMillis();
             if (data.oauthClientKeys.areKeysPresent()) {
                 // sign the request to authenticate
                 getConsumer().sign(post);
             }
-            response = mClient.execute(post, new BasicResponseHandler());
+            PhaseTimings.addSince(Phase.SIGN, startedAt);
+            startedAt = System.currentTimeMillis();
+            response = HttpApacheUtils.getHttpClient().execute(post, HttpApacheUtils.newResponseHandler(this));
+            PhaseTimings.addSince(Phase.NETWORK, startedAt);
+            startedAt = System.currentTimeMillis();
             jso = new JSONObject(response);
+            PhaseTimings.addSince(Phase.PARSE, startedAt);
             ok = true;
         } catch (HttpResponseException e) {
             ConnectionException e2 = ConnectionException.fromStatusCodeHttp(e.getStatusCode(), "postRequest", e);
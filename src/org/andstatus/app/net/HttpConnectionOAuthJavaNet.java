@@ -30,6 +30,8 @@ import org.andstatus.app.data.DbUtils;
 import org.andstatus.app.net.Connection.ApiRoutineEnum;
 import org.andstatus.app.net.ConnectionException.StatusCode;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -130,6 +132,7 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             setAuthorization(conn, getConsumer(), false);
+            long startedAt = System.currentTimeMillis();
             
             if (jso != null) {
                 OutputStream os = conn.getOutputStream();
@@ -140,9 +143,14 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
             }
                         
             int responseCode = conn.getResponseCode();
+            readRateLimitHeaders(conn);
             switch(responseCode) {
                 case 200:
-                    result = new JSONObject(HttpJavaNetUtils.readAll(conn.getInputStream()));
+                    String response = HttpJavaNetUtils.readAll(conn.getInputStream());
+                    PhaseTimings.addSince(Phase.NETWORK, startedAt);
+                    startedAt = System.currentTimeMillis();
+                    result = new JSONObject(response);
+                    PhaseTimings.addSince(Phase.PARSE, startedAt);
                     break;
                 default:
                     String responseString = HttpJavaNetUtils.readAll(new InputStreamReader(conn.getErrorStream(), "UTF-8"));
@@ -166,6 +174,7 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
         OAuthConsumer consumer = new DefaultOAuthConsumer(
                 data.oauthClientKeys.getConsumerKey(),
                 data.oauthClientKeys.getConsumerSecret());
+        consumer.setMessageSigner(signingCache.newMessageSigner());
         if (getCredentialsPresent()) {
             consumer.setTokenWithSecret(getUserToken(), getUserSecret());
         }
@@ -179,11 +188,22 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
 
     @Override
     protected JSONObject getRequest(String path) throws ConnectionException {
+        return bodyToJsonObject(path, getConditionalRequest(path, "", null).body);
+    }
+
+    @Override
+    protected boolean isResponseCacheSupported() {
+        return true;
+    }
+
+    @Override
+    protected HttpResponseCache.Entry getConditionalRequest(String path, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
         if (TextUtils.isEmpty(path)) {
             throw new IllegalArgumentException("path is empty");
         }
         String responseString = "";
-        JSONObject result = null;
+        HttpResponseCache.Entry result = null;
         try {
             OAuthConsumer consumer = getConsumer();
             
@@ -195,27 +215,33 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
                 conn = (HttpURLConnection) url.openConnection();
                 conn.setInstanceFollowRedirects(false);
                 setAuthorization(conn, consumer, redirected);
+                setValidators(conn, cached);
+                long startedAt = System.currentTimeMillis();
                 conn.connect();
                 int responseCode = conn.getResponseCode();
+                readRateLimitHeaders(conn);
                 StatusCode statusCode = StatusCode.fromResponseCode(responseCode);
                 switch(responseCode) {
                     case 200:
-                        try {
-                            responseString = HttpJavaNetUtils.readAll(conn.getInputStream());
-                            result = new JSONObject(responseString);
-                            done = true;
-                        } catch (JSONException e) {
-                            throw ConnectionException.loggedJsonException(this, e, null,
-                                    "Error reading response from '"
-                                            + path + COMMA_STATUS
-                                            + responseCode + NON_JSON_RESPONSE + responseString
-                                            + "'");
+                        responseString = HttpJavaNetUtils.readAll(conn.getInputStream());
+                        PhaseTimings.addSince(Phase.NETWORK, startedAt);
+                        result = new HttpResponseCache.Entry(key, conn.getHeaderField("ETag"),
+                                conn.getHeaderField("Last-Modified"), System.currentTimeMillis(), responseString);
+                        done = true;
+                        break;
+                    case 304:
+                        if (cached == null) {
+                            throw exceptionFromJsonErrorResponse(path, responseCode, "", statusCode);
                         }
+                        PhaseTimings.addSince(Phase.NETWORK, startedAt);
+                        result = cached.revalidated();
+                        done = true;
                         break;
                     case 301:
                     case 302:
                     case 303:
                     case 307:
+                        PhaseTimings.addSince(Phase.NETWORK, startedAt);
                         url = new URL(conn.getHeaderField("Location").replace("%3F", "?"));
                         MyLog.v(this, "Following redirect to " + url);
                         redirected = true;
@@ -260,9 +286,41 @@ public class HttpConnectionOAuthJavaNet extends HttpConnectionOAuth {
         return ce;
     }
 
+    private void readRateLimitHeaders(HttpURLConnection conn) {
+        for (String prefix : RATE_LIMIT_HEADER_PREFIXES) {
+            String limit = conn.getHeaderField(prefix + "Limit");
+            if (!TextUtils.isEmpty(limit)) {
+                setLastRateLimitStatus(limit, conn.getHeaderField(prefix + "Remaining"),
+                        conn.getHeaderField(prefix + "Reset"));
+                return;
+            }
+        }
+        setLastRateLimitStatus(null, null, null);
+    }
+
+    private void setValidators(HttpURLConnection conn, HttpResponseCache.Entry cached) {
+        if (cached == null) {
+            return;
+        }
+        if (!TextUtils.isEmpty(cached.etag)) {
+            conn.setRequestProperty("If-None-Match", cached.etag);
+        }
+        if (!TextUtils.isEmpty(cached.lastModified)) {
+            conn.setRequestProperty("If-Modified-Since", cached.lastModified);
+        }
+    }
+
     private void setAuthorization(HttpURLConnection conn, OAuthConsumer consumer, boolean redirected)
             throws OAuthMessageSignerException, OAuthExpectationFailedException,
             OAuthCommunicationException {
+        long startedAt = System.currentTimeMillis();
+        setAuthorizationNotTimed(conn, consumer, redirected);
+        PhaseTimings.addSince(Phase.SIGN, startedAt);
+    }
+
+    private void setAuthorizationNotTimed(HttpURLConnection conn, OAuthConsumer consumer, boolean redirected)
+            throws OAuthMessageSignerException, OAuthExpectationFailedException,
+            OAuthCommunicationException {
         if (getCredentialsPresent()) {
             if (data.host.contentEquals(data.hostForUserToken)) {
                 consumer.sign(conn);
@@ -18,6 +18,7 @@ package org.andstatus.app.net;
 
 import org.andstatus.app.context.MyPreferences;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -65,6 +66,19 @@ public class HttpJavaNetUtils {
         return bld.toString();
     }
 
+    /**
+     * Reads the stream line by line till its end or till the consumer stops
+     */
+    static void readLines(InputStream s, StreamLineConsumer consumer) throws IOException, ConnectionException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(s, "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!consumer.consumeLine(line)) {
+                break;
+            }
+        }
+    }
+
     public static InputStream urlOpenStream(URL url) throws IOException {
         URLConnection con = url.openConnection();
         con.setConnectTimeout(MyPreferences.getConnectionTimeoutMs());
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.util.FileUtils;
+import org.andstatus.app.util.MyLog;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Small on-disk cache of responses to GET requests, which rarely change: configuration of the server,
+ * the authenticated User, other Users and the rate limit status.
+ * Fresh responses are returned without a request; stale ones are revalidated with
+ * "If-None-Match" (ETag) and "If-Modified-Since" (Last-Modified) headers.
+ * Timelines and other routines are never cached, see {@link #getTtlMs(ApiRoutineEnum)}
+ */
+final class HttpResponseCache {
+    private static final String TAG = HttpResponseCache.class.getSimpleName();
+    static final String DIRECTORY_NAME = "http";
+    static final int MAX_ENTRIES = 300;
+    static final long MAX_SIZE_BYTES = 2 * 1024 * 1024;
+    /** Routine is not cached */
+    static final long NOT_CACHED = -1;
+
+    private static final Object LOCK = new Object();
+    private static volatile HttpResponseCache instance = null;
+
+    private final File directory;
+
+    private HttpResponseCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return null if the cache is not available
+     */
+    static HttpResponseCache getInstance() {
+        if (instance == null) {
+            synchronized (LOCK) {
+                Context context = MyContextHolder.get().context();
+                if (instance == null && context != null && context.getCacheDir() != null) {
+                    File directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+                    if (directory.isDirectory() || directory.mkdirs()) {
+                        instance = new HttpResponseCache(directory);
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Time to live of a response, during which it is used without revalidation
+     * @return {@link #NOT_CACHED} for routines, which responses shouldn't be cached
+     */
+    static long getTtlMs(ApiRoutineEnum routine) {
+        switch (routine) {
+            case GET_CONFIG:
+                return 24 * 60 * 60 * 1000L;
+            case GET_USER:
+                return 60 * 60 * 1000L;
+            case ACCOUNT_RATE_LIMIT_STATUS:
+                return 60 * 1000L;
+            case ACCOUNT_VERIFY_CREDENTIALS:
+                // Credentials are always checked by the server, only the response body may be reused
+                return 0;
+            case STATUSES_HOME_TIMELINE:
+            case STATUSES_MENTIONS_TIMELINE:
+            case STATUSES_USER_TIMELINE:
+            case PUBLIC_TIMELINE:
+            case SEARCH_MESSAGES:
+            case DIRECT_MESSAGES:
+                // Timelines are paged by positions and change all the time
+                return NOT_CACHED;
+            default:
+                return NOT_CACHED;
+        }
+    }
+
+    static String toKey(HttpConnectionData data, String url) {
+        return data.originId + "/" + data.accountUsername + "/" + url;
+    }
+
+    /**
+     * @return null if not found
+     */
+    Entry get(String key) {
+        File file = toFile(key);
+        synchronized (LOCK) {
+            if (!file.exists()) {
+                return null;
+            }
+            try {
+                Entry entry = Entry.fromJson(FileUtils.getJSONObject(file));
+                if (!key.equals(entry.key)) {
+                    return null;
+                }
+                if (!file.setLastModified(System.currentTimeMillis())) {
+                    MyLog.v(TAG, "Couldn't touch " + file.getName());
+                }
+                return entry;
+            } catch (IOException e) {
+                MyLog.d(TAG, "Reading " + file.getName(), e);
+                return null;
+            }
+        }
+    }
+
+    void put(Entry entry) {
+        if (entry == null || !entry.isStorable()) {
+            return;
+        }
+        File file = toFile(entry.key);
+        synchronized (LOCK) {
+            BufferedWriter out = null;
+            try {
+                out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+                out.write(entry.toJson().toString());
+            } catch (IOException e) {
+                MyLog.d(TAG, "Writing " + file.getName(), e);
+            } catch (JSONException e) {
+                MyLog.d(TAG, "Writing " + file.getName(), e);
+            } finally {
+                DbUtils.closeSilently(out);
+            }
+            evict();
+        }
+    }
+
+    void clear() {
+        synchronized (LOCK) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes least recently used entries, when there are too many of them or they are too large
+     */
+    private void evict() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (files.length <= MAX_ENTRIES && size <= MAX_SIZE_BYTES) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long diff = lhs.lastModified() - rhs.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        int count = files.length;
+        for (File file : files) {
+            if (count <= MAX_ENTRIES && size <= MAX_SIZE_BYTES) {
+                break;
+            }
+            size -= file.length();
+            count--;
+            delete(file);
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete()) {
+            MyLog.v(TAG, "Couldn't delete " + file.getName());
+        }
+    }
+
+    private File toFile(String key) {
+        return new File(directory, toFileName(key));
+    }
+
+    static String toFileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            MyLog.v(TAG, e);
+        } catch (UnsupportedEncodingException e) {
+            MyLog.v(TAG, e);
+        }
+        return Integer.toHexString(key.hashCode());
+    }
+
+    /**
+     * Body of a response with its validators
+     */
+    static class Entry {
+        private static final String KEY_KEY = "key";
+        private static final String KEY_ETAG = "etag";
+        private static final String KEY_LAST_MODIFIED = "last_modified";
+        private static final String KEY_STORED_AT = "stored_at";
+        private static final String KEY_BODY = "body";
+
+        final String key;
+        final String etag;
+        final String lastModified;
+        final long storedAt;
+        final String body;
+        /** The response was received by a connection, which doesn't support conditional requests */
+        private boolean storable = true;
+        /** Already parsed body, if any */
+        private JSONObject parsed = null;
+
+        Entry(String key, String etag, String lastModified, long storedAt, String body) {
+            this.key = key;
+            this.etag = etag == null ? "" : etag;
+            this.lastModified = lastModified == null ? "" : lastModified;
+            this.storedAt = storedAt;
+            this.body = body == null ? "" : body;
+        }
+
+        /**
+         * A response, received without support of validation headers
+         */
+        static Entry notStorable(String key, JSONObject jso) {
+            Entry entry = new Entry(key, "", "", System.currentTimeMillis(), "");
+            entry.storable = false;
+            entry.parsed = jso;
+            return entry;
+        }
+
+        JSONObject getParsed() {
+            return parsed;
+        }
+
+        static Entry fromJson(JSONObject jso) {
+            return new Entry(jso.optString(KEY_KEY), jso.optString(KEY_ETAG), jso.optString(KEY_LAST_MODIFIED),
+                    jso.optLong(KEY_STORED_AT), jso.optString(KEY_BODY));
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject jso = new JSONObject();
+            jso.put(KEY_KEY, key);
+            jso.put(KEY_ETAG, etag);
+            jso.put(KEY_LAST_MODIFIED, lastModified);
+            jso.put(KEY_STORED_AT, storedAt);
+            jso.put(KEY_BODY, body);
+            return jso;
+        }
+
+        /**
+         * The server responded "304 Not Modified"
+         */
+        Entry revalidated() {
+            return new Entry(key, etag, lastModified, System.currentTimeMillis(), body);
+        }
+
+        boolean isFresh(long ttlMs) {
+            long age = System.currentTimeMillis() - storedAt;
+            return ttlMs > 0 && age >= 0 && age < ttlMs;
+        }
+
+        boolean hasValidators() {
+            return !TextUtils.isEmpty(etag) || !TextUtils.isEmpty(lastModified);
+        }
+
+        boolean isStorable() {
+            return storable && !TextUtils.isEmpty(body);
+        }
+
+        @Override
+        public String toString() {
+            return "HttpResponseCache.Entry [" + key + ", etag=" + etag + ", lastModified=" + lastModified
+                    + ", storedAt=" + storedAt + ", " + body.length() + " chars]";
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.OAuthMessageSigner;
+import oauth.signpost.signature.SignatureBaseString;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Parts of OAuth HMAC-SHA1 signatures of one account, which don't change from request to request:
+ * the initialized Mac for the consumer and token secrets and percent-encoded normalized URLs
+ * of the API endpoints. Only the request parameters are normalized and hashed for each request.
+ * Produces the same signatures as {@link oauth.signpost.signature.HmacSha1MessageSigner}
+ */
+final class OAuthSigningCache {
+    private static final String MAC_NAME = "HmacSHA1";
+    static final String SIGNATURE_METHOD = "HMAC-SHA1";
+    /** The token secret is different for Dialback requests only */
+    static final int MACS_MAX_SIZE = 4;
+    static final int URLS_MAX_SIZE = 64;
+
+    private final Map<String, Mac> macs = new LruMap<Mac>(MACS_MAX_SIZE);
+    private final Map<String, String> encodedUrls = new LruMap<String>(URLS_MAX_SIZE);
+
+    /**
+     * A signer should not be shared between consumers, because a consumer sets its secrets
+     * to the signer, but all signers of the same account may share one cache
+     */
+    OAuthMessageSigner newMessageSigner() {
+        return new CachingMessageSigner(this);
+    }
+
+    String getEncodedNormalizedUrl(HttpRequest request, SignatureBaseString baseString) throws URISyntaxException {
+        String requestUrl = request.getRequestUrl();
+        int queryIndex = requestUrl.indexOf('?');
+        String key = queryIndex < 0 ? requestUrl : requestUrl.substring(0, queryIndex);
+        synchronized (encodedUrls) {
+            String encodedUrl = encodedUrls.get(key);
+            if (encodedUrl == null) {
+                encodedUrl = OAuth.percentEncode(baseString.normalizeRequestUrl());
+                encodedUrls.put(key, encodedUrl);
+            }
+            return encodedUrl;
+        }
+    }
+
+    /**
+     * @return Mac, initialized with the key. Its users should synchronize on it
+     */
+    Mac getMac(String consumerSecret, String tokenSecret) throws GeneralSecurityException, IOException {
+        String keyString = OAuth.percentEncode(consumerSecret) + '&' + OAuth.percentEncode(tokenSecret);
+        synchronized (macs) {
+            Mac mac = macs.get(keyString);
+            if (mac == null) {
+                mac = Mac.getInstance(MAC_NAME);
+                mac.init(new SecretKeySpec(keyString.getBytes(OAuth.ENCODING), MAC_NAME));
+                macs.put(keyString, mac);
+            }
+            return mac;
+        }
+    }
+
+    private static class LruMap<V> extends LinkedHashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(maxSize + 1, 1f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    static class CachingMessageSigner extends OAuthMessageSigner {
+        private static final long serialVersionUID = 1L;
+        private final transient OAuthSigningCache cache;
+
+        CachingMessageSigner(OAuthSigningCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public String getSignatureMethod() {
+            return SIGNATURE_METHOD;
+        }
+
+        @Override
+        public String sign(HttpRequest request, HttpParameters requestParameters)
+                throws OAuthMessageSignerException {
+            try {
+                SignatureBaseString baseString = new SignatureBaseString(request, requestParameters);
+                String text = request.getMethod() + '&' + cache.getEncodedNormalizedUrl(request, baseString)
+                        + '&' + OAuth.percentEncode(baseString.normalizeRequestParameters());
+                byte[] bytes = text.getBytes(OAuth.ENCODING);
+                Mac mac = cache.getMac(getConsumerSecret(), getTokenSecret());
+                byte[] signature;
+                synchronized (mac) {
+                    signature = mac.doFinal(bytes);
+                }
+                return base64Encode(signature).trim();
+            } catch (GeneralSecurityException e) {
+                throw new OAuthMessageSignerException(e);
+            } catch (IOException e) {
+                throw new OAuthMessageSignerException(e);
+            } catch (URISyntaxException e) {
+                throw new OAuthMessageSignerException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net;
+
+/**
+ * Receives lines of a streamed response as soon as each of them arrives.
+ * Empty (keep-alive) lines are passed also, so the consumer may stop the stream even if no data comes.
+ */
+public interface StreamLineConsumer {
+    /**
+     * @return false to stop reading and to close the stream
+     */
+    boolean consumeLine(String line) throws ConnectionException;
+}
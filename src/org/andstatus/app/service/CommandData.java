@@ -75,6 +75,11 @@ public class CommandData implements Comparable<CommandData> {
      */
     Bundle bundle = new Bundle();
 
+    /**
+     * Row of the {@link Outbox}, where this command is persisted. 0 if none
+     */
+    long outboxId = 0;
+
     private int hashcode = 0;
 
     private CommandResult commandResult = new CommandResult();
@@ -179,6 +184,10 @@ public class CommandData implements Comparable<CommandData> {
         return commandData;
     }
 
+    public static CommandData fetchGapCommand(String accountName, TimelineTypeEnum timelineType, long gapId) {
+        return new CommandData(CommandEnum.FETCH_GAP, accountName, timelineType, gapId);
+    }
+
     public static CommandData updateStatus(String accountName, String status, long replyToId, long recipientId) {
         CommandData commandData = new CommandData(CommandEnum.UPDATE_STATUS, accountName);
         commandData.mInForeground = true;
@@ -474,6 +483,8 @@ public class CommandData implements Comparable<CommandData> {
                 break;
             case AUTOMATIC_UPDATE:
             case FETCH_TIMELINE:
+            case FETCH_GAP:
+            case FETCH_OLDER:
                 if (!TextUtils.isEmpty(accountName)) {
                     builder.append(timelineType.getPrepositionForNotCombinedTimeline(myContext.context()) + " ");
                     MyAccount ma = myContext.persistentAccounts().fromAccountName(accountName);
@@ -512,6 +523,8 @@ public class CommandData implements Comparable<CommandData> {
         switch (command) {
             case AUTOMATIC_UPDATE:
             case FETCH_TIMELINE:
+            case FETCH_GAP:
+            case FETCH_OLDER:
                 builder.append(timelineType.getTitle(myContext.context()));
                 break;
             default:
@@ -32,6 +32,21 @@ public enum CommandEnum {
      * Fetch timeline(s) of the specified type for the specified MyAccount. 
      */
     FETCH_TIMELINE("fetch-timeline", 0, -4, true),
+    /**
+     * Fill a known gap in a timeline. Item ID is {@link org.andstatus.app.data.TimelineGapData#getId()}
+     */
+    FETCH_GAP("fetch-gap", 0, 30, true),
+    /**
+     * Fetch one page of messages, older than the oldest downloaded message of the timeline,
+     * because the User scrolled to the end of the list. It is prefetching, so it goes after
+     * User actions and other fetches, and after {@link #FETCH_GAP}
+     */
+    FETCH_OLDER("fetch-older", 0, 40, true),
+    /**
+     * Remove {@link #FETCH_OLDER} commands of the account and timeline type from the queue,
+     * because the User switched to another timeline
+     */
+    CANCEL_FETCH_OLDER("cancel-fetch-older"),
 
     /**
      * Fetch avatar for the specified user and URL 
@@ -58,6 +73,11 @@ public enum CommandEnum {
 
     RATE_LIMIT_STATUS("rate-limit-status", 0, 0, true),
 
+    /**
+     * Send actions of the User, waiting in the {@link Outbox}, e.g. because the device went online
+     */
+    SEND_OUTBOX("send-outbox"),
+
     /**
      * Notify User about commands in the Queue
      */
@@ -100,6 +120,7 @@ public enum CommandEnum {
      * The id of the string resource with the localized name of this enum to use in UI
      */
     private final int titleResId;
+    /** Commands with smaller values are taken from the queue first, see {@link CommandData#compareTo(CommandData)} */
     private final int priority;
     private final boolean onlineOnly;
 
@@ -16,11 +16,11 @@
 
 package org.andstatus.app.service;
 
-import org.andstatus.app.appwidget.AppWidgets;
+import android.text.TextUtils;
+
 import org.andstatus.app.data.DataPruner;
-import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.LatestTimelineItem;
 import org.andstatus.app.data.TimelineTypeEnum;
-import org.andstatus.app.util.MyLog;
 
 class CommandExecutorLoadAllTimelines extends CommandExecutorStrategy {
     
@@ -30,22 +30,36 @@ class CommandExecutorLoadAllTimelines extends CommandExecutorStrategy {
             if (isStopping()) {
                 break;
             }
+            if (!isTimeToUpdate(timelineType)) {
+                continue;
+            }
             execContext.setTimelineType(timelineType);
             CommandExecutorStrategy.executeStep(execContext, this);
         }
         if (!execContext.getResult().hasError() && !isStopping()) {
             new DataPruner(execContext.getMyContext()).prune();
+            // A stream outlives the sync, so a running stream is not reconnected here
+            TimelineStreamer.startIfNeeded(execContext.getMyContext(), execContext.getMyAccount());
         }
         if (!execContext.getResult().hasError() || execContext.getResult().getDownloadedCount() > 0) {
-            MyLog.v(this, "Notifying of timeline changes");
+            TimelineChangesNotifier.onChanged(execContext.getMyContext(), execContext.getResult());
+        }
+    }
 
-            notifyViaWidgets();
-            
-            AddedMessagesNotifier.newInstance(execContext.getMyContext()).update(
-                    execContext.getResult());
-            
-            notifyViaContentResolver();
+    /**
+     * Automatic updates skip timelines, which were synced recently enough 
+     * according to their own (adaptive) sync interval, and timelines, which are being streamed
+     */
+    private boolean isTimeToUpdate(TimelineTypeEnum timelineType) {
+        if (execContext.getCommandData().getCommand() != CommandEnum.AUTOMATIC_UPDATE
+                || TextUtils.isEmpty(timelineType.columnNameTimelineDownloadedDate())) {
+            return true;
+        }
+        if (timelineType == TimelineTypeEnum.HOME
+                && TimelineStreamer.isStreaming(execContext.getMyAccount().getAccountName())) {
+            return false;
         }
+        return new LatestTimelineItem(timelineType, execContext.getMyAccount().getUserId()).isTimeToAutoSync();
     }
 
     private TimelineTypeEnum[] getTimelines() {
@@ -63,15 +77,4 @@ class CommandExecutorLoadAllTimelines extends CommandExecutorStrategy {
         }
         return timelineTypes;
     }
-
-    private void notifyViaWidgets() {
-        AppWidgets appWidgets = AppWidgets.newInstance(execContext.getMyContext());
-        appWidgets.updateData(execContext.getResult());
-        appWidgets.updateViews();
-    }
-
-    private void notifyViaContentResolver() {
-        // see http://stackoverflow.com/questions/6678046/when-contentresolver-notifychange-is-called-for-a-given-uri-are-contentobserv
-        execContext.getContext().getContentResolver().notifyChange(MyProvider.TIMELINE_URI, null);
-    }
 }
@@ -30,6 +30,7 @@ import org.andstatus.app.data.MyProvider;
 import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.data.MyDatabase.OidEnum;
 import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
 import org.andstatus.app.net.MbMessage;
 import org.andstatus.app.net.MbRateLimitStatus;
 import org.andstatus.app.net.MbUser;
@@ -381,6 +382,8 @@ class CommandExecutorOther extends CommandExecutorStrategy{
             if (ok) {
                 execContext.getResult().setRemainingHits(rateLimitStatus.remaining); 
                 execContext.getResult().setHourlyLimit(rateLimitStatus.limit);
+                RateLimiter.onRateLimitStatus(execContext.getMyAccount(), ApiRoutineEnum.STATUSES_HOME_TIMELINE,
+                        rateLimitStatus);
              }
             logOk(ok);
         } catch (ConnectionException e) {
@@ -23,6 +23,7 @@ import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.net.ConnectionException;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
 
 class CommandExecutorStrategy implements CommandExecutorParent {
     protected CommandExecutionContext execContext = null;
@@ -33,9 +34,17 @@ class CommandExecutorStrategy implements CommandExecutorParent {
                 .setParent(parent);
         commandData.getResult().prepareForLaunch();
         logLaunch(strategy);
-        // This may cause recursive calls to executors...
-        strategy.execute();
+        PhaseTimings timings = PhaseTimings.begin();
+        try {
+            // This may cause recursive calls to executors...
+            strategy.execute();
+        } finally {
+            timings.end();
+        }
         commandData.getResult().afterExecutionEnded();
+        CommandTimings.onCommandExecuted(commandData.getCommand(),
+                strategy.execContext.getMyAccount() == null ? 0 : strategy.execContext.getMyAccount().getOriginId(),
+                timings);
         logEnd(strategy);
     }
 
@@ -90,12 +99,16 @@ class CommandExecutorStrategy implements CommandExecutorParent {
                     switch (execContext.getCommandData().getCommand()) {
                         case AUTOMATIC_UPDATE:
                         case FETCH_TIMELINE:
+                        case FETCH_OLDER:
                             if (execContext.getTimelineType() == TimelineTypeEnum.ALL) {
                                 strategy = new CommandExecutorLoadAllTimelines();
                             } else {
                                 strategy = new CommandExecutorLoadTimeline();
                             }
                             break;
+                        case FETCH_GAP:
+                            strategy = new CommandExecutorLoadGap();
+                            break;
                         case SEARCH_MESSAGE:
                             strategy = new CommandExecutorSearch();
                             break;
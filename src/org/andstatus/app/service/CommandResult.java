@@ -55,6 +55,9 @@ public final class CommandResult implements Parcelable {
     private int mentionsAdded = 0;
     private int directedAdded = 0;
     private int downloadedCount = 0;
+    // Users in downloaded data and the ones, which were actually written to the database
+    private int usersSeen = 0;
+    private int usersWritten = 0;
 
     public CommandResult() {
     }
@@ -81,6 +84,8 @@ public final class CommandResult implements Parcelable {
         mentionsAdded += oneStepResult.mentionsAdded;
         directedAdded += oneStepResult.directedAdded;
         downloadedCount += oneStepResult.downloadedCount;
+        usersSeen += oneStepResult.usersSeen;
+        usersWritten += oneStepResult.usersWritten;
     }
     
     public static final Creator<CommandResult> CREATOR = new Creator<CommandResult>() {
@@ -208,6 +213,9 @@ public final class CommandResult implements Parcelable {
         if (directedAdded > 0) {
             message.append("directed:" + directedAdded + ",");
         }
+        if (usersSeen > 0) {
+            message.append("users written:" + usersWritten + " of " + usersSeen + ",");
+        }
         
         return MyLog.formatKeyValue("CommandResult", message);
     }
@@ -288,6 +296,22 @@ public final class CommandResult implements Parcelable {
     public int getDirectedAdded() {
         return directedAdded;
     }
+
+    public void incrementUsersSeen() {
+        usersSeen++;
+    }
+
+    public void incrementUsersWritten() {
+        usersWritten++;
+    }
+
+    public int getUsersSeen() {
+        return usersSeen;
+    }
+
+    public int getUsersWritten() {
+        return usersWritten;
+    }
     
     protected int getRetriesLeft() {
         return retriesLeft;
@@ -298,6 +322,7 @@ public final class CommandResult implements Parcelable {
         switch (command) {
             case AUTOMATIC_UPDATE:
             case FETCH_TIMELINE:
+            case FETCH_OLDER:
             case RATE_LIMIT_STATUS:
             case SEARCH_MESSAGE:
                 retriesLeft = 0;
@@ -323,6 +348,8 @@ public final class CommandResult implements Parcelable {
         mentionsAdded = 0;
         directedAdded = 0;
         downloadedCount = 0;
+        usersSeen = 0;
+        usersWritten = 0;
     }
     
     void afterExecutionEnded() {
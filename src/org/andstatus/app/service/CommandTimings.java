@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.origin.Origin;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Latency histograms of command execution phases per {@link CommandEnum} and per Origin.
+ * Histograms are kept in a small SharedPreferences file. In order to reflect recent
+ * behaviour only, counts of a histogram are halved when it gets too many samples.
+ */
+public final class CommandTimings {
+    private static final String TAG = CommandTimings.class.getSimpleName();
+    static final String FILE_NAME = "command_timings";
+    static final String TOTAL = "total";
+    private static final String KEY_SEPARATOR = "_";
+    /** {@link SharedPreferences.Editor#apply()} needs API 9 */
+    static final int MIN_SDK_FOR_APPLY = 9;
+
+    private static final Object LOCK = new Object();
+
+    private CommandTimings() {
+    }
+
+    static void onCommandExecuted(CommandEnum command, long originId, PhaseTimings timings) {
+        synchronized (LOCK) {
+            SharedPreferences sp = MyPreferences.getSharedPreferences(FILE_NAME);
+            if (sp == null) {
+                return;
+            }
+            SharedPreferences.Editor editor = sp.edit();
+            for (Phase phase : Phase.values()) {
+                if (timings.getMillis(phase) > 0) {
+                    addSample(sp, editor, toKey(command, originId, phase.getCode()), timings.getMillis(phase));
+                }
+            }
+            addSample(sp, editor, toKey(command, originId, TOTAL), timings.getTotalMillis());
+            save(editor);
+        }
+        MyLog.v(TAG, command.save() + ", originId=" + originId + ": " + timings);
+    }
+
+    /**
+     * The file is written asynchronously where possible, so that command execution doesn't wait for disk
+     */
+    private static void save(SharedPreferences.Editor editor) {
+        if (android.os.Build.VERSION.SDK_INT >= MIN_SDK_FOR_APPLY) {
+            editor.apply();
+        } else {
+            editor.commit();
+        }
+    }
+
+    private static void addSample(SharedPreferences sp, SharedPreferences.Editor editor, String key, long millis) {
+        LatencyHistogram histogram = LatencyHistogram.fromString(sp.getString(key, ""));
+        histogram.add(millis);
+        editor.putString(key, histogram.toString());
+    }
+
+    static String toKey(CommandEnum command, long originId, String phaseCode) {
+        return command.save() + KEY_SEPARATOR + originId + KEY_SEPARATOR + phaseCode;
+    }
+
+    /**
+     * @return Human readable report, suitable for sharing also
+     */
+    public static String getReport() {
+        Map<String, ?> entries;
+        synchronized (LOCK) {
+            SharedPreferences sp = MyPreferences.getSharedPreferences(FILE_NAME);
+            if (sp == null) {
+                return "";
+            }
+            entries = new TreeMap<String, Object>(sp.getAll());
+        }
+        StringBuilder builder = new StringBuilder();
+        String commandAndOriginPrev = "";
+        for (Entry<String, ?> entry : entries.entrySet()) {
+            String[] parts = entry.getKey().split(KEY_SEPARATOR);
+            if (parts.length != 3) {
+                continue;
+            }
+            String commandAndOrigin = parts[0] + KEY_SEPARATOR + parts[1];
+            if (!commandAndOrigin.equals(commandAndOriginPrev)) {
+                commandAndOriginPrev = commandAndOrigin;
+                builder.append("\n" + parts[0] + ", " + originIdToName(parts[1]) + "\n");
+            }
+            LatencyHistogram histogram = LatencyHistogram.fromString(String.valueOf(entry.getValue()));
+            builder.append("  " + parts[2] + ": " + histogram.toSummary() + "\n");
+        }
+        return builder.toString().trim();
+    }
+
+    private static String originIdToName(String strOriginId) {
+        long originId = 0;
+        try {
+            originId = Long.parseLong(strOriginId);
+        } catch (NumberFormatException e) {
+            MyLog.v(TAG, "originId=" + strOriginId, e);
+        }
+        if (originId == 0) {
+            return "all origins";
+        }
+        Origin origin = MyContextHolder.get().persistentOrigins().fromId(originId);
+        return origin == null ? "originId=" + originId : origin.getName();
+    }
+
+    public static void clear() {
+        synchronized (LOCK) {
+            SharedPreferences sp = MyPreferences.getSharedPreferences(FILE_NAME);
+            if (sp != null) {
+                sp.edit().clear().commit();
+            }
+        }
+    }
+
+    /**
+     * Counts of samples in buckets of exponentially growing width:
+     * bucket "i" holds durations less than 2^i ms (and not less than 2^(i-1) ms)
+     */
+    static class LatencyHistogram {
+        static final int BUCKETS_COUNT = 20;
+        static final int ROLLING_MAX_COUNT = 1000;
+        private final int[] counts = new int[BUCKETS_COUNT];
+
+        static LatencyHistogram fromString(String stored) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            if (!TextUtils.isEmpty(stored)) {
+                String[] values = stored.split(",");
+                for (int ind = 0; ind < values.length && ind < BUCKETS_COUNT; ind++) {
+                    try {
+                        histogram.counts[ind] = Integer.parseInt(values[ind]);
+                    } catch (NumberFormatException e) {
+                        MyLog.v(TAG, "Histogram: '" + stored + "'", e);
+                        break;
+                    }
+                }
+            }
+            return histogram;
+        }
+
+        static int bucketOf(long millis) {
+            int bucket = millis <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+            return bucket < BUCKETS_COUNT ? bucket : BUCKETS_COUNT - 1;
+        }
+
+        /** Upper bound of the bucket, ms */
+        static long upperBoundOf(int bucket) {
+            return 1L << bucket;
+        }
+
+        void add(long millis) {
+            counts[bucketOf(millis)]++;
+            if (getCount() > ROLLING_MAX_COUNT) {
+                for (int ind = 0; ind < BUCKETS_COUNT; ind++) {
+                    counts[ind] /= 2;
+                }
+            }
+        }
+
+        int getCount() {
+            int count = 0;
+            for (int value : counts) {
+                count += value;
+            }
+            return count;
+        }
+
+        /**
+         * @return Upper bound of the bucket, where the percentile falls, ms
+         */
+        long getPercentile(int percent) {
+            int count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+            long threshold = (count * (long) percent + 99) / 100;
+            int accumulated = 0;
+            for (int ind = 0; ind < BUCKETS_COUNT; ind++) {
+                accumulated += counts[ind];
+                if (accumulated >= threshold) {
+                    return upperBoundOf(ind);
+                }
+            }
+            return upperBoundOf(BUCKETS_COUNT - 1);
+        }
+
+        String toSummary() {
+            return "n=" + getCount() + ", p50<" + getPercentile(50) + "ms, p90<" + getPercentile(90)
+                    + "ms, max<" + getPercentile(100) + "ms";
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int ind = 0; ind < BUCKETS_COUNT; ind++) {
+                if (ind > 0) {
+                    builder.append(",");
+                }
+                builder.append(counts[ind]);
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.andstatus.app.service;
 
 import java.util.Queue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
@@ -24,7 +25,9 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.andstatus.app.IntentExtra;
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.MyDatabase;
 import org.andstatus.app.data.TimelineTypeEnum;
+import org.andstatus.app.net.HttpConnection;
 import org.andstatus.app.support.android.v11.os.AsyncTask;
 import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.RelativeTime;
@@ -116,6 +119,10 @@ public class MyService extends Service {
     
     private static volatile boolean widgetsInitialized = false;
 
+    /** Runs long-lived streaming connections, see {@link TimelineStreamer} */
+    @GuardedBy("serviceStateLock")
+    private ExecutorService mStreamingExecutor = null;
+
     private MyServiceState getServiceState() {
         MyServiceState state = MyServiceState.STOPPED; 
         synchronized (serviceStateLock) {
@@ -162,6 +169,7 @@ public class MyService extends Service {
         switch (commandData.getCommand()) {
             case STOP_SERVICE:
                 MyLog.v(this, "Command " + commandData.getCommand() + " received");
+                TimelineStreamer.stopAll();
                 stopDelayed(false);
                 break;
             case BROADCAST_SERVICE_STATE:
@@ -217,6 +225,23 @@ public class MyService extends Service {
                 clearQueues();
                 broadcastAfterExecutingCommand(commandData);
                 return null;
+            case FETCH_GAP:
+            case FETCH_OLDER:
+                if (mMainCommandQueue.contains(commandData)) {
+                    MyLog.v(this, "Already in the Main queue " + commandData);
+                    return null;
+                }
+                if (mRetryCommandQueue.contains(commandData)) {
+                    MyLog.v(this, "Already in the Retry queue " + commandData);
+                    return null;
+                }
+                break;
+            case CANCEL_FETCH_OLDER:
+                removeFromQueues(CommandEnum.FETCH_OLDER, commandData);
+                return null;
+            case SEND_OUTBOX:
+                Outbox.onOnline();
+                return null;
             default:
                 break;
 
@@ -230,10 +255,33 @@ public class MyService extends Service {
         return null;
     }
 
+    /**
+     * Removes the commands of the same account and timeline type, as of the cancelling command
+     */
+    private void removeFromQueues(CommandEnum command, CommandData cancelling) {
+        int count = removeFromQueue(mMainCommandQueue, command, cancelling)
+                + removeFromQueue(mRetryCommandQueue, command, cancelling);
+        MyLog.v(this, "Removed " + count + " " + command + " commands from queues for " + cancelling);
+    }
+
+    private int removeFromQueue(Queue<CommandData> queue, CommandEnum command, CommandData cancelling) {
+        int count = 0;
+        for (CommandData commandData : queue) {
+            if (commandData.getCommand() == command
+                    && commandData.getAccountName().equals(cancelling.getAccountName())
+                    && commandData.getTimelineType() == cancelling.getTimelineType()
+                    && queue.remove(commandData)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private void clearQueues() {
         mMainCommandQueue.clear();
         mRetryCommandQueue.clear();
         mErrorCommandQueue.clear();
+        Outbox.clearInBackground();
         MyLog.v(this,"Queues cleared");
     }
     
@@ -250,6 +298,8 @@ public class MyService extends Service {
                 wasNotInitialized = true;
                 restoreState();
                 registerReceiver(intentReceiver, new IntentFilter(ACTION_GO));
+                mStreamingExecutor = TimelineStreamer.newExecutor();
+                TimelineStreamer.setExecutor(mStreamingExecutor);
                 mInitialized = true;
                 changed = true;
             }
@@ -300,6 +350,10 @@ public class MyService extends Service {
     private TriState shouldStop() {
         boolean doStop = !MyContextHolder.get().isReady() || isForcedToStop()
                 || !isAnythingToExecuteNow();
+        if (doStop && isToKeepStreaming()) {
+            idleWhileStreaming();
+            return TriState.UNKNOWN;
+        }
         if (!couldSetIsStopping(doStop, false)) {
             return TriState.UNKNOWN;
         }
@@ -310,6 +364,30 @@ public class MyService extends Service {
         }
     }
 
+    /**
+     * Streaming connections live while the service is running, 
+     * so we don't stop it, when the queue is drained, see {@link TimelineStreamer}
+     */
+    private boolean isToKeepStreaming() {
+        return MyContextHolder.get().isReady() && !isForcedToStop() && TimelineStreamer.isAnyStarted();
+    }
+
+    /**
+     * Nothing to execute, so the wake lock is not needed till the next command
+     */
+    private void idleWhileStreaming() {
+        synchronized(wakeLockLock) {
+            if (mWakeLock == null) {
+                return;
+            }
+        }
+        MyLog.v(this, "Queue is empty, streaming continues");
+        saveState();
+        relealeWakeLock();
+        CommandsQueueNotifier.newInstance(MyContextHolder.get()).update(
+                mMainCommandQueue.size() + Outbox.size(), mRetryCommandQueue.size());
+    }
+
     private boolean couldSetIsStopping(boolean doStop, boolean forceStopNow) {
         boolean forced = false;
         synchronized (serviceStateLock) {
@@ -398,7 +476,7 @@ public class MyService extends Service {
     }
 
     private boolean isAnythingToExecuteNow() {
-        return isAnythingToExecuteInMainQueueNow() || isAnythingToRetryNow();
+        return isAnythingToExecuteInMainQueueNow() || isAnythingToRetryNow() || Outbox.hasReady();
     }
     
     private boolean isAnythingToExecuteInMainQueueNow() {
@@ -473,7 +551,7 @@ public class MyService extends Service {
     }
 
     private void unInitialize() {
-        int mainQueueSize = mMainCommandQueue.size();
+        int mainQueueSize = mMainCommandQueue.size() + Outbox.size();
         int retryQueueSize = mRetryCommandQueue.size();
         synchronized (serviceStateLock) {
             if( mInitialized) {
@@ -482,6 +560,12 @@ public class MyService extends Service {
                 } catch (Exception e) {
                     MyLog.d(this, "On unregisterReceiver", e);
                 }
+                TimelineStreamer.setExecutor(null);
+                TimelineStreamer.stopAll();
+                if (mStreamingExecutor != null) {
+                    mStreamingExecutor.shutdownNow();
+                    mStreamingExecutor = null;
+                }
                 saveState();
                 mInitialized = false;
                 mIsStopping = false;
@@ -561,6 +645,7 @@ public class MyService extends Service {
         private volatile CommandData currentlyExecuting = null;
         private volatile long currentlyExecutingSince = 0;
         private static final long DELAY_AFTER_EXECUTOR_ENDED_SECONDS = 1;
+        private static final long CONNECTION_IDLE_TIMEOUT_MS = 5 * 60 * 1000L;
         
         @Override
         protected Boolean doInBackground(Void... arg0) {
@@ -581,7 +666,16 @@ public class MyService extends Service {
                         break;
                     }
                 }
-                CommandData commandData = pollQueue();
+                // Actions of the User go first
+                moveNewActionsToOutbox();
+                CommandData commandData = Outbox.next();
+                if (commandData == null) {
+                    commandData = pollQueue();
+                    if (commandData != null && isNewAction(commandData)) {
+                        addToOutbox(commandData);
+                        continue;
+                    }
+                }
                 currentlyExecuting = commandData;
                 currentlyExecutingSince = System.currentTimeMillis();
                 if (commandData == null) {
@@ -595,7 +689,9 @@ public class MyService extends Service {
                 } else {
                     commandData.getResult().incrementNumIoExceptions();
                 }
-                if (commandData.getResult().shouldWeRetry()) {
+                if (Outbox.onExecuted(commandData)) {
+                    MyLog.v(this, "Kept in the Outbox " + commandData);
+                } else if (commandData.getResult().shouldWeRetry() && commandData.outboxId == 0) {
                     addToRetryQueue(commandData);        
                 } else if (commandData.getResult().hasError()) {
                     addToErrorQueue(commandData);
@@ -604,9 +700,50 @@ public class MyService extends Service {
                 addSyncOfThisToQueue(commandData);
             } while (true);
             MyLog.d(this, "Ended, " + breakReason + ", " + totalQueuesSize() + " commands left");
+            TimelineChangesNotifier.flush(MyContextHolder.get());
+            checkpointDatabase();
+            releaseIdleConnections();
             return true;
         }
 
+        /**
+         * New actions of the User come through the Main queue, 
+         * so they are added to the {@link Outbox} in this background thread
+         */
+        private void moveNewActionsToOutbox() {
+            for (CommandData commandData : mMainCommandQueue) {
+                if (isNewAction(commandData) && mMainCommandQueue.remove(commandData)) {
+                    addToOutbox(commandData);
+                }
+            }
+        }
+
+        private boolean isNewAction(CommandData commandData) {
+            return Outbox.isOutboxCommand(commandData.getCommand()) && commandData.outboxId == 0;
+        }
+
+        private void addToOutbox(CommandData commandData) {
+            if (!Outbox.add(commandData)) {
+                broadcastAfterExecutingCommand(commandData);
+            }
+        }
+
+        private void releaseIdleConnections() {
+            MyContextHolder.get().persistentAccounts().releaseIdleConnections(CONNECTION_IDLE_TIMEOUT_MS);
+            HttpConnection.releaseIdleResources();
+        }
+
+        /**
+         * The queue is drained, so this is a good time to checkpoint the write-ahead log
+         * in this background thread instead of letting it grow till the next sync
+         */
+        private void checkpointDatabase() {
+            MyDatabase db = MyContextHolder.get().getDatabase();
+            if (db != null) {
+                db.checkpoint();
+            }
+        }
+
         private CommandData pollQueue() {
             Queue<CommandData> tempQueue = new PriorityBlockingQueue<CommandData>(mMainCommandQueue.size()+1);
             CommandData commandData = null;
@@ -651,7 +788,8 @@ public class MyService extends Service {
         private static final long MIN_RETRY_PERIOD_SECONDS = 900; 
         private void moveCommandsFromRetryToMainQueue() {
             for (CommandData cd : mRetryCommandQueue) {
-                if (cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)) {
+                if (cd.executedMoreSecondsAgoThan(MIN_RETRY_PERIOD_SECONDS)
+                        && RateLimiter.isAllowedNow(cd)) {
                     addToMainQueue(cd);
                     mRetryCommandQueue.remove(cd);
                     MyLog.v(this, "Moved from Retry to Main queue: " + cd);
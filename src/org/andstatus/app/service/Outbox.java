@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.content.ComponentName;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+
+import org.andstatus.app.IntentExtra;
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.FollowingUserValues;
+import org.andstatus.app.data.MyDatabase;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.TimelineTypeEnum;
+import org.andstatus.app.support.android.v11.os.AsyncTask;
+import org.andstatus.app.util.MyLog;
+
+/**
+ * Actions of the User, persisted in the database till they are sent to the server.
+ * An action is applied to the local data at once, so the User sees its result without waiting.
+ * Contradictory actions (e.g. "favorite" and then "unfavorite" of the same message), 
+ * which were not sent yet, cancel each other and are not sent at all.
+ * Pending actions are sent before other commands, and all at once when the device goes online.
+ * Actions are added and sent in the background thread of {@link MyService}.
+ * Main thread of the service sees only the in-memory state of the Outbox, which is refreshed on each change.
+ */
+final class Outbox {
+    private static final String TAG = Outbox.class.getSimpleName();
+    /** Delay before the next attempt grows with the number of failures, but doesn't exceed the maximum */
+    static final long RETRY_DELAY_MS = 60 * 1000L;
+    static final long MAX_RETRY_DELAY_MS = 15 * 60 * 1000L;
+    /** The action is dropped (and reverted locally) after so many failed attempts */
+    static final int MAX_FAILURES = 50;
+
+    private static final Object LOCK = new Object();
+    /** Failed actions are retried at once after the device went online */
+    private static volatile long onlineAt = 0;
+    /** null if unknown yet */
+    private static volatile Boolean connectivityReceiverEnabled = null;
+    /** Number of pending actions, -1 if not loaded yet */
+    private static volatile int pendingCount = -1;
+    /** The earliest time, when a failed action may be retried regardless of connectivity changes */
+    private static volatile long retryAt = 0;
+    /** The earliest failure date of the pending actions */
+    private static volatile long failedAtMin = 0;
+
+    private Outbox() {
+    }
+
+    static boolean isOutboxCommand(CommandEnum command) {
+        switch (command) {
+            case CREATE_FAVORITE:
+            case DESTROY_FAVORITE:
+            case FOLLOW_USER:
+            case STOP_FOLLOWING_USER:
+            case REBLOG:
+            case DESTROY_REBLOG:
+            case UPDATE_STATUS:
+            case DESTROY_STATUS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return The command, which cancels the effect of this one, or {@link CommandEnum#UNKNOWN}
+     */
+    static CommandEnum oppositeOf(CommandEnum command) {
+        switch (command) {
+            case CREATE_FAVORITE:
+                return CommandEnum.DESTROY_FAVORITE;
+            case DESTROY_FAVORITE:
+                return CommandEnum.CREATE_FAVORITE;
+            case FOLLOW_USER:
+                return CommandEnum.STOP_FOLLOWING_USER;
+            case STOP_FOLLOWING_USER:
+                return CommandEnum.FOLLOW_USER;
+            case REBLOG:
+                return CommandEnum.DESTROY_REBLOG;
+            case DESTROY_REBLOG:
+                return CommandEnum.REBLOG;
+            default:
+                return CommandEnum.UNKNOWN;
+        }
+    }
+
+    /**
+     * Applies the action locally and persists it, unless it cancels a pending opposite action
+     * or the same action is pending already
+     * @return true if the action is to be sent
+     */
+    static boolean add(CommandData commandData) {
+        synchronized (LOCK) {
+            applyLocally(commandData, true);
+            long oppositeId = findPending(commandData, oppositeOf(commandData.getCommand()));
+            if (oppositeId != 0) {
+                delete(oppositeId);
+                MyLog.v(TAG, "Coalesced with pending opposite action: " + commandData);
+                return false;
+            }
+            if (findPending(commandData, commandData.getCommand()) != 0) {
+                MyLog.v(TAG, "Already pending: " + commandData);
+                return false;
+            }
+            ContentValues values = new ContentValues();
+            values.put(MyDatabase.Outbox.ACCOUNT_NAME, commandData.getAccountName());
+            values.put(MyDatabase.Outbox.COMMAND, commandData.getCommand().save());
+            values.put(MyDatabase.Outbox.ITEM_ID, commandData.itemId);
+            if (commandData.getCommand() == CommandEnum.UPDATE_STATUS) {
+                values.put(MyDatabase.Outbox.MSG_TEXT, commandData.bundle.getString(IntentExtra.EXTRA_MESSAGE_TEXT.key));
+                values.put(MyDatabase.Outbox.IN_REPLY_TO_ID, commandData.bundle.getLong(IntentExtra.EXTRA_INREPLYTOID.key));
+                values.put(MyDatabase.Outbox.RECIPIENT_ID, commandData.bundle.getLong(IntentExtra.EXTRA_RECIPIENTID.key));
+            }
+            values.put(MyDatabase.Outbox.CREATED_DATE, System.currentTimeMillis());
+            commandData.outboxId = DbUtils.addRowWithRetry(MyDatabase.Outbox.TABLE_NAME, values, 3);
+            if (commandData.outboxId == -1) {
+                commandData.outboxId = 0;
+                MyLog.e(TAG, "Couldn't add " + commandData);
+                return false;
+            }
+            MyLog.v(TAG, "Added " + commandData);
+            onSizeChanged();
+            return true;
+        }
+    }
+
+    /**
+     * Coalescing is possible for actions on the same item only
+     * @return id of the pending action or 0 if not found
+     */
+    private static long findPending(CommandData commandData, CommandEnum command) {
+        if (command == CommandEnum.UNKNOWN || commandData.itemId == 0) {
+            return 0;
+        }
+        return queryForId(MyDatabase.Outbox.ACCOUNT_NAME + "=" + MyProvider.quoteIfNotQuoted(commandData.getAccountName())
+                + " AND " + MyDatabase.Outbox.COMMAND + "='" + command.save() + "'"
+                + " AND " + MyDatabase.Outbox.ITEM_ID + "=" + commandData.itemId);
+    }
+
+    /**
+     * The device went online, so there is no need to wait before retrying
+     */
+    static void onOnline() {
+        onOnline(System.currentTimeMillis());
+    }
+
+    static void onOnline(long onlineAtIn) {
+        onlineAt = onlineAtIn;
+    }
+
+    /**
+     * Doesn't access the database, so it may be called from the main thread
+     * @return true if there are actions, which may be sent now
+     */
+    static boolean hasReady() {
+        int count = pendingCount;
+        if (count == 0 || !MyContextHolder.get().isOnline()) {
+            return false;
+        }
+        if (count < 0) {
+            // Not loaded yet: let the executor find out
+            return true;
+        }
+        return retryAt < System.currentTimeMillis() || failedAtMin < onlineAt;
+    }
+
+    /**
+     * @return The oldest action, which may be sent now, or null
+     */
+    static CommandData next() {
+        if (!MyContextHolder.get().isOnline()) {
+            return null;
+        }
+        synchronized (LOCK) {
+            if (pendingCount < 0) {
+                refreshState();
+            }
+            while (pendingCount > 0) {
+                CommandData commandData = query(whereReady());
+                if (commandData == null || commandData.getAccount() != null) {
+                    return commandData;
+                }
+                MyLog.i(TAG, "No account for " + commandData);
+                delete(commandData.outboxId);
+            }
+            return null;
+        }
+    }
+
+    private static String whereReady() {
+        long now = System.currentTimeMillis();
+        return "(" + MyDatabase.Outbox.FAILED_DATE + "<" + Math.max(onlineAt, now - MAX_RETRY_DELAY_MS)
+                + " OR " + MyDatabase.Outbox.FAILED_DATE + " + " + MyDatabase.Outbox.FAILURES + " * " + RETRY_DELAY_MS
+                + "<" + now + ")";
+    }
+
+    /**
+     * Removes the sent action, or keeps it for the next attempt after a temporary failure
+     * @return true if the action is kept in the Outbox
+     */
+    static boolean onExecuted(CommandData commandData) {
+        if (commandData.outboxId == 0) {
+            return false;
+        }
+        synchronized (LOCK) {
+            CommandResult result = commandData.getResult();
+            if (!result.hasError()) {
+                delete(commandData.outboxId);
+            } else if (!result.hasHardError() && getFailures(commandData.outboxId) < MAX_FAILURES) {
+                String sql = "UPDATE " + MyDatabase.Outbox.TABLE_NAME + " SET "
+                        + MyDatabase.Outbox.FAILURES + "=" + MyDatabase.Outbox.FAILURES + "+1, "
+                        + MyDatabase.Outbox.FAILED_DATE + "=" + System.currentTimeMillis()
+                        + " WHERE " + MyDatabase.Outbox._ID + "=" + commandData.outboxId;
+                MyContextHolder.get().getDatabase().getWritableDatabase().execSQL(sql);
+                refreshState();
+                MyLog.v(TAG, "Will retry " + commandData);
+                return true;
+            } else {
+                delete(commandData.outboxId);
+                applyLocally(commandData, false);
+                MyLog.i(TAG, "Failed, reverted locally " + commandData);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Doesn't access the database, so it may be called from the main thread
+     * @return 0 if not loaded yet
+     */
+    static int size() {
+        return Math.max(pendingCount, 0);
+    }
+
+    /**
+     * Reloads the in-memory state of the Outbox. Called under the {@link #LOCK} after each change
+     */
+    private static void refreshState() {
+        String sql = "SELECT COUNT(*), MIN(MIN("
+                + MyDatabase.Outbox.FAILED_DATE + " + " + MyDatabase.Outbox.FAILURES + " * " + RETRY_DELAY_MS + ", "
+                + MyDatabase.Outbox.FAILED_DATE + " + " + MAX_RETRY_DELAY_MS + ")), "
+                + "MIN(" + MyDatabase.Outbox.FAILED_DATE + ")"
+                + " FROM " + MyDatabase.Outbox.TABLE_NAME;
+        SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            if (cursor.moveToNext()) {
+                retryAt = cursor.getLong(1);
+                failedAtMin = cursor.getLong(2);
+                pendingCount = cursor.getInt(0);
+            } else {
+                pendingCount = 0;
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    private static int getFailures(long outboxId) {
+        return (int) queryLong("SELECT " + MyDatabase.Outbox.FAILURES + " FROM " + MyDatabase.Outbox.TABLE_NAME
+                + " WHERE " + MyDatabase.Outbox._ID + "=" + outboxId);
+    }
+
+    private static long queryForId(String where) {
+        return queryLong("SELECT " + MyDatabase.Outbox._ID + " FROM " + MyDatabase.Outbox.TABLE_NAME
+                + " WHERE " + where + " ORDER BY " + MyDatabase.Outbox._ID + " LIMIT 1");
+    }
+
+    /**
+     * @return 0 if nothing found
+     */
+    private static long queryLong(String sql) {
+        SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
+        SQLiteStatement statement = null;
+        try {
+            statement = db.compileStatement(sql);
+            return statement.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            MyLog.ignored(TAG, e);
+            return 0;
+        } finally {
+            DbUtils.closeSilently(statement);
+        }
+    }
+
+    private static CommandData query(String where) {
+        String sql = "SELECT " + MyDatabase.Outbox._ID + ", "
+                + MyDatabase.Outbox.ACCOUNT_NAME + ", "
+                + MyDatabase.Outbox.COMMAND + ", "
+                + MyDatabase.Outbox.ITEM_ID + ", "
+                + MyDatabase.Outbox.MSG_TEXT + ", "
+                + MyDatabase.Outbox.IN_REPLY_TO_ID + ", "
+                + MyDatabase.Outbox.RECIPIENT_ID
+                + " FROM " + MyDatabase.Outbox.TABLE_NAME
+                + " WHERE " + where
+                + " ORDER BY " + MyDatabase.Outbox._ID + " LIMIT 1";
+        SQLiteDatabase db = MyContextHolder.get().getDatabase().getReadableDatabase();
+        Cursor cursor = null;
+        CommandData commandData = null;
+        try {
+            cursor = db.rawQuery(sql, null);
+            if (cursor.moveToNext()) {
+                CommandEnum command = CommandEnum.load(cursor.getString(2));
+                if (command == CommandEnum.UPDATE_STATUS) {
+                    commandData = CommandData.updateStatus(cursor.getString(1), cursor.getString(4),
+                            cursor.getLong(5), cursor.getLong(6));
+                } else {
+                    commandData = new CommandData(command, cursor.getString(1), cursor.getLong(3));
+                }
+                commandData.outboxId = cursor.getLong(0);
+                commandData.setInForeground(true);
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+        return commandData;
+    }
+
+    private static void delete(long outboxId) {
+        MyContextHolder.get().getDatabase().getWritableDatabase()
+                .delete(MyDatabase.Outbox.TABLE_NAME, MyDatabase.Outbox._ID + "=" + outboxId, null);
+        onSizeChanged();
+    }
+
+    static void clear() {
+        synchronized (LOCK) {
+            MyContextHolder.get().getDatabase().getWritableDatabase().delete(MyDatabase.Outbox.TABLE_NAME, null, null);
+            onSizeChanged();
+        }
+    }
+
+    /**
+     * The Outbox looks empty at once, the actions are deleted in the background
+     */
+    static void clearInBackground() {
+        pendingCount = 0;
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                clear();
+            }
+        });
+    }
+
+    /**
+     * {@link OutboxConnectivityReceiver} is enabled only while there are pending actions,
+     * so changes of connectivity don't wake up the application in vain
+     */
+    private static void onSizeChanged() {
+        refreshState();
+        boolean enabled = pendingCount > 0;
+        if (connectivityReceiverEnabled != null && connectivityReceiverEnabled == enabled) {
+            return;
+        }
+        Context context = MyContextHolder.get().context();
+        context.getPackageManager().setComponentEnabledSetting(
+                new ComponentName(context, OutboxConnectivityReceiver.class),
+                enabled ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED
+                        : PackageManager.COMPONENT_ENABLED_STATE_DISABLED,
+                PackageManager.DONT_KILL_APP);
+        connectivityReceiverEnabled = enabled;
+        MyLog.v(TAG, "Connectivity receiver " + (enabled ? "enabled" : "disabled"));
+    }
+
+    /**
+     * Changes local data, as if the action succeeded
+     * @param apply false - revert the change
+     */
+    private static void applyLocally(CommandData commandData, boolean apply) {
+        MyAccount ma = commandData.getAccount();
+        if (ma == null || commandData.itemId == 0) {
+            return;
+        }
+        boolean changed = true;
+        switch (commandData.getCommand()) {
+            case CREATE_FAVORITE:
+            case DESTROY_FAVORITE:
+                setMsgOfUserFlag(ma, commandData.itemId, MsgOfUser.FAVORITED,
+                        (commandData.getCommand() == CommandEnum.CREATE_FAVORITE) == apply);
+                break;
+            case REBLOG:
+            case DESTROY_REBLOG:
+                setMsgOfUserFlag(ma, commandData.itemId, MsgOfUser.REBLOGGED,
+                        (commandData.getCommand() == CommandEnum.REBLOG) == apply);
+                break;
+            case FOLLOW_USER:
+            case STOP_FOLLOWING_USER:
+                FollowingUserValues values = new FollowingUserValues(ma.getUserId(), commandData.itemId);
+                values.setFollowed((commandData.getCommand() == CommandEnum.FOLLOW_USER) == apply);
+                values.update(MyContextHolder.get().getDatabase().getWritableDatabase());
+                break;
+            default:
+                changed = false;
+                break;
+        }
+        if (changed) {
+            MyContextHolder.get().context().getContentResolver().notifyChange(MyProvider.TIMELINE_URI, null);
+        }
+    }
+
+    private static void setMsgOfUserFlag(MyAccount ma, long msgId, String columnName, boolean value) {
+        ContentValues values = new ContentValues();
+        values.put(columnName, value ? 1 : 0);
+        Uri msgUri = MyProvider.getTimelineMsgUri(ma.getUserId(), TimelineTypeEnum.HOME, false, msgId);
+        MyContextHolder.get().context().getContentResolver().update(msgUri, values, null, null);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.data.TimelineTypeEnum;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.ConnectionException.StatusCode;
+import org.andstatus.app.net.MbRateLimitStatus;
+import org.andstatus.app.util.MyLog;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Token bucket per account and API routine, filled from the rate limit statuses,
+ * which servers report. Timeline downloads are deferred when they are certain to fail
+ * and when they would take requests reserved for actions of the User.
+ */
+final class RateLimiter {
+    private static final String TAG = RateLimiter.class.getSimpleName();
+    /** Twitter's rate limit window. Used when the server didn't tell us the reset time */
+    static final long DEFAULT_WINDOW_MS = 15 * 60 * 1000L;
+    /** Part of the limit, which timeline downloads leave for actions of the User */
+    static final int RESERVED_PERCENT = 10;
+
+    private static final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    private RateLimiter() {
+    }
+
+    /**
+     * Take one token for the request
+     * @return false if the request should be deferred
+     */
+    static boolean tryAcquire(MyAccount ma, ApiRoutineEnum routine) {
+        TokenBucket bucket = buckets.get(toKey(ma.getAccountName(), routine));
+        boolean ok = bucket == null || bucket.tryAcquire(System.currentTimeMillis(), true);
+        if (!ok) {
+            MyLog.d(TAG, "Deferred " + routine + " for " + ma.getAccountName() + "; " + bucket);
+        }
+        return ok;
+    }
+
+    /**
+     * @return true if the command may be executed now, as far as we know about rate limits
+     */
+    static boolean isAllowedNow(CommandData commandData) {
+        TimelineTypeEnum timelineType = commandData.getTimelineType();
+        if (timelineType == TimelineTypeEnum.ALL) {
+            timelineType = TimelineTypeEnum.HOME;
+        }
+        TokenBucket bucket = buckets.get(toKey(commandData.getAccountName(), timelineType.getConnectionApiRoutine()));
+        return bucket == null || bucket.tryAcquire(System.currentTimeMillis(), false);
+    }
+
+    static void onRateLimitStatus(MyAccount ma, ApiRoutineEnum routine, MbRateLimitStatus status) {
+        if (status == null || status.isEmpty()) {
+            return;
+        }
+        getBucket(ma.getAccountName(), routine).onStatus(status, System.currentTimeMillis());
+    }
+
+    /**
+     * Takes into account rate limit headers of the failed response, if any,
+     * and the "Limit exceeded" status of the failure
+     */
+    static void onConnectionException(MyAccount ma, ApiRoutineEnum routine, ConnectionException e) {
+        onRateLimitStatus(ma, routine, ma.getConnection().getLastRateLimitStatus());
+        if (e.getStatusCode() == StatusCode.RATE_LIMIT_EXCEEDED) {
+            onLimitExceeded(ma, routine);
+        }
+    }
+
+    static void onLimitExceeded(MyAccount ma, ApiRoutineEnum routine) {
+        TokenBucket bucket = getBucket(ma.getAccountName(), routine);
+        bucket.onLimitExceeded(System.currentTimeMillis());
+        MyLog.i(TAG, "Limit exceeded for " + routine + " of " + ma.getAccountName() + "; " + bucket);
+    }
+
+    private static TokenBucket getBucket(String accountName, ApiRoutineEnum routine) {
+        String key = toKey(accountName, routine);
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            buckets.putIfAbsent(key, new TokenBucket());
+            bucket = buckets.get(key);
+        }
+        return bucket;
+    }
+
+    private static String toKey(String accountName, ApiRoutineEnum routine) {
+        return accountName + "/" + routine;
+    }
+
+    static void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Requests left in the current rate limit window
+     */
+    static class TokenBucket {
+        private int limit = 0;
+        private int remaining = 0;
+        private long resetTime = 0;
+
+        synchronized void onStatus(MbRateLimitStatus status, long now) {
+            limit = status.limit;
+            remaining = status.remaining;
+            resetTime = status.resetTime > now ? status.resetTime : now + DEFAULT_WINDOW_MS;
+        }
+
+        synchronized void onLimitExceeded(long now) {
+            remaining = 0;
+            if (resetTime <= now) {
+                resetTime = now + DEFAULT_WINDOW_MS;
+            }
+        }
+
+        synchronized boolean tryAcquire(long now, boolean consume) {
+            if (resetTime <= now) {
+                if (limit == 0) {
+                    // We know nothing about limits
+                    resetTime = 0;
+                    return true;
+                }
+                remaining = limit;
+                resetTime = now + DEFAULT_WINDOW_MS;
+            }
+            if (remaining - getReserved() < 1) {
+                return false;
+            }
+            if (consume) {
+                remaining--;
+            }
+            return true;
+        }
+
+        private int getReserved() {
+            return limit * RESERVED_PERCENT / 100;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "TokenBucket [remaining=" + remaining + ", limit=" + limit + ", resetIn="
+                    + (resetTime == 0 ? "?" : ((resetTime - System.currentTimeMillis()) / 1000) + "s") + "]";
+        }
+    }
+}
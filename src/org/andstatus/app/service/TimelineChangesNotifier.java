@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import org.andstatus.app.appwidget.AppWidgets;
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+
+/**
+ * Collects results of timeline loads during one sync cycle (e.g. of all accounts)
+ * in order to update widgets, show notifications and notify the content resolver
+ * once per cycle instead of once per account.
+ * Pending changes are flushed when the queue of commands is drained
+ * or when the debounce window since the first pending change has passed.
+ */
+final class TimelineChangesNotifier {
+    private static final String TAG = TimelineChangesNotifier.class.getSimpleName();
+
+    private static final Object LOCK = new Object();
+    private static CommandResult pending = null;
+    private static long pendingSince = 0;
+
+    private TimelineChangesNotifier() {
+    }
+
+    /**
+     * Adds the result of one timeline load to the pending changes
+     */
+    static void onChanged(MyContext myContext, CommandResult result) {
+        boolean flushNow;
+        synchronized (LOCK) {
+            if (pending == null) {
+                pending = new CommandResult();
+                pendingSince = System.currentTimeMillis();
+            }
+            pending.accumulateOneStep(result);
+            flushNow = System.currentTimeMillis() - pendingSince >= MyPreferences.getNotificationsDebounceMs();
+        }
+        if (flushNow) {
+            flush(myContext);
+        }
+    }
+
+    /**
+     * Notifies of all pending changes, if any
+     */
+    static void flush(MyContext myContext) {
+        CommandResult result;
+        synchronized (LOCK) {
+            result = pending;
+            pending = null;
+            pendingSince = 0;
+        }
+        if (result == null) {
+            return;
+        }
+        MyLog.v(TAG, "Notifying of timeline changes: " + result);
+        long startedAt = System.currentTimeMillis();
+
+        AppWidgets appWidgets = AppWidgets.newInstance(myContext);
+        appWidgets.updateData(result);
+        appWidgets.updateViews();
+
+        AddedMessagesNotifier.newInstance(myContext).update(result);
+
+        // see http://stackoverflow.com/questions/6678046/when-contentresolver-notifychange-is-called-for-a-given-uri-are-contentobserv
+        myContext.context().getContentResolver().notifyChange(MyProvider.TIMELINE_URI, null);
+        PhaseTimings.addSince(Phase.NOTIFY, startedAt);
+    }
+
+    static boolean hasPending() {
+        synchronized (LOCK) {
+            return pending != null;
+        }
+    }
+
+    /**
+     * @return copy of the pending changes for tests
+     */
+    static CommandResult getPending() {
+        synchronized (LOCK) {
+            if (pending == null) {
+                return null;
+            }
+            CommandResult copy = new CommandResult();
+            copy.accumulateOneStep(pending);
+            return copy;
+        }
+    }
+}
@@ -17,7 +17,15 @@
 package org.andstatus.app.service;
 
 import org.andstatus.app.data.DataInserter;
+import org.andstatus.app.data.LatestTimelineItem;
+import org.andstatus.app.data.LatestUserMessages;
+import org.andstatus.app.data.OldestTimelineItem;
 import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.MbTimelineItem;
+import org.andstatus.app.net.TimelineItemConsumer;
+import org.andstatus.app.net.TimelinePosition;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 
 /**
  * Downloads ("loads") different types of Timelines 
@@ -28,6 +36,7 @@ import org.andstatus.app.net.ConnectionException;
  */
 abstract class TimelineDownloader {
     private static final String TAG = TimelineDownloader.class.getSimpleName();
+    protected static final int MAXIMUM_NUMBER_OF_MESSAGES_TO_DOWNLOAD = 200;
 
     protected CommandExecutionContext execContext;
     
@@ -40,7 +49,13 @@ abstract class TimelineDownloader {
             case ALL:
                 throw new IllegalArgumentException(TAG + ": Invalid TimelineType for loadTimeline: " + execContext.getTimelineType());
             default:
-                td = new TimelineDownloaderOther();
+                if (execContext.getCommandData().getCommand() == CommandEnum.FETCH_GAP) {
+                    td = new TimelineDownloaderGap();
+                } else if (execContext.getCommandData().getCommand() == CommandEnum.FETCH_OLDER) {
+                    td = new TimelineDownloaderOlder();
+                } else {
+                    td = new TimelineDownloaderOther();
+                }
                 break;
         }
         td.execContext = execContext;
@@ -48,4 +63,56 @@ abstract class TimelineDownloader {
     }
     
     public abstract void download() throws ConnectionException;
+
+    /**
+     * Stores timeline items as soon as they are parsed
+     */
+    protected class ItemsInserter implements TimelineItemConsumer {
+        private final LatestTimelineItem latestTimelineItem;
+        private final LatestUserMessages latestUserMessages;
+        final OldestTimelineItem oldestTimelineItem = new OldestTimelineItem(
+                execContext.getTimelineType(), execContext.getTimelineUserId());
+        private final DataInserter di = new DataInserter(execContext);
+        int toDownload = MAXIMUM_NUMBER_OF_MESSAGES_TO_DOWNLOAD;
+        /** Number of items in the current page */
+        int pageCount = 0;
+        /** The first (i.e. the oldest) item of the current page */
+        TimelinePosition pageOldestPosition = TimelinePosition.getEmpty();
+        long pageOldestDate = 0;
+
+        ItemsInserter(LatestTimelineItem latestTimelineItem, LatestUserMessages latestUserMessages) {
+            this.latestTimelineItem = latestTimelineItem;
+            this.latestUserMessages = latestUserMessages;
+        }
+
+        void onNewPage() {
+            pageCount = 0;
+            pageOldestPosition = TimelinePosition.getEmpty();
+            pageOldestDate = 0;
+        }
+
+        @Override
+        public void consume(MbTimelineItem item) {
+            long startedAt = System.currentTimeMillis();
+            toDownload--;
+            if (pageCount == 0) {
+                pageOldestPosition = item.timelineItemPosition;
+                pageOldestDate = item.timelineItemDate;
+            }
+            pageCount++;
+            latestTimelineItem.onNewMsg(item.timelineItemPosition, item.timelineItemDate);
+            oldestTimelineItem.onNewMsg(item.timelineItemPosition, item.timelineItemDate);
+            switch (item.getType()) {
+                case MESSAGE:
+                    di.insertOrUpdateMsg(item.mbMessage, latestUserMessages);
+                    break;
+                case USER:
+                    di.insertOrUpdateUser(item.mbUser);
+                    break;
+                default:
+                    break;
+            }
+            PhaseTimings.addSince(Phase.DB_WRITE, startedAt);
+        }
+    }
 }
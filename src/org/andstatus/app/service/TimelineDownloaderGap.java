@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.text.TextUtils;
+
+import org.andstatus.app.data.LatestTimelineItem;
+import org.andstatus.app.data.LatestUserMessages;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.TimelineGapData;
+import org.andstatus.app.data.MyDatabase.OidEnum;
+import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.net.ConnectionException.StatusCode;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+
+/**
+ * Fills a known gap in a timeline, paging backwards from the newer end of the gap
+ * (i.e. using "max_id" / "before") until the older end is reached
+ */
+class TimelineDownloaderGap extends TimelineDownloader {
+
+    @Override
+    public void download() throws ConnectionException {
+        TimelineGapData gap = TimelineGapData.fromId(execContext.getCommandData().itemId);
+        if (gap == null) {
+            MyLog.v(this, "The gap was filled already, id=" + execContext.getCommandData().itemId);
+            return;
+        }
+        execContext.setTimelineUserId(gap.getUserId());
+        MyLog.d(this, "Filling " + gap);
+        String userOid =  MyProvider.idToOid(OidEnum.USER_OID, gap.getUserId(), 0);
+        if (TextUtils.isEmpty(userOid)) {
+            gap.delete();
+            throw new ConnectionException("User oId is not found for id=" + gap.getUserId());
+        }
+        LatestUserMessages latestUserMessages = new LatestUserMessages();
+        ItemsInserter inserter = new ItemsInserter(
+                new LatestTimelineItem(gap.getTimelineType(), gap.getUserId()), latestUserMessages);
+        ApiRoutineEnum apiRoutine = gap.getTimelineType().getConnectionApiRoutine();
+        boolean filled = false;
+        boolean deferred = false;
+        try {
+            while (!filled && inserter.toDownload > 0) {
+                if (!RateLimiter.tryAcquire(execContext.getMyAccount(), apiRoutine)) {
+                    // Let's retry later
+                    execContext.getResult().setSoftErrorIfNotOk(false);
+                    deferred = true;
+                    break;
+                }
+                int limit = execContext.getMyAccount().getConnection().fixedDownloadLimitForApiRoutine(
+                        inserter.toDownload, apiRoutine); 
+                inserter.onNewPage();
+                execContext.getMyAccount().getConnection().getTimeline(apiRoutine, 
+                        gap.getSincePosition(), gap.getMaxPosition(), limit, userOid, inserter);
+                RateLimiter.onRateLimitStatus(execContext.getMyAccount(), apiRoutine, 
+                        execContext.getMyAccount().getConnection().getLastRateLimitStatus());
+                if (limit <= 0 || inserter.pageCount < limit 
+                        || inserter.pageOldestPosition.isEmpty()
+                        || inserter.pageOldestPosition.equals(gap.getMaxPosition())) {
+                    filled = true;
+                } else {
+                    gap.onDownloadedDownTo(inserter.pageOldestPosition, inserter.pageOldestDate);
+                }
+            }
+        } catch (ConnectionException e) {
+            RateLimiter.onConnectionException(execContext.getMyAccount(), apiRoutine, e);
+            if (e.getStatusCode() != StatusCode.NOT_FOUND) {
+                gap.save();
+                throw e;
+            }
+            MyLog.d(this, "The gap cannot be filled " + gap, e);
+            filled = true;
+        } finally {
+            long startedAt = System.currentTimeMillis();
+            latestUserMessages.save();
+            inserter.oldestTimelineItem.save();
+            PhaseTimings.addSince(Phase.DB_WRITE, startedAt);
+        }
+        if (filled) {
+            gap.delete();
+        } else {
+            gap.save();
+            if (!deferred) {
+                gap.requestDownload(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.service;
+
+import android.text.TextUtils;
+
+import org.andstatus.app.data.LatestTimelineItem;
+import org.andstatus.app.data.LatestUserMessages;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.MyDatabase.OidEnum;
+import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.net.TimelinePosition;
+import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+
+/**
+ * Downloads one page of timeline items, older than the oldest downloaded item.
+ * If nothing was downloaded yet, the newest page is downloaded
+ */
+class TimelineDownloaderOlder extends TimelineDownloader {
+
+    @Override
+    public void download() throws ConnectionException {
+        String userOid =  MyProvider.idToOid(OidEnum.USER_OID, execContext.getTimelineUserId(), 0);
+        if (TextUtils.isEmpty(userOid)) {
+            throw new ConnectionException("User oId is not found for id=" + execContext.getTimelineUserId());
+        }
+        LatestUserMessages latestUserMessages = new LatestUserMessages();
+        ItemsInserter inserter = new ItemsInserter(
+                new LatestTimelineItem(execContext.getTimelineType(), execContext.getTimelineUserId()),
+                latestUserMessages);
+        TimelinePosition maxPosition = inserter.oldestTimelineItem.getPosition();
+        MyLog.d(this, "Loading " + execContext.getTimelineType() + " older than '" + maxPosition
+                + "'; account=" + execContext.getMyAccount().getAccountName());
+        ApiRoutineEnum apiRoutine = execContext.getTimelineType().getConnectionApiRoutine();
+        if (!RateLimiter.tryAcquire(execContext.getMyAccount(), apiRoutine)) {
+            // Older messages will be requested again, when the User scrolls to them
+            return;
+        }
+        try {
+            int limit = execContext.getMyAccount().getConnection().fixedDownloadLimitForApiRoutine(
+                    inserter.toDownload, apiRoutine);
+            inserter.onNewPage();
+            execContext.getMyAccount().getConnection().getTimeline(apiRoutine,
+                    TimelinePosition.getEmpty(), maxPosition, limit, userOid, inserter);
+            RateLimiter.onRateLimitStatus(execContext.getMyAccount(), apiRoutine,
+                    execContext.getMyAccount().getConnection().getLastRateLimitStatus());
+            MyLog.d(this, "Downloaded " + inserter.pageCount + " older items");
+        } catch (ConnectionException e) {
+            RateLimiter.onConnectionException(execContext.getMyAccount(), apiRoutine, e);
+            throw e;
+        } finally {
+            long startedAt = System.currentTimeMillis();
+            latestUserMessages.save();
+            inserter.oldestTimelineItem.save();
+            PhaseTimings.addSince(Phase.DB_WRITE, startedAt);
+        }
+    }
+}
@@ -18,22 +18,22 @@ package org.andstatus.app.service;
 
 import android.text.TextUtils;
 
-import org.andstatus.app.data.DataInserter;
 import org.andstatus.app.data.LatestTimelineItem;
 import org.andstatus.app.data.LatestUserMessages;
 import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.TimelineGapData;
 import org.andstatus.app.data.MyDatabase.OidEnum;
 import org.andstatus.app.net.ConnectionException;
-import org.andstatus.app.net.MbTimelineItem;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
 import org.andstatus.app.net.TimelinePosition;
 import org.andstatus.app.net.ConnectionException.StatusCode;
 import org.andstatus.app.util.MyLog;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
 
 import java.util.Date;
-import java.util.List;
 
 class TimelineDownloaderOther extends TimelineDownloader {
-    private static final int MAXIMUM_NUMBER_OF_MESSAGES_TO_DOWNLOAD = 200;
 
     @Override
     public void download() throws ConnectionException {
@@ -53,38 +53,43 @@ class TimelineDownloaderOther extends TimelineDownloader {
         if (TextUtils.isEmpty(userOid)) {
             throw new ConnectionException("User oId is not found for id=" + execContext.getTimelineUserId());
         }
-        int toDownload = MAXIMUM_NUMBER_OF_MESSAGES_TO_DOWNLOAD;
         TimelinePosition lastPosition = latestTimelineItem.getPosition();
         LatestUserMessages latestUserMessages = new LatestUserMessages();
-        latestTimelineItem.onTimelineDownloaded();
-        DataInserter di = new DataInserter(execContext);
+        ItemsInserter inserter = new ItemsInserter(latestTimelineItem, latestUserMessages);
+        ApiRoutineEnum apiRoutine = execContext.getTimelineType().getConnectionApiRoutine();
         for (int loopCounter=0; loopCounter < 100; loopCounter++ ) {
+            if (!RateLimiter.tryAcquire(execContext.getMyAccount(), apiRoutine)) {
+                if (loopCounter == 0 
+                        && execContext.getCommandData().getCommand() != CommandEnum.AUTOMATIC_UPDATE) {
+                    // Let's retry later
+                    execContext.getResult().setSoftErrorIfNotOk(false);
+                }
+                break;
+            }
+            if (loopCounter == 0) {
+                // The timeline is downloaded now, even if it has no new items
+                latestTimelineItem.onTimelineDownloaded();
+            }
             try {
-                int limit = execContext.getMyAccount().getConnection().fixedDownloadLimitForApiRoutine(toDownload, 
-                        execContext.getTimelineType().getConnectionApiRoutine()); 
-                List<MbTimelineItem> messages = execContext.getMyAccount().getConnection().getTimeline(
-                        execContext.getTimelineType().getConnectionApiRoutine(), lastPosition, limit, userOid);
-                for (MbTimelineItem item : messages) {
-                    toDownload--;
-                    latestTimelineItem.onNewMsg(item.timelineItemPosition, item.timelineItemDate);
-                    switch (item.getType()) {
-                        case MESSAGE:
-                            di.insertOrUpdateMsg(item.mbMessage, latestUserMessages);
-                            break;
-                        case USER:
-                            di.insertOrUpdateUser(item.mbUser);
-                            break;
-                        default:
-                            break;
-                    }
+                int limit = execContext.getMyAccount().getConnection().fixedDownloadLimitForApiRoutine(
+                        inserter.toDownload, apiRoutine); 
+                inserter.onNewPage();
+                // Items are stored as soon as they are parsed, so only one of them is held in memory
+                execContext.getMyAccount().getConnection().getTimeline(
+                        apiRoutine, lastPosition, limit, userOid, inserter);
+                RateLimiter.onRateLimitStatus(execContext.getMyAccount(), apiRoutine, 
+                        execContext.getMyAccount().getConnection().getLastRateLimitStatus());
+                if (limit > 0 && inserter.pageCount >= limit && !lastPosition.isEmpty()) {
+                    onPossibleGap(lastPosition, inserter);
                 }
-                if (toDownload <= 0
+                if (inserter.toDownload <= 0
                         || lastPosition == latestTimelineItem.getPosition()) {
                     break;
                 } else {
                     lastPosition = latestTimelineItem.getPosition();
                 }
             } catch (ConnectionException e) {
+                RateLimiter.onConnectionException(execContext.getMyAccount(), apiRoutine, e);
                 if (e.getStatusCode() != StatusCode.NOT_FOUND) {
                     throw e;
                 }
@@ -96,8 +101,33 @@ class TimelineDownloaderOther extends TimelineDownloader {
                 lastPosition = TimelinePosition.getEmpty();
             }
         }
+        long startedAt = System.currentTimeMillis();
         latestUserMessages.save();
         latestTimelineItem.save();
+        inserter.oldestTimelineItem.save();
+        PhaseTimings.addSince(Phase.DB_WRITE, startedAt);
+        requestToFillGaps();
     }
 
+    /**
+     * The page was full, so older items, which were not downloaded yet, 
+     * may be left between the previous position and this page 
+     */
+    private void onPossibleGap(TimelinePosition sincePosition, ItemsInserter inserter) {
+        TimelineGapData gap = new TimelineGapData(execContext.getMyAccount().getUserId(), 
+                execContext.getTimelineType(), execContext.getTimelineUserId(), 
+                sincePosition, inserter.pageOldestPosition, inserter.pageOldestDate);
+        gap.save();
+        MyLog.d(this, "Possible gap " + gap);
+    }
+
+    /**
+     * Including gaps, which were left after previous downloads
+     */
+    private void requestToFillGaps() {
+        for (TimelineGapData gap : TimelineGapData.getGaps(execContext.getTimelineType(), 
+                execContext.getTimelineUserId())) {
+            gap.requestDownload(false);
+        }
+    }
 }
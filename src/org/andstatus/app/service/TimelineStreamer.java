@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContext;
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.data.DataInserter;
+import org.andstatus.app.data.LatestTimelineItem;
+import org.andstatus.app.data.LatestUserMessages;
+import org.andstatus.app.data.MyDatabase;
+import org.andstatus.app.data.TimelineTypeEnum;
+import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.ConnectionException.StatusCode;
+import org.andstatus.app.net.MbTimelineItem;
+import org.andstatus.app.net.TimelineStreamConsumer;
+import org.andstatus.app.util.MyLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a long-lived streaming connection of one account, which receives new items 
+ * of its Home timeline as soon as they appear, and stores them in short transactions.
+ * Reconnects with exponential backoff. When streaming is not possible, it gives up,
+ * so the timeline is polled by automatic updates as before.
+ * Streamers run on the executor of {@link MyService}, which keeps running, while any of them is started,
+ * and stops them, when the service is stopped explicitly or destroyed.
+ */
+final class TimelineStreamer implements TimelineStreamConsumer {
+    private static final String TAG = TimelineStreamer.class.getSimpleName();
+    static final int BATCH_SIZE_MAX = 20;
+    /** Items, which arrive within this period after the first one, are stored in one transaction */
+    static final long BATCH_WINDOW_MS = 1000;
+    static final long BACKOFF_MIN_MS = TimeUnit.SECONDS.toMillis(5);
+    static final long BACKOFF_MAX_MS = 5 * 60 * 1000L;
+    /** The server asks to "Enhance Your Calm" (HTTP 420), so we wait longer */
+    static final long BACKOFF_RATE_LIMITED_MIN_MS = 60 * 1000L;
+    static final long BACKOFF_RATE_LIMITED_MAX_MS = 16 * 60 * 1000L;
+    /** Consecutive failures, after which we fall back to polling */
+    static final int FAILURES_TO_GIVE_UP = 10;
+
+    private static final ConcurrentMap<String, TimelineStreamer> streamers = new ConcurrentHashMap<String, TimelineStreamer>();
+    /** null when {@link MyService} is not running */
+    private static volatile ExecutorService executor = null;
+
+    private final MyContext myContext;
+    private final MyAccount ma;
+    private final BlockingQueue<MbTimelineItem> received = new LinkedBlockingQueue<MbTimelineItem>();
+    private volatile boolean stopped = false;
+    /** Set when the stream works, so the timeline doesn't need polling */
+    private volatile boolean connected = false;
+    private int failures = 0;
+    private boolean rateLimited = false;
+
+    private TimelineStreamer(MyContext myContext, MyAccount ma) {
+        this.myContext = myContext;
+        this.ma = ma;
+    }
+
+    /**
+     * @return New executor for {@link #setExecutor(ExecutorService)}, its daemon threads
+     *  don't prevent the process from exiting
+     */
+    static ExecutorService newExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * The executor is owned by {@link MyService}, which shuts it down after {@link #stopAll()}
+     */
+    static void setExecutor(ExecutorService executorIn) {
+        executor = executorIn;
+    }
+
+    /**
+     * Streaming may be started again later, while the executor is set
+     */
+    static void stopAll() {
+        for (TimelineStreamer streamer : streamers.values()) {
+            streamer.stop();
+        }
+    }
+
+    /**
+     * Starts streaming for the account, if it's enabled, possible and not started yet
+     */
+    static void startIfNeeded(MyContext myContext, MyAccount ma) {
+        ExecutorService executorLocal = executor;
+        if (executorLocal == null || !MyPreferences.isStreamingEnabled() 
+                || streamers.containsKey(ma.getAccountName())
+                || !ma.getConnection().isStreamingSupported()) {
+            return;
+        }
+        TimelineStreamer streamer = new TimelineStreamer(myContext, ma);
+        if (streamers.putIfAbsent(ma.getAccountName(), streamer) == null) {
+            streamer.start(executorLocal);
+        }
+    }
+
+    /**
+     * @return true if any streamer is started and not stopped yet, 
+     *  including streamers, which wait before reconnecting
+     */
+    static boolean isAnyStarted() {
+        return !streamers.isEmpty();
+    }
+
+    /**
+     * @return true if new items of the Home timeline of the account are being received now,
+     *  so the timeline doesn't need polling
+     */
+    static boolean isStreaming(String accountName) {
+        TimelineStreamer streamer = streamers.get(accountName);
+        return streamer != null && streamer.connected;
+    }
+
+    private void start(ExecutorService executorIn) {
+        MyLog.v(TAG, "Starting for " + ma.getAccountName());
+        try {
+            executorIn.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readLoop();
+                }
+            });
+            executorIn.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeLoop();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            MyLog.d(TAG, "The service is stopping", e);
+            stop();
+        }
+    }
+
+    private void stop() {
+        stopped = true;
+        connected = false;
+        streamers.remove(ma.getAccountName(), this);
+    }
+
+    private void readLoop() {
+        while (checkIfToContinue()) {
+            try {
+                ma.getConnection().streamTimeline(this);
+                MyLog.d(TAG, "Stream closed by the server for " + ma.getAccountName());
+            } catch (ConnectionException e) {
+                MyLog.d(TAG, "Stream failed for " + ma.getAccountName(), e);
+                if (isFatal(e)) {
+                    failures = FAILURES_TO_GIVE_UP;
+                }
+                rateLimited = e.getStatusCode() == StatusCode.RATE_LIMIT_EXCEEDED;
+            } catch (Exception e) {
+                MyLog.e(TAG, "Stream failed for " + ma.getAccountName(), e);
+                rateLimited = false;
+            }
+            connected = false;
+            failures++;
+            if (failures >= FAILURES_TO_GIVE_UP) {
+                MyLog.i(TAG, "Falling back to polling for " + ma.getAccountName());
+                break;
+            }
+            if (!sleep(getBackoffMs(failures, rateLimited))) {
+                break;
+            }
+            // Items, which appeared while we were disconnected, are not in the stream
+            MyServiceManager.sendCommand(new CommandData(CommandEnum.FETCH_TIMELINE, ma.getAccountName(),
+                    TimelineTypeEnum.HOME));
+        }
+        stop();
+        MyLog.v(TAG, "Stopped for " + ma.getAccountName());
+    }
+
+    static boolean isFatal(ConnectionException e) {
+        return e.isHardError() || e.getStatusCode() == StatusCode.UNSUPPORTED_API
+                || e.getStatusCode() == StatusCode.AUTHENTICATION_ERROR;
+    }
+
+    static long getBackoffMs(int failures) {
+        return getBackoffMs(failures, false);
+    }
+
+    static long getBackoffMs(int failures, boolean rateLimited) {
+        long minMs = rateLimited ? BACKOFF_RATE_LIMITED_MIN_MS : BACKOFF_MIN_MS;
+        long maxMs = rateLimited ? BACKOFF_RATE_LIMITED_MAX_MS : BACKOFF_MAX_MS;
+        long backoffMs = minMs;
+        for (int ind = 1; ind < failures && backoffMs < maxMs; ind++) {
+            backoffMs *= 2;
+        }
+        return Math.min(backoffMs, maxMs);
+    }
+
+    private boolean sleep(long delayMs) {
+        try {
+            Thread.sleep(delayMs);
+            return checkIfToContinue();
+        } catch (InterruptedException e) {
+            MyLog.v(TAG, "Interrupted", e);
+            return false;
+        }
+    }
+
+    /**
+     * The server sends something (at least keep-alive lines) regularly, 
+     * so we know that the stream works
+     */
+    @Override
+    public boolean isToContinue() {
+        if (!connected) {
+            connected = true;
+            failures = 0;
+        }
+        return checkIfToContinue();
+    }
+
+    private boolean checkIfToContinue() {
+        if (!stopped && (!MyPreferences.isStreamingEnabled() || !myContext.isReady()
+                || myContext.persistentAccounts().fromAccountName(ma.getAccountName()) == null)) {
+            stop();
+        }
+        return !stopped;
+    }
+
+    @Override
+    public void consume(MbTimelineItem item) throws ConnectionException {
+        received.add(item);
+    }
+
+    private void writeLoop() {
+        List<MbTimelineItem> batch = new ArrayList<MbTimelineItem>();
+        try {
+            while (!stopped || !received.isEmpty()) {
+                MbTimelineItem item = received.poll(BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    continue;
+                }
+                long batchEndsAt = System.currentTimeMillis() + BATCH_WINDOW_MS;
+                do {
+                    batch.add(item);
+                    long waitMs = batchEndsAt - System.currentTimeMillis();
+                    item = waitMs > 0 ? received.poll(waitMs, TimeUnit.MILLISECONDS) : received.poll();
+                } while (item != null && batch.size() < BATCH_SIZE_MAX);
+                if (item != null) {
+                    // It goes to the next batch
+                    received.add(item);
+                }
+                try {
+                    store(batch);
+                } catch (Exception e) {
+                    MyLog.e(TAG, batch.size() + " streamed items were not stored for " + ma.getAccountName(), e);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            MyLog.v(TAG, "Interrupted", e);
+        }
+    }
+
+    private void store(List<MbTimelineItem> batch) {
+        MyDatabase myDb = myContext.getDatabase();
+        if (myDb == null) {
+            MyLog.v(TAG, "No database, " + batch.size() + " items skipped");
+            return;
+        }
+        CommandExecutionContext execContext = new CommandExecutionContext(myContext,
+                new CommandData(CommandEnum.FETCH_TIMELINE, ma.getAccountName(), TimelineTypeEnum.HOME), ma);
+        execContext.setTimelineUserId(ma.getUserId());
+        DataInserter di = new DataInserter(execContext);
+        LatestTimelineItem latestTimelineItem = new LatestTimelineItem(TimelineTypeEnum.HOME, ma.getUserId());
+        LatestUserMessages latestUserMessages = new LatestUserMessages();
+        SQLiteDatabase db = myDb.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (MbTimelineItem item : batch) {
+                latestTimelineItem.onNewMsg(item.timelineItemPosition, item.timelineItemDate);
+                di.insertOrUpdateMsg(item.mbMessage, latestUserMessages);
+            }
+            latestUserMessages.save();
+            latestTimelineItem.save();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        MyLog.v(TAG, "Stored " + batch.size() + " streamed items for " + ma.getAccountName());
+        TimelineChangesNotifier.onChanged(myContext, execContext.getResult());
+        TimelineChangesNotifier.flush(myContext);
+    }
+}
@@ -21,24 +21,28 @@ import android.text.Spanned;
 import android.text.TextUtils;
 import android.text.style.URLSpan;
 
+import java.util.regex.Pattern;
+
 public class MyHtml {
     private MyHtml() {
         // Empty
     }
 
+    private static final Pattern NEWLINE_PATTERN = Pattern.compile("(\r\n|\n)");
     public static String htmLify(String messageIn) {
-        return messageIn.replaceAll("(\r\n|\n)", "<br />");
+        return NEWLINE_PATTERN.matcher(messageIn).replaceAll("<br />");
     }
 
-    private static String NEWLINE_SEARCH = "\n";
-    private static String NEWLINE_REPLACE = "\n";
+    private static final String NEWLINE_SEARCH = "\n";
+    private static final String NEWLINE_REPLACE = "\n";
+    private static final Pattern EMPTY_LINES_PATTERN = Pattern.compile(NEWLINE_SEARCH + "\\s*" + NEWLINE_SEARCH);
     public static String fromHtml(String text) {
         if (TextUtils.isEmpty(text)) {
             return "";
         } else if ( MyHtml.hasHtmlMarkup(text)) {
             String text2 = text.trim();
             text2 = Html.fromHtml(text2).toString().trim();
-            text2 = text2.replaceAll(NEWLINE_SEARCH + "\\s*" + NEWLINE_SEARCH, NEWLINE_REPLACE);
+            text2 = EMPTY_LINES_PATTERN.matcher(text2).replaceAll(NEWLINE_REPLACE);
             if (text2.endsWith(NEWLINE_REPLACE)) {
                 text2 = text2.substring(0, text2.length() - NEWLINE_REPLACE.length());
             }
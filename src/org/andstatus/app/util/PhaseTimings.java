@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.util;
+
+/**
+ * Accumulates time spent in different phases of one command execution.
+ * Timings are collected for the current thread only, so layers that know nothing
+ * about the command (e.g. HttpConnection) may simply report their phases.
+ */
+public final class PhaseTimings {
+    public enum Phase {
+        NETWORK("network"),
+        /** Signing of requests, included in none of other phases */
+        SIGN("sign"),
+        PARSE("parse"),
+        DB_WRITE("db-write"),
+        NOTIFY("notify");
+
+        private final String code;
+
+        private Phase(String code) {
+            this.code = code;
+        }
+
+        public String getCode() {
+            return code;
+        }
+    }
+
+    private static final ThreadLocal<PhaseTimings> CURRENT = new ThreadLocal<PhaseTimings>();
+
+    private final long startedAt = System.currentTimeMillis();
+    private long endedAt = 0;
+    private final long[] phaseMillis = new long[Phase.values().length];
+
+    private PhaseTimings() {
+    }
+
+    /**
+     * Starts collecting timings on the current thread
+     */
+    public static PhaseTimings begin() {
+        PhaseTimings timings = new PhaseTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * Stops collecting timings on the current thread
+     */
+    public void end() {
+        endedAt = System.currentTimeMillis();
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Adds time elapsed since startedAt to the phase of the command, executed on the current thread.
+     * Does nothing if no timings are being collected
+     */
+    public static void addSince(Phase phase, long startedAt) {
+        PhaseTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.phaseMillis[phase.ordinal()] += System.currentTimeMillis() - startedAt;
+        }
+    }
+
+    public long getMillis(Phase phase) {
+        return phaseMillis[phase.ordinal()];
+    }
+
+    public long getTotalMillis() {
+        return (endedAt == 0 ? System.currentTimeMillis() : endedAt) - startedAt;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            builder.append(phase.getCode() + ":" + getMillis(phase) + "ms, ");
+        }
+        builder.append("total:" + getTotalMillis() + "ms");
+        return builder.toString();
+    }
+}
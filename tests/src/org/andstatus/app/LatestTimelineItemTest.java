@@ -4,6 +4,7 @@ import android.test.InstrumentationTestCase;
 
 import org.andstatus.app.account.MyAccount;
 import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.MyPreferences;
 import org.andstatus.app.context.TestSuite;
 import org.andstatus.app.data.LatestTimelineItem;
 import org.andstatus.app.data.TimelineTypeEnum;
@@ -25,6 +26,52 @@ public class LatestTimelineItemTest extends InstrumentationTestCase {
         testTimelineForAccount(TestSuite.TWITTER_TEST_ACCOUNT_NAME);
     }
 
+    public void testAdaptiveSyncInterval() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.TWITTER_TEST_ACCOUNT_NAME);
+        LatestTimelineItem latest = new LatestTimelineItem(TimelineTypeEnum.MENTIONS, ma.getUserId());
+        assertTrue(latest.getSyncIntervalMs() >= MyPreferences.getSyncFrequencyMs());
+        assertTrue(latest.getSyncIntervalMs() <= MyPreferences.getSyncFrequencyMaxMs());
+
+        latest.onTimelineDownloaded();
+        latest.onNewMsg(new TimelinePosition("position_adaptive_" + System.currentTimeMillis()), 
+                System.currentTimeMillis());
+        assertEquals("New item arrived " + latest, MyPreferences.getSyncFrequencyMs(), latest.getSyncIntervalMs());
+        assertFalse("Just downloaded " + latest, latest.isTimeToAutoUpdate());
+        assertFalse("Just downloaded " + latest, latest.isTimeToAutoSync());
+    }
+
+    public void testSyncIntervalBackoff() {
+        long minMs = 1000;
+        long maxMs = 16000;
+        long now = System.currentTimeMillis();
+        long quietMs = minMs * LatestTimelineItem.QUIET_PERIODS_TO_BACK_OFF;
+        long firstDate = now - 2000 * quietMs;
+        assertEquals("Never downloaded", minMs, LatestTimelineItem.calcSyncIntervalMs(0, 0, 0, minMs, maxMs));
+        assertEquals("Nothing downloaded yet", minMs, LatestTimelineItem.calcSyncIntervalMs(now, now, 0, minMs, maxMs));
+        assertEquals("Active", minMs, LatestTimelineItem.calcSyncIntervalMs(firstDate, now, now - 10, minMs, maxMs));
+        assertEquals("Doubled", 2 * minMs, 
+                LatestTimelineItem.calcSyncIntervalMs(firstDate, now, now - quietMs - 1, minMs, maxMs));
+        assertEquals("Doubled twice", 4 * minMs, 
+                LatestTimelineItem.calcSyncIntervalMs(firstDate, now, now - 2 * quietMs - 1, minMs, maxMs));
+        assertEquals("Capped", maxMs, 
+                LatestTimelineItem.calcSyncIntervalMs(firstDate, now, now - 1000 * quietMs, minMs, maxMs));
+        assertEquals("Capped at not power of two", 10000, 
+                LatestTimelineItem.calcSyncIntervalMs(firstDate, now, now - 1000 * quietMs, minMs, 10000));
+    }
+
+    public void testBackoffOfTimelineWithoutItems() {
+        long minMs = 1000;
+        long maxMs = 16000;
+        long now = System.currentTimeMillis();
+        long quietMs = minMs * LatestTimelineItem.QUIET_PERIODS_TO_BACK_OFF;
+        assertEquals("Quiet since the first download", 4 * minMs,
+                LatestTimelineItem.calcSyncIntervalMs(now - 2 * quietMs - 1, now, 0, minMs, maxMs));
+        assertEquals("Nothing for ages", maxMs,
+                LatestTimelineItem.calcSyncIntervalMs(now - 1000 * quietMs, now, 0, minMs, maxMs));
+        assertEquals("Back to minimum, when an item arrived", minMs,
+                LatestTimelineItem.calcSyncIntervalMs(now - 1000 * quietMs, now, now - 10, minMs, maxMs));
+    }
+
     private void testTimelineForAccount(String accountName) {
         oneTimelineType(TimelineTypeEnum.PUBLIC, accountName);
         oneTimelineType(TimelineTypeEnum.HOME, accountName);
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase;
+import org.andstatus.app.data.MyDatabase.OidEnum;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.data.TimelineTypeEnum;
+
+public class MessageDataForContextMenuTest extends InstrumentationTestCase {
+    private MyAccount ma;
+    private long msgId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+        ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        msgId = MyProvider.oidToId(OidEnum.MSG_OID, ma.getOriginId(), TestSuite.CONVERSATION_ENTRY_MESSAGE_OID);
+        assertTrue("Selected message exists", msgId != 0);
+    }
+
+    public void testAllDataInOneSnapshot() {
+        Context context = MyContextHolder.get().context();
+        MessageDataForContextMenu md = new MessageDataForContextMenu(context, ma.getUserId(), 0,
+                TimelineTypeEnum.HOME, msgId);
+        assertTrue("Account found", md.ma != null);
+        assertTrue(md.isFor(msgId, ma.getUserId(), 0));
+        assertEquals(ma.getOriginId(), md.originId);
+        assertEquals(MyProvider.msgIdToLongColumnValue(MyDatabase.Msg.AUTHOR_ID, msgId), md.authorId);
+        assertEquals(MyProvider.msgIdToUsername(MyDatabase.Msg.AUTHOR_ID, msgId), md.authorName);
+        assertEquals(MyProvider.msgIdToUsername(MyDatabase.Msg.SENDER_ID, msgId), md.senderName);
+        assertEquals(MyProvider.msgIdToStringColumnValue(MyDatabase.Msg.BODY, msgId), md.body);
+        assertEquals(MyProvider.msgIdToStringColumnValue(MyDatabase.Msg.BODY_PLAIN, msgId), md.bodyPlainText);
+    }
+}
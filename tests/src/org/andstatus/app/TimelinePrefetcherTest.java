@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.data.TimelineTypeEnum;
+
+public class TimelinePrefetcherTest extends InstrumentationTestCase {
+
+    public void testLookAheadGrowsWithSpeed() {
+        TimelinePrefetcher prefetcher = new TimelinePrefetcher(10, 100);
+        long now = 1000000;
+        assertFalse(prefetcher.onScroll(50, 10, 100, now));
+        assertEquals(10, prefetcher.getLookAhead());
+        assertTrue("Near the end", prefetcher.onScroll(80, 10, 100, now + 5000));
+
+        // Fast scrolling: 1 row in 10 ms
+        now += 10000;
+        int firstVisible = 0;
+        for (int ind = 0; ind < 20; ind++) {
+            now += 10;
+            firstVisible++;
+            prefetcher.onScroll(firstVisible, 10, 200, now);
+        }
+        int lookAhead = prefetcher.getLookAhead();
+        assertTrue("Look-ahead " + lookAhead, lookAhead > 10 && lookAhead <= 100);
+        assertTrue(prefetcher.onScroll(firstVisible + 1, 10, firstVisible + 10 + lookAhead, now + 10));
+
+        prefetcher.onPageLoaded(100000);
+        assertEquals("Limited", 100, prefetcher.getLookAhead());
+
+        prefetcher.onScroll(firstVisible, 10, 200, now + TimelinePrefetcher.SCROLL_PAUSE_MS + 100);
+        assertEquals("Speed is reset after a pause", 10, prefetcher.getLookAhead());
+    }
+
+    public void testOlderFetch() {
+        TimelinePrefetcher prefetcher = new TimelinePrefetcher(10, 100);
+        long now = 1000000;
+        assertFalse("Nothing to cancel", prefetcher.onTimelineChanged());
+        assertTrue(prefetcher.onNoMoreRows(5, now));
+        assertFalse("Requested already", prefetcher.onNoMoreRows(5, now + 1000));
+        assertTrue("Another end of the list", prefetcher.onNoMoreRows(4, now + 2000));
+        prefetcher.onOlderFetched();
+        assertTrue("Retry", prefetcher.onNoMoreRows(4, now + 2000 + TimelinePrefetcher.OLDER_FETCH_RETRY_MS));
+        assertTrue("Pending fetch is cancelled", prefetcher.onTimelineChanged());
+        assertTrue(prefetcher.onNoMoreRows(4, now + 2000 + TimelinePrefetcher.OLDER_FETCH_RETRY_MS));
+        prefetcher.onOlderFetched();
+        assertFalse("Fetched already", prefetcher.onTimelineChanged());
+
+        assertTrue(TimelinePrefetcher.isOlderFetchSupported(TimelineTypeEnum.HOME));
+        assertFalse(TimelinePrefetcher.isOlderFetchSupported(TimelineTypeEnum.FOLLOWING_USER));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app;
+
+import android.content.ComponentCallbacks2;
+import android.database.MatrixCursor;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.TimelinePage;
+import org.andstatus.app.data.TimelineTypeEnum;
+
+public class TimelineSnapshotCacheTest extends InstrumentationTestCase {
+    private static final String[] PROJECTION = new String[] { Msg._ID, Msg.BODY };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+        TimelineSnapshotCache.clear();
+    }
+
+    public void testSnapshotPage() {
+        TimelineListParameters params = newParams(1, TimelineTypeEnum.HOME);
+        TimelinePage page = newPage(10);
+        TimelineSnapshotCache.put(params, page);
+        TimelineSnapshotCache.Snapshot snapshot = TimelineSnapshotCache.get(params);
+        assertTrue("Snapshot stored", snapshot != null);
+        assertSame(page, snapshot.getPage());
+        assertEquals(4, snapshot.getPage().positionOf(1005));
+
+        params.projection = new String[] { Msg._ID };
+        assertTrue("Other projection", TimelineSnapshotCache.get(params) == null);
+        params = newParams(1, TimelineTypeEnum.HOME);
+        params.searchQuery = "something";
+        assertTrue("Search results are not cached", TimelineSnapshotCache.get(params) == null);
+        assertTrue("Other account", TimelineSnapshotCache.get(newParams(2, TimelineTypeEnum.HOME)) == null);
+    }
+
+    public void testRowsAreCapped() {
+        TimelineListParameters params = newParams(1, TimelineTypeEnum.HOME);
+        TimelinePage page = newPage(TimelineSnapshotCache.MAX_ROWS + 10);
+        TimelineSnapshotCache.put(params, page);
+        TimelinePage stored = TimelineSnapshotCache.get(params).getPage();
+        assertEquals(TimelineSnapshotCache.MAX_ROWS, stored.getCount());
+        assertEquals(page.getId(TimelineSnapshotCache.MAX_ROWS - 1), stored.getId(TimelineSnapshotCache.MAX_ROWS - 1));
+        assertEquals(-1, stored.positionOf(page.getId(TimelineSnapshotCache.MAX_ROWS)));
+    }
+
+    public void testEviction() {
+        for (int ind = 1; ind <= TimelineSnapshotCache.MAX_TIMELINES + 2; ind++) {
+            TimelineSnapshotCache.put(newParams(ind, TimelineTypeEnum.MENTIONS), newPage(3));
+        }
+        assertEquals(TimelineSnapshotCache.MAX_TIMELINES, TimelineSnapshotCache.size());
+        assertTrue("Eldest evicted", TimelineSnapshotCache.get(newParams(1, TimelineTypeEnum.MENTIONS)) == null);
+
+        TimelineSnapshotCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(1, TimelineSnapshotCache.size());
+        assertTrue("The latest is kept", TimelineSnapshotCache.get(newParams(TimelineSnapshotCache.MAX_TIMELINES + 2,
+                TimelineTypeEnum.MENTIONS)) != null);
+        TimelineSnapshotCache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, TimelineSnapshotCache.size());
+    }
+
+    private TimelineListParameters newParams(long accountUserId, TimelineTypeEnum timelineType) {
+        TimelineListParameters params = new TimelineListParameters();
+        params.myAccountUserId = accountUserId;
+        params.timelineType = timelineType;
+        params.projection = PROJECTION;
+        return params;
+    }
+
+    private TimelinePage newPage(int rows) {
+        MatrixCursor cursor = new MatrixCursor(PROJECTION);
+        for (int row = 1; row <= rows; row++) {
+            cursor.addRow(new Object[] { 1000 + row, "Body " + (1000 + row) });
+        }
+        TimelinePage page = TimelinePage.fromCursor(MyContextHolder.get().context(), cursor);
+        cursor.close();
+        return page;
+    }
+}
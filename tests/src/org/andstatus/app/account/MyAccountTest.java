@@ -25,7 +25,13 @@ import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.TestSuite;
 import org.andstatus.app.origin.Origin;
 import org.andstatus.app.origin.OriginType;
+import org.andstatus.app.util.MyLog;
 import org.andstatus.app.util.TriState;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class MyAccountTest  extends InstrumentationTestCase {
 
@@ -52,6 +58,60 @@ public class MyAccountTest  extends InstrumentationTestCase {
         assertEquals("Creating account for '" + originType + "'", userName + AccountName.ORIGIN_SEPARATOR + origin.getName(), builder.getAccount().getAccountName());
     }
     
+    public void testConnectionIsCreatedLazily() throws JSONException {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        MyAccount ma2 = MyAccount.Builder.fromJson(MyContextHolder.get(), ma.toJson()).getAccount();
+        assertTrue(ma2.toString(), ma2.isValid());
+        assertFalse(ma2.isConnectionCreated());
+        assertEquals(ma.toJson().toString(2), ma2.toJson().toString(2));
+        assertFalse("toJson shouldn't create a Connection", ma2.isConnectionCreated());
+        assertTrue(ma2.getConnection() != null);
+        assertTrue(ma2.isConnectionCreated());
+        assertEquals(ma.getCredentialsPresent(), ma2.getCredentialsPresent());
+        assertFalse(ma2.releaseConnectionIfIdle(60000));
+        assertTrue(ma2.releaseConnectionIfIdle(-1));
+        assertFalse(ma2.isConnectionCreated());
+        assertTrue(ma2.getConnection() != null);
+    }
+
+    /**
+     * Time and memory, needed to load 10 accounts without and with their Connections
+     */
+    public void testLoadingTenAccounts() throws JSONException {
+        List<JSONObject> jsonAccounts = new ArrayList<JSONObject>();
+        while (jsonAccounts.size() < 10) {
+            for (MyAccount ma : MyContextHolder.get().persistentAccounts().collection()) {
+                if (jsonAccounts.size() < 10) {
+                    jsonAccounts.add(ma.toJson());
+                }
+            }
+        }
+        String lazy = loadAccounts(jsonAccounts, false);
+        String eager = loadAccounts(jsonAccounts, true);
+        MyLog.i(this, "Loading " + jsonAccounts.size() + " accounts; lazy: " + lazy + "; with connections: " + eager);
+    }
+
+    private String loadAccounts(List<JSONObject> jsonAccounts, boolean createConnections) throws JSONException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+        long startedAt = System.nanoTime();
+        List<MyAccount> accounts = new ArrayList<MyAccount>();
+        for (JSONObject jso : jsonAccounts) {
+            MyAccount ma = MyAccount.Builder.fromJson(MyContextHolder.get(), jso).getAccount();
+            if (createConnections) {
+                ma.getConnection();
+            }
+            accounts.add(ma);
+        }
+        long elapsedMicros = (System.nanoTime() - startedAt) / 1000;
+        long memoryUsed = runtime.totalMemory() - runtime.freeMemory() - memoryBefore;
+        for (MyAccount ma : accounts) {
+            assertEquals(ma.toString(), createConnections, ma.isConnectionCreated());
+        }
+        return elapsedMicros + "us, " + memoryUsed / 1024 + "KB";
+    }
 
     public static void fixPersistentAccounts() {
         for (MyAccount ma : MyContextHolder.get().persistentAccounts().collection()) {
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.account;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+
+public class PersistentAccountsTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testIndexes() {
+        PersistentAccounts accounts = MyContextHolder.get().persistentAccounts();
+        assertFalse(accounts.isEmpty());
+        for (MyAccount ma : accounts.collection()) {
+            assertEquals("By name", ma, accounts.fromAccountName(ma.getAccountName()));
+            assertEquals("By User Id", ma.getUserId(), accounts.fromUserId(ma.getUserId()).getUserId());
+            MyAccount first = accounts.findFirstMyAccountByOriginId(ma.getOriginId());
+            assertTrue("By Origin Id " + ma, first != null);
+            assertEquals("By Origin Id", ma.getOriginId(), first.getOriginId());
+        }
+        assertTrue("Not an account", accounts.fromUserId(-1) == null);
+        try {
+            accounts.collection().clear();
+            fail("The collection should be immutable");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    public void testVersion() {
+        PersistentAccounts accounts = MyContextHolder.get().persistentAccounts();
+        int size = accounts.size();
+        int version = accounts.getVersion();
+        accounts.reindex();
+        assertTrue("Version changed", version != accounts.getVersion());
+        assertEquals("The same accounts", size, accounts.size());
+    }
+
+    public void testDeferredFixOfAccounts() {
+        PersistentAccounts accounts = MyContextHolder.get().persistentAccounts();
+        int size = accounts.size();
+        accounts.fixInconsistencies(MyContextHolder.get());
+        assertEquals("The same accounts", size, accounts.size());
+        for (MyAccount ma : accounts.collection()) {
+            assertEquals("By User Id", ma.getUserId(), accounts.fromUserId(ma.getUserId()).getUserId());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.context;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.InitializationTrace.Stage;
+
+public class InitializationTraceTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initialize(this);
+    }
+
+    public void testStagesAreTraced() {
+        InitializationTrace trace = InitializationTrace.begin("test");
+        for (Stage stage : Stage.values()) {
+            trace.onStageEnded(stage);
+        }
+        trace.end(MyContextState.READY);
+        assertEquals(trace, InitializationTrace.getLast());
+        assertEquals(MyContextState.READY, trace.getState());
+        long sum = 0;
+        for (Stage stage : Stage.values()) {
+            assertTrue(stage.getCode(), trace.getMillis(stage) >= 0);
+            sum += trace.getMillis(stage);
+            assertTrue(trace.toString(), trace.toString().contains(stage.getCode() + ":"));
+        }
+        assertTrue(trace.toString(), sum <= trace.getTotalMillis());
+    }
+
+    public void testInitializationIsTraced() {
+        assertTrue(MyContextHolder.get().isReady());
+        InitializationTrace trace = InitializationTrace.getLast();
+        assertNotNull(trace);
+        assertTrue(trace.toString(), trace.getTotalMillis() >= trace.getMillis(Stage.ACCOUNTS));
+    }
+}
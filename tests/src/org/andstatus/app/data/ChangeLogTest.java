@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.net.MbUser;
+import org.andstatus.app.service.CommandData;
+import org.andstatus.app.service.CommandExecutionContext;
+
+import java.util.List;
+
+public class ChangeLogTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testChangesOfUserAreLogged() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        long sequence = ChangeLog.getLastSequence();
+
+        DataInserter di = new DataInserter(new CommandExecutionContext(CommandData.getEmpty(), ma)
+                .setTimelineType(TimelineTypeEnum.HOME));
+        String username = "logged" + System.currentTimeMillis() + "@identi.ca";
+        MbUser somebody = MbUser.fromOriginAndUserOid(ma.getOriginId(), "acct:" + username);
+        somebody.userName = username;
+        somebody.realName = "Somebody to be logged";
+        long userId = di.insertOrUpdateUser(somebody);
+        assertTrue("User added", userId != 0);
+
+        List<ChangeLog.Change> changes = ChangeLog.getChangesSince(sequence, 100);
+        ChangeLog.Change inserted = findChange(changes, userId, ChangeLog.ChangeType.INSERTED);
+        assertTrue("Insert logged " + changes, inserted != null);
+        assertTrue("Sequence grows", inserted.sequence > sequence);
+
+        somebody.realName = "Somebody who was logged";
+        di.insertOrUpdateUser(somebody);
+        changes = ChangeLog.getChangesSince(inserted.sequence, 100);
+        ChangeLog.Change updated = findChange(changes, userId, ChangeLog.ChangeType.UPDATED);
+        assertTrue("Update logged " + changes, updated != null);
+        assertTrue("Sequence grows", updated.sequence > inserted.sequence);
+        assertEquals(ChangeLog.getLastSequence(), changes.get(changes.size() - 1).sequence);
+
+        assertTrue("No changes after the last one", ChangeLog.getChangesSince(ChangeLog.getLastSequence(), 100).isEmpty());
+    }
+
+    private ChangeLog.Change findChange(List<ChangeLog.Change> changes, long userId, ChangeLog.ChangeType type) {
+        for (ChangeLog.Change change : changes) {
+            if (change.entity == ChangeLog.Entity.USER && change.entityId == userId && change.type == type) {
+                return change;
+            }
+        }
+        return null;
+    }
+
+    public void testPrune() {
+        ChangeLog.append(ChangeLog.Entity.AVATAR, 1, ChangeLog.ChangeType.UPDATED);
+        ChangeLog.append(ChangeLog.Entity.AVATAR, 2, ChangeLog.ChangeType.UPDATED);
+        long lastSequence = ChangeLog.getLastSequence();
+        ChangeLog.prune(1);
+        List<ChangeLog.Change> changes = ChangeLog.getChangesSince(0, 100);
+        assertEquals("Only the latest change is kept " + changes, 1, changes.size());
+        assertEquals(lastSequence, changes.get(0).sequence);
+        assertEquals(2, changes.get(0).entityId);
+    }
+}
@@ -158,6 +158,35 @@ public class DataInserterTest extends InstrumentationTestCase {
         cursor.close();
     }
 
+    public void testUserIsWrittenOnlyWhenChanged() {
+        CommandExecutionContext execContext = new CommandExecutionContext(CommandData.getEmpty(), ma)
+                .setTimelineType(TimelineTypeEnum.HOME);
+        DataInserter di = new DataInserter(execContext);
+        String username = "changing" + System.currentTimeMillis() + "@identi.ca";
+        MbUser somebody = MbUser.fromOriginAndUserOid(origin.getId(), "acct:" + username);
+        somebody.userName = username;
+        somebody.realName = "Somebody who changes";
+        somebody.url = "http://identi.ca/changing";
+        long userId = di.insertOrUpdateUser(somebody);
+        assertTrue("User added", userId != 0);
+        assertEquals(1, execContext.getResult().getUsersWritten());
+
+        assertEquals(userId, di.insertOrUpdateUser(somebody));
+        assertEquals("Seen twice", 2, execContext.getResult().getUsersSeen());
+        assertEquals("Written once", 1, execContext.getResult().getUsersWritten());
+
+        CommandExecutionContext execContext2 = new CommandExecutionContext(CommandData.getEmpty(), ma)
+                .setTimelineType(TimelineTypeEnum.HOME);
+        DataInserter di2 = new DataInserter(execContext2);
+        assertEquals(userId, di2.insertOrUpdateUser(somebody));
+        assertEquals("The same as stored", 0, execContext2.getResult().getUsersWritten());
+
+        somebody.realName = "Somebody who has changed";
+        di2.insertOrUpdateUser(somebody);
+        assertEquals("Changed", 1, execContext2.getResult().getUsersWritten());
+        assertEquals(somebody.realName, MyProvider.userIdToStringColumnValue(User.REAL_NAME, userId));
+    }
+
     private void deleteOldMessage(long originId, String messageOid) {
         long messageIdOld = MyProvider.oidToId(OidEnum.MSG_OID, originId, messageOid);
         if (messageIdOld != 0) {
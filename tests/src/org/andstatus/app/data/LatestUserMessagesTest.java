@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.net.MbUser;
+import org.andstatus.app.service.CommandData;
+import org.andstatus.app.service.CommandExecutionContext;
+
+public class LatestUserMessagesTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testLatestMessageIsKeptForEachUser() {
+        LatestUserMessages lum = new LatestUserMessages();
+        final int count = 1000;
+        for (long userId = 1; userId <= count; userId++) {
+            lum.onNewUserMsg(userId, userId * 10, 2000);
+            lum.onNewUserMsg(userId, userId * 10 + 1, 1000);
+        }
+        lum.onNewUserMsg(0, 5, 3000);
+        assertEquals(count, lum.size());
+        for (UserMsg um : lum.getUserMessages()) {
+            assertEquals("Newer message kept for userId=" + um.getUserId(), um.getUserId() * 10, um.getLastMsgId());
+            assertEquals(2000, um.getLastMsgDate());
+        }
+    }
+
+    public void testOlderMessageIsNotSaved() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        DataInserter di = new DataInserter(new CommandExecutionContext(CommandData.getEmpty(), ma)
+                .setTimelineType(TimelineTypeEnum.HOME));
+        String username = "latest" + System.currentTimeMillis() + "@identi.ca";
+        MbUser somebody = MbUser.fromOriginAndUserOid(ma.getOriginId(), "acct:" + username);
+        somebody.userName = username;
+        long userId = di.insertOrUpdateUser(somebody);
+        assertTrue("User added", userId != 0);
+
+        LatestUserMessages lum = new LatestUserMessages();
+        lum.onNewUserMsg(userId, 12345, 2000);
+        assertTrue(lum.save());
+        assertEquals(12345, MyProvider.userIdToLongColumnValue(User.USER_MSG_ID, userId));
+        assertEquals(2000, MyProvider.userIdToLongColumnValue(User.USER_MSG_DATE, userId));
+
+        lum = new LatestUserMessages();
+        lum.onNewUserMsg(userId, 12344, 1000);
+        assertTrue(lum.save());
+        assertEquals("Newer message is left", 12345, MyProvider.userIdToLongColumnValue(User.USER_MSG_ID, userId));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.text.Spanned;
+
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.util.MyLog;
+
+public class MessageRenderCacheTest extends InstrumentationTestCase {
+    private Context context;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+        context = TestSuite.getMyContextForTest().context();
+        MessageRenderCache.clear();
+    }
+
+    public void testBodyIsRenderedOncePerVersion() {
+        long msgId = 1234567;
+        Spanned spanned = MessageRenderCache.getBody(msgId, "Hello <b>world</b>");
+        assertEquals("Hello world", spanned.toString());
+        assertSame("Cached", spanned, MessageRenderCache.getBody(msgId, "Hello <b>world</b>"));
+        Spanned spanned2 = MessageRenderCache.getBody(msgId, "Hello <b>everybody</b>");
+        assertEquals("Body changed", "Hello everybody", spanned2.toString());
+    }
+
+    public void testDetailsFollowChanges() {
+        long msgId = 1234568;
+        long createdDate = System.currentTimeMillis() - MyLog.daysToMillis(2);
+        String suffix = MessageRenderCache.formatDetailsSuffix(context, 0, null, null);
+        assertEquals("", suffix);
+        String details = MessageRenderCache.getDetails(context, msgId, createdDate, suffix);
+        assertTrue("Relative time only: '" + details + "'", details.length() > 0);
+        assertSame("Cached", details, MessageRenderCache.getDetails(context, msgId, createdDate, suffix));
+        String details2 = MessageRenderCache.getDetails(context, msgId, createdDate,
+                MessageRenderCache.formatDetailsSuffix(context, 0, null, "somebody"));
+        assertTrue("Recipient added: '" + details2 + "'", details2.contains("somebody"));
+        String details3 = MessageRenderCache.getDetails(context, msgId, createdDate,
+                MessageRenderCache.formatDetailsSuffix(context, 5, "replied", null));
+        assertTrue("In reply to: '" + details3 + "'", details3.contains("replied"));
+        assertFalse("Recipient removed: '" + details3 + "'", details3.contains("somebody"));
+    }
+
+    public void testRelativeTimeTtl() {
+        long fiveMinutesMs = 5 * MessageRenderCache.MINUTE_MS;
+        assertTrue(MessageRenderCache.getRelativeTimeTtl(1000) < MessageRenderCache.getRelativeTimeTtl(fiveMinutesMs));
+        assertTrue(MessageRenderCache.getRelativeTimeTtl(fiveMinutesMs)
+                < MessageRenderCache.getRelativeTimeTtl(MyLog.daysToMillis(5)));
+    }
+}
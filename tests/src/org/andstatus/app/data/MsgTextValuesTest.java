@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.data.MyDatabase.Msg;
+
+public class MsgTextValuesTest extends InstrumentationTestCase {
+
+    public void testHtmlBody() {
+        String body = "Hi <a href=\"https://identi.ca/somebody\">@Somebody@identi.ca</a> and @another.one, see "
+                + "<a href=\"http://example.com/page\">this page</a> #AndStatus #tag2.";
+        MsgTextValues values = MsgTextValues.fromBody(body, true);
+        assertEquals("Hi @Somebody@identi.ca and @another.one, see this page #AndStatus #tag2.", values.getPlainText());
+        assertTrue(values.getMentions().toString(), values.getMentions().contains("somebody@identi.ca"));
+        assertTrue(values.getMentions().toString(), values.getMentions().contains("another.one"));
+        assertEquals(2, values.getMentions().size());
+        assertTrue(values.getHashtags().contains("andstatus"));
+        assertTrue(values.getHashtags().contains("tag2"));
+        assertTrue(values.getUrls().toString(), values.getUrls().contains("http://example.com/page"));
+        assertTrue(values.isMentioned("Somebody@identi.ca"));
+        assertTrue(values.isMentioned("another.one"));
+        assertFalse(values.isMentioned("another"));
+    }
+
+    public void testPlainBody() {
+        MsgTextValues values = MsgTextValues.fromBody(" a < b > c, mail me at me@example.com, @t131t: http://t.co/abc). ", false);
+        assertEquals("a < b > c, mail me at me@example.com, @t131t: http://t.co/abc).", values.getPlainText());
+        assertEquals("Not an e-mail " + values.getMentions(), 1, values.getMentions().size());
+        assertTrue(values.isMentioned("t131t@twitter.com"));
+        assertTrue(values.getUrls().contains("http://t.co/abc"));
+        assertTrue(values.getHashtags().isEmpty());
+    }
+
+    public void testColumnValues() {
+        MsgTextValues values = MsgTextValues.fromBody("@one @two #Three", false);
+        ContentValues contentValues = new ContentValues();
+        values.toContentValues(contentValues);
+        assertEquals(" one two ", contentValues.getAsString(Msg.MENTIONS));
+        assertEquals(" three ", contentValues.getAsString(Msg.HASHTAGS));
+        assertEquals("", contentValues.getAsString(Msg.URLS));
+        assertEquals("% three %", MsgTextValues.toLikeArgument("Three"));
+        assertEquals("Wildcards are escaped", "% 100\\%\\_sure %", MsgTextValues.toLikeArgument("100%_sure"));
+        assertEquals("a\\\\b", MsgTextValues.escapeLike("a\\b"));
+        assertEquals("", MsgTextValues.fromBody(null, true).getPlainText());
+    }
+}
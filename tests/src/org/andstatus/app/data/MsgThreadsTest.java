@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.net.MbMessage;
+import org.andstatus.app.net.MbUser;
+import org.andstatus.app.service.CommandData;
+import org.andstatus.app.service.CommandExecutionContext;
+
+public class MsgThreadsTest extends InstrumentationTestCase {
+    private MyAccount ma;
+    private MbUser author;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+        ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        String username = "threads@identi.ca";
+        author = MbUser.fromOriginAndUserOid(ma.getOriginId(), "acct:" + username);
+        author.userName = username;
+    }
+
+    public void testPathSegment() {
+        assertEquals("0000000012/", MsgThreads.toPathSegment(12));
+        String[] range = MsgThreads.subtreeRange("0000000001/0000000012/");
+        assertEquals("0000000001/0000000012/", range[0]);
+        assertEquals("0000000001/00000000120", range[1]);
+        assertTrue("0000000001/0000000012/0000000013/".compareTo(range[1]) < 0);
+        assertTrue("0000000001/0000000013/".compareTo(range[1]) > 0);
+    }
+
+    public void testNewMessageIsInsertedWithItsPosition() {
+        String prefix = "threadsNew" + System.currentTimeMillis() + "/";
+        MbMessage root = newMessage(prefix + "root", null);
+        long rootId = insert(root);
+        assertEquals("Root of its thread", rootId, MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, rootId));
+        assertEquals(MsgThreads.toPathSegment(rootId), 
+                MyProvider.msgIdToStringColumnValue(Msg.THREAD_PATH, rootId));
+
+        long replyId = insert(newMessage(prefix + "reply", root));
+        assertTrue("A new id", replyId > rootId);
+        assertEquals(rootId, MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, replyId));
+        assertEquals(1, MyProvider.msgIdToLongColumnValue(Msg.THREAD_DEPTH, replyId));
+        assertEquals(MsgThreads.toPathSegment(rootId) + MsgThreads.toPathSegment(replyId), 
+                MyProvider.msgIdToStringColumnValue(Msg.THREAD_PATH, replyId));
+    }
+
+    public void testMissingAncestorArrivesLater() {
+        String prefix = "threads" + System.currentTimeMillis() + "/";
+        MbMessage parent = newMessage(prefix + "parent", null);
+        MbMessage reply = newMessage(prefix + "reply", parent);
+        long replyId = insert(reply);
+        long parentId = MyProvider.msgIdToLongColumnValue(Msg.IN_REPLY_TO_MSG_ID, replyId);
+        assertTrue("Parent stored", parentId != 0);
+        assertEquals("Parent is the root", parentId, MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, parentId));
+        assertEquals(parentId, MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, replyId));
+        assertEquals(1, MyProvider.msgIdToLongColumnValue(Msg.THREAD_DEPTH, replyId));
+
+        MbMessage root = newMessage(prefix + "root", null);
+        parent.inReplyToMessage = root;
+        assertEquals(parentId, insert(parent));
+        long rootId = MyProvider.msgIdToLongColumnValue(Msg.IN_REPLY_TO_MSG_ID, parentId);
+        assertTrue("Root stored", rootId != 0);
+        assertEquals("Reply moved to the thread of the root", rootId,
+                MyProvider.msgIdToLongColumnValue(Msg.THREAD_ID, replyId));
+        assertEquals(2, MyProvider.msgIdToLongColumnValue(Msg.THREAD_DEPTH, replyId));
+
+        Cursor cursor = null;
+        try {
+            cursor = MyContextHolder.get().context().getContentResolver().query(
+                    MyProvider.getTimelineThreadUri(ma.getUserId(), TimelineTypeEnum.ALL, true, rootId),
+                    new String[] { Msg._ID, Msg.THREAD_DEPTH }, null, null, null);
+            assertTrue("Thread found", cursor != null && cursor.moveToFirst());
+            assertEquals("The root goes first", rootId, cursor.getLong(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals(parentId, cursor.getLong(0));
+            assertTrue(cursor.moveToNext());
+            assertEquals(replyId, cursor.getLong(0));
+            assertEquals(2, cursor.getInt(1));
+            assertFalse(cursor.moveToNext());
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    private MbMessage newMessage(String oid, MbMessage inReplyToMessage) {
+        MbMessage message = MbMessage.fromOriginAndOid(ma.getOriginId(), oid);
+        message.setBody("Message " + oid);
+        message.sentDate = System.currentTimeMillis();
+        message.sender = author;
+        message.inReplyToMessage = inReplyToMessage;
+        return message;
+    }
+
+    private long insert(MbMessage message) {
+        DataInserter di = new DataInserter(new CommandExecutionContext(CommandData.getEmpty(), ma)
+                .setTimelineType(TimelineTypeEnum.HOME));
+        long msgId = di.insertOrUpdateMsg(message);
+        assertTrue("Message added " + message.oid, msgId != 0);
+        return msgId;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.util.MyLog;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class StorageProfileTest extends InstrumentationTestCase {
+    private static final String TAG = StorageProfileTest.class.getSimpleName();
+    private static final String BENCHMARK_DATABASE_NAME = "storage_profile_benchmark.sqlite";
+    /** Like a page of a timeline */
+    private static final int ROWS_PER_TRANSACTION = 20;
+    private static final int TRANSACTIONS_COUNT = 200;
+    private static final int READS_COUNT_MAX = 100000;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testLoadAndSave() {
+        for (StorageProfile profile : StorageProfile.values()) {
+            assertEquals(profile, StorageProfile.load(profile.save()));
+        }
+        assertEquals(StorageProfile.DEFAULT, StorageProfile.load(""));
+        assertEquals(StorageProfile.DEFAULT, StorageProfile.load("unknown"));
+    }
+
+    public void testProfileIsApplied() {
+        MyDatabase myDb = MyContextHolder.get().getDatabase();
+        SQLiteDatabase db = myDb.getWritableDatabase();
+        String journalMode = StorageProfile.pragma(db, "journal_mode");
+        assertEquals(myDb.getStorageProfile() + "; journal_mode=" + journalMode,
+                myDb.getStorageProfile().isWriteAheadLogging(), "wal".equalsIgnoreCase(journalMode));
+        myDb.checkpoint();
+    }
+
+    /**
+     * Latency of timeline reads while another thread writes pages of messages,
+     * as during a sync, for each profile
+     */
+    public void testConcurrentReadLatency() throws InterruptedException {
+        StringBuilder report = new StringBuilder();
+        for (StorageProfile profile : StorageProfile.values()) {
+            long[] latencies = measureReadLatencyDuringWrites(profile);
+            assertTrue(profile + ": no reads", latencies.length > 0);
+            report.append(profile + ": " + toSummary(latencies) + "; ");
+        }
+        MyLog.i(TAG, "Read latency during writes, " + report);
+    }
+
+    private long[] measureReadLatencyDuringWrites(StorageProfile profile) throws InterruptedException {
+        File file = MyContextHolder.get().context().getDatabasePath(BENCHMARK_DATABASE_NAME);
+        deleteDatabase(file);
+        file.getParentFile().mkdirs();
+        final SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            if (profile.isWriteAheadLogging()) {
+                db.enableWriteAheadLogging();
+            }
+            profile.applyTo(db);
+            db.execSQL("CREATE TABLE msg (_id INTEGER PRIMARY KEY AUTOINCREMENT, body TEXT, sent_date INTEGER)");
+            db.execSQL("CREATE INDEX idx_msg_sent_date ON msg (sent_date)");
+
+            final Throwable[] writerError = new Throwable[1];
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writePages(db);
+                    } catch (Throwable e) {
+                        writerError[0] = e;
+                    }
+                }
+            });
+            long[] latencies = new long[READS_COUNT_MAX];
+            int count = 0;
+            writer.start();
+            while (writer.isAlive() && count < READS_COUNT_MAX) {
+                long startedAt = System.nanoTime();
+                readPage(db);
+                latencies[count++] = System.nanoTime() - startedAt;
+            }
+            writer.join();
+            assertNull(profile + ": " + writerError[0], writerError[0]);
+            long[] measured = new long[count];
+            System.arraycopy(latencies, 0, measured, 0, count);
+            return measured;
+        } finally {
+            db.close();
+            deleteDatabase(file);
+        }
+    }
+
+    private static void deleteDatabase(File file) {
+        for (String suffix : new String[] {"", "-journal", "-wal", "-shm"}) {
+            File fileToDelete = new File(file.getPath() + suffix);
+            if (fileToDelete.exists() && !fileToDelete.delete()) {
+                MyLog.d(TAG, "Couldn't delete " + fileToDelete);
+            }
+        }
+    }
+
+    private static void writePages(SQLiteDatabase db) {
+        long sentDate = System.currentTimeMillis();
+        ContentValues values = new ContentValues();
+        for (int transaction = 0; transaction < TRANSACTIONS_COUNT; transaction++) {
+            db.beginTransaction();
+            try {
+                for (int row = 0; row < ROWS_PER_TRANSACTION; row++) {
+                    values.put("body", "Message " + transaction + "-" + row + " of a benchmark");
+                    values.put("sent_date", sentDate++);
+                    db.insert("msg", null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+
+    private static void readPage(SQLiteDatabase db) {
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery("SELECT _id, body FROM msg ORDER BY sent_date DESC LIMIT " + ROWS_PER_TRANSACTION, null);
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+            }
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    private static String toSummary(long[] latenciesNanos) {
+        long[] sorted = latenciesNanos.clone();
+        Arrays.sort(sorted);
+        return "n=" + sorted.length + ", p50=" + toMicros(sorted, 50) + "us, p90=" + toMicros(sorted, 90)
+                + "us, max=" + toMicros(sorted, 100) + "us";
+    }
+
+    private static long toMicros(long[] sorted, int percent) {
+        int index = (sorted.length * percent + 99) / 100 - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+}
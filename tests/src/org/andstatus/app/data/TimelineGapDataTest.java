@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.net.TimelinePosition;
+
+import java.util.List;
+
+public class TimelineGapDataTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testGapIsNarrowedAndDeleted() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.TWITTER_TEST_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        long now = System.currentTimeMillis();
+        TimelineGapData gap = new TimelineGapData(ma.getUserId(), TimelineTypeEnum.MENTIONS, ma.getUserId(),
+                new TimelinePosition("gap_since_" + now), new TimelinePosition("gap_max_" + now), now - 1000);
+        gap.save();
+        assertTrue("Gap saved " + gap, gap.getId() != 0);
+
+        TimelineGapData gap2 = TimelineGapData.fromId(gap.getId());
+        assertTrue("Gap found " + gap, gap2 != null);
+        assertEquals(gap.getSincePosition(), gap2.getSincePosition());
+        assertEquals(gap.getMaxPosition(), gap2.getMaxPosition());
+        assertEquals(TimelineTypeEnum.MENTIONS, gap2.getTimelineType());
+
+        gap2.onDownloadedDownTo(new TimelinePosition("gap_older_" + now), now - 2000);
+        gap2.save();
+        List<TimelineGapData> gaps = TimelineGapData.getGaps(TimelineTypeEnum.MENTIONS, ma.getUserId());
+        boolean found = false;
+        for (TimelineGapData gap3 : gaps) {
+            if (gap3.getId() == gap.getId()) {
+                found = true;
+                assertEquals("Gap narrowed", "gap_older_" + now, gap3.getMaxPosition().getPosition());
+                assertEquals("Gap narrowed", now - 2000, gap3.getMaxDate());
+            }
+        }
+        assertTrue("Gap is in the timeline " + gaps, found);
+        assertTrue(gaps.size() <= TimelineGapData.MAX_GAPS_PER_TIMELINE);
+
+        gap2.delete();
+        assertTrue("Gap deleted", TimelineGapData.fromId(gap.getId()) == null);
+    }
+}
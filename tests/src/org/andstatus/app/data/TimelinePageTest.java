@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.andstatus.app.data;
+
+import android.database.MatrixCursor;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase.Avatar;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.data.MyDatabase.User;
+
+public class TimelinePageTest extends InstrumentationTestCase {
+    private static final String[] PROJECTION = new String[] { Msg._ID, User.AUTHOR_NAME, Msg.BODY,
+            Msg.CREATED_DATE, Msg.IN_REPLY_TO_MSG_ID, User.IN_REPLY_TO_NAME, MsgOfUser.FAVORITED,
+            User.LINKED_USER_ID, Msg.AUTHOR_ID, Avatar.FILE_NAME };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testRowsOfPage() {
+        MatrixCursor cursor = new MatrixCursor(PROJECTION);
+        long createdDate = System.currentTimeMillis() - 60000;
+        cursor.addRow(new Object[] { 11, new String("first"), "Hello <b>world</b>", createdDate, 0, null, 1, 5, 101, "a.png" });
+        cursor.addRow(new Object[] { 12, new String("second"), null, createdDate, 11, new String("first"), 0, 5, 102, null });
+        cursor.addRow(new Object[] { 13, new String("first"), "Third", createdDate, 0, null, 0, 6, 101, "a.png" });
+        TimelinePage page = TimelinePage.fromCursor(MyContextHolder.get().context(), cursor);
+        assertTrue("Cursor is before the first row", cursor.isBeforeFirst());
+        cursor.close();
+
+        assertEquals(3, page.getCount());
+        assertEquals(12, page.getId(1));
+        assertEquals("12", page.getIdText(1));
+        assertEquals(1, page.positionOf(12));
+        assertEquals(-1, page.positionOf(14));
+        assertEquals("Hello world", page.getBody(0).toString());
+        assertEquals("", page.getBody(1).toString());
+        assertSame("Equal names are shared", page.getAuthorName(0), page.getAuthorName(2));
+        assertSame(page.getAuthorName(0), page.getAuthorName(0));
+        assertTrue(page.hasFavorited());
+        assertTrue(page.isFavorited(0));
+        assertFalse(page.isFavorited(1));
+        assertEquals(6, page.getLinkedUserId(2));
+        assertFalse(page.hasRepliesToAccounts());
+        assertTrue(page.hasAvatars());
+        assertEquals(2, page.getAuthorsCount());
+        assertEquals(page.getAuthorIndex(0), page.getAuthorIndex(2));
+        assertTrue(page.getAuthorIndex(0) != page.getAuthorIndex(1));
+        assertEquals(102, page.getAuthorId(1));
+        assertEquals("a.png", page.getAvatarFileName(2));
+        String details = page.getDetails(MyContextHolder.get().context(), 1);
+        assertTrue(details, details.contains("first"));
+        assertSame("Details are cached", details, page.getDetails(MyContextHolder.get().context(), 1));
+
+        TimelinePage head = page.head(2);
+        assertEquals(2, head.getCount());
+        assertEquals(12, head.getId(1));
+        assertEquals(details, head.getDetails(MyContextHolder.get().context(), 1));
+        assertTrue(head.hasAvatars());
+        assertSame("Short page is shared", page, page.head(3));
+    }
+
+    public void testAppend() {
+        String[] projection = new String[] { Msg._ID, User.AUTHOR_NAME, Msg.SENT_DATE, Msg.AUTHOR_ID, Avatar.FILE_NAME };
+        MatrixCursor cursor = new MatrixCursor(projection);
+        cursor.addRow(new Object[] { 21, "first", 3000, 101, "a.png" });
+        cursor.addRow(new Object[] { 22, "second", 2000, 102, null });
+        cursor.addRow(new Object[] { 23, "first", 2000, 101, "a.png" });
+        TimelinePage previous = TimelinePage.fromCursor(MyContextHolder.get().context(), cursor);
+        cursor.close();
+        assertEquals(2000, previous.getKeysetSentDate());
+        String selection = previous.getKeysetSelection();
+        assertTrue(selection, selection.contains("IN (23,22)"));
+
+        cursor = new MatrixCursor(projection);
+        cursor.addRow(new Object[] { 24, "third", 2000, 103, null });
+        cursor.addRow(new Object[] { 25, "first", 1000, 101, "a.png" });
+        TimelinePage page = TimelinePage.append(MyContextHolder.get().context(), previous, cursor);
+        cursor.close();
+        assertEquals(3, previous.getCount());
+        assertEquals(5, page.getCount());
+        assertEquals(22, page.getId(1));
+        assertEquals(25, page.getId(4));
+        assertEquals(1000, page.getKeysetSentDate());
+        assertEquals(3, page.getAuthorsCount());
+        assertEquals("The same author", page.getAuthorIndex(0), page.getAuthorIndex(4));
+        assertEquals(2, page.getAuthorIndex(3));
+
+        cursor = new MatrixCursor(projection);
+        assertSame("Nothing to append", page, TimelinePage.append(MyContextHolder.get().context(), page, cursor));
+        cursor.close();
+    }
+
+    public void testEmptyCursor() {
+        MatrixCursor cursor = new MatrixCursor(PROJECTION);
+        assertSame(TimelinePage.EMPTY, TimelinePage.fromCursor(MyContextHolder.get().context(), cursor));
+        cursor.close();
+        assertSame(TimelinePage.EMPTY, TimelinePage.fromCursor(MyContextHolder.get().context(), null));
+    }
+}
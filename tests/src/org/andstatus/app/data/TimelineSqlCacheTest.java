@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.data;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.MyDatabase.Msg;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.data.MyDatabase.User;
+import org.andstatus.app.data.TimelineSqlCache.TimelineSql;
+
+public class TimelineSqlCacheTest extends InstrumentationTestCase {
+    private static final String[] PROJECTION = new String[] {
+            Msg._ID, User.AUTHOR_NAME, Msg.BODY, User.IN_REPLY_TO_NAME, User.RECIPIENT_NAME, 
+            MsgOfUser.FAVORITED, User.LINKED_USER_ID, MyDatabase.Avatar.FILE_NAME
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+    }
+
+    public void testCachedSqlIsTheSameAsGenerated() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(ma != null);
+        for (TimelineTypeEnum timelineType : new TimelineTypeEnum[] { TimelineTypeEnum.HOME, 
+                TimelineTypeEnum.PUBLIC, TimelineTypeEnum.MESSAGESTOACT, TimelineTypeEnum.FOLLOWING_USER }) {
+            oneTimeline(MyProvider.getTimelineUri(ma.getUserId(), timelineType, false));
+            oneTimeline(MyProvider.getTimelineUri(ma.getUserId(), timelineType, true));
+        }
+    }
+
+    private void oneTimeline(Uri uri) {
+        TimelineSql cached = MyProvider.tablesForTimeline(uri, PROJECTION);
+        long hits = TimelineSqlCache.getHits();
+        TimelineSql cached2 = MyProvider.tablesForTimeline(uri, PROJECTION);
+        assertEquals("Cache hit for " + uri, hits + 1, TimelineSqlCache.getHits());
+        assertEquals(uri.toString(), cached, cached2);
+        assertEquals(uri.toString(), MyProvider.newTablesForTimeline(uri, PROJECTION), cached2);
+
+        Cursor cursor = null;
+        try {
+            cursor = MyContextHolder.get().context().getContentResolver().query(uri, PROJECTION, null, null, null);
+            assertTrue("Query executed with bound parameters " + cached, cursor != null);
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+
+    public void testCacheIsInvalidatedWhenAccountsChange() {
+        MyAccount ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        Uri uri = MyProvider.getTimelineUri(ma.getUserId(), TimelineTypeEnum.HOME, true);
+        MyProvider.tablesForTimeline(uri, PROJECTION);
+        int version = MyContextHolder.get().persistentAccounts().getVersion();
+        MyContextHolder.get().persistentAccounts().initialize();
+        assertTrue("Version changed", version != MyContextHolder.get().persistentAccounts().getVersion());
+        long misses = TimelineSqlCache.getMisses();
+        MyProvider.tablesForTimeline(uri, PROJECTION);
+        assertEquals("Cache miss after accounts changed", misses + 1, TimelineSqlCache.getMisses());
+    }
+}
@@ -26,8 +26,10 @@ import org.andstatus.app.origin.Origin;
 import org.andstatus.app.origin.OriginConnectionData;
 import org.andstatus.app.util.RawResourceUtils;
 import org.andstatus.app.util.TriState;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -62,6 +64,39 @@ public class ConnectionTwitterTest extends InstrumentationTestCase {
         }
     }
 
+    public void testStreamTimeline() throws ConnectionException, JSONException {
+        JSONObject jso = RawResourceUtils.getJSONObject(this.getInstrumentation().getContext(), 
+                org.andstatus.app.tests.R.raw.home_timeline);
+        List<String> lines = new ArrayList<String>();
+        lines.add("{\"friends\":[221452291,30973]}");
+        lines.add("");
+        lines.add(jso.getJSONArray("items").getJSONObject(0).toString());
+        lines.add("{\"delete\":{\"status\":{\"id\":1234,\"id_str\":\"1234\",\"user_id\":3,\"user_id_str\":\"3\"}}}");
+        lines.add("Not a JSON line");
+        lines.add(jso.getJSONArray("items").getJSONObject(1).toString());
+        lines.add(jso.getJSONArray("items").getJSONObject(2).toString());
+        httpConnection.setStreamLines(lines);
+        assertTrue(connection.isStreamingSupported());
+
+        final List<MbTimelineItem> timeline = new ArrayList<MbTimelineItem>();
+        connection.streamTimeline(new TimelineStreamConsumer() {
+            @Override
+            public void consume(MbTimelineItem item) {
+                timeline.add(item);
+            }
+
+            @Override
+            public boolean isToContinue() {
+                return timeline.size() < 2;
+            }
+        });
+        assertEquals("Only statuses are consumed, till the consumer stops", 2, timeline.size());
+        assertEquals("Streamed message", MbTimelineItem.ItemType.MESSAGE, timeline.get(0).getType());
+        assertEquals("Author's oid", "221452291", timeline.get(0).mbMessage.sender.oid);
+        assertTrue("Stream path " + httpConnection.getPathStringList(), 
+                httpConnection.getPathStringList().get(0).contains("userstream"));
+    }
+
     public void testGetTimeline() throws ConnectionException {
         JSONObject jso = RawResourceUtils.getJSONObject(this.getInstrumentation().getContext(), 
                 org.andstatus.app.tests.R.raw.home_timeline);
@@ -121,6 +156,30 @@ public class ConnectionTwitterTest extends InstrumentationTestCase {
         assertEquals("Body of this message starts with", startsWith, mbMessage.getBody().substring(0, startsWith.length()));
     }
     
+    public void testGetTimelineToConsumer() throws ConnectionException {
+        JSONObject jso = RawResourceUtils.getJSONObject(this.getInstrumentation().getContext(), 
+                org.andstatus.app.tests.R.raw.home_timeline);
+        httpConnection.setResponse(jso);
+        List<MbTimelineItem> timeline = connection.getTimeline(ApiRoutineEnum.STATUSES_HOME_TIMELINE, 
+                new TimelinePosition("380925803053449216") , 20, connectionData.getAccountUserOid());
+
+        httpConnection.setResponse(jso);
+        final List<String> consumed = new ArrayList<String>();
+        int count = connection.getTimeline(ApiRoutineEnum.STATUSES_HOME_TIMELINE, 
+                new TimelinePosition("380925803053449216") , 20, connectionData.getAccountUserOid(), 
+                new TimelineItemConsumer() {
+                    @Override
+                    public void consume(MbTimelineItem item) {
+                        consumed.add(item.mbMessage.oid);
+                    }
+                });
+        assertEquals("Number of items consumed", timeline.size(), count);
+        assertEquals("Number of items consumed", timeline.size(), consumed.size());
+        for (int ind = 0; ind < timeline.size(); ind++) {
+            assertEquals("Item " + ind + " in chronological order", timeline.get(ind).mbMessage.oid, consumed.get(ind));
+        }
+    }
+
     public void testParseDate() {
         String stringDate = "Wed Nov 27 09:27:01 -0300 2013";
         assertEquals("Bad date shouldn't throw (" + stringDate + ")", 0, connection.parseDate(stringDate) );
@@ -18,9 +18,26 @@ package org.andstatus.app.net;
 
 import android.test.InstrumentationTestCase;
 
+import org.andstatus.app.net.ConnectionException.StatusCode;
+import org.andstatus.app.util.MyLog;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHttpResponse;
 import org.json.JSONArray;
 import org.json.JSONTokener;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
 public class HttpApacheUtilsTest extends InstrumentationTestCase {
     
     public void testJsonTokenerToArray() throws ConnectionException {
@@ -33,4 +50,88 @@ public class HttpApacheUtilsTest extends InstrumentationTestCase {
         JSONArray jsa = utils.jsonTokenerToArray(jst);
         assertEquals(2, jsa.length());
     }
+
+    public void testRateLimitHeadersOfErrorResponse() throws IOException {
+        HttpConnectionMock connection = new HttpConnectionMock();
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+        response.addHeader("X-Rate-Limit-Limit", "15");
+        response.addHeader("X-Rate-Limit-Remaining", "0");
+        try {
+            HttpApacheUtils.newResponseHandler(connection).handleResponse(response);
+            fail("Error response should throw");
+        } catch (HttpResponseException e) {
+            assertEquals(StatusCode.RATE_LIMIT_EXCEEDED,
+                    ConnectionException.fromStatusCodeHttp(e.getStatusCode(), "test", e).getStatusCode());
+        }
+        assertEquals("Rate limit headers of the error response are read", 15,
+                connection.getLastRateLimitStatus().limit);
+        assertEquals(0, connection.getLastRateLimitStatus().remaining);
+    }
+
+    public void testStreamFromLocalServer() throws Exception {
+        final String[] lines = {"{\"friends\":[1,2]}", "", "{\"text\":\"Text1\"}", "{\"text\":\"Text2\"}"};
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        Thread serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serveEndlessStream(server, lines);
+            }
+        });
+        serverThread.start();
+
+        final List<String> received = new ArrayList<String>();
+        HttpConnectionMock connection = new HttpConnectionMock();
+        HttpGet get = new HttpGet("http://127.0.0.1:" + server.getLocalPort() + "/1.1/user.json");
+        HttpApacheUtils.getStream(connection, get, new StreamLineConsumer() {
+            @Override
+            public boolean consumeLine(String line) {
+                received.add(line);
+                return received.size() < lines.length;
+            }
+        });
+        assertEquals("The stream is closed by the consumer", lines.length, received.size());
+        assertEquals(lines[2], received.get(2));
+        assertEquals("Rate limit headers are read", 14, connection.getLastRateLimitStatus().remaining);
+        serverThread.join(5000);
+        server.close();
+    }
+
+    /**
+     * Like a streaming server, sends the lines and then keep-alive lines till the client goes away
+     */
+    private void serveEndlessStream(ServerSocket server, String[] lines) {
+        Socket socket = null;
+        try {
+            socket = server.accept();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            String requestLine;
+            do {
+                requestLine = reader.readLine();
+            } while (requestLine != null && requestLine.length() > 0);
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            writer.write("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+                    + "X-Rate-Limit-Limit: 15\r\nX-Rate-Limit-Remaining: 14\r\n\r\n");
+            for (String line : lines) {
+                writer.write(line + "\r\n");
+                writer.flush();
+            }
+            for (int ind = 0; ind < 50; ind++) {
+                Thread.sleep(100);
+                writer.write("\r\n");
+                writer.flush();
+            }
+        } catch (IOException e) {
+            MyLog.v(this, "The client went away", e);
+        } catch (InterruptedException e) {
+            MyLog.v(this, e);
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    MyLog.v(this, e);
+                }
+            }
+        }
+    }
 }
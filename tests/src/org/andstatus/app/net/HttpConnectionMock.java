@@ -34,7 +34,12 @@ public class HttpConnectionMock extends HttpConnection {
     private volatile JSONObject postedObject = null;
     private final List<String> pathStringList = new CopyOnWriteArrayList<String>();
     private volatile JSONObject responseObject = null;
+    private final List<String> streamLines = new CopyOnWriteArrayList<String>();
+    private volatile boolean streamKeptOpen = false;
     private volatile ConnectionException exception = null;
+    private volatile boolean responseCacheSupported = false;
+    private volatile String responseEtag = "";
+    private volatile String requestEtag = "";
 
     private volatile String password = "password";
     private volatile String userToken = "token";
@@ -51,9 +56,34 @@ public class HttpConnectionMock extends HttpConnection {
         responseObject = jso;
     }
 
+    public void setStreamLines(List<String> lines) {
+        streamLines.clear();
+        streamLines.addAll(lines);
+    }
+
+    /**
+     * The stream sends keep-alive lines after the lines set, till the consumer stops
+     */
+    public void setStreamKeptOpen(boolean streamKeptOpen) {
+        this.streamKeptOpen = streamKeptOpen;
+    }
+
     public void setException(ConnectionException exception) {
         this.exception = exception;
     }
+
+    /**
+     * Makes the mock respond to conditional requests like a server, which 
+     * answers "304 Not Modified", if the cached ETag equals the ETag of the response
+     */
+    public void setResponseCacheSupported(boolean responseCacheSupported, String responseEtag) {
+        this.responseCacheSupported = responseCacheSupported;
+        this.responseEtag = responseEtag;
+    }
+
+    public String getRequestEtag() {
+        return requestEtag;
+    }
     
     @Override
     protected JSONObject postRequest(String path, JSONObject jso) throws ConnectionException {
@@ -120,6 +150,48 @@ public class HttpConnectionMock extends HttpConnection {
         return responseObject;
     }
     
+    @Override
+    protected boolean isResponseCacheSupported() {
+        return responseCacheSupported;
+    }
+
+    @Override
+    protected HttpResponseCache.Entry getConditionalRequest(String path, String key, HttpResponseCache.Entry cached)
+            throws ConnectionException {
+        onRequest("getConditionalRequest", path);
+        throwExceptionIfSet();
+        requestEtag = cached == null ? "" : cached.etag;
+        if (cached != null && cached.etag.equals(responseEtag)) {
+            return cached.revalidated();
+        }
+        return new HttpResponseCache.Entry(key, responseEtag, "", System.currentTimeMillis(),
+                responseObject == null ? "" : responseObject.toString());
+    }
+
+    @Override
+    public boolean isStreamingSupported() {
+        return true;
+    }
+
+    @Override
+    protected void getStream(String path, StreamLineConsumer consumer) throws ConnectionException {
+        onRequest("getStream", path);
+        throwExceptionIfSet();
+        for (String line : streamLines) {
+            if (!consumer.consumeLine(line)) {
+                return;
+            }
+        }
+        while (streamKeptOpen && consumer.consumeLine("")) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                MyLog.v(this, "getStream", e);
+                return;
+            }
+        }
+    }
+
     @Override
     protected JSONArray getRequestAsArray(String path) throws ConnectionException {
         JSONObject jso = getRequestInner("getRequestAsArray", path);
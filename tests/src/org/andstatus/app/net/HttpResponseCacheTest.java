@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.net.Connection.ApiRoutineEnum;
+import org.andstatus.app.origin.OriginType;
+import org.andstatus.app.util.TriState;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+
+public class HttpResponseCacheTest extends InstrumentationTestCase {
+    private static final String URL = "https://example.com/api/users/show.json?user_id=";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initialize(this);
+        HttpResponseCache cache = HttpResponseCache.getInstance();
+        assertNotNull(cache);
+        cache.clear();
+    }
+
+    public void testTimelinesAreNotCached() {
+        for (ApiRoutineEnum routine : new ApiRoutineEnum[] {ApiRoutineEnum.STATUSES_HOME_TIMELINE,
+                ApiRoutineEnum.STATUSES_MENTIONS_TIMELINE, ApiRoutineEnum.STATUSES_USER_TIMELINE,
+                ApiRoutineEnum.PUBLIC_TIMELINE, ApiRoutineEnum.SEARCH_MESSAGES, ApiRoutineEnum.DIRECT_MESSAGES,
+                ApiRoutineEnum.STATUSES_UPDATE, ApiRoutineEnum.GET_MESSAGE}) {
+            assertEquals(routine.toString(), HttpResponseCache.NOT_CACHED, HttpResponseCache.getTtlMs(routine));
+        }
+        assertEquals("Credentials are always revalidated", 0,
+                HttpResponseCache.getTtlMs(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS));
+        assertTrue(HttpResponseCache.getTtlMs(ApiRoutineEnum.GET_CONFIG) > 0);
+        assertTrue(HttpResponseCache.getTtlMs(ApiRoutineEnum.GET_USER) > 0);
+        assertTrue(HttpResponseCache.getTtlMs(ApiRoutineEnum.ACCOUNT_RATE_LIMIT_STATUS) > 0);
+    }
+
+    public void testStoreAndRevalidate() {
+        HttpResponseCache cache = HttpResponseCache.getInstance();
+        String key = "1/user1/" + URL + "1";
+        assertNull(cache.get(key));
+        long storedAt = System.currentTimeMillis() - 120000;
+        cache.put(new HttpResponseCache.Entry(key, "\"etag1\"", "", storedAt, "{\"id\":1}"));
+
+        HttpResponseCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertEquals("\"etag1\"", entry.etag);
+        assertEquals("{\"id\":1}", entry.body);
+        assertTrue(entry.hasValidators());
+        assertFalse("Stale", entry.isFresh(60000));
+        assertTrue(entry.isFresh(600000));
+        assertFalse("Always revalidated", entry.isFresh(0));
+
+        HttpResponseCache.Entry revalidated = entry.revalidated();
+        assertTrue(revalidated.isFresh(60000));
+        assertEquals(entry.body, revalidated.body);
+        assertEquals(entry.etag, revalidated.etag);
+        
+        assertNull("Other account", cache.get("1/user2/" + URL + "1"));
+    }
+
+    public void testNotModifiedResponseIsTakenFromCache() throws ConnectionException, JSONException {
+        HttpConnectionData data = HttpConnectionData.fromConnectionData(
+                MyContextHolder.get().persistentOrigins().firstOfType(OriginType.PUMPIO)
+                .getConnectionData(TriState.UNKNOWN));
+        data.host = "example.com";
+        data.accountUsername = "user1";
+        HttpConnectionMock connection = new HttpConnectionMock();
+        connection.setConnectionData(data);
+        connection.setResponseCacheSupported(true, "\"etag1\"");
+        String path = "api/whoami";
+
+        connection.setResponse(new JSONObject("{\"id\":1}"));
+        JSONObject jso = connection.getRequest(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS, path);
+        assertEquals(1, jso.getInt("id"));
+        assertEquals("Nothing to revalidate", "", connection.getRequestEtag());
+
+        connection.setResponse(new JSONObject("{\"id\":2}"));
+        jso = connection.getRequest(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS, path);
+        assertEquals("Always revalidated", 2, connection.getPostedCounter());
+        assertEquals("\"etag1\"", connection.getRequestEtag());
+        assertEquals("The body of '304 Not Modified' is taken from the cache", 1, jso.getInt("id"));
+
+        connection.setResponseCacheSupported(true, "\"etag2\"");
+        jso = connection.getRequest(ApiRoutineEnum.ACCOUNT_VERIFY_CREDENTIALS, path);
+        assertEquals("Changed on the server", 2, jso.getInt("id"));
+        String key = HttpResponseCache.toKey(data, connection.pathToUrl(path));
+        assertEquals("\"etag2\"", HttpResponseCache.getInstance().get(key).etag);
+    }
+
+    public void testNotStorableEntry() {
+        HttpResponseCache cache = HttpResponseCache.getInstance();
+        String key = "1/user1/" + URL + "2";
+        cache.put(HttpResponseCache.Entry.notStorable(key, null));
+        assertNull(cache.get(key));
+    }
+
+    public void testLeastRecentlyUsedAreEvicted() {
+        HttpResponseCache cache = HttpResponseCache.getInstance();
+        String keyOld = "1/user1/" + URL + "old";
+        cache.put(new HttpResponseCache.Entry(keyOld, "", "", System.currentTimeMillis(), "{}"));
+        File directory = new File(MyContextHolder.get().context().getCacheDir(), HttpResponseCache.DIRECTORY_NAME);
+        File fileOld = new File(directory, HttpResponseCache.toFileName(keyOld));
+        assertTrue(fileOld.exists());
+        assertTrue(fileOld.setLastModified(System.currentTimeMillis() - 3600000));
+        for (int ind = 0; ind < HttpResponseCache.MAX_ENTRIES; ind++) {
+            cache.put(new HttpResponseCache.Entry("1/user1/" + URL + ind, "", "", System.currentTimeMillis(), "{}"));
+        }
+        assertNull(cache.get(keyOld));
+        assertNotNull(cache.get("1/user1/" + URL + (HttpResponseCache.MAX_ENTRIES - 1)));
+        assertTrue(directory.listFiles().length <= HttpResponseCache.MAX_ENTRIES);
+        cache.clear();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.net;
+
+import android.test.InstrumentationTestCase;
+
+import oauth.signpost.commonshttp.HttpRequestAdapter;
+import oauth.signpost.exception.OAuthMessageSignerException;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.http.HttpRequest;
+import oauth.signpost.signature.HmacSha1MessageSigner;
+import oauth.signpost.signature.OAuthMessageSigner;
+
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.util.MyLog;
+import org.apache.http.client.methods.HttpGet;
+
+public class OAuthSigningCacheTest extends InstrumentationTestCase {
+    private static final String CONSUMER_SECRET = "consumer%secret/1";
+    private static final String TOKEN_SECRET = "token secret&2";
+    private static final String[] URLS = new String[] {
+        "https://api.twitter.com/1.1/statuses/home_timeline.json?count=200&since_id=12345",
+        "https://identi.ca:443/api/user/t131t/inbox",
+        "http://Example.com:80/api/statuses/update.json"
+    };
+    private static final int SIGNATURES_COUNT = 500;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initialize(this);
+    }
+
+    public void testSameSignaturesAsSignpost() throws OAuthMessageSignerException {
+        OAuthSigningCache cache = new OAuthSigningCache();
+        for (int iteration = 0; iteration < 2; iteration++) {
+            for (String url : URLS) {
+                HttpRequest request = new HttpRequestAdapter(new HttpGet(url));
+                HttpParameters parameters = newParameters(iteration);
+                for (String tokenSecret : new String[] {TOKEN_SECRET, ""}) {
+                    assertEquals(url + ", iteration " + iteration + ", tokenSecret='" + tokenSecret + "'",
+                            sign(new HmacSha1MessageSigner(), request, parameters, tokenSecret),
+                            sign(cache.newMessageSigner(), request, parameters, tokenSecret));
+                }
+            }
+        }
+    }
+
+    /**
+     * Signing overhead per request, to be compared with network time in the Command execution timings
+     */
+    public void testSignaturesPerSecond() throws OAuthMessageSignerException {
+        long signpostNanos = measure(null);
+        long cachedNanos = measure(new OAuthSigningCache());
+        MyLog.i(this, "Signatures per second: signpost=" + perSecond(signpostNanos) 
+                + ", cached=" + perSecond(cachedNanos));
+        assertTrue(signpostNanos > 0 && cachedNanos > 0);
+    }
+
+    private long measure(OAuthSigningCache cache) throws OAuthMessageSignerException {
+        long startedAt = System.nanoTime();
+        for (int ind = 0; ind < SIGNATURES_COUNT; ind++) {
+            String url = URLS[ind % URLS.length];
+            HttpRequest request = new HttpRequestAdapter(new HttpGet(url));
+            OAuthMessageSigner signer = cache == null ? new HmacSha1MessageSigner() : cache.newMessageSigner();
+            sign(signer, request, newParameters(ind), TOKEN_SECRET);
+        }
+        return System.nanoTime() - startedAt;
+    }
+
+    private static long perSecond(long nanos) {
+        return SIGNATURES_COUNT * 1000000000L / Math.max(nanos, 1);
+    }
+
+    private static HttpParameters newParameters(int seed) {
+        HttpParameters parameters = new HttpParameters();
+        parameters.put("oauth_consumer_key", "consumerKey", true);
+        parameters.put("oauth_nonce", "nonce" + seed, true);
+        parameters.put("oauth_signature_method", OAuthSigningCache.SIGNATURE_METHOD, true);
+        parameters.put("oauth_timestamp", Long.toString(1400000000L + seed), true);
+        parameters.put("oauth_token", "userToken", true);
+        parameters.put("oauth_version", "1.0", true);
+        parameters.put("count", "200", true);
+        return parameters;
+    }
+
+    private static String sign(OAuthMessageSigner signer, HttpRequest request, HttpParameters parameters,
+            String tokenSecret) throws OAuthMessageSignerException {
+        signer.setConsumerSecret(CONSUMER_SECRET);
+        signer.setTokenSecret(tokenSecret);
+        return signer.sign(request, parameters);
+    }
+}
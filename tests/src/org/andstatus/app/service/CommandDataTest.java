@@ -20,6 +20,7 @@ import android.test.InstrumentationTestCase;
 
 import org.andstatus.app.context.MyContextHolder;
 import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.TimelineTypeEnum;
 import org.andstatus.app.util.SharedPreferencesUtil;
 
 import java.util.Queue;
@@ -67,6 +68,31 @@ public class CommandDataTest extends InstrumentationTestCase {
         assertEquals(commandData.getResult().getRetriesLeft(), commandData2.getResult().getRetriesLeft());
     }
 
+    public void testGapIsFilledAfterOtherCommands() {
+        Queue<CommandData> queue = new PriorityBlockingQueue<CommandData>(100);
+        queue.add(CommandData.fetchGapCommand(TestSuite.CONVERSATION_ACCOUNT_NAME, TimelineTypeEnum.HOME, 1));
+        queue.add(new CommandData(CommandEnum.FETCH_TIMELINE, TestSuite.CONVERSATION_ACCOUNT_NAME,
+                TimelineTypeEnum.HOME));
+        queue.add(CommandData.updateStatus(TestSuite.CONVERSATION_ACCOUNT_NAME, "Gap test", 0, 0));
+        assertEquals(CommandEnum.FETCH_TIMELINE, queue.poll().getCommand());
+        assertEquals(CommandEnum.UPDATE_STATUS, queue.poll().getCommand());
+        assertEquals(CommandEnum.FETCH_GAP, queue.poll().getCommand());
+    }
+
+    public void testOlderAreFetchedAfterOtherCommands() {
+        Queue<CommandData> queue = new PriorityBlockingQueue<CommandData>(100);
+        queue.add(new CommandData(CommandEnum.FETCH_OLDER, TestSuite.CONVERSATION_ACCOUNT_NAME,
+                TimelineTypeEnum.HOME));
+        queue.add(CommandData.fetchGapCommand(TestSuite.CONVERSATION_ACCOUNT_NAME, TimelineTypeEnum.HOME, 1));
+        queue.add(CommandData.updateStatus(TestSuite.CONVERSATION_ACCOUNT_NAME, "Older test", 0, 0));
+        queue.add(new CommandData(CommandEnum.FETCH_TIMELINE, TestSuite.CONVERSATION_ACCOUNT_NAME,
+                TimelineTypeEnum.MENTIONS));
+        assertEquals(CommandEnum.FETCH_TIMELINE, queue.poll().getCommand());
+        assertEquals(CommandEnum.UPDATE_STATUS, queue.poll().getCommand());
+        assertEquals(CommandEnum.FETCH_GAP, queue.poll().getCommand());
+        assertEquals(CommandEnum.FETCH_OLDER, queue.poll().getCommand());
+    }
+
     @Override
     protected void tearDown() throws Exception {
         SharedPreferencesUtil.delete(MyContextHolder.get().context(), TEST_QUEUE_FILE_NAME);
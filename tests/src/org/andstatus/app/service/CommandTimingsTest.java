@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.service.CommandTimings.LatencyHistogram;
+import org.andstatus.app.util.PhaseTimings;
+import org.andstatus.app.util.PhaseTimings.Phase;
+
+public class CommandTimingsTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initialize(this);
+        CommandTimings.clear();
+    }
+
+    public void testHistogram() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(11, LatencyHistogram.bucketOf(1500));
+        assertEquals(LatencyHistogram.BUCKETS_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int ind = 0; ind < 9; ind++) {
+            histogram.add(100);
+        }
+        histogram.add(1500);
+        assertEquals(10, histogram.getCount());
+        assertEquals(128, histogram.getPercentile(50));
+        assertEquals(128, histogram.getPercentile(90));
+        assertEquals(2048, histogram.getPercentile(100));
+
+        LatencyHistogram histogram2 = LatencyHistogram.fromString(histogram.toString());
+        assertEquals(histogram.toString(), histogram2.toString());
+
+        for (int ind = 0; ind < LatencyHistogram.ROLLING_MAX_COUNT; ind++) {
+            histogram.add(100);
+        }
+        assertTrue("Counts were halved " + histogram.getCount(), 
+                histogram.getCount() <= LatencyHistogram.ROLLING_MAX_COUNT);
+    }
+
+    public void testCommandTimings() {
+        PhaseTimings timings = PhaseTimings.begin();
+        PhaseTimings.addSince(Phase.NETWORK, System.currentTimeMillis() - 300);
+        timings.end();
+        PhaseTimings.addSince(Phase.NETWORK, System.currentTimeMillis() - 300);
+        assertTrue(timings.getMillis(Phase.NETWORK) >= 300);
+        assertTrue(timings.getMillis(Phase.NETWORK) < 600);
+        assertEquals(0, timings.getMillis(Phase.PARSE));
+
+        CommandTimings.onCommandExecuted(CommandEnum.FETCH_TIMELINE, 1, timings);
+        String report = CommandTimings.getReport();
+        assertTrue(report, report.contains(CommandEnum.FETCH_TIMELINE.save()));
+        assertTrue(report, report.contains(Phase.NETWORK.getCode() + ": n=1"));
+        assertFalse(report, report.contains(Phase.PARSE.getCode()));
+        assertTrue(report, report.contains(CommandTimings.TOTAL + ": n=1"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        CommandTimings.clear();
+        super.tearDown();
+    }
+}
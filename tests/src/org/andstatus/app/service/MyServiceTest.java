@@ -218,6 +218,34 @@ public class MyServiceTest extends InstrumentationTestCase implements MyServiceL
         MyLog.v(this, "testSyncInForeground ended");
     }
 
+    public void testStreamingSurvivesEmptyQueue() {
+        final String method = "testStreamingSurvivesEmptyQueue";
+        MyLog.v(this, method + " started");
+        MyPreferences.getDefaultSharedPreferences().edit()
+                .putBoolean(MyPreferences.KEY_STREAMING_ENABLED, true).commit();
+        httpConnection.setStreamKeptOpen(true);
+        MyAccount twitterMa = MyContextHolder.get().persistentAccounts()
+                .fromAccountName(TestSuite.TWITTER_TEST_ACCOUNT_NAME);
+        assertTrue(TestSuite.TWITTER_TEST_ACCOUNT_NAME + " exists", twitterMa != null);
+
+        listentedToCommand = new CommandData(CommandEnum.RATE_LIMIT_STATUS, twitterMa.getAccountName(), 
+                TimelineTypeEnum.ALL, 0);
+        long startCount = executionStartCount;
+        long endCount = executionEndCount;
+        sendListenedToCommand();
+        assertTrue("First command started executing", waitForCommandExecutionStarted(startCount));
+        TimelineStreamer.startIfNeeded(MyContextHolder.get(), twitterMa);
+        assertTrue("First command ended executing", waitForCommandExecutionEnded(endCount));
+
+        assertFalse("Service stopped while streaming", waitForServiceStopped(45));
+        assertTrue("Streaming", TimelineStreamer.isStreaming(twitterMa.getAccountName()));
+
+        MyServiceManager.stopService();
+        assertTrue("Service stopped", waitForServiceStopped());
+        assertFalse("Streaming stopped with the service", TimelineStreamer.isStreaming(twitterMa.getAccountName()));
+        MyLog.v(this, method + " ended");
+    }
+
     private void dropQueues() {
         listentedToCommand = new CommandData(CommandEnum.DROP_QUEUES, "", TimelineTypeEnum.UNKNOWN, 0);
         long endCount = executionEndCount;
@@ -274,7 +302,11 @@ public class MyServiceTest extends InstrumentationTestCase implements MyServiceL
     }
 
     private boolean waitForServiceStopped() {
-        for (int pass = 0; pass < 10000; pass++) {
+        return waitForServiceStopped(100);
+    }
+
+    private boolean waitForServiceStopped(long seconds) {
+        for (int pass = 0; pass < seconds * 100; pass++) {
             if (serviceStopped) {
                 return true;
             }
@@ -321,7 +353,8 @@ public class MyServiceTest extends InstrumentationTestCase implements MyServiceL
         MyLog.v(this, "tearDown started");
         dropQueues();
         MyPreferences.getDefaultSharedPreferences().edit()
-                .putBoolean(MyPreferences.KEY_SYNC_WHILE_USING_APPLICATION, true).commit();
+                .putBoolean(MyPreferences.KEY_SYNC_WHILE_USING_APPLICATION, true)
+                .putBoolean(MyPreferences.KEY_STREAMING_ENABLED, false).commit();
         
         serviceConnector.unregisterReceiver(MyContextHolder.get().context());
         TestSuite.setHttpConnection(null);
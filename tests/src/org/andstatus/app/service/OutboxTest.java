@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.database.Cursor;
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.account.MyAccount;
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.DbUtils;
+import org.andstatus.app.data.MyDatabase.MsgOfUser;
+import org.andstatus.app.data.MyDatabase.OidEnum;
+import org.andstatus.app.data.MyProvider;
+import org.andstatus.app.util.TriState;
+
+public class OutboxTest extends InstrumentationTestCase {
+    private MyAccount ma;
+    private long msgId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initializeWithData(this);
+        ma = MyContextHolder.get().persistentAccounts().fromAccountName(TestSuite.CONVERSATION_ACCOUNT_NAME);
+        assertTrue(TestSuite.CONVERSATION_ACCOUNT_NAME + " exists", ma != null);
+        msgId = MyProvider.oidToId(OidEnum.MSG_OID, ma.getOriginId(), TestSuite.CONVERSATION_ENTRY_MESSAGE_OID);
+        assertTrue("Message exists", msgId != 0);
+        Outbox.clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Outbox.clear();
+        TestSuite.getMyContextForTest().setOnline(TriState.UNKNOWN);
+        super.tearDown();
+    }
+
+    public void testContradictoryActionsAreCoalesced() {
+        boolean favorited = isFavorited();
+        CommandEnum command = favorited ? CommandEnum.DESTROY_FAVORITE : CommandEnum.CREATE_FAVORITE;
+        assertTrue(Outbox.add(new CommandData(command, ma.getAccountName(), msgId)));
+        assertEquals("Applied locally", !favorited, isFavorited());
+        assertEquals(1, Outbox.size());
+        assertFalse("The same action is pending", Outbox.add(new CommandData(command, ma.getAccountName(), msgId)));
+        assertEquals(1, Outbox.size());
+
+        assertFalse("Coalesced", Outbox.add(new CommandData(Outbox.oppositeOf(command), ma.getAccountName(), msgId)));
+        assertEquals("Nothing to send", 0, Outbox.size());
+        assertEquals("Reverted locally", favorited, isFavorited());
+    }
+
+    public void testPendingActionsAreSentWhenOnline() {
+        CommandData commandData = CommandData.updateStatus(ma.getAccountName(), "Outbox test " + System.currentTimeMillis(), 
+                msgId, 0);
+        assertTrue(Outbox.add(commandData));
+
+        TestSuite.getMyContextForTest().setOnline(TriState.FALSE);
+        assertFalse(Outbox.hasReady());
+        assertNull(Outbox.next());
+
+        TestSuite.getMyContextForTest().setOnline(TriState.TRUE);
+        assertTrue(Outbox.hasReady());
+        CommandData next = Outbox.next();
+        assertEquals(commandData, next);
+        assertTrue(next.isInForeground());
+
+        next.getResult().incrementNumIoExceptions();
+        assertTrue("Kept after a soft error", Outbox.onExecuted(next));
+        assertFalse("Not retried at once", Outbox.hasReady());
+        // Went online after the failure
+        Outbox.onOnline(System.currentTimeMillis() + 1);
+        assertTrue("Retried when online", Outbox.hasReady());
+
+        next = Outbox.next();
+        assertFalse("Removed when sent", Outbox.onExecuted(next));
+        assertEquals(0, Outbox.size());
+    }
+
+    public void testClearInBackground() {
+        TestSuite.getMyContextForTest().setOnline(TriState.TRUE);
+        assertTrue(Outbox.add(CommandData.updateStatus(ma.getAccountName(), 
+                "Outbox clear test " + System.currentTimeMillis(), msgId, 0)));
+        assertEquals(1, Outbox.size());
+        assertTrue(Outbox.hasReady());
+
+        Outbox.clearInBackground();
+        assertEquals("Looks empty at once", 0, Outbox.size());
+        assertFalse(Outbox.hasReady());
+    }
+
+    private boolean isFavorited() {
+        String sql = "SELECT " + MsgOfUser.FAVORITED + " FROM " + MsgOfUser.TABLE_NAME
+                + " WHERE " + MsgOfUser.MSG_ID + "=" + msgId + " AND " + MsgOfUser.USER_ID + "=" + ma.getUserId();
+        Cursor cursor = null;
+        try {
+            cursor = MyContextHolder.get().getDatabase().getReadableDatabase().rawQuery(sql, null);
+            return cursor.moveToFirst() && cursor.getLong(0) != 0;
+        } finally {
+            DbUtils.closeSilently(cursor);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.net.MbRateLimitStatus;
+import org.andstatus.app.service.RateLimiter.TokenBucket;
+
+public class RateLimiterTest extends InstrumentationTestCase {
+
+    public void testUnknownLimits() {
+        TokenBucket bucket = new TokenBucket();
+        long now = System.currentTimeMillis();
+        for (int ind = 0; ind < 1000; ind++) {
+            assertTrue(bucket.tryAcquire(now, true));
+        }
+        bucket.onLimitExceeded(now);
+        assertFalse(bucket.tryAcquire(now + 1000, true));
+        assertTrue("Limits are unknown again after the window", 
+                bucket.tryAcquire(now + RateLimiter.DEFAULT_WINDOW_MS + 1, true));
+    }
+
+    public void testReservedRequests() {
+        TokenBucket bucket = new TokenBucket();
+        long now = System.currentTimeMillis();
+        MbRateLimitStatus status = new MbRateLimitStatus();
+        status.limit = 100;
+        status.remaining = 13;
+        status.resetTime = now + 60000;
+        bucket.onStatus(status, now);
+        assertTrue(bucket.tryAcquire(now, false));
+        for (int ind = 0; ind < 3; ind++) {
+            assertTrue("Request " + ind + " " + bucket, bucket.tryAcquire(now, true));
+        }
+        assertFalse("Reserved for the User " + bucket, bucket.tryAcquire(now, true));
+        assertTrue("Limit was reset " + bucket, bucket.tryAcquire(status.resetTime, true));
+
+        status.remaining = 0;
+        status.resetTime = 0;
+        bucket.onStatus(status, now);
+        assertFalse(bucket.tryAcquire(now + RateLimiter.DEFAULT_WINDOW_MS - 1, false));
+        assertTrue(bucket.tryAcquire(now + RateLimiter.DEFAULT_WINDOW_MS, false));
+    }
+}
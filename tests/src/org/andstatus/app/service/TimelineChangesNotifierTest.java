@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.context.MyContextHolder;
+import org.andstatus.app.context.MyPreferences;
+import org.andstatus.app.context.TestSuite;
+import org.andstatus.app.data.TimelineTypeEnum;
+
+public class TimelineChangesNotifierTest extends InstrumentationTestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        TestSuite.initialize(this);
+        TimelineChangesNotifier.flush(MyContextHolder.get());
+    }
+
+    public void testResultsOfSeveralAccountsAreCombined() {
+        setDebounceSeconds(3600);
+        CommandResult result1 = new CommandResult();
+        result1.incrementMessagesCount(TimelineTypeEnum.HOME);
+        result1.incrementMentionsCount();
+        TimelineChangesNotifier.onChanged(MyContextHolder.get(), result1);
+        CommandResult result2 = new CommandResult();
+        result2.incrementMessagesCount(TimelineTypeEnum.HOME);
+        result2.incrementMessagesCount(TimelineTypeEnum.DIRECT);
+        TimelineChangesNotifier.onChanged(MyContextHolder.get(), result2);
+
+        CommandResult pending = TimelineChangesNotifier.getPending();
+        assertNotNull("Changes are delayed", pending);
+        assertEquals(2, pending.getMessagesAdded());
+        assertEquals(1, pending.getMentionsAdded());
+        assertEquals(1, pending.getDirectedAdded());
+
+        TimelineChangesNotifier.flush(MyContextHolder.get());
+        assertFalse(TimelineChangesNotifier.hasPending());
+    }
+
+    public void testZeroDebounceNotifiesAtOnce() {
+        setDebounceSeconds(0);
+        CommandResult result = new CommandResult();
+        result.incrementMessagesCount(TimelineTypeEnum.HOME);
+        TimelineChangesNotifier.onChanged(MyContextHolder.get(), result);
+        assertFalse(TimelineChangesNotifier.hasPending());
+    }
+
+    private void setDebounceSeconds(long seconds) {
+        MyPreferences.getDefaultSharedPreferences().edit()
+                .putString(MyPreferences.KEY_NOTIFICATIONS_DEBOUNCE_SECONDS, Long.toString(seconds)).commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MyPreferences.getDefaultSharedPreferences().edit()
+                .remove(MyPreferences.KEY_NOTIFICATIONS_DEBOUNCE_SECONDS).commit();
+        super.tearDown();
+    }
+}
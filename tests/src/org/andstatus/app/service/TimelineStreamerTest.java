@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2014 yvolk (Yuri Volkov), http://yurivolkov.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.andstatus.app.service;
+
+import android.test.InstrumentationTestCase;
+
+import org.andstatus.app.net.ConnectionException;
+import org.andstatus.app.net.ConnectionException.StatusCode;
+
+public class TimelineStreamerTest extends InstrumentationTestCase {
+
+    public void testBackoff() {
+        assertEquals(TimelineStreamer.BACKOFF_MIN_MS, TimelineStreamer.getBackoffMs(1));
+        assertEquals(TimelineStreamer.BACKOFF_MIN_MS * 2, TimelineStreamer.getBackoffMs(2));
+        assertEquals(TimelineStreamer.BACKOFF_MIN_MS * 8, TimelineStreamer.getBackoffMs(4));
+        assertEquals(TimelineStreamer.BACKOFF_MAX_MS, TimelineStreamer.getBackoffMs(100));
+
+        assertEquals(TimelineStreamer.BACKOFF_RATE_LIMITED_MIN_MS, TimelineStreamer.getBackoffMs(1, true));
+        assertEquals(TimelineStreamer.BACKOFF_RATE_LIMITED_MIN_MS * 2, TimelineStreamer.getBackoffMs(2, true));
+        assertTrue("Waiting longer, when rate limited",
+                TimelineStreamer.getBackoffMs(100, true) > TimelineStreamer.getBackoffMs(100));
+        assertEquals(TimelineStreamer.BACKOFF_RATE_LIMITED_MAX_MS, TimelineStreamer.getBackoffMs(100, true));
+    }
+
+    public void testFallbackToPolling() {
+        assertFalse("Network errors are retried", TimelineStreamer.isFatal(new ConnectionException("timeout")));
+        assertFalse("Rate limits are waited for", TimelineStreamer.isFatal(
+                new ConnectionException(StatusCode.RATE_LIMIT_EXCEEDED, "420")));
+        assertTrue(TimelineStreamer.isFatal(new ConnectionException(StatusCode.UNSUPPORTED_API, "No stream")));
+        assertTrue(TimelineStreamer.isFatal(new ConnectionException(StatusCode.AUTHENTICATION_ERROR, "401")));
+        assertFalse("Not streaming", TimelineStreamer.isStreaming("nobody/nowhere"));
+    }
+}